@@ -21,12 +21,12 @@ import javax.jms.Message;
 import org.apache.camel.Converter;
 import org.apache.camel.Exchange;
 import org.apache.camel.component.jms.JmsMessage;
-import org.apache.commons.lang3.SerializationUtils;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.broker.core.listener.CamelConstants;
 import org.eclipse.kapua.broker.core.message.CamelKapuaMessage;
 import org.eclipse.kapua.broker.core.message.CamelUtil;
 import org.eclipse.kapua.broker.core.message.JmsUtil;
+import org.eclipse.kapua.broker.core.message.KapuaHeaderCodec;
 import org.eclipse.kapua.broker.core.message.MessageConstants;
 import org.eclipse.kapua.broker.core.plugin.ConnectorDescriptor;
 import org.eclipse.kapua.broker.core.plugin.ConnectorDescriptor.MessageType;
@@ -82,10 +82,10 @@ public abstract class AbstractKapuaConverter {
             try {
                 // FIX #164
                 Date queuedOn = new Date(message.getHeader(CamelConstants.JMS_HEADER_TIMESTAMP, Long.class));
-                KapuaId connectionId = (KapuaId) SerializationUtils.deserialize(message.getHeader(MessageConstants.HEADER_KAPUA_CONNECTION_ID, byte[].class));
+                KapuaId connectionId = KapuaHeaderCodec.decodeConnectionId(message.getHeader(MessageConstants.HEADER_KAPUA_CONNECTION_ID, byte[].class));
                 String clientId = message.getHeader(MessageConstants.HEADER_KAPUA_CLIENT_ID, String.class);
-                ConnectorDescriptor connectorDescriptor = (ConnectorDescriptor) SerializationUtils
-                        .deserialize(message.getHeader(MessageConstants.HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL, byte[].class));
+                ConnectorDescriptor connectorDescriptor = KapuaHeaderCodec
+                        .decodeConnectorDescriptor(message.getHeader(MessageConstants.HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL, byte[].class));
                 return JmsUtil.convertToCamelKapuaMessage(connectorDescriptor, messageType, (byte[]) value, CamelUtil.getTopic(message), queuedOn, connectionId, clientId);
             } catch (JMSException e) {
                 metricConverterErrorMessage.inc();
@@ -12,13 +12,12 @@
 package org.eclipse.kapua.broker.core.converter;
 
 import org.apache.camel.Exchange;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.shiro.util.ThreadContext;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.broker.core.listener.AbstractListener;
+import org.eclipse.kapua.broker.core.message.KapuaHeaderCodec;
 import org.eclipse.kapua.broker.core.message.MessageConstants;
 import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
-import org.eclipse.kapua.commons.security.KapuaSession;
 
 /**
  * Kapua Camel session filter used to bind/unbind Kapua session to the thread context
@@ -41,7 +40,7 @@ public class KapuaCamelFilter extends AbstractListener {
         ThreadContext.unbindSubject();
         // FIX #164
         byte[] kapuaSession = exchange.getIn().getHeader(MessageConstants.HEADER_KAPUA_SESSION, byte[].class);
-        KapuaSecurityUtils.setSession((KapuaSession) SerializationUtils.deserialize(kapuaSession));
+        KapuaSecurityUtils.setSession(KapuaHeaderCodec.decodeSession(kapuaSession));
     }
 
     /**
@@ -15,6 +15,8 @@ package org.eclipse.kapua.broker.core.listener;
 import org.apache.camel.spi.UriEndpoint;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.broker.core.message.CamelKapuaMessage;
+import org.eclipse.kapua.broker.core.setting.BrokerSetting;
+import org.eclipse.kapua.broker.core.setting.BrokerSettingKey;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.service.datastore.MessageStoreService;
 import org.slf4j.Logger;
@@ -25,7 +27,9 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
 
 /**
- * Data storage message listener
+ * Data storage message listener.<br>
+ * If {@link BrokerSettingKey#DATA_STORAGE_ASYNC_ENABLED} is set the messages are stored asynchronously, so the processing (and the message acknowledge) doesn't
+ * wait for the datastore response and the store errors are only logged and counted.
  *
  * @since 1.0
  */
@@ -42,6 +46,7 @@ public class DataStorageMessageProcessor extends AbstractProcessor<CamelKapuaMes
     private final Timer metricStorageDataSaveTime;
 
     private final MessageStoreService messageStoreService = KapuaLocator.getInstance().getService(MessageStoreService.class);
+    private final boolean storeAsync = BrokerSetting.getInstance().getBoolean(BrokerSettingKey.DATA_STORAGE_ASYNC_ENABLED, false);
 
     public DataStorageMessageProcessor() {
         super("DataStorage");
@@ -66,6 +71,18 @@ public class DataStorageMessageProcessor extends AbstractProcessor<CamelKapuaMes
         try {
             Context metricStorageDataSaveTimeContext = metricStorageDataSaveTime.time();
             logger.debug("Received data message from device channel: client id '{}' - {}", message.getMessage().getClientId(), message.getMessage().getChannel());
+            if (storeAsync) {
+                messageStoreService.storeAsync(message.getMessage()).whenComplete((insertResponse, t) -> {
+                    metricStorageDataSaveTimeContext.stop();
+                    if (t == null) {
+                        metricStorageMessage.inc();
+                    } else {
+                        metricStorageDataErrorMessage.inc();
+                        logger.error("An error occurred while storing message", t);
+                    }
+                });
+                return;
+            }
             messageStoreService.store(message.getMessage());
             metricStorageMessage.inc();
             metricStorageDataSaveTimeContext.stop();
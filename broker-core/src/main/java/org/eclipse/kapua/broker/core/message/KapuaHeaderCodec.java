@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.broker.core.message;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.broker.core.plugin.ConnectorDescriptor;
+import org.eclipse.kapua.broker.core.plugin.ConnectorDescriptorProviders;
+import org.eclipse.kapua.broker.core.setting.BrokerSetting;
+import org.eclipse.kapua.broker.core.setting.BrokerSettingKey;
+import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.security.KapuaSession;
+import org.eclipse.kapua.model.id.KapuaId;
+
+/**
+ * Codec for the Kapua message headers ({@link MessageConstants#HEADER_KAPUA_CONNECTION_ID}, {@link MessageConstants#HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL} and
+ * {@link MessageConstants#HEADER_KAPUA_SESSION}).<br>
+ * <br>
+ * Every encoded header starts with the {@link #MAGIC} byte followed by the format version ({@link #VERSION_1}):
+ * <ul>
+ * <li>connection id: the id big integer bytes (no bytes for a null id)</li>
+ * <li>connector descriptor: the connector name (UTF-8). The descriptor is resolved on decoding through the {@link ConnectorDescriptorProviders}</li>
+ * <li>session: a per connection intern key (8 bytes) followed by the Java serialized session</li>
+ * </ul>
+ * The encoded headers are computed once per connection (see {@link org.eclipse.kapua.broker.core.plugin.KapuaSecurityContext}) and the decoded sessions are cached by
+ * intern key, so the session is deserialized once per connection instead of once per message.<br>
+ * Headers written with the legacy format (plain Java serialization) are still decoded.
+ *
+ * @since 1.0
+ */
+public final class KapuaHeaderCodec {
+
+    public static final byte MAGIC = (byte) 0x4B;
+    public static final byte VERSION_1 = 0x01;
+
+    private static final int PREFIX_LENGTH = 2;
+    private static final int INTERN_KEY_LENGTH = 8;
+
+    // Java serialization stream magic (ObjectStreamConstants.STREAM_MAGIC)
+    private static final byte LEGACY_MAGIC_0 = (byte) 0xAC;
+    private static final byte LEGACY_MAGIC_1 = (byte) 0xED;
+
+    private static final AtomicLong INTERN_KEY_SEQUENCE = new AtomicLong(new SecureRandom().nextLong());
+
+    private static final ConcurrentMap<String, ConnectorDescriptor> DESCRIPTORS = new ConcurrentHashMap<>();
+
+    private static final LocalCache<Long, InternedSession> SESSIONS = new LocalCache<>(
+            BrokerSetting.getInstance().getInt(BrokerSettingKey.HEADER_SESSION_CACHE_SIZE_MAXIMUM, 10000),
+            BrokerSetting.getInstance().getInt(BrokerSettingKey.HEADER_SESSION_CACHE_EXPIRE_AFTER, 3600),
+            null);
+
+    private KapuaHeaderCodec() {
+    }
+
+    /**
+     * Encode the connection id
+     *
+     * @param connectionId
+     *            the connection id (may be null)
+     * @return
+     */
+    public static byte[] encodeConnectionId(KapuaId connectionId) {
+        if (connectionId == null) {
+            return new byte[] { MAGIC, VERSION_1 };
+        }
+        return prefix(connectionId.getId().toByteArray());
+    }
+
+    /**
+     * Decode the connection id
+     *
+     * @param header
+     * @return the connection id (may be null)
+     * @throws KapuaException
+     *             if the header format is not supported
+     */
+    public static KapuaId decodeConnectionId(byte[] header) throws KapuaException {
+        if (isLegacy(header)) {
+            return (KapuaId) SerializationUtils.deserialize(header);
+        }
+        checkVersion(header, MessageConstants.HEADER_KAPUA_CONNECTION_ID);
+        if (header.length == PREFIX_LENGTH) {
+            return null;
+        }
+        return new KapuaEid(new BigInteger(Arrays.copyOfRange(header, PREFIX_LENGTH, header.length)));
+    }
+
+    /**
+     * Encode the connector descriptor by connector name
+     *
+     * @param connectorName
+     *            the name of the connector the descriptor belongs to
+     * @return
+     */
+    public static byte[] encodeConnectorDescriptor(String connectorName) {
+        return prefix(connectorName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode the connector descriptor
+     *
+     * @param header
+     * @return
+     * @throws KapuaException
+     *             if the header format is not supported or the connector has no descriptor
+     */
+    public static ConnectorDescriptor decodeConnectorDescriptor(byte[] header) throws KapuaException {
+        if (isLegacy(header)) {
+            return (ConnectorDescriptor) SerializationUtils.deserialize(header);
+        }
+        checkVersion(header, MessageConstants.HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL);
+        String connectorName = new String(header, PREFIX_LENGTH, header.length - PREFIX_LENGTH, StandardCharsets.UTF_8);
+        ConnectorDescriptor connectorDescriptor = DESCRIPTORS.get(connectorName);
+        if (connectorDescriptor == null) {
+            connectorDescriptor = ConnectorDescriptorProviders.getDescriptor(connectorName);
+            if (connectorDescriptor == null) {
+                throw KapuaException.internalError(String.format("Unable to find connector descriptor for connector '%s'", connectorName));
+            }
+            DESCRIPTORS.putIfAbsent(connectorName, connectorDescriptor);
+        }
+        return connectorDescriptor;
+    }
+
+    /**
+     * Encode the session.<br>
+     * The encoded header carries a new intern key, so it should be computed once per connection and reused for every message sent by that connection.
+     *
+     * @param kapuaSession
+     * @return
+     */
+    public static byte[] encodeSession(KapuaSession kapuaSession) {
+        byte[] serialized = SerializationUtils.serialize(kapuaSession);
+        return ByteBuffer.allocate(PREFIX_LENGTH + INTERN_KEY_LENGTH + serialized.length)
+                .put(MAGIC)
+                .put(VERSION_1)
+                .putLong(INTERN_KEY_SEQUENCE.incrementAndGet())
+                .put(serialized)
+                .array();
+    }
+
+    /**
+     * Decode the session.<br>
+     * The session is deserialized only the first time its intern key is seen (or once the cached entry is expired).
+     *
+     * @param header
+     * @return
+     * @throws KapuaException
+     *             if the header format is not supported
+     */
+    public static KapuaSession decodeSession(byte[] header) throws KapuaException {
+        if (isLegacy(header)) {
+            return (KapuaSession) SerializationUtils.deserialize(header);
+        }
+        checkVersion(header, MessageConstants.HEADER_KAPUA_SESSION);
+        if (header.length < PREFIX_LENGTH + INTERN_KEY_LENGTH) {
+            throw KapuaException.internalError(String.format("Malformed header '%s'", MessageConstants.HEADER_KAPUA_SESSION));
+        }
+        Long internKey = ByteBuffer.wrap(header, PREFIX_LENGTH, INTERN_KEY_LENGTH).getLong();
+        InternedSession interned = SESSIONS.get(internKey);
+        // the header comparison guards against intern key collisions between brokers
+        if (interned == null || !Arrays.equals(interned.header, header)) {
+            KapuaSession kapuaSession = (KapuaSession) SerializationUtils
+                    .deserialize(Arrays.copyOfRange(header, PREFIX_LENGTH + INTERN_KEY_LENGTH, header.length));
+            interned = new InternedSession(header, kapuaSession);
+            SESSIONS.put(internKey, interned);
+        }
+        return interned.kapuaSession;
+    }
+
+    private static byte[] prefix(byte[] payload) {
+        byte[] header = new byte[PREFIX_LENGTH + payload.length];
+        header[0] = MAGIC;
+        header[1] = VERSION_1;
+        System.arraycopy(payload, 0, header, PREFIX_LENGTH, payload.length);
+        return header;
+    }
+
+    private static boolean isLegacy(byte[] header) {
+        return header != null && header.length >= 2 && header[0] == LEGACY_MAGIC_0 && header[1] == LEGACY_MAGIC_1;
+    }
+
+    private static void checkVersion(byte[] header, String headerName) throws KapuaException {
+        if (header == null || header.length < PREFIX_LENGTH || header[0] != MAGIC) {
+            throw KapuaException.internalError(String.format("Malformed header '%s'", headerName));
+        }
+        if (header[1] != VERSION_1) {
+            throw KapuaException.internalError(String.format("Unsupported header '%s' format version %d", headerName, header[1]));
+        }
+    }
+
+    private static class InternedSession {
+
+        private final byte[] header;
+        private final KapuaSession kapuaSession;
+
+        private InternedSession(byte[] header, KapuaSession kapuaSession) {
+            this.header = header;
+            this.kapuaSession = kapuaSession;
+        }
+    }
+}
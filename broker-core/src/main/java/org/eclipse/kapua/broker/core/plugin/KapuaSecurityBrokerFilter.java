@@ -38,7 +38,6 @@ import org.apache.activemq.filter.DestinationMapEntry;
 import org.apache.activemq.security.AuthorizationEntry;
 import org.apache.activemq.security.DefaultAuthorizationMap;
 import org.apache.activemq.security.SecurityContext;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.ShiroException;
 import org.apache.shiro.authc.AuthenticationException;
@@ -48,12 +47,14 @@ import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.KapuaIllegalAccessException;
 import org.eclipse.kapua.broker.core.BrokerDomain;
 import org.eclipse.kapua.broker.core.message.MessageConstants;
+import org.eclipse.kapua.commons.cache.IdentityCache;
 import org.eclipse.kapua.commons.metric.MetricServiceFactory;
 import org.eclipse.kapua.commons.metric.MetricsService;
 import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
 import org.eclipse.kapua.commons.security.KapuaSession;
 import org.eclipse.kapua.commons.setting.system.SystemSetting;
 import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
+import org.eclipse.kapua.commons.util.ShutdownHooks;
 import org.eclipse.kapua.commons.util.xml.XmlUtil;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.model.id.KapuaId;
@@ -94,6 +95,10 @@ import com.codahale.metrics.Timer.Context;
  * Otherwise perform all kapua authorization/check action.<br>
  * <br>
  * 
+ * The device connection status updates are deferred and coalesced by the {@link DeviceConnectionService#updateDeferred(DeviceConnection)} write-behind (enabled on
+ * the broker by the device.connection.write.behind.enabled setting, otherwise they are written synchronously).<br>
+ * <br>
+ * 
  * This filter is added inside ActiveMQ filter chain plugin by {@link org.eclipse.kapua.broker.core.KapuaBrokerSecurityPlugin}
  */
 public class KapuaSecurityBrokerFilter extends BrokerFilter {
@@ -202,6 +207,8 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
     public void stop()
             throws Exception {
         logger.info(">>> Security broker filter: calling stop...");
+        // flush the pending writes (queued messages, device connection updates) while the database and the datastore are still reachable
+        ShutdownHooks.shutdown();
         super.stop();
     }
 
@@ -332,6 +339,8 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
             }
 
             String accountName = account.getName();
+            // the translators resolve the account of every message published by this connection
+            IdentityCache.putAccountId(accountName, scopeId);
             loginShiroLoginTimeContext.stop();
 
             // if a user acts as a child MOVED INSIDE KapuaAuthorizingRealm otherwise through REST API and console this @accountName won't work
@@ -356,6 +365,9 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                 // 3-1) admin authMap
                 authMap = buildAdminAuthMap(authDestinations, principal, fullClientId);
                 metricClientConnectedKapuasys.inc();
+            } else if (isEntityCacheCoordinationUser(username) && isAdminAccount(accountName)) {
+                // 3-2) second level entity cache coordination authMap (no device connection)
+                authMap = buildEntityCacheCoordinationAuthMap(authDestinations, principal, fullClientId);
             } else {
                 Context loginNormalUserTimeContext = metricLoginNormalUserTime.time();
                 metricLoginNormalUserAttempt.inc();
@@ -402,7 +414,7 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                     deviceConnection.setUserId(userId);
                     deviceConnection.setStatus(DeviceConnectionStatus.CONNECTED);
                     final DeviceConnection deviceConnectionToUpdate = deviceConnection;
-                    KapuaSecurityUtils.doPrivileged(() -> deviceConnectionService.update(deviceConnectionToUpdate));
+                    KapuaSecurityUtils.doPrivileged(() -> deviceConnectionService.updateDeferred(deviceConnectionToUpdate));
                     // TODO implement the banned status
                     // if (DeviceStatus.DISABLED.equals(device.getStatus())) {
                     // throw new KapuaIllegalAccessException("clientId - This client ID is disabled and cannot connect");
@@ -435,6 +447,7 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                     authMap,
                     (deviceConnection != null ? deviceConnection.getId() : null),
                     connectionId,
+                    connectorName,
                     connectorDescriptor);
             context.setSecurityContext(securityCtx);
 
@@ -511,7 +524,7 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                 // multiple account stealing link fix
                 fullClientId = MessageFormat.format(AclConstants.MULTI_ACCOUNT_CLIENT_ID, accountId, clientId);
 
-                if (!isAdminUser(username)) {
+                if (!isAdminUser(username) && !isEntityCacheCoordinationUser(username)) {
                     // Stealing link check
                     ConnectionId connectionId = CONNECTION_MAP.get(fullClientId);
 
@@ -543,10 +556,7 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                                 deviceConnection.setStatus(DeviceConnectionStatus.MISSING);
                             }
                             try {
-                                KapuaSecurityUtils.doPrivileged(() -> {
-                                    deviceConnectionService.update(deviceConnection);
-                                    return null;
-                                });
+                                KapuaSecurityUtils.doPrivileged(() -> deviceConnectionService.updateDeferred(deviceConnection));
                             } catch (Exception e) {
                                 throw new ShiroException("Error while updating the device connection status!", e);
                             }
@@ -622,10 +632,10 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
                 }
             }
             // FIX #164
-            messageSend.setProperty(MessageConstants.HEADER_KAPUA_CONNECTION_ID, SerializationUtils.serialize(kapuaSecurityContext.getConnectionId()));
+            messageSend.setProperty(MessageConstants.HEADER_KAPUA_CONNECTION_ID, kapuaSecurityContext.getConnectionIdHeader());
             messageSend.setProperty(MessageConstants.HEADER_KAPUA_CLIENT_ID, ((KapuaPrincipal) kapuaSecurityContext.getMainPrincipal()).getClientId());
-            messageSend.setProperty(MessageConstants.HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL, SerializationUtils.serialize(kapuaSecurityContext.getConnectorDescriptor()));
-            messageSend.setProperty(MessageConstants.HEADER_KAPUA_SESSION, SerializationUtils.serialize(kapuaSecurityContext.getKapuaSession()));
+            messageSend.setProperty(MessageConstants.HEADER_KAPUA_CONNECTOR_DEVICE_PROTOCOL, kapuaSecurityContext.getConnectorDescriptorHeader());
+            messageSend.setProperty(MessageConstants.HEADER_KAPUA_SESSION, kapuaSecurityContext.getKapuaSessionHeader());
         }
         if (messageSend.getContent() != null) {
             metricPublishMessageSizeAllowed.update(messageSend.getContent().length);
@@ -740,6 +750,23 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
         return new DefaultAuthorizationMap(dme);
     }
 
+    /**
+     * Build the authorization map of the second level entity cache coordination user: only the coordination topics (the invalidations of the nodes not
+     * connected through the vm connector) are granted
+     */
+    @SuppressWarnings("rawtypes")
+    private DefaultAuthorizationMap buildEntityCacheCoordinationAuthMap(List<String> authDestinations, KapuaPrincipal principal, String fullClientId) {
+        ArrayList<DestinationMapEntry> dme = new ArrayList<DestinationMapEntry>();
+        String clientId = principal.getClientId();
+        String entityCacheTopic = SystemSetting.getInstance().getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_TOPIC);
+        if (StringUtils.isNotBlank(entityCacheTopic)) {
+            dme.add(createAuthorizationEntry(authDestinations, entityCacheTopic + ".>", principal, true, true, true));// (topic, principal, read, write, admin)
+        }
+        dme.addAll(createAuthorizationEntries(authDestinations, AclConstants.ACL_AMQ_ADVISORY,
+                principal, clientId, fullClientId, false, true, true));// (topic, principal, read, write, admin)
+        return new DefaultAuthorizationMap(dme);
+    }
+
     @SuppressWarnings("unused")
     private DefaultAuthorizationMap buildProvisioningAuthMap(List<String> authDestinations, KapuaPrincipal principal, String accountName, String fullClientId) {
         @SuppressWarnings("rawtypes")
@@ -940,4 +967,14 @@ public class KapuaSecurityBrokerFilter extends BrokerFilter {
         return user.equals(adminAccount);
     }
 
+    private boolean isAdminAccount(String accountName) {
+        String adminAccount = SystemSetting.getInstance().getString(SystemSettingKey.SYS_ADMIN_ACCOUNT);
+        return accountName.equals(adminAccount);
+    }
+
+    private boolean isEntityCacheCoordinationUser(String user) {
+        String coordinationUser = SystemSetting.getInstance().getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_USERNAME);
+        return StringUtils.isNotBlank(coordinationUser) && user.equals(coordinationUser);
+    }
+
 }
@@ -18,6 +18,7 @@ import java.util.Set;
 import org.apache.activemq.command.ConnectionId;
 import org.apache.activemq.security.AuthorizationMap;
 import org.apache.activemq.security.SecurityContext;
+import org.eclipse.kapua.broker.core.message.KapuaHeaderCodec;
 import org.eclipse.kapua.commons.security.KapuaSession;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.authentication.KapuaPrincipal;
@@ -36,6 +37,11 @@ public class KapuaSecurityContext extends SecurityContext {
     private ConnectorDescriptor connectorDescriptor;
     private ConnectionId brokerConnectionId;
 
+    // message headers encoded once per connection
+    private byte[] connectionIdHeader;
+    private byte[] connectorDescriptorHeader;
+    private byte[] kapuaSessionHeader;
+
     private AuthorizationMap authMap;
     private boolean hasDataView;
     private boolean hasDataManage;
@@ -46,6 +52,7 @@ public class KapuaSecurityContext extends SecurityContext {
             AuthorizationMap authMap,
             KapuaId connectionId,
             ConnectionId brokerConnectionId,
+            String connectorName,
             ConnectorDescriptor connectorDescriptor) {
         super(principal.getName());
 
@@ -58,6 +65,10 @@ public class KapuaSecurityContext extends SecurityContext {
         this.connectionId = connectionId;
         this.connectorDescriptor = connectorDescriptor;
         this.brokerConnectionId = brokerConnectionId;
+
+        connectionIdHeader = KapuaHeaderCodec.encodeConnectionId(connectionId);
+        connectorDescriptorHeader = KapuaHeaderCodec.encodeConnectorDescriptor(connectorName);
+        kapuaSessionHeader = KapuaHeaderCodec.encodeSession(kapuaSession);
     }
 
     public Principal getMainPrincipal() {
@@ -103,4 +114,16 @@ public class KapuaSecurityContext extends SecurityContext {
     public KapuaSession getKapuaSession() {
         return kapuaSession;
     }
+
+    public byte[] getConnectionIdHeader() {
+        return connectionIdHeader;
+    }
+
+    public byte[] getConnectorDescriptorHeader() {
+        return connectorDescriptorHeader;
+    }
+
+    public byte[] getKapuaSessionHeader() {
+        return kapuaSessionHeader;
+    }
 }
@@ -25,7 +25,19 @@ public enum BrokerSettingKey implements SettingKey {
     /**
      * A URI to a configuration file for providing additional {@link ConnectorDescriptor} configurations
      */
-    CONFIGURATION_URI("broker.connector.descriptor.configuration.uri");
+    CONFIGURATION_URI("broker.connector.descriptor.configuration.uri"),
+    /**
+     * Maximum number of decoded sessions kept by the message header codec
+     */
+    HEADER_SESSION_CACHE_SIZE_MAXIMUM("broker.header.session.cache.size.maximum"),
+    /**
+     * Decoded session cache entries expiration (seconds)
+     */
+    HEADER_SESSION_CACHE_EXPIRE_AFTER("broker.header.session.cache.expire.after"),
+    /**
+     * If true the data messages are stored asynchronously (the message processing doesn't wait for the datastore response)
+     */
+    DATA_STORAGE_ASYNC_ENABLED("broker.data.storage.async.enabled");
 
     private String key;
 
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.broker.core.message;
+
+import java.math.BigInteger;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.security.KapuaSession;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KapuaHeaderCodecTest {
+
+    @Test
+    public void testConnectionId() throws KapuaException {
+        KapuaId connectionId = new KapuaEid(new BigInteger("1234567890123456789"));
+        byte[] header = KapuaHeaderCodec.encodeConnectionId(connectionId);
+
+        Assert.assertEquals(KapuaHeaderCodec.MAGIC, header[0]);
+        Assert.assertEquals(KapuaHeaderCodec.VERSION_1, header[1]);
+        Assert.assertEquals(connectionId.getId(), KapuaHeaderCodec.decodeConnectionId(header).getId());
+    }
+
+    @Test
+    public void testNullConnectionId() throws KapuaException {
+        Assert.assertNull(KapuaHeaderCodec.decodeConnectionId(KapuaHeaderCodec.encodeConnectionId(null)));
+    }
+
+    @Test
+    public void testLegacyConnectionId() throws KapuaException {
+        KapuaId connectionId = new KapuaEid(BigInteger.TEN);
+        byte[] header = SerializationUtils.serialize(connectionId);
+
+        Assert.assertEquals(connectionId.getId(), KapuaHeaderCodec.decodeConnectionId(header).getId());
+        Assert.assertNull(KapuaHeaderCodec.decodeConnectionId(SerializationUtils.serialize(null)));
+    }
+
+    @Test
+    public void testConnectorDescriptor() throws KapuaException {
+        Assert.assertNotNull(KapuaHeaderCodec.decodeConnectorDescriptor(KapuaHeaderCodec.encodeConnectorDescriptor("foo")));
+    }
+
+    @Test
+    public void testSessionInterning() throws KapuaException {
+        KapuaSession kapuaSession = new KapuaSession(null, KapuaId.ONE, KapuaId.ONE);
+        byte[] header = KapuaHeaderCodec.encodeSession(kapuaSession);
+
+        KapuaSession decoded = KapuaHeaderCodec.decodeSession(header);
+        Assert.assertEquals(KapuaId.ONE.getId(), decoded.getScopeId().getId());
+        Assert.assertEquals(KapuaId.ONE.getId(), decoded.getUserId().getId());
+        // the same connection header is deserialized once
+        Assert.assertSame(decoded, KapuaHeaderCodec.decodeSession(header.clone()));
+        // a new connection gets a new intern key
+        Assert.assertNotSame(decoded, KapuaHeaderCodec.decodeSession(KapuaHeaderCodec.encodeSession(kapuaSession)));
+    }
+
+    @Test
+    public void testLegacySession() throws KapuaException {
+        KapuaSession kapuaSession = new KapuaSession(null, KapuaId.ONE, KapuaId.ONE);
+
+        KapuaSession decoded = KapuaHeaderCodec.decodeSession(SerializationUtils.serialize(kapuaSession));
+        Assert.assertEquals(KapuaId.ONE.getId(), decoded.getScopeId().getId());
+    }
+
+    @Test(expected = KapuaException.class)
+    public void testUnsupportedVersion() throws KapuaException {
+        KapuaHeaderCodec.decodeConnectionId(new byte[] { KapuaHeaderCodec.MAGIC, 0x7F, 0x01 });
+    }
+}
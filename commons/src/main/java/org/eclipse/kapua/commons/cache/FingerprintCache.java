@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.cache;
+
+import java.util.Arrays;
+
+/**
+ * Compact cache of string keys presence (a set with size and time based eviction).<br>
+ * Only a 64 bit fingerprint of each key is kept, into open addressing tables of primitive arrays (12 bytes per slot: the fingerprint and a 32 bit stamp), and
+ * a lookup allocates nothing. Each segment table has a power of two slots, at least its maximum size divided by the 0.75 load factor, so a full cache costs
+ * from 16 to 32 bytes per entry, depending on how far the maximum size is from the next power of two (against the key, value and node objects held by
+ * {@link LocalCache}).<br>
+ * <br>
+ * The keys are spread over independently locked segments. Once a segment is full an entry is evicted by a clock sweep (approximate LRU: the entries read since
+ * the previous sweep get a second chance, the expired ones are evicted first).<br>
+ * <br>
+ * <b>Only the presence is stored: {@link #get(String)} returns {@link Boolean#TRUE} for a cached key and the default value otherwise, while
+ * {@link #put(String, Boolean)} with a value other than {@link Boolean#TRUE} removes the key.<br>
+ * Two keys with the same fingerprint are not distinguished (the probability is about the number of entries divided by 2^64).</b>
+ *
+ * @since 1.0
+ */
+public class FingerprintCache implements Cache<String, Boolean> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int SEGMENTS_MAX = 64;
+    private static final int SEGMENT_SIZE_MIN = 16;
+    // the segment is chosen by the fingerprint high bits (6 bits for the maximum segments count), the slot by the low bits
+    private static final int SEGMENT_SHIFT = 58;
+
+    // the stamp holds the write time (in seconds since the cache creation) and the referenced (read since the last clock sweep) flag
+    private static final int REFERENCED = 0x80000000;
+    private static final int WRITE_TIME_MASK = 0x7fffffff;
+
+    private static final long EMPTY = 0L;
+
+    private String namespace;
+    private final Boolean defaultValue;
+    private final int expireAfter;
+    private final long createdOn;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /**
+     * Construct the cache setting the provided max size, expire time and default value
+     *
+     * @param sizeMax
+     *            max cache size
+     * @param expireAfter
+     *            values ttl (in seconds, time based eviction is disabled if not positive)
+     * @param defaultValue
+     *            default value (if the key is not cached)
+     */
+    public FingerprintCache(int sizeMax, int expireAfter, final Boolean defaultValue) {
+        this.defaultValue = defaultValue;
+        this.expireAfter = expireAfter;
+        createdOn = System.currentTimeMillis();
+
+        int segmentsCount = 1;
+        int segmentsCountMax = Math.min(SEGMENTS_MAX, Runtime.getRuntime().availableProcessors() * 4);
+        while (segmentsCount < segmentsCountMax && sizeMax / (segmentsCount * 2) >= SEGMENT_SIZE_MIN) {
+            segmentsCount *= 2;
+        }
+        int segmentSizeMax = Math.max(1, sizeMax / segmentsCount);
+        segments = new Segment[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            segments[i] = new Segment(segmentSizeMax);
+        }
+        segmentMask = segmentsCount - 1;
+    }
+
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public Boolean get(String k) {
+        long fingerprint = fingerprint(k);
+        return segmentFor(fingerprint).contains(fingerprint, now()) ? Boolean.TRUE : defaultValue;
+    }
+
+    @Override
+    public void put(String k, Boolean v) {
+        if (!Boolean.TRUE.equals(v)) {
+            remove(k);
+            return;
+        }
+        long fingerprint = fingerprint(k);
+        segmentFor(fingerprint).add(fingerprint, now());
+    }
+
+    @Override
+    public void remove(String k) {
+        long fingerprint = fingerprint(k);
+        segmentFor(fingerprint).remove(fingerprint);
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return the number of cached keys (the expired keys not yet evicted are counted too)
+     *
+     * @return
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Return the 64 bit fingerprint of the key (never {@link #EMPTY})
+     *
+     * @param key
+     * @return
+     */
+    static long fingerprint(String key) {
+        // FNV-1a over the chars followed by the murmur3 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != EMPTY ? hash : 1L;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        return segments[(int) (fingerprint >>> SEGMENT_SHIFT) & segmentMask];
+    }
+
+    private int now() {
+        return (int) ((System.currentTimeMillis() - createdOn) / 1000);
+    }
+
+    private boolean isExpired(int stamp, int now) {
+        return expireAfter > 0 && now - (stamp & WRITE_TIME_MASK) >= expireAfter;
+    }
+
+    /**
+     * Linear probing table of fingerprints (the removals shift back the following entries, so no tombstone is needed)
+     */
+    private final class Segment {
+
+        private final long[] fingerprints;
+        private final int[] stamps;
+        private final int mask;
+        private final int sizeMax;
+        private int size;
+        private int clockHand;
+
+        private Segment(int sizeMax) {
+            int capacity = 2;
+            while (capacity * LOAD_FACTOR < sizeMax) {
+                capacity *= 2;
+            }
+            fingerprints = new long[capacity];
+            stamps = new int[capacity];
+            mask = capacity - 1;
+            this.sizeMax = sizeMax;
+        }
+
+        private synchronized boolean contains(long fingerprint, int now) {
+            int slot = find(fingerprint);
+            if (slot < 0) {
+                return false;
+            }
+            if (isExpired(stamps[slot], now)) {
+                delete(slot);
+                return false;
+            }
+            stamps[slot] |= REFERENCED;
+            return true;
+        }
+
+        private synchronized void add(long fingerprint, int now) {
+            int slot = find(fingerprint);
+            if (slot >= 0) {
+                stamps[slot] = now;
+                return;
+            }
+            if (size >= sizeMax) {
+                evict(now);
+            }
+            slot = (int) fingerprint & mask;
+            while (fingerprints[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            fingerprints[slot] = fingerprint;
+            stamps[slot] = now;
+            size++;
+        }
+
+        private synchronized void remove(long fingerprint) {
+            int slot = find(fingerprint);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(fingerprints, EMPTY);
+            Arrays.fill(stamps, 0);
+            size = 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private int find(long fingerprint) {
+            int slot = (int) fingerprint & mask;
+            long current;
+            while ((current = fingerprints[slot]) != EMPTY) {
+                if (current == fingerprint) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void evict(int now) {
+            // the referenced flags are cleared while sweeping, so an entry is found within two rounds
+            while (true) {
+                int slot = clockHand;
+                clockHand = (clockHand + 1) & mask;
+                if (fingerprints[slot] == EMPTY) {
+                    continue;
+                }
+                int stamp = stamps[slot];
+                if ((stamp & REFERENCED) != 0 && !isExpired(stamp, now)) {
+                    stamps[slot] = stamp & WRITE_TIME_MASK;
+                    continue;
+                }
+                delete(slot);
+                return;
+            }
+        }
+
+        private void delete(int slot) {
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (fingerprints[next] != EMPTY) {
+                int home = (int) fingerprints[next] & mask;
+                // the entry can fill the hole only if the hole lies between its home slot and its current slot
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    fingerprints[hole] = fingerprints[next];
+                    stamps[hole] = stamps[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            fingerprints[hole] = EMPTY;
+            stamps[hole] = 0;
+            size--;
+        }
+    }
+}
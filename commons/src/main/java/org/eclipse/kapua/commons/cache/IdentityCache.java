@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.setting.system.SystemSetting;
+import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Identity resolution cache: account identifiers by account name and device identifiers by scope id and client id (as resolved by the message translators for
+ * every incoming message).<br>
+ * The missing identities are cached too (negative entries), for the shorter {@link SystemSettingKey#IDENTITY_CACHE_NEGATIVE_EXPIRE_AFTER} time.<br>
+ * <br>
+ * The account and device registry services invalidate the entries they write (account create, update and delete, device create and delete), and a resolution
+ * racing with an invalidation is not cached. The invalidation is local to the node, so the entries also expire after
+ * {@link SystemSettingKey#IDENTITY_CACHE_EXPIRE_AFTER}, to bound the staleness of the writes done by other nodes.
+ *
+ * @since 1.0
+ */
+public final class IdentityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdentityCache.class);
+
+    private static final String METRIC_MODULE_NAME = "identity";
+
+    private static final Resolution ACCOUNTS;
+    private static final Resolution DEVICES;
+
+    static {
+        SystemSetting setting = SystemSetting.getInstance();
+        boolean enabled = setting.getBoolean(SystemSettingKey.IDENTITY_CACHE_ENABLED, true);
+        int sizeMax = setting.getInt(SystemSettingKey.IDENTITY_CACHE_SIZE_MAXIMUM, 100000);
+        int expireAfter = setting.getInt(SystemSettingKey.IDENTITY_CACHE_EXPIRE_AFTER, 300);
+        long negativeExpireAfter = TimeUnit.SECONDS.toMillis(setting.getInt(SystemSettingKey.IDENTITY_CACHE_NEGATIVE_EXPIRE_AFTER, 30));
+        ACCOUNTS = new Resolution("account", enabled, sizeMax, expireAfter, negativeExpireAfter);
+        DEVICES = new Resolution("device", enabled, sizeMax, expireAfter, negativeExpireAfter);
+    }
+
+    /**
+     * Identity resolver (invoked on a cache miss)
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * Resolve the identity
+         *
+         * @return the identifier or null if the identity doesn't exist
+         * @throws KapuaException
+         */
+        KapuaId resolve() throws KapuaException;
+    }
+
+    private IdentityCache() {
+    }
+
+    /**
+     * Return the account identifier, resolving it through the resolver if not cached
+     *
+     * @param accountName
+     * @param resolver
+     * @return the account identifier or null if the account doesn't exist
+     * @throws KapuaException
+     */
+    public static KapuaId getAccountId(String accountName, Resolver resolver) throws KapuaException {
+        return ACCOUNTS.get(accountName, resolver);
+    }
+
+    /**
+     * Cache the account identifier already resolved by the caller (such as the broker on the device connection)
+     *
+     * @param accountName
+     * @param accountId
+     */
+    public static void putAccountId(String accountName, KapuaId accountId) {
+        ACCOUNTS.put(accountName, accountId);
+    }
+
+    /**
+     * Invalidate the account identifier (it must be called once the account write is committed)
+     *
+     * @param accountName
+     */
+    public static void invalidateAccount(String accountName) {
+        ACCOUNTS.invalidate(accountName);
+    }
+
+    /**
+     * Return the device identifier, resolving it through the resolver if not cached
+     *
+     * @param scopeId
+     * @param clientId
+     * @param resolver
+     * @return the device identifier or null if the device doesn't exist
+     * @throws KapuaException
+     */
+    public static KapuaId getDeviceId(KapuaId scopeId, String clientId, Resolver resolver) throws KapuaException {
+        return DEVICES.get(deviceKey(scopeId, clientId), resolver);
+    }
+
+    /**
+     * Invalidate the device identifier (it must be called once the device write is committed)
+     *
+     * @param scopeId
+     * @param clientId
+     */
+    public static void invalidateDevice(KapuaId scopeId, String clientId) {
+        DEVICES.invalidate(deviceKey(scopeId, clientId));
+    }
+
+    private static String deviceKey(KapuaId scopeId, String clientId) {
+        // the scope id cannot contain the separator, so the key is not ambiguous
+        return scopeId.toCompactId() + ':' + clientId;
+    }
+
+    /**
+     * Cached resolutions of an identity type
+     */
+    static final class Resolution {
+
+        private final boolean enabled;
+        private final long negativeExpireAfter;
+        private final LocalCache<String, Entry> cache;
+        private final AtomicLong version = new AtomicLong();
+
+        private final Counter metricHit;
+        private final Counter metricMiss;
+        private final Timer metricResolutionTime;
+
+        /**
+         * @param component
+         *            the metrics component name
+         * @param enabled
+         *            false to resolve every lookup
+         * @param sizeMax
+         *            maximum number of cached entries
+         * @param expireAfter
+         *            entries time to live (seconds)
+         * @param negativeExpireAfter
+         *            missing identities time to live (milliseconds)
+         */
+        Resolution(String component, boolean enabled, int sizeMax, int expireAfter, long negativeExpireAfter) {
+            this.enabled = enabled;
+            this.negativeExpireAfter = negativeExpireAfter;
+            cache = new LocalCache<>(sizeMax, expireAfter, null);
+            MetricsService metricsService = MetricServiceFactory.getInstance();
+            metricHit = metricsService.getCounter(METRIC_MODULE_NAME, component, "cache", "hit", "count");
+            metricMiss = metricsService.getCounter(METRIC_MODULE_NAME, component, "cache", "miss", "count");
+            metricResolutionTime = metricsService.getTimer(METRIC_MODULE_NAME, component, "resolution", "time", "s");
+            try {
+                metricsService.registerGauge((Gauge<Double>) this::getHitRatio, METRIC_MODULE_NAME, component, "cache", "hit", "ratio");
+            } catch (KapuaException e) {
+                logger.warn("Cannot register the {} identity cache hit ratio gauge: {}", component, e.getMessage());
+            }
+        }
+
+        KapuaId get(String key, Resolver resolver) throws KapuaException {
+            if (enabled) {
+                Entry entry = cache.get(key);
+                if (entry != null && !entry.isExpired(negativeExpireAfter)) {
+                    metricHit.inc();
+                    return entry.id;
+                }
+            }
+            metricMiss.inc();
+            long resolutionVersion = version.get();
+            KapuaId id;
+            Context metricResolutionTimeContext = metricResolutionTime.time();
+            try {
+                id = resolver.resolve();
+            } finally {
+                metricResolutionTimeContext.stop();
+            }
+            if (enabled) {
+                synchronized (this) {
+                    // an entry invalidated while resolving may be resolved from the old data
+                    if (resolutionVersion == version.get()) {
+                        cache.put(key, new Entry(id));
+                    }
+                }
+            }
+            return id;
+        }
+
+        synchronized void put(String key, KapuaId id) {
+            if (enabled) {
+                cache.put(key, new Entry(id));
+            }
+        }
+
+        synchronized void invalidate(String key) {
+            version.incrementAndGet();
+            cache.remove(key);
+        }
+
+        private double getHitRatio() {
+            long hits = metricHit.getCount();
+            long lookups = hits + metricMiss.getCount();
+            return lookups > 0 ? (double) hits / lookups : 0;
+        }
+    }
+
+    private static final class Entry {
+
+        private final KapuaId id;
+        private final long createdOn;
+
+        private Entry(KapuaId id) {
+            this.id = id;
+            createdOn = System.currentTimeMillis();
+        }
+
+        private boolean isExpired(long negativeExpireAfter) {
+            return id == null && System.currentTimeMillis() - createdOn >= negativeExpireAfter;
+        }
+    }
+}
@@ -11,27 +11,39 @@
  *******************************************************************************/
 package org.eclipse.kapua.commons.configuration;
 
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.EntityManager;
 import org.eclipse.kapua.commons.jpa.EntityManagerFactory;
-import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.model.KapuaEntity;
 import org.eclipse.kapua.model.KapuaEntityCreator;
 import org.eclipse.kapua.model.KapuaEntityFactory;
-import org.eclipse.kapua.model.KapuaEntityPredicates;
 import org.eclipse.kapua.model.config.metatype.KapuaTocd;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.model.query.KapuaListResult;
 import org.eclipse.kapua.model.query.KapuaQuery;
-import org.eclipse.kapua.model.query.predicate.KapuaAttributePredicate.Operator;
 import org.eclipse.kapua.service.KapuaEntityService;
 import org.eclipse.kapua.service.authorization.domain.Domain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Resource limited configurable service definition abstract reference implementation.<br>
+ * The entities created in each scope and the entities allocated to its child scopes are tracked by the {@link ResourceUsageDAO} counters, which the service
+ * implementations keep updated on the entity creation and deletion ({@link #incrementUsedEntities(EntityManager, KapuaId)} and
+ * {@link #decrementUsedEntities(EntityManager, KapuaId)}), so the limit checks don't depend on the number of entities.
+ */
 public abstract class AbstractKapuaConfigurableResourceLimitedService<E extends KapuaEntity, C extends KapuaEntityCreator<E>, S extends KapuaEntityService<E, C>, L extends KapuaListResult<E>, Q extends KapuaQuery<E>, F extends KapuaEntityFactory<E, C, Q, L>>
         extends AbstractKapuaConfigurableService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AbstractKapuaConfigurableResourceLimitedService.class);
+
+    private static final String INFINITE_CHILD_ENTITIES = "infiniteChildEntities";
+    private static final String MAX_NUMBER_CHILD_ENTITIES = "maxNumberChildEntities";
+
     private final Class<S> serviceClass;
     private final Class<F> factoryClass;
 
@@ -85,53 +97,151 @@ public abstract class AbstractKapuaConfigurableResourceLimitedService<E extends
      * @throws KapuaException
      */
     protected int allowedChildEntities(KapuaId scopeId, KapuaId targetScopeId, Map<String, Object> configuration) throws KapuaException {
-        KapuaLocator locator = KapuaLocator.getInstance();
-        S service = locator.getService(serviceClass);
-        F factory = locator.getFactory(factoryClass);
         if (configuration == null) {
             configuration = getConfigValues(scopeId);
         }
-        boolean allowInfiniteChildEntities = (boolean) configuration.get("infiniteChildEntities");
+        boolean allowInfiniteChildEntities = (boolean) configuration.get(INFINITE_CHILD_ENTITIES);
         if (!allowInfiniteChildEntities) {
-            Q query = factory.newQuery(scopeId);
+            ResourceUsage resourceUsage = findResourceUsage(scopeId);
 
             // Current used entities
-            long currentChildAccounts = service.count(query);
+            long currentChildAccounts = resourceUsage.getUsedEntities();
+
+            // Resources assigned to children
+            long childCount = resourceUsage.getAllocatedEntities();
 
             // Exclude the scope that is under config update
             if (targetScopeId != null) {
-                query.setPredicate(new AttributePredicate<KapuaId>(KapuaEntityPredicates.ENTITY_ID, targetScopeId, Operator.NOT_EQUAL));
-            }
-
-            KapuaListResult<E> currentChildEntities = service.query(query);
-            // Resources assigned to children
-            long childCount = 0;
-            for (E childEntity : currentChildEntities.getItems()) {
-                Map<String, Object> childConfigValues = getConfigValues(childEntity);
-                int maxChildChildAccounts = (int) childConfigValues.get("maxNumberChildEntities");
-                childCount += maxChildChildAccounts;
+                childCount -= (int) getConfigValues(targetScopeId).get(MAX_NUMBER_CHILD_ENTITIES);
             }
 
             // Max allowed for this account
-            int maxChildAccounts = (int) configuration.get("maxNumberChildEntities");
+            int maxChildAccounts = (int) configuration.get(MAX_NUMBER_CHILD_ENTITIES);
             return (int) (maxChildAccounts - currentChildAccounts - childCount);
         }
         return Integer.MAX_VALUE;
     }
 
     /**
-     * Gets the scoped configuration values from the given {@link KapuaEntity}.
-     * This method defaults to {@link KapuaEntity#getScopeId()}, but implementations can change it to use other attributes.
+     * Count the entity created in the scope.<br>
+     * It must be called in the transaction that creates the entity.
      * 
-     * @param entity
-     *            The entity from which get the scope id.
-     * @return The scoped configurations for the scope id in the {@link KapuaEntity} parameter.
-     * @throws KapuaException
+     * @param em
+     * @param scopeId
+     * 
+     * @since 1.0.0
+     */
+    protected void incrementUsedEntities(EntityManager em, KapuaId scopeId) {
+        incrementUsedEntities(em, scopeId, 1);
+    }
+
+    /**
+     * Count the entities created in the scope by a bulk creation.<br>
+     * It must be called in the transaction that creates the entities.
+     * 
+     * @param em
+     * @param scopeId
+     * @param count
      * 
      * @since 1.0.0
      */
-    protected Map<String, Object> getConfigValues(E entity) throws KapuaException {
-        return getConfigValues(entity.getScopeId());
+    protected void incrementUsedEntities(EntityManager em, KapuaId scopeId, int count) {
+        ResourceUsageDAO.updateUsedEntities(em, scopeId, getPid(), count);
+    }
+
+    /**
+     * Uncount the entity deleted from the scope.<br>
+     * It must be called in the transaction that deletes the entity.
+     * 
+     * @param em
+     * @param scopeId
+     * 
+     * @since 1.0.0
+     */
+    protected void decrementUsedEntities(EntityManager em, KapuaId scopeId) {
+        ResourceUsageDAO.updateUsedEntities(em, scopeId, getPid(), -1);
+    }
+
+    @Override
+    protected void onConfigValuesUpdate(EntityManager em, KapuaId scopeId, KapuaId parentId, Map<String, Object> currentValues, Map<String, Object> updatedValues)
+            throws KapuaException {
+        // the limit of the scope is allocated from the parent scope
+        if (parentId != null) {
+            int currentMaxChildEntities = (int) currentValues.get(MAX_NUMBER_CHILD_ENTITIES);
+            int updatedMaxChildEntities = (int) updatedValues.get(MAX_NUMBER_CHILD_ENTITIES);
+            if (updatedMaxChildEntities != currentMaxChildEntities) {
+                ResourceUsageDAO.updateAllocatedEntities(em, parentId, getPid(), updatedMaxChildEntities - currentMaxChildEntities);
+            }
+        }
+    }
+
+    /**
+     * Find the usage of the scope, creating it from the existing entities and child scopes configurations on the first call (for the scopes created before
+     * the usage was tracked or whose usage has been reset).
+     * 
+     * @param scopeId
+     * @return
+     * @throws KapuaException
+     */
+    private ResourceUsage findResourceUsage(KapuaId scopeId) throws KapuaException {
+        ResourceUsage resourceUsage = entityManagerSession.onResult(em -> ResourceUsageDAO.find(em, scopeId, getPid()));
+        if (resourceUsage == null) {
+            try {
+                resourceUsage = entityManagerSession.onTransactedResult(em -> createResourceUsage(em, scopeId));
+            } catch (KapuaException e) {
+                // created in the meanwhile by a concurrent check
+                logger.debug("Cannot create the {} resource usage of the scope {}: {}", getPid(), scopeId, e.getMessage());
+                resourceUsage = entityManagerSession.onResult(em -> ResourceUsageDAO.find(em, scopeId, getPid()));
+                if (resourceUsage == null) {
+                    throw e;
+                }
+            }
+        }
+        return resourceUsage;
+    }
+
+    /**
+     * Create the usage of the scope.<br>
+     * The row is inserted before counting, so it is locked by this transaction until the counters are set: the concurrent entity creations and deletions
+     * (and the concurrent checks creating the same row) wait for it, and then apply their updates on top of the counted values.
+     * 
+     * @param em
+     * @param scopeId
+     * @return
+     * @throws KapuaException
+     */
+    private ResourceUsage createResourceUsage(EntityManager em, KapuaId scopeId) throws KapuaException {
+        ResourceUsageDAO.create(em, scopeId, getPid(), new ResourceUsage(0, 0));
+
+        ResourceUsage resourceUsage = new ResourceUsage(countEntities(scopeId), ResourceUsageDAO.sumAllocatedEntities(em, findChildScopeIds(scopeId), getPid()));
+        ResourceUsageDAO.update(em, scopeId, getPid(), resourceUsage);
+        return resourceUsage;
+    }
+
+    /**
+     * Count the entities created in the scope (to create the usage of the scope)
+     * 
+     * @param scopeId
+     * @return
+     * @throws KapuaException
+     */
+    long countEntities(KapuaId scopeId) throws KapuaException {
+        KapuaLocator locator = KapuaLocator.getInstance();
+        S service = locator.getService(serviceClass);
+        F factory = locator.getFactory(factoryClass);
+
+        return service.count(factory.newQuery(scopeId));
+    }
+
+    /**
+     * Find the child scopes of the scope (to create the usage of the scope)
+     * 
+     * @param scopeId
+     * @return
+     * @throws KapuaException
+     */
+    List<KapuaId> findChildScopeIds(KapuaId scopeId) throws KapuaException {
+        return ChildScopeIdsProviders.getInstance().findChildScopeIds(scopeId);
     }
 
 }
@@ -23,6 +23,8 @@ import java.util.Properties;
 
 import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.EntityManager;
+import org.eclipse.kapua.commons.jpa.EntityManagerActionCallback;
 import org.eclipse.kapua.commons.jpa.EntityManagerFactory;
 import org.eclipse.kapua.commons.model.query.predicate.AndPredicate;
 import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
@@ -154,6 +156,34 @@ public abstract class AbstractKapuaConfigurableService extends AbstractKapuaServ
         return true;
     }
 
+    /**
+     * Callback invoked in the transaction that stores the new configuration values, to keep the data derived from them consistent
+     *
+     * @param em
+     * @param scopeId
+     * @param parentId
+     * @param currentValues
+     *            the current configuration values (the default ones if the configuration has never been stored)
+     * @param updatedValues
+     * @throws KapuaException
+     *
+     * @since 1.0
+     */
+    protected void onConfigValuesUpdate(EntityManager em, KapuaId scopeId, KapuaId parentId, Map<String, Object> currentValues, Map<String, Object> updatedValues)
+            throws KapuaException {
+    }
+
+    /**
+     * Get the persistent ID of the service
+     *
+     * @return
+     *
+     * @since 1.0
+     */
+    protected String getPid() {
+        return pid;
+    }
+
     /**
      * Convert the properties map to {@link Properties}
      *
@@ -195,23 +225,30 @@ public abstract class AbstractKapuaConfigurableService extends AbstractKapuaServ
      * Create the service configuration entity
      *
      * @param serviceConfig
+     * @param onWrite
+     *            the action to perform in the same transaction
      * @return
      * @throws KapuaException
      */
-    private ServiceConfig createConfig(ServiceConfig serviceConfig)
+    private ServiceConfig createConfig(ServiceConfig serviceConfig, EntityManagerActionCallback onWrite)
             throws KapuaException {
 
-        return entityManagerSession.onTransactedInsert(em -> ServiceDAO.create(em, serviceConfig));
+        return entityManagerSession.onTransactedInsert(em -> {
+            onWrite.onAction(em);
+            return ServiceDAO.create(em, serviceConfig);
+        });
     }
 
     /**
      * Update the service configuration entity
      *
      * @param serviceConfig
+     * @param onWrite
+     *            the action to perform in the same transaction
      * @return
      * @throws KapuaException
      */
-    private ServiceConfig updateConfig(ServiceConfig serviceConfig)
+    private ServiceConfig updateConfig(ServiceConfig serviceConfig, EntityManagerActionCallback onWrite)
             throws KapuaException {
         return entityManagerSession.onTransactedResult(em -> {
             ServiceConfig oldServiceConfig = ServiceConfigDAO.find(em, serviceConfig.getId());
@@ -227,6 +264,7 @@ public abstract class AbstractKapuaConfigurableService extends AbstractKapuaServ
             }
 
             // Update
+            onWrite.onAction(em);
             return ServiceConfigDAO.update(em, serviceConfig);
         });
     }
@@ -310,13 +348,15 @@ public abstract class AbstractKapuaConfigurableService extends AbstractKapuaServ
             serviceConfigNew.setPid(pid);
             serviceConfigNew.setConfigurations(props);
 
-            createConfig(serviceConfigNew);
+            Map<String, Object> currentValues = ocd != null ? toValues(ocd, null) : new HashMap<>();
+            createConfig(serviceConfigNew, em -> onConfigValuesUpdate(em, scopeId, parentId, currentValues, values));
         } else {
             // If exists update it
             ServiceConfig serviceConfig = result.getFirstItem();
+            Map<String, Object> currentValues = ocd != null ? toValues(ocd, serviceConfig.getConfigurations()) : new HashMap<>();
             serviceConfig.setConfigurations(props);
 
-            updateConfig(serviceConfig);
+            updateConfig(serviceConfig, em -> onConfigValuesUpdate(em, scopeId, parentId, currentValues, values));
         }
     }
 }
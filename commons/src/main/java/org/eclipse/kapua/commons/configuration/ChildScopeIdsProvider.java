@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.configuration;
+
+import java.util.List;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.model.id.KapuaId;
+
+/**
+ * Child scopes lookup used by the resource limited services to sum the entities allocated to the child scopes (see {@link ResourceUsageDAO}).<br>
+ * The child scopes are the child accounts, so the implementation is provided by the account service module and located through the
+ * {@link java.util.ServiceLoader} (see {@link ChildScopeIdsProviders}).
+ *
+ * @since 1.0
+ */
+public interface ChildScopeIdsProvider {
+
+    /**
+     * Find the identifiers of the direct child scopes of the scope
+     *
+     * @param scopeId
+     * @return
+     * @throws KapuaException
+     */
+    List<KapuaId> findChildScopeIds(KapuaId scopeId) throws KapuaException;
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.configuration;
+
+import java.util.Collections;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper class for working with {@link ChildScopeIdsProvider} instances
+ *
+ * @since 1.0
+ */
+public final class ChildScopeIdsProviders {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChildScopeIdsProviders.class);
+
+    private static ChildScopeIdsProvider provider;
+
+    private ChildScopeIdsProviders() {
+    }
+
+    /**
+     * Get a {@link ChildScopeIdsProvider} instance
+     *
+     * @return An instance of {@link ChildScopeIdsProvider}, never returns {@code null}
+     */
+    public static ChildScopeIdsProvider getInstance() {
+        synchronized (ChildScopeIdsProviders.class) {
+            if (provider == null) {
+                provider = locateProvider();
+            }
+            return provider;
+        }
+    }
+
+    /**
+     * Locate the provider using {@link ServiceLoader}
+     *
+     * @return An instance of {@link ChildScopeIdsProvider}, never returns {@code null}
+     */
+    private static ChildScopeIdsProvider locateProvider() {
+        ChildScopeIdsProvider result = null;
+        for (ChildScopeIdsProvider provider : ServiceLoader.load(ChildScopeIdsProvider.class)) {
+            if (result == null) {
+                result = provider;
+            } else {
+                logger.warn("Multiple instances of {} found via ServiceLoader - first: {}, additional: {}", ChildScopeIdsProvider.class, result, provider);
+            }
+        }
+        if (result == null) {
+            // without the account service there are no child accounts
+            logger.warn("No {} found via ServiceLoader, the scopes have no child scopes", ChildScopeIdsProvider.class);
+            return scopeId -> Collections.emptyList();
+        }
+        return result;
+    }
+}
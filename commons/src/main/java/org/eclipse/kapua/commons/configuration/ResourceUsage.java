@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.configuration;
+
+/**
+ * Resource limited service usage of a scope: the entities created in the scope and the entities allocated to the child scopes (the sum of their
+ * maxNumberChildEntities configuration values).
+ *
+ * @since 1.0
+ */
+public class ResourceUsage {
+
+    private final long usedEntities;
+    private final long allocatedEntities;
+
+    /**
+     * Constructor
+     *
+     * @param usedEntities
+     * @param allocatedEntities
+     */
+    public ResourceUsage(long usedEntities, long allocatedEntities) {
+        this.usedEntities = usedEntities;
+        this.allocatedEntities = allocatedEntities;
+    }
+
+    /**
+     * Get the number of entities created in the scope
+     *
+     * @return
+     */
+    public long getUsedEntities() {
+        return usedEntities;
+    }
+
+    /**
+     * Get the number of entities allocated to the child scopes
+     *
+     * @return
+     */
+    public long getAllocatedEntities() {
+        return allocatedEntities;
+    }
+}
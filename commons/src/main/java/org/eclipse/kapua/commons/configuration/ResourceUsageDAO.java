@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.configuration;
+
+import java.util.List;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.EntityManager;
+import org.eclipse.kapua.commons.model.query.predicate.AndPredicate;
+import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
+import org.eclipse.kapua.model.id.KapuaId;
+
+/**
+ * Resource limited services usage DAO.<br>
+ * The usage rows (one per scope and service pid) are not entities, so they are read and written through native queries, in the transaction of the
+ * entity (or configuration) write they account for.
+ *
+ * @since 1.0
+ */
+public class ResourceUsageDAO {
+
+    private static final String MAX_NUMBER_CHILD_ENTITIES = "maxNumberChildEntities";
+
+    private ResourceUsageDAO() {
+    }
+
+    /**
+     * Find the usage of the scope
+     *
+     * @param em
+     * @param scopeId
+     * @param pid
+     * @return the usage or null if it has not been created yet
+     */
+    public static ResourceUsage find(EntityManager em, KapuaId scopeId, String pid) {
+        List<?> rows = em.createNativeQuery("SELECT used_entities, allocated_entities FROM sys_resource_usage WHERE scope_id = ?1 AND pid = ?2")
+                .setParameter(1, scopeId.getId())
+                .setParameter(2, pid)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = (Object[]) rows.get(0);
+        return new ResourceUsage(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+    }
+
+    /**
+     * Create the usage of the scope
+     *
+     * @param em
+     * @param scopeId
+     * @param pid
+     * @param resourceUsage
+     */
+    public static void create(EntityManager em, KapuaId scopeId, String pid, ResourceUsage resourceUsage) {
+        em.createNativeQuery("INSERT INTO sys_resource_usage (scope_id, pid, used_entities, allocated_entities) VALUES (?1, ?2, ?3, ?4)")
+                .setParameter(1, scopeId.getId())
+                .setParameter(2, pid)
+                .setParameter(3, resourceUsage.getUsedEntities())
+                .setParameter(4, resourceUsage.getAllocatedEntities())
+                .executeUpdate();
+    }
+
+    /**
+     * Set the usage of the scope
+     *
+     * @param em
+     * @param scopeId
+     * @param pid
+     * @param resourceUsage
+     */
+    public static void update(EntityManager em, KapuaId scopeId, String pid, ResourceUsage resourceUsage) {
+        em.createNativeQuery("UPDATE sys_resource_usage SET used_entities = ?1, allocated_entities = ?2 WHERE scope_id = ?3 AND pid = ?4")
+                .setParameter(1, resourceUsage.getUsedEntities())
+                .setParameter(2, resourceUsage.getAllocatedEntities())
+                .setParameter(3, scopeId.getId())
+                .setParameter(4, pid)
+                .executeUpdate();
+    }
+
+    /**
+     * Add the delta to the entities created in the scope (if the usage of the scope has been created)
+     *
+     * @param em
+     * @param scopeId
+     * @param pid
+     * @param delta
+     */
+    public static void updateUsedEntities(EntityManager em, KapuaId scopeId, String pid, long delta) {
+        em.createNativeQuery("UPDATE sys_resource_usage SET used_entities = used_entities + ?1 WHERE scope_id = ?2 AND pid = ?3")
+                .setParameter(1, delta)
+                .setParameter(2, scopeId.getId())
+                .setParameter(3, pid)
+                .executeUpdate();
+    }
+
+    /**
+     * Add the delta to the entities allocated to the child scopes (if the usage of the scope has been created)
+     *
+     * @param em
+     * @param scopeId
+     * @param pid
+     * @param delta
+     */
+    public static void updateAllocatedEntities(EntityManager em, KapuaId scopeId, String pid, long delta) {
+        em.createNativeQuery("UPDATE sys_resource_usage SET allocated_entities = allocated_entities + ?1 WHERE scope_id = ?2 AND pid = ?3")
+                .setParameter(1, delta)
+                .setParameter(2, scopeId.getId())
+                .setParameter(3, pid)
+                .executeUpdate();
+    }
+
+    /**
+     * Delete the usage of the deleted scope and release the entities allocated to it by the parent scope
+     *
+     * @param em
+     * @param scopeId
+     * @param parentId
+     * @throws KapuaException
+     */
+    public static void delete(EntityManager em, KapuaId scopeId, KapuaId parentId) throws KapuaException {
+        ServiceConfigQueryImpl query = new ServiceConfigQueryImpl(scopeId);
+        query.setPredicate(new AttributePredicate<>("scopeId", scopeId));
+        for (ServiceConfig serviceConfig : ServiceConfigDAO.query(em, query).getItems()) {
+            long allocatedEntities = getMaxNumberChildEntities(serviceConfig);
+            if (allocatedEntities != 0) {
+                updateAllocatedEntities(em, parentId, serviceConfig.getPid(), -allocatedEntities);
+            }
+        }
+        em.createNativeQuery("DELETE FROM sys_resource_usage WHERE scope_id = ?1")
+                .setParameter(1, scopeId.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * Sum the entities allocated to the child scopes from their configurations (to create the usage of the scope)
+     *
+     * @param em
+     * @param childScopeIds
+     *            the child scopes (see {@link ChildScopeIdsProvider})
+     * @param pid
+     * @return
+     * @throws KapuaException
+     */
+    public static long sumAllocatedEntities(EntityManager em, List<KapuaId> childScopeIds, String pid) throws KapuaException {
+        if (childScopeIds.isEmpty()) {
+            return 0;
+        }
+
+        AndPredicate predicate = new AndPredicate()
+                .and(new AttributePredicate<>("pid", pid))
+                .and(new AttributePredicate<>("scopeId", childScopeIds.toArray(new KapuaId[childScopeIds.size()])));
+
+        // the configurations belong to the child scopes, so the query is not scoped
+        ServiceConfigQueryImpl query = new ServiceConfigQueryImpl(null);
+        query.setPredicate(predicate);
+
+        long allocatedEntities = 0;
+        for (ServiceConfig serviceConfig : ServiceConfigDAO.query(em, query).getItems()) {
+            allocatedEntities += getMaxNumberChildEntities(serviceConfig);
+        }
+        return allocatedEntities;
+    }
+
+    private static long getMaxNumberChildEntities(ServiceConfig serviceConfig) throws KapuaException {
+        // the configurations of the services that are not resource limited don't have the property
+        String maxNumberChildEntities = serviceConfig.getConfigurations().getProperty(MAX_NUMBER_CHILD_ENTITIES);
+        return maxNumberChildEntities != null ? Integer.parseInt(maxNumberChildEntities) : 0;
+    }
+}
@@ -11,8 +11,10 @@
  *******************************************************************************/
 package org.eclipse.kapua.commons.jpa;
 
+import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.eclipse.kapua.commons.jpa.JdbcConnectionUrlResolvers.resolveJdbcUrl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -46,6 +48,20 @@ public abstract class AbstractEntityManagerFactory implements org.eclipse.kapua.
      * @param uniqueConstraints
      */
     protected AbstractEntityManagerFactory(String persistenceUnitName, String datasourceName, Map<String, String> uniqueConstraints) {
+        this(persistenceUnitName, datasourceName, uniqueConstraints, Collections.emptyMap());
+    }
+
+    /**
+     * Protected constructor overriding the given JPA properties.<br>
+     * A different eclipselink.session-name property creates a further session of the persistence unit (e.g. with different write settings).
+     *
+     * @param persistenceUnitName
+     * @param datasourceName
+     * @param uniqueConstraints
+     * @param properties
+     *            JPA properties applied after the default ones
+     */
+    protected AbstractEntityManagerFactory(String persistenceUnitName, String datasourceName, Map<String, String> uniqueConstraints, Map<String, Object> properties) {
         SystemSetting config = SystemSetting.getInstance();
 
         //
@@ -56,16 +72,30 @@ public abstract class AbstractEntityManagerFactory implements org.eclipse.kapua.
             configOverrides.put("javax.persistence.jdbc.driver", config.getString(SystemSettingKey.DB_JDBC_DRIVER));
 
             configOverrides.put("eclipselink.cache.shared.default", "false"); // This has to be set to false in order to disable the local object cache of EclipseLink.
-
-            configOverrides.put("eclipselink.connection-pool.default.url", resolveJdbcUrl());
-            configOverrides.put("eclipselink.connection-pool.default.user", config.getString(SystemSettingKey.DB_USERNAME));
-            configOverrides.put("eclipselink.connection-pool.default.password", config.getString(SystemSettingKey.DB_PASSWORD));
-
-            configOverrides.put("eclipselink.connection-pool.default.dataSourceName", datasourceName);
-            configOverrides.put("eclipselink.connection-pool.default.initial", config.getString(SystemSettingKey.DB_POOL_SIZE_INITIAL));
-            configOverrides.put("eclipselink.connection-pool.default.min", config.getString(SystemSettingKey.DB_POOL_SIZE_MIN));
-            configOverrides.put("eclipselink.connection-pool.default.max", config.getString(SystemSettingKey.DB_POOL_SIZE_MAX));
-            configOverrides.put("eclipselink.connection-pool.default.wait", config.getString(SystemSettingKey.DB_POOL_BORROW_TIMEOUT));
+            if (EntityCacheCustomizer.isEnabled()) {
+                // The shared cache is enabled for the configured entities only
+                configOverrides.put("eclipselink.session.customizer", EntityCacheCustomizer.class.getName());
+                configOverrides.put("eclipselink.profiler", EntityCacheProfiler.class.getName());
+
+                configOverrides.putAll(getCacheCoordinationProperties(persistenceUnitName));
+            }
+
+            if (config.getBoolean(SystemSettingKey.DB_POOL_SHARED, false)) {
+                // The persistence units borrow the connections from the pool shared by the JVM instead of the EclipseLink internal pool
+                configOverrides.put("javax.persistence.nonJtaDataSource", SharedDataSource.getInstance().getDataSource(persistenceUnitName));
+            } else {
+                configOverrides.put("eclipselink.connection-pool.default.url", resolveJdbcUrl());
+                configOverrides.put("eclipselink.connection-pool.default.user", config.getString(SystemSettingKey.DB_USERNAME));
+                configOverrides.put("eclipselink.connection-pool.default.password", config.getString(SystemSettingKey.DB_PASSWORD));
+
+                configOverrides.put("eclipselink.connection-pool.default.dataSourceName", datasourceName);
+                configOverrides.put("eclipselink.connection-pool.default.initial", config.getString(SystemSettingKey.DB_POOL_SIZE_INITIAL));
+                configOverrides.put("eclipselink.connection-pool.default.min", config.getString(SystemSettingKey.DB_POOL_SIZE_MIN));
+                configOverrides.put("eclipselink.connection-pool.default.max", config.getString(SystemSettingKey.DB_POOL_SIZE_MAX));
+                configOverrides.put("eclipselink.connection-pool.default.wait", config.getString(SystemSettingKey.DB_POOL_BORROW_TIMEOUT));
+            }
+
+            configOverrides.putAll(properties);
 
             // Standalone JPA
             entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName, configOverrides);
@@ -82,6 +112,37 @@ public abstract class AbstractEntityManagerFactory implements org.eclipse.kapua.
         }
     }
 
+    /**
+     * Get the second level entity cache coordination properties of the persistence unit (empty if the coordination is disabled).<br>
+     * The nodes invalidate the entities changed through the same persistence unit.
+     *
+     * @param persistenceUnitName
+     * @return
+     */
+    static Map<String, Object> getCacheCoordinationProperties(String persistenceUnitName) {
+        SystemSetting config = SystemSetting.getInstance();
+        Map<String, Object> properties = new HashMap<>();
+        String coordinationProtocol = config.getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_PROTOCOL);
+        if (isNotBlank(coordinationProtocol)) {
+            properties.put("eclipselink.cache.coordination.protocol", coordinationProtocol);
+            properties.put("eclipselink.cache.coordination.channel", persistenceUnitName);
+            if (coordinationProtocol.startsWith("jms")) {
+                properties.put("eclipselink.cache.coordination.jndi.initial-context-factory", "org.apache.activemq.jndi.ActiveMQInitialContextFactory");
+                properties.put("eclipselink.cache.coordination.jms.host", config.getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_URL));
+                properties.put("eclipselink.cache.coordination.jms.factory", "ConnectionFactory");
+                properties.put("eclipselink.cache.coordination.jms.topic",
+                        "dynamicTopics/" + config.getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_TOPIC) + "." + persistenceUnitName);
+                // the broker authenticates the tcp connections (the JNDI principal and credentials are the connection factory user name and password)
+                String username = config.getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_USERNAME);
+                if (isNotBlank(username)) {
+                    properties.put("eclipselink.cache.coordination.jndi.user", username);
+                    properties.put("eclipselink.cache.coordination.jndi.password", config.getString(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_PASSWORD, ""));
+                }
+            }
+        }
+        return properties;
+    }
+
     // Entity manager factory methods
 
     /**
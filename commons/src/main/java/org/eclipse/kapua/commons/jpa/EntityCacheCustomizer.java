@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.jpa;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.kapua.commons.setting.system.SystemSetting;
+import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
+import org.eclipse.persistence.config.CacheIsolationType;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.descriptors.invalidation.TimeToLiveCacheInvalidationPolicy;
+import org.eclipse.persistence.internal.identitymaps.CacheIdentityMap;
+import org.eclipse.persistence.sessions.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Second level entity cache customizer: it enables the shared EclipseLink cache for the entities listed in {@link SystemSettingKey#ENTITY_CACHE_ENTITIES}
+ * (the cache of the other entities stays disabled).<br>
+ * Each entity cache is a fixed size LRU cache ({@link SystemSettingKey#ENTITY_CACHE_SIZE_MAXIMUM}) whose entries expire after
+ * {@link SystemSettingKey#ENTITY_CACHE_EXPIRE_AFTER}. The changed entities are invalidated, rather than sent, to the other nodes when the cache coordination is
+ * enabled (see {@link AbstractEntityManagerFactory}).
+ *
+ * @since 1.0.0
+ */
+public class EntityCacheCustomizer implements SessionCustomizer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityCacheCustomizer.class);
+
+    private static final Set<String> CACHED_ENTITIES;
+
+    static {
+        Set<String> cachedEntities = new HashSet<>();
+        for (String entityName : StringUtils.split(StringUtils.defaultString(SystemSetting.getInstance().getString(SystemSettingKey.ENTITY_CACHE_ENTITIES)), ',')) {
+            if (StringUtils.isNotBlank(entityName)) {
+                cachedEntities.add(entityName.trim());
+            }
+        }
+        CACHED_ENTITIES = Collections.unmodifiableSet(cachedEntities);
+    }
+
+    /**
+     * Get the names of the cached entities
+     *
+     * @return
+     */
+    public static Set<String> getCachedEntities() {
+        return CACHED_ENTITIES;
+    }
+
+    /**
+     * Check if the second level cache is enabled for any entity
+     *
+     * @return
+     */
+    public static boolean isEnabled() {
+        return !CACHED_ENTITIES.isEmpty();
+    }
+
+    @Override
+    public void customize(Session session) throws Exception {
+        SystemSetting config = SystemSetting.getInstance();
+        int sizeMax = config.getInt(SystemSettingKey.ENTITY_CACHE_SIZE_MAXIMUM, 1000);
+        long expireAfter = TimeUnit.SECONDS.toMillis(config.getInt(SystemSettingKey.ENTITY_CACHE_EXPIRE_AFTER, 300));
+
+        for (ClassDescriptor descriptor : session.getDescriptors().values()) {
+            if (!CACHED_ENTITIES.contains(descriptor.getAlias())) {
+                continue;
+            }
+            // an entity referencing not cached entities is downgraded to protected by EclipseLink: the relationships are rebuilt by each entity manager
+            descriptor.setCacheIsolation(CacheIsolationType.SHARED);
+            descriptor.setIdentityMapClass(CacheIdentityMap.class);
+            descriptor.setIdentityMapSize(sizeMax);
+            descriptor.setCacheInvalidationPolicy(new TimeToLiveCacheInvalidationPolicy(expireAfter));
+            descriptor.setCacheSynchronizationType(ClassDescriptor.INVALIDATE_CHANGED_OBJECTS);
+            LOG.info("Second level cache enabled for the {} entity of the {} session", descriptor.getAlias(), session.getName());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.jpa;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionProfiler;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+
+import com.codahale.metrics.Counter;
+
+/**
+ * Second level entity cache profiler: it counts the cache hits and misses of the entities cached by the {@link EntityCacheCustomizer}.
+ *
+ * @since 1.0.0
+ */
+public class EntityCacheProfiler extends SessionProfilerAdapter {
+
+    private static final String METRIC_MODULE_NAME = "entity";
+
+    private static final Map<String, Counter> METRIC_HITS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> METRIC_MISSES = new ConcurrentHashMap<>();
+
+    @Override
+    public int getProfileWeight() {
+        return SessionProfiler.NORMAL;
+    }
+
+    @Override
+    public void occurred(String operationName, DatabaseQuery query, AbstractSession session) {
+        boolean hit = SessionProfiler.CacheHits.equals(operationName);
+        if ((!hit && !SessionProfiler.CacheMisses.equals(operationName)) || query == null || query.getReferenceClass() == null) {
+            return;
+        }
+        ClassDescriptor descriptor = session.getDescriptor(query.getReferenceClass());
+        if (descriptor == null || !EntityCacheCustomizer.getCachedEntities().contains(descriptor.getAlias())) {
+            return;
+        }
+        if (hit) {
+            METRIC_HITS.computeIfAbsent(descriptor.getAlias(), entityName -> getCounter(entityName, "hit")).inc();
+        } else {
+            METRIC_MISSES.computeIfAbsent(descriptor.getAlias(), entityName -> getCounter(entityName, "miss")).inc();
+        }
+    }
+
+    private static Counter getCounter(String entityName, String name) {
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        return metricsService.getCounter(METRIC_MODULE_NAME, entityName, "cache", name, "count");
+    }
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.jpa;
+
+import static org.eclipse.kapua.commons.jpa.JdbcConnectionUrlResolvers.resolveJdbcUrl;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.setting.system.SystemSetting;
+import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
+import org.eclipse.kapua.commons.util.ShutdownHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+/**
+ * JDBC connection pool shared by all the persistence units of the JVM (enabled by {@link SystemSettingKey#DB_POOL_SHARED}).<br>
+ * The {@link SystemSettingKey#DB_POOL_SIZE_MIN} and {@link SystemSettingKey#DB_POOL_SIZE_MAX} sizes bound the connections of the whole JVM, instead of the
+ * connections of each persistence unit, and the idle connections are available to every persistence unit.<br>
+ * <br>
+ * Each persistence unit gets its own {@link DataSource} view of the pool ({@link #getDataSource(String)}), so the pool usage is reported per persistence unit
+ * too. If {@link SystemSettingKey#DB_POOL_LEAK_DETECTION_THRESHOLD} is set, the connections held longer than the threshold are logged with the stack trace of
+ * the borrower (captured on every borrow, so the leak detection should be enabled while investigating only).
+ *
+ * @since 1.0.0
+ */
+public final class SharedDataSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedDataSource.class);
+
+    private static final String METRIC_MODULE_NAME = "db";
+    private static final String METRIC_COMPONENT_NAME = "pool";
+
+    private static final int VALIDATION_TIMEOUT = 5;
+    private static final long EVICTION_INTERVAL = 30000;
+
+    private static SharedDataSource instance;
+
+    private final GenericObjectPool<Connection> pool;
+    private final long borrowTimeout;
+    private final long leakDetectionThreshold;
+    private final ScheduledExecutorService leakDetector;
+
+    private final Map<String, DataSource> dataSources = new ConcurrentHashMap<>();
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+
+    private final Histogram metricBorrowWait;
+    private final Counter metricBorrowTimeout;
+    private final Counter metricLeak;
+
+    private SharedDataSource() {
+        this(SystemSetting.getInstance());
+    }
+
+    private SharedDataSource(SystemSetting config) {
+        this(config.getString(SystemSettingKey.DB_JDBC_DRIVER),
+                resolveJdbcUrl(),
+                config.getString(SystemSettingKey.DB_USERNAME),
+                config.getString(SystemSettingKey.DB_PASSWORD),
+                config.getInt(SystemSettingKey.DB_POOL_SIZE_INITIAL, 5),
+                config.getInt(SystemSettingKey.DB_POOL_SIZE_MIN, 2),
+                config.getInt(SystemSettingKey.DB_POOL_SIZE_MAX, 30),
+                config.getLong(SystemSettingKey.DB_POOL_BORROW_TIMEOUT, 15000L),
+                config.getLong(SystemSettingKey.DB_POOL_LEAK_DETECTION_THRESHOLD, 0L));
+    }
+
+    /**
+     * Constructs the pool with the given connection parameters and limits
+     *
+     * @param driver
+     * @param url
+     * @param username
+     * @param password
+     * @param sizeInitial
+     * @param sizeMin
+     * @param sizeMax
+     * @param borrowTimeout
+     * @param leakDetectionThreshold
+     *            the time after which a borrowed connection is reported as a possible leak (0 to disable the leak detection)
+     */
+    SharedDataSource(String driver, String url, String username, String password, int sizeInitial, int sizeMin, int sizeMax, long borrowTimeout, long leakDetectionThreshold) {
+        try {
+            Class.forName(driver);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown JDBC driver: " + driver, e);
+        }
+        this.borrowTimeout = borrowTimeout;
+        this.leakDetectionThreshold = leakDetectionThreshold;
+
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxTotal(sizeMax);
+        poolConfig.setMaxIdle(sizeMax);
+        poolConfig.setMinIdle(sizeMin);
+        poolConfig.setMaxWaitMillis(borrowTimeout);
+        poolConfig.setBlockWhenExhausted(true);
+        // the idle connections are validated by the evictor, so the borrow doesn't pay a round trip
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(EVICTION_INTERVAL);
+        poolConfig.setJmxEnabled(false);
+        pool = new GenericObjectPool<>(new ConnectionFactory(url, username, password), poolConfig);
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricBorrowWait = metricsService.getHistogram(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "borrow", "wait", "ms");
+        metricBorrowTimeout = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "borrow", "timeout", "count");
+        metricLeak = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "leak", "count");
+        try {
+            metricsService.registerGauge((Gauge<Integer>) pool::getNumActive, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "active", "count");
+            metricsService.registerGauge((Gauge<Integer>) pool::getNumIdle, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "idle", "count");
+            metricsService.registerGauge((Gauge<Integer>) pool::getNumWaiters, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "waiters", "count");
+        } catch (KapuaException e) {
+            LOG.warn("Cannot register the shared database pool gauges: {}", e.getMessage());
+        }
+
+        try {
+            for (int i = 0; i < Math.min(sizeInitial, sizeMax); i++) {
+                pool.addObject();
+            }
+        } catch (Exception e) {
+            LOG.warn("Cannot open the initial connections of the shared database pool: {}", e.getMessage());
+        }
+
+        if (leakDetectionThreshold > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "db-pool-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(leakDetectionThreshold / 2, 1000);
+            leakDetector.scheduleWithFixedDelay(this::detectLeaks, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            leakDetector = null;
+        }
+        LOG.info("Shared database pool created (maximum size: {})", sizeMax);
+    }
+
+    /**
+     * Get the shared pool instance (the pool is created on the first call)
+     *
+     * @return
+     */
+    public static synchronized SharedDataSource getInstance() {
+        if (instance == null) {
+            instance = new SharedDataSource();
+            // the components using the pool register their shutdown actions later, so they are stopped before the pool is closed
+            ShutdownHooks.register("shared database pool", instance::close);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the {@link DataSource} through which the persistence unit uses the shared pool
+     *
+     * @param persistenceUnitName
+     * @return
+     */
+    public DataSource getDataSource(String persistenceUnitName) {
+        return dataSources.computeIfAbsent(persistenceUnitName, PersistenceUnitDataSource::new);
+    }
+
+    /**
+     * Close the pool: the leak detection is stopped and the idle connections are closed (the borrowed connections are closed when returned)
+     */
+    void close() {
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        pool.close();
+        LOG.info("Shared database pool closed");
+    }
+
+    private Connection borrow(PersistenceUnitDataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = pool.borrowObject();
+        } catch (NoSuchElementException e) {
+            metricBorrowTimeout.inc();
+            throw new SQLTransientConnectionException("Cannot borrow a connection from the shared database pool within " + borrowTimeout + " ms", e);
+        } catch (Exception e) {
+            throw new SQLException("Cannot borrow a connection from the shared database pool", e);
+        }
+        metricBorrowWait.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        Lease lease = new Lease(connection, dataSource);
+        if (leakDetectionThreshold > 0) {
+            leases.put(connection, lease);
+        }
+        dataSource.metricBorrow.inc();
+        dataSource.metricActive.inc();
+        return (Connection) Proxy.newProxyInstance(SharedDataSource.class.getClassLoader(), new Class<?>[] { Connection.class }, lease);
+    }
+
+    private void release(Lease lease) {
+        leases.remove(lease.connection);
+        long heldTime = System.nanoTime() - lease.borrowedOn;
+        lease.dataSource.metricActive.dec();
+        lease.dataSource.metricHoldTime.update(heldTime, TimeUnit.NANOSECONDS);
+        if (lease.leakReported) {
+            LOG.info("Connection of the {} persistence unit reported as a possible leak returned after {} ms", lease.dataSource.persistenceUnitName,
+                    TimeUnit.NANOSECONDS.toMillis(heldTime));
+        }
+        pool.returnObject(lease.connection);
+    }
+
+    /**
+     * Report the connections held longer than the leak detection threshold (each connection is reported once)
+     *
+     * @return the number of connections reported
+     */
+    int detectLeaks() {
+        int reported = 0;
+        long now = System.nanoTime();
+        for (Lease lease : leases.values()) {
+            long heldTime = TimeUnit.NANOSECONDS.toMillis(now - lease.borrowedOn);
+            if (!lease.leakReported && heldTime >= leakDetectionThreshold) {
+                lease.leakReported = true;
+                metricLeak.inc();
+                reported++;
+                LOG.warn("Connection of the {} persistence unit held for {} ms: possible leak", lease.dataSource.persistenceUnitName, heldTime, lease.borrower);
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Shared pool view of a persistence unit
+     */
+    private final class PersistenceUnitDataSource implements DataSource {
+
+        private final String persistenceUnitName;
+
+        private final Counter metricBorrow;
+        private final Counter metricActive;
+        private final Timer metricHoldTime;
+
+        private PersistenceUnitDataSource(String persistenceUnitName) {
+            this.persistenceUnitName = persistenceUnitName;
+
+            MetricsService metricsService = MetricServiceFactory.getInstance();
+            metricBorrow = metricsService.getCounter(METRIC_MODULE_NAME, persistenceUnitName, METRIC_COMPONENT_NAME, "borrow", "count");
+            metricActive = metricsService.getCounter(METRIC_MODULE_NAME, persistenceUnitName, METRIC_COMPONENT_NAME, "active", "count");
+            metricHoldTime = metricsService.getTimer(METRIC_MODULE_NAME, persistenceUnitName, METRIC_COMPONENT_NAME, "hold", "time", "s");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return borrow(this);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("The shared database pool connections use the configured credentials");
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return 0;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return iface.cast(this);
+            }
+            throw new SQLException("Not a wrapper of " + iface.getName());
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this);
+        }
+    }
+
+    /**
+     * Borrowed connection: the connection handed to the persistence unit returns the pooled connection to the pool when closed
+     */
+    private final class Lease implements InvocationHandler {
+
+        private final Connection connection;
+        private final PersistenceUnitDataSource dataSource;
+        private final long borrowedOn;
+        private final Throwable borrower;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean leakReported;
+
+        private Lease(Connection connection, PersistenceUnitDataSource dataSource) {
+            this.connection = connection;
+            this.dataSource = dataSource;
+            borrowedOn = System.nanoTime();
+            borrower = leakDetectionThreshold > 0 ? new Throwable("Connection borrowed by") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (released.compareAndSet(false, true)) {
+                    release(this);
+                }
+                return null;
+            case "isClosed":
+                if (released.get()) {
+                    return true;
+                }
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "SharedDataSource connection of " + dataSource.persistenceUnitName + " (" + connection + ")";
+            default:
+                break;
+            }
+            if (released.get()) {
+                throw new SQLException("Connection is closed");
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Pooled connections factory
+     */
+    private static final class ConnectionFactory extends BasePooledObjectFactory<Connection> {
+
+        private final String url;
+        private final String username;
+        private final String password;
+
+        private ConnectionFactory(String url, String username, String password) {
+            this.url = url;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public Connection create() throws SQLException {
+            return DriverManager.getConnection(url, username, password);
+        }
+
+        @Override
+        public PooledObject<Connection> wrap(Connection connection) {
+            return new DefaultPooledObject<>(connection);
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Connection> pooledObject) throws SQLException {
+            pooledObject.getObject().close();
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<Connection> pooledObject) {
+            try {
+                return pooledObject.getObject().isValid(VALIDATION_TIMEOUT);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void passivateObject(PooledObject<Connection> pooledObject) throws SQLException {
+            // a connection returned in the middle of a transaction must not leak the transaction to the next borrower
+            Connection connection = pooledObject.getObject();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+        }
+    }
+}
@@ -177,6 +177,31 @@ public class ServiceDAO {
         return entity;
     }
 
+    /**
+     * Create {@link KapuaEntity}s utility method.<br>
+     * The entities are persisted and then flushed together, so the inserts are sent as JDBC batches where the persistence unit enables the batch writing.
+     * Unlike {@link #create(EntityManager, KapuaEntity)}, the entities are not refreshed and the failure of an insert is not attributed to an entity: the
+     * caller should retry the entities one by one, in a new transaction, to find the failing ones.
+     * 
+     * @param em
+     *            The {@link EntityManager} that holds the transaction.
+     * @param entities
+     *            The {@link KapuaEntity}s to be created.
+     * @return The persisted {@link KapuaEntity}s.
+     * 
+     * @since 1.0.0
+     */
+    public static <E extends KapuaEntity> List<E> createAll(EntityManager em, List<E> entities) {
+        //
+        // Creating entities
+        for (E entity : entities) {
+            em.persist(entity);
+        }
+        em.flush();
+
+        return entities;
+    }
+
     private static boolean isInsertConstraintViolation(PersistenceException e) {
         // extract the sql exception
         Throwable cause = e.getCause();
@@ -142,6 +142,14 @@ public enum SystemSettingKey implements SettingKey {
      * Database pool connection borrow timeout
      */
     DB_POOL_BORROW_TIMEOUT("commons.db.pool.borrow.timeout"),
+    /**
+     * Use a database pool shared by all the persistence units (the pool sizes bound the connections of the whole JVM) instead of a pool per persistence unit
+     */
+    DB_POOL_SHARED("commons.db.pool.shared"),
+    /**
+     * Time (in milliseconds) after which a connection borrowed from the shared database pool is reported as a possible leak (0 disables the leak detection)
+     */
+    DB_POOL_LEAK_DETECTION_THRESHOLD("commons.db.pool.leak.detection.threshold"),
 
     /**
      * Broker schema (e.g. mqtt, mqtts, ..)
@@ -169,7 +177,59 @@ public enum SystemSettingKey implements SettingKey {
     /**
      * Maximum allowed retry (due to a {@link EntityExistsException}, so already exists key) on insert operation
      */
-    KAPUA_INSERT_MAX_RETRY("commons.entity.insert.max.retry");
+    KAPUA_INSERT_MAX_RETRY("commons.entity.insert.max.retry"),
+
+    /**
+     * Enable the identity resolution cache (account identifiers by name and device identifiers by client id)
+     */
+    IDENTITY_CACHE_ENABLED("commons.identity.cache.enabled"),
+    /**
+     * Maximum size of each identity resolution cache
+     */
+    IDENTITY_CACHE_SIZE_MAXIMUM("commons.identity.cache.size.maximum"),
+    /**
+     * Expire time (in seconds) of the identity resolution cache entries
+     */
+    IDENTITY_CACHE_EXPIRE_AFTER("commons.identity.cache.expire.after"),
+    /**
+     * Expire time (in seconds) of the identity resolution cache entries of the missing identities
+     */
+    IDENTITY_CACHE_NEGATIVE_EXPIRE_AFTER("commons.identity.cache.negative.expire.after"),
+
+    /**
+     * Comma separated names of the entities kept in the second level (shared) entity cache (empty disables the cache).<br>
+     * The invalidations are coordinated per persistence unit: the entities written through several persistence units must not be listed.
+     */
+    ENTITY_CACHE_ENTITIES("commons.entity.cache.entities"),
+    /**
+     * Maximum size of the second level cache of each entity
+     */
+    ENTITY_CACHE_SIZE_MAXIMUM("commons.entity.cache.size.maximum"),
+    /**
+     * Expire time (in seconds) of the second level entity cache entries
+     */
+    ENTITY_CACHE_EXPIRE_AFTER("commons.entity.cache.expire.after"),
+    /**
+     * Second level entity cache invalidation protocol between the nodes (jms, rmi, jgroups or a transport manager class name; empty disables the invalidation)
+     */
+    ENTITY_CACHE_COORDINATION_PROTOCOL("commons.entity.cache.coordination.protocol"),
+    /**
+     * Url of the broker that carries the second level entity cache invalidations (jms protocol)
+     */
+    ENTITY_CACHE_COORDINATION_JMS_URL("commons.entity.cache.coordination.jms.url"),
+    /**
+     * Username of the broker connection that carries the second level entity cache invalidations (jms protocol, not needed by the vm connector).<br>
+     * It is a dedicated user of the system admin account, granted by the broker only the coordination topics (the broker must have the same setting).
+     */
+    ENTITY_CACHE_COORDINATION_JMS_USERNAME("commons.entity.cache.coordination.jms.username"),
+    /**
+     * Password of the broker connection that carries the second level entity cache invalidations (jms protocol, not needed by the vm connector)
+     */
+    ENTITY_CACHE_COORDINATION_JMS_PASSWORD("commons.entity.cache.coordination.jms.password"),
+    /**
+     * Topic prefix of the second level entity cache invalidations (jms protocol), the persistence unit name is appended
+     */
+    ENTITY_CACHE_COORDINATION_JMS_TOPIC("commons.entity.cache.coordination.jms.topic");
 
     private String key;
 
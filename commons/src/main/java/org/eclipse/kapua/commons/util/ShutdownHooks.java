@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shutdown actions of the components owning background threads (bulk writers, write-behind stores, schedulers).<br>
+ * The actions are executed once, in reverse registration order (so a component is stopped before the components it feeds), either by the application
+ * lifecycle (broker filter stop, servlet context destroy) calling {@link #shutdown()} or by the JVM shutdown hook, whichever comes first.
+ *
+ * @since 1.0
+ */
+public final class ShutdownHooks {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShutdownHooks.class);
+
+    private static final Deque<ShutdownAction> ACTIONS = new ArrayDeque<>();
+    private static boolean shutdown;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ShutdownHooks::shutdown, "kapua-shutdown"));
+    }
+
+    private ShutdownHooks() {
+    }
+
+    /**
+     * Register a shutdown action.<br>
+     * If the shutdown is already executed the action is executed immediately.
+     *
+     * @param name
+     *            the component name (for logging purpose)
+     * @param action
+     */
+    public static synchronized void register(String name, ThrowingRunnable action) {
+        ShutdownAction shutdownAction = new ShutdownAction(name, action);
+        if (shutdown) {
+            shutdownAction.run();
+        } else {
+            ACTIONS.push(shutdownAction);
+        }
+    }
+
+    /**
+     * Execute the registered shutdown actions (only the first call has effect).<br>
+     * A failing action is logged and doesn't prevent the execution of the others.
+     */
+    public static synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        while (!ACTIONS.isEmpty()) {
+            ACTIONS.pop().run();
+        }
+    }
+
+    private static class ShutdownAction {
+
+        private final String name;
+        private final ThrowingRunnable action;
+
+        private ShutdownAction(String name, ThrowingRunnable action) {
+            this.name = name;
+            this.action = action;
+        }
+
+        private void run() {
+            logger.info("Shutting down {}...", name);
+            try {
+                action.run();
+            } catch (Exception e) {
+                logger.warn("Cannot shut down {}", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+-- *******************************************************************************
+-- Copyright (c) 2017 Eurotech and/or its affiliates and others
+--
+-- All rights reserved. This program and the accompanying materials
+-- are made available under the terms of the Eclipse Public License v1.0
+-- which accompanies this distribution, and is available at
+-- http://www.eclipse.org/legal/epl-v10.html
+--
+-- Contributors:
+--     Eurotech - initial API and implementation
+-- *******************************************************************************
+
+-- liquibase formatted sql
+
+-- changeset resource_usage:1
+
+-- Resource limited services usage counters (see AbstractKapuaConfigurableResourceLimitedService).
+-- The rows are backfilled on the first limit check of each scope and service, so the existing data needs no migration.
+CREATE TABLE IF NOT EXISTS sys_resource_usage (
+  scope_id                   BIGINT(21)       UNSIGNED NOT NULL,
+  pid                        VARCHAR(255)     NOT NULL,
+  used_entities              BIGINT(21)       NOT NULL DEFAULT 0,
+  allocated_entities         BIGINT(21)       NOT NULL DEFAULT 0,
+
+  PRIMARY KEY (scope_id, pid)
+
+) ENGINE = InnoDB DEFAULT CHARSET = utf8;
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FingerprintCacheTest extends Assert {
+
+    @Test
+    public void testPutGetRemove() {
+        FingerprintCache cache = new FingerprintCache(1000, 60, false);
+        assertFalse(cache.get("key"));
+        cache.put("key", true);
+        assertTrue(cache.get("key"));
+        assertFalse(cache.get("other-key"));
+        cache.remove("key");
+        assertFalse(cache.get("key"));
+
+        cache.put("key", true);
+        cache.put("key", false);
+        assertFalse(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDefaultValue() {
+        FingerprintCache cache = new FingerprintCache(1000, 60, null);
+        assertNull(cache.get("key"));
+        cache.put("key", true);
+        assertEquals(Boolean.TRUE, cache.get("key"));
+    }
+
+    @Test
+    public void testRemoveKeepsCollidingEntries() {
+        FingerprintCache cache = new FingerprintCache(10000, 0, false);
+        for (int i = 0; i < 5000; i++) {
+            cache.put("key-" + i, true);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            cache.remove("key-" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("key-" + i, i % 2 != 0, cache.get("key-" + i));
+        }
+        assertEquals(2500, cache.size());
+    }
+
+    @Test
+    public void testSizeEviction() {
+        FingerprintCache cache = new FingerprintCache(1000, 0, false);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("key-" + i, true);
+            // the first keys are read, so they survive the evictions
+            for (int j = 0; j < 10; j++) {
+                cache.get("key-" + j);
+            }
+        }
+        assertTrue(cache.size() <= 1000);
+        assertTrue(cache.get("key-9999"));
+        for (int j = 0; j < 10; j++) {
+            assertTrue(cache.get("key-" + j));
+        }
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        FingerprintCache cache = new FingerprintCache(1000, 1, false);
+        cache.put("key", true);
+        assertTrue(cache.get("key"));
+        Thread.sleep(2100);
+        assertFalse(cache.get("key"));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        FingerprintCache cache = new FingerprintCache(1000, 60, false);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key-" + i, true);
+        }
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertFalse(cache.get("key-1"));
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.cache;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.commons.cache.IdentityCache.Resolution;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdentityCacheTest extends Assert {
+
+    private static final KapuaId ID = new KapuaEid(BigInteger.ONE);
+    private static final KapuaId OTHER_ID = new KapuaEid(BigInteger.TEN);
+
+    @Test
+    public void testResolvedOnce() throws Exception {
+        Resolution resolution = new Resolution("test", true, 1000, 60, 60000);
+        AtomicInteger resolutions = new AtomicInteger();
+        assertEquals(ID, resolution.get("key", () -> {
+            resolutions.incrementAndGet();
+            return ID;
+        }));
+        assertEquals(ID, resolution.get("key", () -> {
+            resolutions.incrementAndGet();
+            return OTHER_ID;
+        }));
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void testNegativeEntryExpiration() throws Exception {
+        Resolution resolution = new Resolution("test", true, 1000, 60, 100);
+        AtomicInteger resolutions = new AtomicInteger();
+        IdentityCache.Resolver missingResolver = () -> {
+            resolutions.incrementAndGet();
+            return null;
+        };
+        assertNull(resolution.get("missing", missingResolver));
+        assertNull(resolution.get("missing", missingResolver));
+        assertEquals(1, resolutions.get());
+        assertEquals(ID, resolution.get("existing", () -> ID));
+
+        Thread.sleep(200);
+        // the missing identity is resolved again (it may have been created by another node), the existing one is still cached
+        assertEquals(ID, resolution.get("missing", () -> {
+            resolutions.incrementAndGet();
+            return ID;
+        }));
+        assertEquals(2, resolutions.get());
+        assertEquals(ID, resolution.get("existing", () -> OTHER_ID));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        Resolution resolution = new Resolution("test", true, 1000, 60, 60000);
+        resolution.put("key", ID);
+        assertEquals(ID, resolution.get("key", () -> OTHER_ID));
+
+        resolution.invalidate("key");
+        assertEquals(OTHER_ID, resolution.get("key", () -> OTHER_ID));
+        assertEquals(OTHER_ID, resolution.get("key", () -> ID));
+    }
+
+    @Test
+    public void testResolutionRacingWithInvalidationNotCached() throws Exception {
+        Resolution resolution = new Resolution("test", true, 1000, 60, 60000);
+        // the identity is written (and invalidated) while its old value is resolved
+        assertNull(resolution.get("key", () -> {
+            resolution.invalidate("key");
+            return null;
+        }));
+
+        AtomicInteger resolutions = new AtomicInteger();
+        IdentityCache.Resolver resolver = () -> {
+            resolutions.incrementAndGet();
+            return ID;
+        };
+        assertEquals(ID, resolution.get("key", resolver));
+        assertEquals(ID, resolution.get("key", resolver));
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Resolution resolution = new Resolution("test", false, 1000, 60, 60000);
+        resolution.put("key", ID);
+        assertEquals(OTHER_ID, resolution.get("key", () -> OTHER_ID));
+        assertNull(resolution.get("key", () -> null));
+    }
+
+    @Test
+    public void testDeviceIdsByScope() throws Exception {
+        KapuaId scopeId = new KapuaEid(BigInteger.valueOf(1001));
+        KapuaId otherScopeId = new KapuaEid(BigInteger.valueOf(1002));
+        assertEquals(ID, IdentityCache.getDeviceId(scopeId, "identity-cache-test", () -> ID));
+        assertEquals(OTHER_ID, IdentityCache.getDeviceId(otherScopeId, "identity-cache-test", () -> OTHER_ID));
+        assertEquals(ID, IdentityCache.getDeviceId(scopeId, "identity-cache-test", () -> OTHER_ID));
+
+        IdentityCache.invalidateDevice(scopeId, "identity-cache-test");
+        assertNull(IdentityCache.getDeviceId(scopeId, "identity-cache-test", () -> null));
+        assertEquals(OTHER_ID, IdentityCache.getDeviceId(otherScopeId, "identity-cache-test", () -> ID));
+    }
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.configuration;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.CommonsEntityManagerFactory;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.model.misc.CollisionEntity;
+import org.eclipse.kapua.commons.model.misc.CollisionEntityCreator;
+import org.eclipse.kapua.commons.model.misc.CollisionEntityDomain;
+import org.eclipse.kapua.commons.model.misc.CollisionEntityService;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.model.KapuaEntityFactory;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.model.query.KapuaListResult;
+import org.eclipse.kapua.model.query.KapuaQuery;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Resource usage counters and child entities allocation of the resource limited services
+ */
+public class AbstractKapuaConfigurableResourceLimitedServiceTest extends Assert {
+
+    private static final String PID = "org.eclipse.kapua.commons.configuration.TestResourceLimitedService";
+
+    private static final KapuaId PARENT_ID = new KapuaEid(BigInteger.valueOf(1001));
+    private static final KapuaId CHILD_ID = new KapuaEid(BigInteger.valueOf(1002));
+    private static final KapuaId OTHER_SERVICE_CHILD_ID = new KapuaEid(BigInteger.valueOf(1003));
+
+    private static EntityManagerSession entityManagerSession;
+
+    @BeforeClass
+    public static void setUp() throws KapuaException {
+        entityManagerSession = new EntityManagerSession(CommonsEntityManagerFactory.getInstance());
+        entityManagerSession.onTransactedAction(em -> {
+            em.createNativeQuery("CREATE TABLE IF NOT EXISTS sys_resource_usage (" +
+                    "scope_id BIGINT(21) UNSIGNED NOT NULL, " +
+                    "pid VARCHAR(255) NOT NULL, " +
+                    "used_entities BIGINT(21) NOT NULL DEFAULT 0, " +
+                    "allocated_entities BIGINT(21) NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY (scope_id, pid))").executeUpdate();
+            em.createNativeQuery("CREATE TABLE IF NOT EXISTS sys_configuration (" +
+                    "scope_id BIGINT(21) UNSIGNED, " +
+                    "id BIGINT(21) UNSIGNED NOT NULL, " +
+                    "pid VARCHAR(255) NOT NULL, " +
+                    "configurations TEXT, " +
+                    "created_on TIMESTAMP(3) DEFAULT 0, " +
+                    "created_by BIGINT(21) UNSIGNED NOT NULL, " +
+                    "modified_on TIMESTAMP(3) NOT NULL, " +
+                    "modified_by BIGINT(21) UNSIGNED NOT NULL, " +
+                    "optlock INT UNSIGNED, " +
+                    "attributes TEXT, " +
+                    "properties TEXT, " +
+                    "PRIMARY KEY (scope_id, id))").executeUpdate();
+        });
+
+        createConfig(CHILD_ID, PID, 4);
+        // the allocations of the other services are not summed
+        createConfig(OTHER_SERVICE_CHILD_ID, "org.eclipse.kapua.commons.configuration.OtherResourceLimitedService", 50);
+    }
+
+    @AfterClass
+    public static void tearDown() throws KapuaException {
+        entityManagerSession.onTransactedAction(em -> {
+            em.createNativeQuery("DELETE FROM sys_configuration WHERE scope_id IN (?1, ?2)").setParameter(1, CHILD_ID.getId()).setParameter(2, OTHER_SERVICE_CHILD_ID.getId())
+                    .executeUpdate();
+            em.createNativeQuery("DELETE FROM sys_resource_usage WHERE pid = ?1").setParameter(1, PID).executeUpdate();
+        });
+    }
+
+    @Test
+    public void testUsageCreatedOnFirstCheck() throws Exception {
+        TestResourceLimitedService service = new TestResourceLimitedService(3);
+        // 10 allowed, 3 used and 4 allocated to the child account
+        assertEquals(3, service.allowedChildEntities(PARENT_ID));
+        assertUsage(PARENT_ID, 3, 4);
+
+        // the next checks read the counters
+        service.entities = 100;
+        assertEquals(3, service.allowedChildEntities(PARENT_ID));
+        assertEquals(1, service.countCalls.get());
+    }
+
+    @Test
+    public void testUsedEntitiesCounters() throws Exception {
+        KapuaId scopeId = new KapuaEid(BigInteger.valueOf(2001));
+        TestResourceLimitedService service = new TestResourceLimitedService(0);
+        // the counters are not updated until the usage of the scope is created
+        entityManagerSession.onTransactedAction(em -> service.incrementUsedEntities(em, scopeId));
+        assertNull(findUsage(scopeId));
+
+        assertEquals(10, service.allowedChildEntities(scopeId));
+
+        entityManagerSession.onTransactedAction(em -> service.incrementUsedEntities(em, scopeId));
+        entityManagerSession.onTransactedAction(em -> service.incrementUsedEntities(em, scopeId, 3));
+        entityManagerSession.onTransactedAction(em -> service.decrementUsedEntities(em, scopeId));
+        assertUsage(scopeId, 3, 0);
+        assertEquals(7, service.allowedChildEntities(scopeId));
+        assertEquals(1, service.countCalls.get());
+    }
+
+    @Test
+    public void testChildEntitiesAllocatedFromParent() throws Exception {
+        KapuaId parentId = new KapuaEid(BigInteger.valueOf(3001));
+        KapuaId childId = new KapuaEid(BigInteger.valueOf(3002));
+        TestResourceLimitedService service = new TestResourceLimitedService(2);
+        assertEquals(8, service.allowedChildEntities(parentId));
+
+        entityManagerSession.onTransactedAction(em -> service.onConfigValuesUpdate(em, childId, parentId, limitedValues(0), limitedValues(5)));
+        assertUsage(parentId, 2, 5);
+        assertEquals(3, service.allowedChildEntities(parentId));
+
+        // the child limit is lowered: the difference is released to the parent
+        entityManagerSession.onTransactedAction(em -> service.onConfigValuesUpdate(em, childId, parentId, limitedValues(5), limitedValues(1)));
+        service.configValues.put(childId, limitedValues(1));
+        assertUsage(parentId, 2, 1);
+        assertEquals(7, service.allowedChildEntities(parentId));
+
+        // the allocation of the child under configuration is excluded
+        assertEquals(8, service.allowedChildEntities(parentId, childId));
+    }
+
+    @Test
+    public void testUnchangedChildLimitNotAllocated() throws Exception {
+        KapuaId parentId = new KapuaEid(BigInteger.valueOf(4001));
+        KapuaId childId = new KapuaEid(BigInteger.valueOf(4002));
+        TestResourceLimitedService service = new TestResourceLimitedService(0);
+        assertEquals(10, service.allowedChildEntities(parentId));
+
+        entityManagerSession.onTransactedAction(em -> service.onConfigValuesUpdate(em, childId, parentId, limitedValues(5), limitedValues(5)));
+        // the root scopes have no parent to allocate from
+        entityManagerSession.onTransactedAction(em -> service.onConfigValuesUpdate(em, parentId, null, limitedValues(10), limitedValues(20)));
+        assertUsage(parentId, 0, 0);
+    }
+
+    @Test
+    public void testInfiniteChildEntities() throws Exception {
+        KapuaId scopeId = new KapuaEid(BigInteger.valueOf(5001));
+        TestResourceLimitedService service = new TestResourceLimitedService(3);
+        Map<String, Object> infiniteValues = limitedValues(0);
+        infiniteValues.put("infiniteChildEntities", true);
+        service.configValues.put(scopeId, infiniteValues);
+
+        assertEquals(Integer.MAX_VALUE, service.allowedChildEntities(scopeId));
+        // the usage is not needed (nor created) for the scopes without limits
+        assertNull(findUsage(scopeId));
+        assertEquals(0, service.countCalls.get());
+    }
+
+    private static void createConfig(KapuaId scopeId, String pid, int maxNumberChildEntities) throws KapuaException {
+        ServiceConfigCreatorImpl serviceConfigCreator = new ServiceConfigCreatorImpl(scopeId);
+        serviceConfigCreator.setPid(pid);
+        Properties configurations = new Properties();
+        configurations.setProperty("infiniteChildEntities", "false");
+        configurations.setProperty("maxNumberChildEntities", Integer.toString(maxNumberChildEntities));
+        serviceConfigCreator.setConfigurations(configurations);
+        KapuaSecurityUtils.doPrivileged(() -> entityManagerSession.onTransactedAction(em -> ServiceConfigDAO.create(em, serviceConfigCreator)));
+    }
+
+    private static ResourceUsage findUsage(KapuaId scopeId) throws KapuaException {
+        return entityManagerSession.onResult(em -> ResourceUsageDAO.find(em, scopeId, PID));
+    }
+
+    private static void assertUsage(KapuaId scopeId, long usedEntities, long allocatedEntities) throws KapuaException {
+        ResourceUsage resourceUsage = findUsage(scopeId);
+        assertNotNull(resourceUsage);
+        assertEquals(usedEntities, resourceUsage.getUsedEntities());
+        assertEquals(allocatedEntities, resourceUsage.getAllocatedEntities());
+    }
+
+    private static Map<String, Object> limitedValues(int maxNumberChildEntities) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("infiniteChildEntities", false);
+        values.put("maxNumberChildEntities", maxNumberChildEntities);
+        return values;
+    }
+
+    /**
+     * Resource limited service with in memory configurations (10 child entities allowed by default) and entity count
+     */
+    private static class TestResourceLimitedService extends
+            AbstractKapuaConfigurableResourceLimitedService<CollisionEntity, CollisionEntityCreator, CollisionEntityService, KapuaListResult<CollisionEntity>, KapuaQuery<CollisionEntity>, KapuaEntityFactory<CollisionEntity, CollisionEntityCreator, KapuaQuery<CollisionEntity>, KapuaListResult<CollisionEntity>>> {
+
+        private final Map<KapuaId, Map<String, Object>> configValues = new HashMap<>();
+        private final AtomicInteger countCalls = new AtomicInteger();
+        private long entities;
+
+        private TestResourceLimitedService(long entities) {
+            super(PID, new CollisionEntityDomain(), CommonsEntityManagerFactory.getInstance(), CollisionEntityService.class, null);
+            this.entities = entities;
+        }
+
+        @Override
+        public Map<String, Object> getConfigValues(KapuaId scopeId) {
+            return configValues.getOrDefault(scopeId, limitedValues(10));
+        }
+
+        @Override
+        long countEntities(KapuaId scopeId) {
+            countCalls.incrementAndGet();
+            return entities;
+        }
+
+        @Override
+        List<KapuaId> findChildScopeIds(KapuaId scopeId) {
+            // the child accounts (the account service is not available in the commons module)
+            return PARENT_ID.equals(scopeId) ? Arrays.asList(CHILD_ID, OTHER_SERVICE_CHILD_ID) : Collections.emptyList();
+        }
+    }
+}
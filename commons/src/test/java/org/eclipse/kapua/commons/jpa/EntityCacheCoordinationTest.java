@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.jpa;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.apache.activemq.broker.BrokerPlugin;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.security.AuthenticationUser;
+import org.apache.activemq.security.SimpleAuthenticationPlugin;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.model.misc.CollisionEntity;
+import org.eclipse.kapua.commons.model.misc.CollisionIdGenerator;
+import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Two nodes (two persistence unit sessions sharing the database) invalidating each other second level cache through an authenticated broker
+ */
+public class EntityCacheCoordinationTest extends Assert {
+
+    private static final String PERSISTENCE_UNIT_NAME = "kapua-commons-unit-test";
+    private static final String JDBC_URL = "jdbc:h2:mem:entity-cache-coordination;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String USERNAME = "kapua-cache-coordination";
+    private static final String PASSWORD = "kapua-password";
+
+    private static BrokerService broker;
+    private static EntityManagerFactory firstNode;
+    private static EntityManagerFactory secondNode;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName("entity-cache-coordination");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setPlugins(new BrokerPlugin[] {
+                new SimpleAuthenticationPlugin(Collections.singletonList(new AuthenticationUser(USERNAME, PASSWORD, "coordination"))) });
+        broker.addConnector("tcp://localhost:0");
+        broker.start();
+        broker.waitUntilStarted();
+
+        System.setProperty(SystemSettingKey.ENTITY_CACHE_COORDINATION_PROTOCOL.key(), "jms");
+        System.setProperty(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_URL.key(),
+                broker.getTransportConnectors().get(0).getPublishableConnectString() + "?jms.watchTopicAdvisories=false");
+        System.setProperty(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_USERNAME.key(), USERNAME);
+        System.setProperty(SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_PASSWORD.key(), PASSWORD);
+
+        CollisionEntity.initializeCollisionIdGenerator(new CollisionIdGenerator("1", BigInteger.TEN, 0));
+        firstNode = createNode("first");
+        secondNode = createNode("second");
+
+        EntityManager em = firstNode.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("CREATE TABLE collision_entity_test (" +
+                    "scope_id BIGINT(21) UNSIGNED NOT NULL, " +
+                    "id BIGINT(21) UNSIGNED NOT NULL, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "created_on TIMESTAMP(3) NOT NULL, " +
+                    "created_by BIGINT(21) UNSIGNED NOT NULL, " +
+                    "modified_on TIMESTAMP(3), " +
+                    "modified_by BIGINT(21) UNSIGNED, " +
+                    "optlock INT UNSIGNED, " +
+                    "test_field VARCHAR(255) NOT NULL UNIQUE, " +
+                    "attributes TEXT, " +
+                    "properties TEXT, " +
+                    "PRIMARY KEY (id))").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        if (firstNode != null) {
+            firstNode.close();
+        }
+        if (secondNode != null) {
+            secondNode.close();
+        }
+        for (SystemSettingKey key : new SystemSettingKey[] {
+                SystemSettingKey.ENTITY_CACHE_COORDINATION_PROTOCOL,
+                SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_URL,
+                SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_USERNAME,
+                SystemSettingKey.ENTITY_CACHE_COORDINATION_JMS_PASSWORD }) {
+            System.clearProperty(key.key());
+        }
+        if (broker != null) {
+            broker.stop();
+            broker.waitUntilStopped();
+        }
+    }
+
+    @Test
+    public void testNodesInvalidateEachOther() throws Exception {
+        CollisionEntity entity = new CollisionEntity("coordination");
+        entity.setScopeId(new KapuaEid(BigInteger.ONE));
+        entity.setName("created");
+        EntityManager em = firstNode.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.persist(entity);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        KapuaEid id = (KapuaEid) entity.getId();
+
+        // both the nodes cache the entity
+        assertEquals("created", findName(firstNode, id));
+        assertEquals("created", findName(secondNode, id));
+
+        updateName(firstNode, id, "updated by the first node");
+        assertEventuallyEquals("updated by the first node", secondNode, id);
+
+        updateName(secondNode, id, "updated by the second node");
+        assertEventuallyEquals("updated by the second node", firstNode, id);
+    }
+
+    private static EntityManagerFactory createNode(String nodeName) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+        properties.put("javax.persistence.jdbc.url", JDBC_URL);
+        properties.put("javax.persistence.jdbc.user", "kapua");
+        properties.put("javax.persistence.jdbc.password", "kapua");
+        // a different session per node, otherwise the factories of the same persistence unit share the session (and the cache)
+        properties.put("eclipselink.session-name", PERSISTENCE_UNIT_NAME + "-" + nodeName);
+        properties.put("eclipselink.cache.shared.default", "true");
+        properties.putAll(AbstractEntityManagerFactory.getCacheCoordinationProperties(PERSISTENCE_UNIT_NAME));
+        return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, properties);
+    }
+
+    private static String findName(EntityManagerFactory node, KapuaEid id) {
+        EntityManager em = node.createEntityManager();
+        try {
+            return em.find(CollisionEntity.class, id).getName();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void updateName(EntityManagerFactory node, KapuaEid id, String name) {
+        EntityManager em = node.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.find(CollisionEntity.class, id).setName(name);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void assertEventuallyEquals(String expectedName, EntityManagerFactory node, KapuaEid id) throws InterruptedException {
+        // the invalidation is propagated asynchronously
+        for (int i = 0; i < 100 && !expectedName.equals(findName(node, id)); i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(expectedName, findName(node, id));
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.jpa;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SharedDataSourceTest extends Assert {
+
+    private static final String DRIVER = "org.h2.Driver";
+
+    private SharedDataSource sharedDataSource;
+
+    @After
+    public void tearDown() {
+        if (sharedDataSource != null) {
+            sharedDataSource.close();
+        }
+    }
+
+    @Test
+    public void testBorrowAndReturn() throws Exception {
+        DataSource dataSource = newDataSource("borrow", 0, 200);
+
+        // a single pooled connection, borrowed again once returned
+        for (int i = 0; i < 3; i++) {
+            try (Connection connection = dataSource.getConnection()) {
+                assertFalse(connection.isClosed());
+                assertEquals(1, count(connection, "SELECT 1"));
+            }
+        }
+    }
+
+    @Test
+    public void testReturnedConnectionClosed() throws Exception {
+        DataSource dataSource = newDataSource("closed", 0, 200);
+
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        assertTrue(connection.isClosed());
+        try {
+            connection.createStatement();
+            fail("The returned connection should not be usable");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // closing the connection again doesn't return the pooled connection twice
+        connection.close();
+        Connection otherConnection = dataSource.getConnection();
+        try {
+            dataSource.getConnection();
+            fail("The pool should be exhausted");
+        } catch (SQLTransientConnectionException e) {
+            // expected
+        } finally {
+            otherConnection.close();
+        }
+    }
+
+    @Test
+    public void testTransactionRolledBackOnReturn() throws Exception {
+        DataSource dataSource = newDataSource("rollback", 0, 200);
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE test_rollback (id INT)");
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("INSERT INTO test_rollback VALUES (1)");
+            }
+            // returned without commit
+        }
+
+        // the next borrower gets the same connection, without the pending transaction
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(connection.getAutoCommit());
+            assertEquals(0, count(connection, "SELECT COUNT(*) FROM test_rollback"));
+        }
+    }
+
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        DataSource dataSource = newDataSource("timeout", 0, 200);
+        try (Connection connection = dataSource.getConnection()) {
+            long start = System.nanoTime();
+            try {
+                dataSource.getConnection();
+                fail("The pool should be exhausted");
+            } catch (SQLTransientConnectionException e) {
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            }
+        }
+        // available again once returned
+        dataSource.getConnection().close();
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        DataSource dataSource = newDataSource("leak", 100, 200);
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(0, sharedDataSource.detectLeaks());
+
+            Thread.sleep(200);
+            assertEquals(1, sharedDataSource.detectLeaks());
+            // reported once
+            assertEquals(0, sharedDataSource.detectLeaks());
+        }
+        // the returned connections are not tracked anymore
+        Thread.sleep(200);
+        assertEquals(0, sharedDataSource.detectLeaks());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        DataSource dataSource = newDataSource("close", 0, 200);
+        Connection connection = dataSource.getConnection();
+
+        sharedDataSource.close();
+        try {
+            dataSource.getConnection();
+            fail("The pool should be closed");
+        } catch (SQLException e) {
+            // expected
+        }
+        // the connection borrowed before the close can still be returned
+        connection.close();
+        assertTrue(connection.isClosed());
+    }
+
+    /**
+     * Shared pool of a single connection to a private in memory database
+     */
+    private DataSource newDataSource(String database, long leakDetectionThreshold, long borrowTimeout) {
+        sharedDataSource = new SharedDataSource(DRIVER, "jdbc:h2:mem:shared-data-source-" + database + ";DB_CLOSE_DELAY=-1", "kapua", "kapua", 1, 0, 1, borrowTimeout,
+                leakDetectionThreshold);
+        return sharedDataSource.getDataSource("test");
+    }
+
+    private static int count(Connection connection, String query) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(query)) {
+            assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
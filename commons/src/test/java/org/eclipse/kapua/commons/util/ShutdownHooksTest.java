@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.commons.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShutdownHooksTest extends Assert {
+
+    @Test
+    public void testShutdown() {
+        // the shutdown is executed once per JVM, so all the cases are checked by a single test
+        List<String> executed = new ArrayList<>();
+        ShutdownHooks.register("first", () -> executed.add("first"));
+        ShutdownHooks.register("failing", () -> {
+            throw new IllegalStateException("failing action");
+        });
+        ShutdownHooks.register("last", () -> executed.add("last"));
+
+        ShutdownHooks.shutdown();
+        assertEquals(Arrays.asList("last", "first"), executed);
+
+        ShutdownHooks.shutdown();
+        assertEquals(2, executed.size());
+
+        ShutdownHooks.register("late", () -> executed.add("late"));
+        assertEquals(Arrays.asList("last", "first", "late"), executed);
+    }
+}
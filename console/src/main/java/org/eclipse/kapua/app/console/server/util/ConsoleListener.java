@@ -15,6 +15,7 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import org.eclipse.kapua.app.console.ConsoleJAXBContextProvider;
+import org.eclipse.kapua.commons.util.ShutdownHooks;
 import org.eclipse.kapua.commons.util.xml.JAXBContextProvider;
 import org.eclipse.kapua.commons.util.xml.XmlUtil;
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ public class ConsoleListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(final ServletContextEvent event) {
+        ShutdownHooks.shutdown();
     }
 
 }
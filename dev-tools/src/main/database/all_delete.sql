@@ -28,6 +28,8 @@ DELETE FROM dvc_device_event;
 
 DELETE FROM sys_configuration WHERE NOT (scope_id = 1 AND id IN (1,2,3,4,5,6));
 
+DELETE FROM sys_resource_usage;
+
 DELETE FROM usr_user WHERE NOT (scope_id = 1 AND id IN (1,2));
 
 DELETE FROM athz_access_info WHERE NOT (scope_id = 1 AND id IN (1,2));
@@ -38,6 +38,8 @@ DROP TABLE IF EXISTS dvc_device_event;
 
 DROP TABLE IF EXISTS sys_configuration;
 
+DROP TABLE IF EXISTS sys_resource_usage;
+
 DROP TABLE IF EXISTS collision_entity_test;
 
 DROP TABLE IF EXISTS usr_user;
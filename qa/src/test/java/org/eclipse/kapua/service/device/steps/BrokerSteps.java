@@ -43,6 +43,7 @@ import org.eclipse.kapua.service.device.management.packages.model.DevicePackages
 import org.eclipse.kapua.service.device.management.snapshot.DeviceSnapshotManagementService;
 import org.eclipse.kapua.service.device.registry.Device;
 import org.eclipse.kapua.service.device.registry.DeviceRegistryService;
+import org.eclipse.kapua.transport.mqtt.MqttResponseCorrelator;
 import org.junit.Assert;
 
 import java.math.BigInteger;
@@ -258,4 +259,15 @@ public class BrokerSteps extends Assert {
         assertEquals(expectedExitCode, commandExitCode.intValue());
     }
 
+    @Then("^The device response subscriptions are released$")
+    public void responseSubscriptionsReleased() throws Exception {
+
+        // the subscriptions are released asynchronously once the responses are received
+        long deadline = System.currentTimeMillis() + 5000;
+        while (MqttResponseCorrelator.getInstance().getSubscriptionsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, MqttResponseCorrelator.getInstance().getSubscriptionsCount());
+    }
+
 }
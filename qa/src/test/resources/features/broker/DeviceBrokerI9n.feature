@@ -29,3 +29,17 @@ Feature: Device Broker Integration
     Then Exit code 0 is received
     And I logout
     And Device death message is sent
+
+  Scenario: Device requests of a logged user are answered and release their response subscriptions.
+    The device responses are translated with the session of the user sending the requests.
+    When I start the Kura Mock
+    And Device birth message is sent
+    And I wait 5 seconds for system to receive and process that message
+    And I login as user with name "kapua-sys" and password "kapua-password"
+    And Command (pwd) is executed
+    Then Exit code 0 is received
+    And Configuration is requested
+    Then Configuration is received
+    And The device response subscriptions are released
+    And I logout
+    And Device death message is sent
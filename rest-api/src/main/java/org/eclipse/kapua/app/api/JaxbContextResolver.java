@@ -95,6 +95,9 @@ import org.eclipse.kapua.service.datastore.model.ChannelInfoListResult;
 import org.eclipse.kapua.service.datastore.model.ClientInfo;
 import org.eclipse.kapua.service.datastore.model.ClientInfoListResult;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.MetricInfo;
 import org.eclipse.kapua.service.datastore.model.MetricInfoListResult;
@@ -143,6 +146,9 @@ import org.eclipse.kapua.service.device.management.snapshot.DeviceSnapshot;
 import org.eclipse.kapua.service.device.management.snapshot.DeviceSnapshotXmlRegistry;
 import org.eclipse.kapua.service.device.management.snapshot.DeviceSnapshots;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreator;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
 import org.eclipse.kapua.service.device.registry.DeviceQuery;
@@ -227,6 +233,9 @@ public class JaxbContextResolver implements ContextResolver<JAXBContext> {
                     DatastoreMessage.class,
                     MessageListResult.class,
                     MessageQuery.class,
+                    MessageAggregationResult.class,
+                    MessageAggregationBucket.class,
+                    MessageDeleteJob.class,
                     DatastoreMessageXmlRegistry.class,
                     KapuaDataMessage.class,
                     InsertResponse.class,
@@ -237,6 +246,9 @@ public class JaxbContextResolver implements ContextResolver<JAXBContext> {
                     DeviceCreator.class,
                     DeviceListResult.class,
                     DeviceQuery.class,
+                    DeviceBulkCreator.class,
+                    DeviceBulkCreateResult.class,
+                    DeviceBulkCreateError.class,
                     DeviceXmlRegistry.class,
 
                     // Device Connection
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.app.api.v1.resources;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.eclipse.kapua.app.api.v1.resources.model.DateParam;
+import org.eclipse.kapua.app.api.v1.resources.model.MetricType;
+import org.eclipse.kapua.app.api.v1.resources.model.ScopeId;
+import org.eclipse.kapua.locator.KapuaLocator;
+import org.eclipse.kapua.service.KapuaService;
+import org.eclipse.kapua.service.datastore.DatastoreObjectFactory;
+import org.eclipse.kapua.service.datastore.MessageStoreService;
+import org.eclipse.kapua.service.datastore.internal.mediator.ChannelInfoField;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.query.AggregationGroupBy;
+import org.eclipse.kapua.service.datastore.model.query.AndPredicate;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
+import org.eclipse.kapua.service.datastore.model.query.RangePredicate;
+import org.eclipse.kapua.service.datastore.model.query.StorablePredicate;
+import org.eclipse.kapua.service.datastore.model.query.StorablePredicateFactory;
+import org.eclipse.kapua.service.datastore.model.query.TermPredicate;
+
+import com.google.common.base.Strings;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+@Api("Data Message Aggregations")
+@Path("{scopeId}/data/aggregations")
+public class DataMessageAggregations extends AbstractKapuaResource {
+
+    private static final KapuaLocator LOCATOR = KapuaLocator.getInstance();
+    private static final MessageStoreService MESSAGE_STORE_SERVICE = LOCATOR.getService(MessageStoreService.class);
+    private static final DatastoreObjectFactory DATASTORE_OBJECT_FACTORY = LOCATOR.getFactory(DatastoreObjectFactory.class);
+    private static final StorablePredicateFactory STORABLE_PREDICATE_FACTORY = LOCATOR.getFactory(StorablePredicateFactory.class);
+
+    /**
+     * Aggregates the values of a metric of the messages in the scope.<br>
+     * The values are downsampled in time buckets of the given interval and, optionally, grouped by client id or channel.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} in which to search results.
+     * @param clientId
+     *            The client id to filter results.
+     * @param channel
+     *            The channel id to filter results. It allows '#' wildcard in last channel level.
+     * @param strictChannel
+     *            Restrict the search only to this channel ignoring its children. Only meaningful if channel is set.
+     * @param startDateParam
+     *            The start date to filter the results. Must come before endDate parameter.
+     * @param endDateParam
+     *            The end date to filter the results. Must come after startDate parameter
+     * @param metricName
+     *            The name of the metric to aggregate.
+     * @param metricType
+     *            The type of the metric to aggregate.
+     * @param interval
+     *            The time bucket interval in milliseconds.
+     * @param groupBy
+     *            The field used to group the time buckets.
+     * @param maxGroups
+     *            The maximum number of groups.
+     * @param percentiles
+     *            The percentiles to compute for each time bucket.
+     * @return The {@link MessageAggregationResult} of the messages matching the filters.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @ApiOperation(value = "Aggregates the values of a metric of the messages in the scope", //
+            notes = "Returns the count, min, max, avg, sum and the requested percentiles of the metric values for each time bucket (and group) of the messages matching the filters.", //
+            response = MessageAggregationResult.class)
+    @GET
+    @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+    public <V extends Comparable<V>> MessageAggregationResult aggregate( //
+            @ApiParam(value = "The ScopeId in which to search results", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId, //
+            @ApiParam(value = "The client id to filter results") @QueryParam("clientId") String clientId, //
+            @ApiParam(value = "The channel to filter results.") @QueryParam("channel") String channel,
+            @ApiParam(value = "Restrict the search only to this channel ignoring its children. Only meaningful if channel is set.") @QueryParam("strictChannel") boolean strictChannel,
+            @ApiParam(value = "The start date to filter the results. Must come before endDate parameter") @QueryParam("startDate") DateParam startDateParam,
+            @ApiParam(value = "The end date to filter the results. Must come after startDate parameter") @QueryParam("endDate") DateParam endDateParam,
+            @ApiParam(value = "The metric name to aggregate", required = true) @QueryParam("metricName") String metricName, //
+            @ApiParam(value = "The metric type to aggregate", required = true) @QueryParam("metricType") MetricType<V> metricType, //
+            @ApiParam(value = "The time bucket interval in milliseconds", defaultValue = "3600000") @QueryParam("interval") @DefaultValue("3600000") long interval, //
+            @ApiParam(value = "The field used to group the time buckets (NONE, CLIENT_ID or CHANNEL)", defaultValue = "NONE") @QueryParam("groupBy") @DefaultValue("NONE") AggregationGroupBy groupBy, //
+            @ApiParam(value = "The maximum number of groups", defaultValue = "10") @QueryParam("maxGroups") @DefaultValue("10") int maxGroups, //
+            @ApiParam(value = "The percentiles to compute for each time bucket") @QueryParam("percentile") List<Double> percentiles) throws Exception {
+
+        AndPredicate andPredicate = STORABLE_PREDICATE_FACTORY.newAndPredicate();
+        if (!Strings.isNullOrEmpty(clientId)) {
+            TermPredicate clientIdPredicate = STORABLE_PREDICATE_FACTORY.newTermPredicate(MessageField.CLIENT_ID, clientId);
+            andPredicate.getPredicates().add(clientIdPredicate);
+        }
+
+        if (!Strings.isNullOrEmpty(channel)) {
+            StorablePredicate channelPredicate = null;
+            if (strictChannel) {
+                channelPredicate = STORABLE_PREDICATE_FACTORY.newTermPredicate(ChannelInfoField.CHANNEL, channel);
+            } else {
+                channelPredicate = STORABLE_PREDICATE_FACTORY.newChannelMatchPredicate(channel);
+            }
+            andPredicate.getPredicates().add(channelPredicate);
+        }
+
+        Date startDate = startDateParam != null ? startDateParam.getDate() : null;
+        Date endDate = endDateParam != null ? endDateParam.getDate() : null;
+        if (startDate != null || endDate != null) {
+            RangePredicate timestampPredicate = STORABLE_PREDICATE_FACTORY.newRangePredicate(MessageField.TIMESTAMP.field(), startDate, endDate);
+            andPredicate.getPredicates().add(timestampPredicate);
+        }
+
+        MessageAggregationQuery query = DATASTORE_OBJECT_FACTORY.newMessageAggregationQuery(scopeId);
+        query.setPredicate(andPredicate);
+        query.setMetricName(metricName);
+        query.setMetricType(metricType != null ? metricType.getType() : null);
+        query.setInterval(interval);
+        query.setGroupBy(groupBy);
+        query.setMaxGroups(maxGroups);
+        query.setPercentiles(percentiles);
+
+        return MESSAGE_STORE_SERVICE.aggregate(query);
+    }
+}
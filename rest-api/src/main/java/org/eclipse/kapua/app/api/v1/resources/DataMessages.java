@@ -21,11 +21,18 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Providers;
+import javax.xml.bind.JAXBContext;
 
 import org.eclipse.kapua.app.api.v1.resources.model.CountResult;
 import org.eclipse.kapua.app.api.v1.resources.model.DateParam;
 import org.eclipse.kapua.app.api.v1.resources.model.MetricType;
+import org.eclipse.kapua.app.api.v1.resources.model.NdjsonStreamingOutput;
 import org.eclipse.kapua.app.api.v1.resources.model.ScopeId;
 import org.eclipse.kapua.app.api.v1.resources.model.StorableEntityId;
 import org.eclipse.kapua.locator.KapuaLocator;
@@ -35,9 +42,11 @@ import org.eclipse.kapua.service.KapuaService;
 import org.eclipse.kapua.service.datastore.DatastoreObjectFactory;
 import org.eclipse.kapua.service.datastore.MessageStoreService;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
 import org.eclipse.kapua.service.datastore.internal.mediator.ChannelInfoField;
 import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.query.AndPredicate;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
@@ -63,6 +72,9 @@ public class DataMessages extends AbstractKapuaResource {
     private static final DatastoreObjectFactory DATASTORE_OBJECT_FACTORY = LOCATOR.getFactory(DatastoreObjectFactory.class);
     private static final StorablePredicateFactory STORABLE_PREDICATE_FACTORY = LOCATOR.getFactory(StorablePredicateFactory.class);
 
+    @Context
+    Providers providers;
+
     /**
      * Gets the {@link DatastoreMessage} list in the scope.
      *
@@ -200,6 +212,41 @@ public class DataMessages extends AbstractKapuaResource {
         return MESSAGE_STORE_SERVICE.query(query);
     }
 
+    /**
+     * Exports all the results matching the given {@link MessageQuery} parameter as newline delimited JSON (one {@link DatastoreMessage} per line).<br>
+     * The results are streamed from the datastore while writing the (chunked) response, so the query offset and limit are ignored.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} in which to search results.
+     * @param batchSize
+     *            The number of results fetched from the datastore at a time.
+     * @param query
+     *            The {@link MessageQuery} to used to filter results.
+     * @return The streamed results.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @POST
+    @Path("_export")
+    @Consumes({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @Produces(NdjsonStreamingOutput.APPLICATION_NDJSON)
+    @ApiOperation(value = "Exports the DatastoreMessages", //
+            notes = "Exports all the DatastoreMessages matching the given DatastoreMessageQuery parameter as newline delimited JSON")
+    public Response export( //
+            @ApiParam(value = "The ScopeId in which to search results", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId, //
+            @ApiParam(value = "The number of results fetched from the datastore at a time", defaultValue = "500") @QueryParam("batchSize") @DefaultValue("500") int batchSize, //
+            @ApiParam(value = "The DatastoreMessageQuery to use to filter results", required = true) MessageQuery query) throws Exception {
+        query.setScopeId(scopeId);
+
+        JAXBContext jaxbContext = providers.getContextResolver(JAXBContext.class, MediaType.APPLICATION_JSON_TYPE).getContext(JAXBContext.class);
+
+        // open the stream before writing the response, so the query errors are reported as usual
+        ResultStream<DatastoreMessage> messages = MESSAGE_STORE_SERVICE.stream(query, batchSize);
+        StreamingOutput output = new NdjsonStreamingOutput<>(messages, jaxbContext, batchSize);
+        return Response.ok(output, NdjsonStreamingOutput.APPLICATION_NDJSON).build();
+    }
+
     /**
      * Counts the results with the given {@link MessageQuery} parameter.
      *
@@ -227,6 +274,82 @@ public class DataMessages extends AbstractKapuaResource {
         return new CountResult(MESSAGE_STORE_SERVICE.count(query));
     }
 
+    /**
+     * Starts a job deleting all the results matching the given {@link MessageQuery} parameter.<br>
+     * The request doesn't wait for the deletion: the returned job id can be used to check the job progress.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} in which to delete results.
+     * @param query
+     *            The {@link MessageQuery} to used to filter results.
+     * @return The started {@link MessageDeleteJob}.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @POST
+    @Path("_delete")
+    @Consumes({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @ApiOperation(value = "Deletes the DatastoreMessages", //
+            notes = "Starts a job deleting all the DatastoreMessages matching the given DatastoreMessageQuery parameter, returning the job to be used to check the progress", //
+            response = MessageDeleteJob.class)
+    public Response deleteByQuery( //
+            @ApiParam(value = "The ScopeId in which to delete results", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId, //
+            @ApiParam(value = "The DatastoreMessageQuery to use to filter results", required = true) MessageQuery query) throws Exception {
+        query.setScopeId(scopeId);
+
+        return Response.status(Status.ACCEPTED).entity(MESSAGE_STORE_SERVICE.deleteAsync(query)).build();
+    }
+
+    /**
+     * Returns the message delete job specified by the "jobId" path parameter.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} of the requested job.
+     * @param jobId
+     *            The id of the requested job.
+     * @return The requested {@link MessageDeleteJob}.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @GET
+    @Path("_delete/{jobId}")
+    @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+    @ApiOperation(value = "Gets a DatastoreMessages delete job", //
+            notes = "Gets the DatastoreMessages delete job specified by the jobId path parameter", //
+            response = MessageDeleteJob.class)
+    public MessageDeleteJob findDeleteJob( //
+            @ApiParam(value = "The ScopeId of the requested job", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId, //
+            @ApiParam(value = "The id of the requested job", required = true) @PathParam("jobId") String jobId) throws Exception {
+        return returnNotNullEntity(MESSAGE_STORE_SERVICE.findDeleteJob(scopeId, jobId));
+    }
+
+    /**
+     * Resumes the failed message delete job specified by the "jobId" path parameter.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} of the job.
+     * @param jobId
+     *            The id of the job to be resumed.
+     * @return The resumed {@link MessageDeleteJob}.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @POST
+    @Path("_delete/{jobId}/_resume")
+    @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+    @ApiOperation(value = "Resumes a DatastoreMessages delete job", //
+            notes = "Resumes the failed DatastoreMessages delete job specified by the jobId path parameter from the first not yet completed slice", //
+            response = MessageDeleteJob.class)
+    public MessageDeleteJob resumeDeleteJob( //
+            @ApiParam(value = "The ScopeId of the job", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId, //
+            @ApiParam(value = "The id of the job to be resumed", required = true) @PathParam("jobId") String jobId) throws Exception {
+        return returnNotNullEntity(MESSAGE_STORE_SERVICE.resumeDeleteJob(scopeId, jobId));
+    }
+
     /**
      * Returns the DatastoreMessage specified by the "datastoreMessageId" path parameter.
      *
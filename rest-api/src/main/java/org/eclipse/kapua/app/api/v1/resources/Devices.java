@@ -36,6 +36,8 @@ import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.KapuaService;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreator;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceFactory;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
@@ -185,6 +187,36 @@ public class Devices extends AbstractKapuaResource {
         return deviceService.create(deviceCreator);
     }
 
+    /**
+     * Creates the Devices based on the information provided in the DeviceCreators of the DeviceBulkCreator parameter.<br>
+     * The Devices are created in batches and the DeviceCreators that cannot be created are reported in the result, without aborting the creation of the
+     * other ones.
+     *
+     * @param scopeId
+     *            The {@link ScopeId} in which to create the {@link Device}s
+     * @param deviceBulkCreator
+     *            Provides the information for the new Devices to be created.
+     * @return The {@link DeviceBulkCreateResult} with the ids of the created Devices and the creation errors.
+     * @throws Exception
+     *             Whenever something bad happens. See specific {@link KapuaService} exceptions.
+     * @since 1.0.0
+     */
+    @ApiOperation(value = "Create the Devices in bulk", notes = "Creates the Devices based on the information provided in the DeviceCreators of the DeviceBulkCreator parameter, reporting the ones that cannot be created. Only the ids of the created Devices are returned and the number of DeviceCreators of a request is limited.", response = DeviceBulkCreateResult.class)
+    @POST
+    @Path("_bulk")
+    @Consumes({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    public DeviceBulkCreateResult createAll(
+            @ApiParam(value = "The ScopeId in which to create the Devices.", required = true, defaultValue = DEFAULT_SCOPE_ID) @PathParam("scopeId") ScopeId scopeId,
+            @ApiParam(value = "Provides the information for the new Devices to be created", required = true) DeviceBulkCreator deviceBulkCreator) throws Exception {
+        List<DeviceCreator> deviceCreators = deviceBulkCreator.getDeviceCreators();
+        for (DeviceCreator deviceCreator : deviceCreators) {
+            deviceCreator.setScopeId(scopeId);
+        }
+
+        return deviceService.createAll(deviceCreators);
+    }
+
     /**
      * Returns the Device specified by the "deviceId" path parameter.
      *
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.app.api.v1.resources.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.KapuaRuntimeException;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+
+/**
+ * Writes a {@link ResultStream} as newline delimited JSON (one JSON object per line, without the root element).<br>
+ * The output is flushed every flushSize results and the stream is closed once written (or on error).
+ *
+ * @param <T>
+ *            result object type
+ */
+public class NdjsonStreamingOutput<T> implements StreamingOutput {
+
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final ResultStream<T> results;
+    private final JAXBContext jaxbContext;
+    private final int flushSize;
+
+    /**
+     * Constructs the output
+     *
+     * @param results
+     * @param jaxbContext
+     *            the JSON (MOXy) context marshalling the results
+     * @param flushSize
+     */
+    public NdjsonStreamingOutput(ResultStream<T> results, JAXBContext jaxbContext, int flushSize) {
+        this.results = results;
+        this.jaxbContext = jaxbContext;
+        this.flushSize = flushSize;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        try (ResultStream<T> closeableResults = results) {
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, MediaType.APPLICATION_JSON);
+            marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+
+            int written = 0;
+            while (closeableResults.hasNext()) {
+                marshaller.marshal(closeableResults.next(), outputStream);
+                outputStream.write('\n');
+                if (++written % flushSize == 0) {
+                    outputStream.flush();
+                }
+            }
+        } catch (JAXBException | KapuaException | KapuaRuntimeException e) {
+            throw new WebApplicationException(e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.app.api.v1.resources.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.xml.bind.JAXBContext;
+
+import org.eclipse.kapua.KapuaRuntimeException;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.persistence.jaxb.JAXBContextFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NdjsonStreamingOutputTest extends Assert {
+
+    @Test
+    public void testOneJsonObjectPerLine() throws Exception {
+        TestResultStream results = new TestResultStream(counts(5), -1);
+        FlushCountingOutputStream outputStream = new FlushCountingOutputStream();
+
+        new NdjsonStreamingOutput<>(results, newJsonContext(), 2).write(outputStream);
+
+        assertEquals("{\"count\":0}\n{\"count\":1}\n{\"count\":2}\n{\"count\":3}\n{\"count\":4}\n", outputStream.toString(StandardCharsets.UTF_8.name()));
+        // flushed every 2 results
+        assertEquals(2, outputStream.flushes);
+        assertTrue(results.closed);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        TestResultStream results = new TestResultStream(Collections.<CountResult>emptyList(), -1);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new NdjsonStreamingOutput<>(results, newJsonContext(), 2).write(outputStream);
+
+        assertEquals(0, outputStream.size());
+        assertTrue(results.closed);
+    }
+
+    @Test
+    public void testErrorMidStream() throws Exception {
+        TestResultStream results = new TestResultStream(counts(5), 2);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            new NdjsonStreamingOutput<>(results, newJsonContext(), 10).write(outputStream);
+            fail("The datastore error should be reported");
+        } catch (WebApplicationException e) {
+            assertTrue(e.getCause() instanceof KapuaRuntimeException);
+        }
+        assertEquals("{\"count\":0}\n{\"count\":1}\n", outputStream.toString(StandardCharsets.UTF_8.name()));
+        assertTrue(results.closed);
+    }
+
+    private static JAXBContext newJsonContext() throws Exception {
+        return JAXBContextFactory.createContext(new Class[] { CountResult.class }, null);
+    }
+
+    private static List<CountResult> counts(int size) {
+        List<CountResult> counts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            counts.add(new CountResult(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Stream over the given results failing (as a datastore error) once failAfter results are returned
+     */
+    private static class TestResultStream implements ResultStream<CountResult> {
+
+        private final Iterator<CountResult> iterator;
+        private final int failAfter;
+        private final long totalCount;
+        private int returned;
+        private boolean closed;
+
+        private TestResultStream(List<CountResult> results, int failAfter) {
+            iterator = results.iterator();
+            totalCount = results.size();
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (returned == failAfter) {
+                throw new KapuaRuntimeException(ClientErrorCodes.ACTION_ERROR, "scroll error");
+            }
+            return iterator.hasNext();
+        }
+
+        @Override
+        public CountResult next() {
+            returned++;
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
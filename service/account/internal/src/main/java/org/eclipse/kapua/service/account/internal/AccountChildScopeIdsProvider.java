@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.account.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.configuration.ChildScopeIdsProvider;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.account.Account;
+
+/**
+ * Child accounts lookup for the resource limited services (registered through the {@link java.util.ServiceLoader}).<br>
+ * The accounts are read without authorization checks: the ids are used only to sum the entities allocated to the child accounts.
+ *
+ * @since 1.0
+ */
+public class AccountChildScopeIdsProvider implements ChildScopeIdsProvider {
+
+    private final EntityManagerSession entityManagerSession = new EntityManagerSession(AccountEntityManagerFactory.getInstance());
+
+    @Override
+    public List<KapuaId> findChildScopeIds(KapuaId scopeId) throws KapuaException {
+        return entityManagerSession.onResult(em -> {
+            List<KapuaId> childScopeIds = new ArrayList<>();
+            for (Account account : AccountDAO.query(em, new AccountQueryImpl(scopeId)).getItems()) {
+                childScopeIds.add(account.getId());
+            }
+            return childScopeIds;
+        });
+    }
+}
@@ -12,7 +12,6 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.account.internal;
 
-import java.util.Map;
 import java.util.Objects;
 
 import javax.persistence.TypedQuery;
@@ -21,7 +20,9 @@ import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.KapuaIllegalAccessException;
 import org.eclipse.kapua.KapuaIllegalArgumentException;
+import org.eclipse.kapua.commons.cache.IdentityCache;
 import org.eclipse.kapua.commons.configuration.AbstractKapuaConfigurableResourceLimitedService;
+import org.eclipse.kapua.commons.configuration.ResourceUsageDAO;
 import org.eclipse.kapua.commons.setting.system.SystemSetting;
 import org.eclipse.kapua.commons.setting.system.SystemSettingKey;
 import org.eclipse.kapua.commons.util.ArgumentValidator;
@@ -89,16 +90,20 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
             throw new KapuaIllegalArgumentException("scopeId", "max child account reached");
         }
 
-        return entityManagerSession.onTransactedInsert(em -> {
+        Account result = entityManagerSession.onTransactedInsert(em -> {
             Account account = null;
             account = AccountDAO.create(em, accountCreator);
             em.persist(account);
+            incrementUsedEntities(em, account.getScopeId());
 
             // Set the parent account path
             String parentAccountPath = AccountDAO.find(em, accountCreator.getScopeId()).getParentAccountPath() + "/" + account.getId();
             account.setParentAccountPath(parentAccountPath);
             return AccountDAO.update(em, account);
         });
+        // drop the missing account entry, if any
+        IdentityCache.invalidateAccount(result.getName());
+        return result;
     }
 
     @Override
@@ -117,7 +122,7 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
 
         //
         // Do update
-        return entityManagerSession.onTransactedResult(em -> {
+        Account result = entityManagerSession.onTransactedResult(em -> {
             Account oldAccount = AccountDAO.find(em, account.getId());
             if (oldAccount == null) {
                 throw new KapuaEntityNotFoundException(Account.TYPE, account.getId());
@@ -138,6 +143,9 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
             // Update
             return AccountDAO.update(em, account);
         });
+        // the name is not updatable, but the identity cache is invalidated anyway, should the name become updatable
+        IdentityCache.invalidateAccount(account.getName());
+        return result;
     }
 
     @Override
@@ -160,7 +168,7 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
             throw new KapuaAccountException(KapuaAccountErrorCodes.OPERATION_NOT_ALLOWED, null, "This account cannot be deleted. Delete its child first.");
         }
 
-        entityManagerSession.onTransactedAction(em -> {
+        Account deletedAccount = entityManagerSession.onTransactedResult(em -> {
             // Entity needs to be loaded in the context of the same EntityManger to be able to delete it afterwards
             Account accountx = AccountDAO.find(em, accountId);
             if (accountx == null) {
@@ -178,7 +186,12 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
             }
 
             AccountDAO.delete(em, accountId);
+            decrementUsedEntities(em, accountx.getScopeId());
+            // release the resources allocated to the account by its parent
+            ResourceUsageDAO.delete(em, accountId, accountx.getScopeId());
+            return accountx;
         });
+        IdentityCache.invalidateAccount(deletedAccount.getName());
     }
 
     @Override
@@ -320,9 +333,4 @@ public class AccountServiceImpl extends AbstractKapuaConfigurableResourceLimited
         });
     }
 
-    @Override
-    protected Map<String, Object> getConfigValues(Account entity) throws KapuaException {
-        return super.getConfigValues(entity.getId());
-    }
-
 }
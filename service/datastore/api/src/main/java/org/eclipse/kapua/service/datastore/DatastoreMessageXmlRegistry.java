@@ -14,6 +14,9 @@ package org.eclipse.kapua.service.datastore;
 import javax.xml.bind.annotation.XmlRegistry;
 
 import org.eclipse.kapua.locator.KapuaLocator;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
 
@@ -45,4 +48,31 @@ public class DatastoreMessageXmlRegistry {
     public MessageQuery newQuery() {
         return factory.newDatastoreMessageQuery(null);
     }
+
+    /**
+     * Creates a {@link MessageAggregationResult} instance
+     * 
+     * @return
+     */
+    public MessageAggregationResult newMessageAggregationResult() {
+        return factory.newMessageAggregationResult();
+    }
+
+    /**
+     * Creates a {@link MessageAggregationBucket} instance
+     * 
+     * @return
+     */
+    public MessageAggregationBucket newMessageAggregationBucket() {
+        return factory.newMessageAggregationBucket();
+    }
+
+    /**
+     * Creates a {@link MessageDeleteJob} instance
+     * 
+     * @return
+     */
+    public MessageDeleteJob newMessageDeleteJob() {
+        return factory.newMessageDeleteJob();
+    }
 }
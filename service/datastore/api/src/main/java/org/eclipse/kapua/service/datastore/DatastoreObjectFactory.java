@@ -15,11 +15,15 @@ import org.eclipse.kapua.model.KapuaObjectFactory;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.datastore.model.ChannelInfoListResult;
 import org.eclipse.kapua.service.datastore.model.ClientInfoListResult;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.Metric;
 import org.eclipse.kapua.service.datastore.model.MetricInfoListResult;
 import org.eclipse.kapua.service.datastore.model.query.ChannelInfoQuery;
 import org.eclipse.kapua.service.datastore.model.query.ClientInfoQuery;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
 import org.eclipse.kapua.service.datastore.model.query.MetricInfoQuery;
 
@@ -87,6 +91,43 @@ public interface DatastoreObjectFactory extends KapuaObjectFactory {
      */
     public MessageListResult newDatastoreMessageListResult();
 
+    /**
+     * Return a new datastore message aggregation query
+     * 
+     * @param scopeId
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public MessageAggregationQuery newMessageAggregationQuery(KapuaId scopeId);
+
+    /**
+     * Return a new datastore message aggregation result
+     * 
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public MessageAggregationResult newMessageAggregationResult();
+
+    /**
+     * Return a new datastore message aggregation bucket
+     * 
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public MessageAggregationBucket newMessageAggregationBucket();
+
+    /**
+     * Return a new datastore message delete job
+     * 
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public MessageDeleteJob newMessageDeleteJob();
+
     /**
      * Return a new metric information query
      * 
@@ -11,15 +11,21 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.message.KapuaMessage;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.KapuaService;
 import org.eclipse.kapua.service.config.KapuaConfigurableService;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.StorableId;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
 import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
 
@@ -42,6 +48,20 @@ public interface MessageStoreService extends KapuaService, KapuaConfigurableServ
     InsertResponse store(KapuaMessage<?, ?> message)
             throws KapuaException;
 
+    /**
+     * Store the message without waiting for the datastore response.<br>
+     * The message is validated by the caller thread while the returned future is completed once the message is stored (exceptionally with a
+     * {@link KapuaException} if the store fails).
+     * 
+     * @param message
+     * @return
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    CompletableFuture<InsertResponse> storeAsync(KapuaMessage<?, ?> message)
+            throws KapuaException;
+
     /**
      * Find message by identifier
      * 
@@ -68,6 +88,20 @@ public interface MessageStoreService extends KapuaService, KapuaConfigurableServ
     MessageListResult query(MessageQuery query)
             throws KapuaException;
 
+    /**
+     * Stream all the messages matching the given query (the query offset and limit are ignored).<br>
+     * The messages are fetched batchSize at a time while iterating the returned stream, that must be closed once done.
+     * 
+     * @param query
+     * @param batchSize
+     * @return
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    ResultStream<DatastoreMessage> stream(MessageQuery query, int batchSize)
+            throws KapuaException;
+
     /**
      * Get messages count matching the given query
      * 
@@ -80,6 +114,18 @@ public interface MessageStoreService extends KapuaService, KapuaConfigurableServ
     long count(MessageQuery query)
             throws KapuaException;
 
+    /**
+     * Aggregate the metric of the messages matching the given query
+     * 
+     * @param query
+     * @return
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    MessageAggregationResult aggregate(MessageAggregationQuery query)
+            throws KapuaException;
+
     /**
      * Delete message by identifier
      * 
@@ -103,4 +149,44 @@ public interface MessageStoreService extends KapuaService, KapuaConfigurableServ
     void delete(MessageQuery query)
             throws KapuaException;
 
+    /**
+     * Start an asynchronous job deleting the messages matching the given query.<br>
+     * The messages are deleted by data index and time slice at a throttled rate, so the job may take long: its progress can be checked through
+     * {@link #findDeleteJob(KapuaId, String)}.
+     * 
+     * @param query
+     * @return the started job
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    MessageDeleteJob deleteAsync(MessageQuery query)
+            throws KapuaException;
+
+    /**
+     * Find the message delete job by identifier
+     * 
+     * @param scopeId
+     * @param jobId
+     * @return the job or null if no job with such identifier is known (the completed jobs are kept for a limited time)
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    MessageDeleteJob findDeleteJob(KapuaId scopeId, String jobId)
+            throws KapuaException;
+
+    /**
+     * Resume a failed message delete job from the first not yet completed slice
+     * 
+     * @param scopeId
+     * @param jobId
+     * @return the resumed job or null if no job with such identifier is known
+     * @throws KapuaException
+     * 
+     * @since 1.0.0
+     */
+    MessageDeleteJob resumeDeleteJob(KapuaId scopeId, String jobId)
+            throws KapuaException;
+
 }
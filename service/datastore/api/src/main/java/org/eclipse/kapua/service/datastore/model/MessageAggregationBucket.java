@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.model;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.eclipse.kapua.model.xml.DateXmlAdapter;
+import org.eclipse.kapua.service.datastore.DatastoreMessageXmlRegistry;
+
+/**
+ * Message aggregation bucket: the aggregated metric statistics of the messages of a group in a timestamp interval.<br>
+ * The statistics are null if no message of the bucket has the aggregated metric.
+ *
+ * @since 1.0
+ */
+@XmlRootElement(name = "messageAggregationBucket")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(propOrder = { //
+        "group", //
+        "timestamp", //
+        "count", //
+        "min", //
+        "max", //
+        "avg", //
+        "sum", //
+        "percentiles" }, //
+        factoryClass = DatastoreMessageXmlRegistry.class, factoryMethod = "newMessageAggregationBucket")
+public interface MessageAggregationBucket {
+
+    /**
+     * Get the group (the client id or the channel, null if the messages are not grouped)
+     *
+     * @return
+     */
+    @XmlElement(name = "group")
+    public String getGroup();
+
+    public void setGroup(String group);
+
+    /**
+     * Get the bucket start timestamp
+     *
+     * @return
+     */
+    @XmlElement(name = "timestamp")
+    @XmlJavaTypeAdapter(DateXmlAdapter.class)
+    public Date getTimestamp();
+
+    public void setTimestamp(Date timestamp);
+
+    /**
+     * Get the number of messages having the aggregated metric
+     *
+     * @return
+     */
+    @XmlElement(name = "count")
+    public long getCount();
+
+    public void setCount(long count);
+
+    @XmlElement(name = "min")
+    public Double getMin();
+
+    public void setMin(Double min);
+
+    @XmlElement(name = "max")
+    public Double getMax();
+
+    public void setMax(Double max);
+
+    @XmlElement(name = "avg")
+    public Double getAvg();
+
+    public void setAvg(Double avg);
+
+    @XmlElement(name = "sum")
+    public Double getSum();
+
+    public void setSum(Double sum);
+
+    /**
+     * Get the percentile values (in the same order of the query percentiles)
+     *
+     * @return
+     */
+    @XmlElement(name = "percentiles")
+    public List<Double> getPercentiles();
+
+    public void setPercentiles(List<Double> percentiles);
+}
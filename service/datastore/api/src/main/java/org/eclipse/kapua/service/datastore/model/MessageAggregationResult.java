@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.model;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+import org.eclipse.kapua.service.datastore.DatastoreMessageXmlRegistry;
+
+/**
+ * Message aggregation result
+ *
+ * @since 1.0
+ */
+@XmlRootElement(name = "messageAggregationResult")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(propOrder = { "buckets" }, factoryClass = DatastoreMessageXmlRegistry.class, factoryMethod = "newMessageAggregationResult")
+public interface MessageAggregationResult {
+
+    /**
+     * Get the buckets (sorted by group and timestamp)
+     *
+     * @return
+     */
+    @XmlElementWrapper(name = "buckets")
+    @XmlElement(name = "bucket")
+    public List<MessageAggregationBucket> getBuckets();
+}
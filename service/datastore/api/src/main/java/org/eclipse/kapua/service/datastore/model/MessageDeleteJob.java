@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.model;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.model.id.KapuaIdAdapter;
+import org.eclipse.kapua.model.xml.DateXmlAdapter;
+import org.eclipse.kapua.service.datastore.DatastoreMessageXmlRegistry;
+
+/**
+ * Message delete job: the asynchronous deletion of the messages matching a query.<br>
+ * The deletion is split by data index and, within each data index, by time slice, so the progress is reported as the number of completed indexes and slices.
+ *
+ * @since 1.0
+ */
+@XmlRootElement(name = "messageDeleteJob")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(propOrder = { //
+        "id", //
+        "scopeId", //
+        "status", //
+        "createdOn", //
+        "startedOn", //
+        "endedOn", //
+        "indexesTotal", //
+        "indexesCompleted", //
+        "indexesDeleted", //
+        "slicesCompleted", //
+        "errorMessage" }, //
+        factoryClass = DatastoreMessageXmlRegistry.class, factoryMethod = "newMessageDeleteJob")
+public interface MessageDeleteJob {
+
+    /**
+     * Get the job identifier
+     *
+     * @return
+     */
+    @XmlElement(name = "id")
+    public String getId();
+
+    public void setId(String id);
+
+    /**
+     * Get the scope id of the deleted messages
+     *
+     * @return
+     */
+    @XmlElement(name = "scopeId")
+    @XmlJavaTypeAdapter(KapuaIdAdapter.class)
+    public KapuaId getScopeId();
+
+    public void setScopeId(KapuaId scopeId);
+
+    @XmlElement(name = "status")
+    public MessageDeleteJobStatus getStatus();
+
+    public void setStatus(MessageDeleteJobStatus status);
+
+    @XmlElement(name = "createdOn")
+    @XmlJavaTypeAdapter(DateXmlAdapter.class)
+    public Date getCreatedOn();
+
+    public void setCreatedOn(Date createdOn);
+
+    /**
+     * Get the date of the last (re)start of the job
+     *
+     * @return
+     */
+    @XmlElement(name = "startedOn")
+    @XmlJavaTypeAdapter(DateXmlAdapter.class)
+    public Date getStartedOn();
+
+    public void setStartedOn(Date startedOn);
+
+    @XmlElement(name = "endedOn")
+    @XmlJavaTypeAdapter(DateXmlAdapter.class)
+    public Date getEndedOn();
+
+    public void setEndedOn(Date endedOn);
+
+    /**
+     * Get the number of data indexes to be processed (0 until the job is started)
+     *
+     * @return
+     */
+    @XmlElement(name = "indexesTotal")
+    public int getIndexesTotal();
+
+    public void setIndexesTotal(int indexesTotal);
+
+    @XmlElement(name = "indexesCompleted")
+    public int getIndexesCompleted();
+
+    public void setIndexesCompleted(int indexesCompleted);
+
+    /**
+     * Get the number of data indexes dropped as a whole (all their messages match the query)
+     *
+     * @return
+     */
+    @XmlElement(name = "indexesDeleted")
+    public int getIndexesDeleted();
+
+    public void setIndexesDeleted(int indexesDeleted);
+
+    /**
+     * Get the number of time slices deleted by query
+     *
+     * @return
+     */
+    @XmlElement(name = "slicesCompleted")
+    public long getSlicesCompleted();
+
+    public void setSlicesCompleted(long slicesCompleted);
+
+    /**
+     * Get the error that stopped the job (null if the job is not failed)
+     *
+     * @return
+     */
+    @XmlElement(name = "errorMessage")
+    public String getErrorMessage();
+
+    public void setErrorMessage(String errorMessage);
+}
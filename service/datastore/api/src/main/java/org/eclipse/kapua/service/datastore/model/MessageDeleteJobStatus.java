@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.model;
+
+/**
+ * Message delete job status
+ *
+ * @since 1.0
+ */
+public enum MessageDeleteJobStatus {
+    /**
+     * Waiting for an available purge thread
+     */
+    QUEUED,
+    /**
+     * Deleting the messages
+     */
+    RUNNING,
+    /**
+     * All the matching messages are deleted
+     */
+    COMPLETED,
+    /**
+     * Stopped by an error (the job can be resumed from the first not yet completed slice)
+     */
+    FAILED
+}
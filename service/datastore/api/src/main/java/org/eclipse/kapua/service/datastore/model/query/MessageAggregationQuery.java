@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.model.query;
+
+import java.util.List;
+
+/**
+ * Message aggregation query definition.<br>
+ * The messages matching the query predicate are grouped (see {@link AggregationGroupBy}) and bucketed by timestamp interval, then the statistics (count, min, max,
+ * average, sum and the requested percentiles) of the aggregated metric are computed for each bucket.<br>
+ * The query offset, limit and sort fields are ignored.
+ *
+ * @since 1.0
+ */
+public interface MessageAggregationQuery extends MessageQuery {
+
+    /**
+     * Get the aggregated metric name
+     *
+     * @return
+     */
+    public String getMetricName();
+
+    /**
+     * Set the aggregated metric name
+     *
+     * @param metricName
+     */
+    public void setMetricName(String metricName);
+
+    /**
+     * Get the aggregated metric type
+     *
+     * @return
+     */
+    public Class<?> getMetricType();
+
+    /**
+     * Set the aggregated metric type
+     *
+     * @param metricType
+     */
+    public void setMetricType(Class<?> metricType);
+
+    /**
+     * Get the bucket interval (in milliseconds)
+     *
+     * @return
+     */
+    public long getInterval();
+
+    /**
+     * Set the bucket interval (in milliseconds)
+     *
+     * @param interval
+     */
+    public void setInterval(long interval);
+
+    /**
+     * Get the grouping field
+     *
+     * @return
+     */
+    public AggregationGroupBy getGroupBy();
+
+    /**
+     * Set the grouping field
+     *
+     * @param groupBy
+     */
+    public void setGroupBy(AggregationGroupBy groupBy);
+
+    /**
+     * Get the maximum number of groups (the groups with more messages are returned)
+     *
+     * @return
+     */
+    public int getMaxGroups();
+
+    /**
+     * Set the maximum number of groups
+     *
+     * @param maxGroups
+     */
+    public void setMaxGroups(int maxGroups);
+
+    /**
+     * Get the percentiles to be computed (values between 0 and 100)
+     *
+     * @return
+     */
+    public List<Double> getPercentiles();
+
+    /**
+     * Set the percentiles to be computed (values between 0 and 100)
+     *
+     * @param percentiles
+     */
+    public void setPercentiles(List<Double> percentiles);
+}
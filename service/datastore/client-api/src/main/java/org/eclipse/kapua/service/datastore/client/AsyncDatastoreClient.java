@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
+import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
+
+/**
+ * Non blocking datastore client definition.<br>
+ * The methods return as soon as the request is sent and the returned future is completed once the response is received (exceptionally with a {@link ClientException}
+ * if the request fails).<br>
+ * The number of requests in flight is bounded: once the bound is reached the caller is blocked until a request is completed (or the request fails if no request
+ * completes in time).<br>
+ * <b>The futures are completed by the client I/O threads, so the dependent stages doing blocking work (such as other synchronous datastore calls) must run on
+ * a different executor (see {@link CompletableFuture#thenApplyAsync(java.util.function.Function, java.util.concurrent.Executor)}).</b>
+ *
+ * @since 1.0
+ */
+public interface AsyncDatastoreClient extends DatastoreClient {
+
+    /**
+     * Insert
+     *
+     * @param insertRequest
+     * @return
+     */
+    CompletableFuture<InsertResponse> insertAsync(InsertRequest insertRequest);
+
+    /**
+     * Bulk insert (see {@link DatastoreClient#insert(BulkInsertRequest)})
+     *
+     * @param bulkInsertRequest
+     * @return
+     */
+    CompletableFuture<BulkInsertResponse> insertAsync(BulkInsertRequest bulkInsertRequest);
+
+    /**
+     * Upsert
+     *
+     * @param updateRequest
+     * @return
+     */
+    CompletableFuture<UpdateResponse> upsertAsync(UpdateRequest updateRequest);
+
+    /**
+     * Bulk upsert
+     *
+     * @param bulkUpdateRequest
+     * @return
+     */
+    CompletableFuture<BulkUpdateResponse> upsertAsync(BulkUpdateRequest bulkUpdateRequest);
+
+    /**
+     * Query for objects matching the search criteria
+     *
+     * @param typeDescriptor
+     * @param query
+     * @param clazz
+     * @return
+     */
+    <T> CompletableFuture<ResultList<T>> queryAsync(TypeDescriptor typeDescriptor, Object query, Class<T> clazz);
+
+    /**
+     * Count for objects matching the search criteria
+     *
+     * @param typeDescriptor
+     * @param query
+     * @return
+     */
+    CompletableFuture<Long> countAsync(TypeDescriptor typeDescriptor, Object query);
+}
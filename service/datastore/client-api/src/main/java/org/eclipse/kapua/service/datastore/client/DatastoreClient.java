@@ -11,13 +11,19 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.client;
 
+import java.util.List;
+
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsRequest;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsResponse;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
 import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
 import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
 import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
@@ -49,6 +55,17 @@ public interface DatastoreClient {
      */
     InsertResponse insert(InsertRequest insertRequest) throws ClientException;
 
+    /**
+     * Bulk insert.<br>
+     * The single insert failures are reported by the returned response (one response for each request, in the same order) while
+     * an exception is thrown only if the whole bulk request cannot be performed.
+     * 
+     * @param bulkInsertRequest
+     * @return
+     * @throws ClientException
+     */
+    BulkInsertResponse insert(BulkInsertRequest bulkInsertRequest) throws ClientException;
+
     /**
      * Upsert
      * 
@@ -89,6 +106,20 @@ public interface DatastoreClient {
      */
     <T> ResultList<T> query(TypeDescriptor typeDescriptor, Object query, Class<T> clazz) throws ClientException;
 
+    /**
+     * Stream by query criteria.<br>
+     * All the objects matching the query are returned (the query offset and limit are ignored), sorted by the query sort fields, fetching batchSize objects per
+     * datastore request.
+     * 
+     * @param typeDescriptor
+     * @param query
+     * @param clazz
+     * @param batchSize
+     * @return
+     * @throws ClientException
+     */
+    <T> ResultStream<T> stream(TypeDescriptor typeDescriptor, Object query, Class<T> clazz, int batchSize) throws ClientException;
+
     /**
      * Count by query criteria
      * 
@@ -99,6 +130,17 @@ public interface DatastoreClient {
      */
     long count(TypeDescriptor typeDescriptor, Object query) throws ClientException;
 
+    /**
+     * Aggregate by query criteria.<br>
+     * The query must define the aggregations. The aggregation results are returned as they are returned by the datastore (the "aggregations" node).
+     * 
+     * @param typeDescriptor
+     * @param query
+     * @return the aggregations node or null if there are no aggregation results (i.e. no indexes match the query)
+     * @throws ClientException
+     */
+    JsonNode aggregate(TypeDescriptor typeDescriptor, Object query) throws ClientException;
+
     /**
      * Delete by id
      * 
@@ -137,6 +179,35 @@ public interface DatastoreClient {
      */
     void createIndex(String indexName, ObjectNode indexSettings) throws ClientException;
 
+    /**
+     * Get the indexes matching the index pattern
+     * 
+     * @param indexPattern
+     *            index name or wildcard expression
+     * @return
+     * @throws ClientException
+     */
+    List<IndexInfo> getIndexes(String indexPattern) throws ClientException;
+
+    /**
+     * Merge the index segments.<br>
+     * The call returns once the merge is completed or, depending on the implementation, once the request times out (the merge goes on anyway)
+     * 
+     * @param indexName
+     * @param maxSegments
+     *            maximum number of segments per shard
+     * @throws ClientException
+     */
+    void forceMerge(String indexName, int maxSegments) throws ClientException;
+
+    /**
+     * Delete the indexes
+     * 
+     * @param indexNames
+     * @throws ClientException
+     */
+    void deleteIndexes(List<String> indexNames) throws ClientException;
+
     /**
      * Check if the mapping exists
      * 
@@ -11,8 +11,12 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.client;
 
+import java.io.IOException;
 import java.util.Map;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
 /**
  * Model context definition. This object is responsible for translating datastore model objects from/to client objects
  * 
@@ -49,4 +53,31 @@ public interface ModelContext {
      */
     public Map<String, Object> marshal(Object object) throws DatamodelMappingException;
 
+    /**
+     * Convert the serialized object (from client domain) read from the parser to the specific datastore object.<br>
+     * The parser must be positioned on the start object token of the serialized object, once the method returns it is positioned on the matching end object token.
+     * 
+     * @param clazz
+     *            datastore object type
+     * @param id
+     *            datastore object id
+     * @param fetchStyle
+     *            query fetch style (see {@link QueryConverter#getFetchStyle(Object)})
+     * @param parser
+     * @return
+     * @throws DatamodelMappingException
+     * @throws IOException
+     */
+    public <T> T unmarshal(Class<T> clazz, String id, Object fetchStyle, JsonParser parser) throws DatamodelMappingException, IOException;
+
+    /**
+     * Write the datastore object, converted to the client object, to the generator (without building the intermediate client object)
+     * 
+     * @param object
+     * @param generator
+     * @throws DatamodelMappingException
+     * @throws IOException
+     */
+    public void marshal(Object object, JsonGenerator generator) throws DatamodelMappingException, IOException;
+
 }
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Byte array output stream reused by the same thread to serialize the datastore requests.<br>
+ * The buffer is kept between the uses (unless it grew over {@link #RETAINED_SIZE_MAX}) and it is exposed without copies ({@link #getBuffer()}).<br>
+ * <b>The buffer returned by {@link #get()} is valid until the next {@link #get()} call of the same thread, so it must not be retained after the request is
+ * performed.</b>
+ *
+ * @since 1.0
+ */
+public class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+    /**
+     * Initial buffer size
+     */
+    public static final int INITIAL_SIZE = 8 * 1024;
+    /**
+     * Maximum buffer size kept between the uses
+     */
+    public static final int RETAINED_SIZE_MAX = 1024 * 1024;
+
+    private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS = new ThreadLocal<ReusableByteArrayOutputStream>() {
+
+        @Override
+        protected ReusableByteArrayOutputStream initialValue() {
+            return new ReusableByteArrayOutputStream();
+        }
+    };
+
+    private ReusableByteArrayOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Get the (empty) buffer of the current thread
+     *
+     * @return
+     */
+    public static ReusableByteArrayOutputStream get() {
+        ReusableByteArrayOutputStream buffer = BUFFERS.get();
+        if (buffer.buf.length > RETAINED_SIZE_MAX) {
+            buffer = new ReusableByteArrayOutputStream();
+            BUFFERS.set(buffer);
+        } else {
+            buffer.reset();
+        }
+        return buffer;
+    }
+
+    /**
+     * Get the internal buffer (the valid bytes are the first {@link #size()} bytes)
+     *
+     * @return
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+}
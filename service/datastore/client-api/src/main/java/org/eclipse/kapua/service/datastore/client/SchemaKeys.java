@@ -46,6 +46,10 @@ public class SchemaKeys {
      * Size key (used by queries to limit the result set size)
      */
     public final static String KEY_SIZE = "size";
+    /**
+     * Aggregations key (used by query results to return the aggregation results)
+     */
+    public final static String KEY_AGGREGATIONS = "aggregations";
 
     /**
      * Query ascending sort key
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk insert request container
+ * 
+ * @since 1.0
+ */
+public class BulkInsertRequest {
+
+    List<InsertRequest> requestList;
+
+    /**
+     * Default constructor
+     */
+    public BulkInsertRequest() {
+        requestList = new ArrayList<>();
+    }
+
+    /**
+     * Add an insert request to the bulk request
+     * 
+     * @param request
+     */
+    public void add(InsertRequest request) {
+        requestList.add(request);
+    }
+
+    /**
+     * Get the insert request list
+     * 
+     * @return
+     */
+    public List<InsertRequest> getRequest() {
+        return requestList;
+    }
+
+    /**
+     * Set the insert request list
+     * 
+     * @param requestList
+     */
+    public void setRequest(List<InsertRequest> requestList) {
+        this.requestList = requestList;
+    }
+
+}
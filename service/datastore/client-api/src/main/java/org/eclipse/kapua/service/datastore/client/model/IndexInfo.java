@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client.model;
+
+/**
+ * Index information (documents count, store size and segments)
+ * 
+ * @since 1.0
+ */
+public class IndexInfo {
+
+    private final String index;
+    private final long docsCount;
+    private final long storeSize;
+    private final int primaryShards;
+    private final long segmentsCount;
+
+    /**
+     * Default constructor
+     * 
+     * @param index
+     * @param docsCount
+     * @param storeSize
+     *            store size in bytes (replicas included)
+     * @param primaryShards
+     * @param segmentsCount
+     *            segments count (primaries)
+     */
+    public IndexInfo(String index, long docsCount, long storeSize, int primaryShards, long segmentsCount) {
+        this.index = index;
+        this.docsCount = docsCount;
+        this.storeSize = storeSize;
+        this.primaryShards = primaryShards;
+        this.segmentsCount = segmentsCount;
+    }
+
+    /**
+     * Get the index name
+     * 
+     * @return
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the documents count (primaries)
+     * 
+     * @return
+     */
+    public long getDocsCount() {
+        return docsCount;
+    }
+
+    /**
+     * Get the store size in bytes (replicas included)
+     * 
+     * @return
+     */
+    public long getStoreSize() {
+        return storeSize;
+    }
+
+    /**
+     * Get the number of primary shards
+     * 
+     * @return
+     */
+    public int getPrimaryShards() {
+        return primaryShards;
+    }
+
+    /**
+     * Get the segments count (primaries)
+     * 
+     * @return
+     */
+    public long getSegmentsCount() {
+        return segmentsCount;
+    }
+
+}
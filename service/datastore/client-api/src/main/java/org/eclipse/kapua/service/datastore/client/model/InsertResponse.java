@@ -14,6 +14,7 @@ package org.eclipse.kapua.service.datastore.client.model;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 
 /**
@@ -25,6 +26,11 @@ public class InsertResponse extends Response {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Result description
+     */
+    private String description;
+
     public InsertResponse() {
         super(null, null);
     }
@@ -41,4 +47,39 @@ public class InsertResponse extends Response {
         super(id, typeDescriptor);
     }
 
+    /**
+     * Negative result constructor (result false)
+     * 
+     * @param id
+     *            the record id (may be null if the datastore didn't assign it)
+     * @param typeDescriptor
+     *            index/type descriptor
+     * @param description
+     *            the failure description
+     */
+    public InsertResponse(String id, TypeDescriptor typeDescriptor, String description) {
+        this(id, typeDescriptor);
+        setResult(false);
+        this.description = description;
+    }
+
+    /**
+     * Get the insert description (may be an error condition)
+     * 
+     * @return
+     */
+    @XmlTransient
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Set the insert description (may be an error condition)
+     * 
+     * @param description
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
 }
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client.model;
+
+import java.util.Iterator;
+
+import org.eclipse.kapua.KapuaRuntimeException;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+
+/**
+ * Query result stream.<br>
+ * The results are fetched from the datastore page by page while iterating, so at most one page of results is kept in memory.<br>
+ * The stream must be closed (it is closed automatically once the last result is returned) to release the datastore cursor.<br>
+ * The iterator methods report the datastore errors as {@link KapuaRuntimeException} (wrapping the {@link ClientException}).
+ *
+ * @param <T>
+ *            result object type
+ * @since 1.0
+ */
+public interface ResultStream<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * Get the object total count (objects that matching the search criteria)
+     *
+     * @return
+     */
+    long getTotalCount();
+
+    /**
+     * Release the datastore cursor
+     *
+     * @throws ClientException
+     */
+    @Override
+    void close() throws ClientException;
+}
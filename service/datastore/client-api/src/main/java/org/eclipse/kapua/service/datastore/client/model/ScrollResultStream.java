@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.client.model;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.eclipse.kapua.KapuaRuntimeException;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.SchemaKeys;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * {@link ResultStream} backed by a datastore scroll cursor.<br>
+ * The next page is fetched only once the current one is consumed.
+ *
+ * @param <T>
+ *            result object type
+ * @since 1.0
+ */
+public abstract class ScrollResultStream<T> implements ResultStream<T> {
+
+    private static final String KEY_DOC_ORDER = "_doc";
+
+    private final long totalCount;
+    private String scrollId;
+    private Iterator<T> page;
+    private boolean closed;
+
+    /**
+     * Construct the stream from the first page
+     *
+     * @param firstPage
+     */
+    protected ScrollResultStream(ScrollPage<T> firstPage) {
+        totalCount = firstPage.totalCount;
+        scrollId = firstPage.scrollId;
+        page = firstPage.results.iterator();
+        closed = firstPage.results.isEmpty() && scrollId == null;
+    }
+
+    /**
+     * Fetch the next page of the scroll
+     *
+     * @param scrollId
+     * @return
+     * @throws ClientException
+     */
+    protected abstract ScrollPage<T> fetchPage(String scrollId) throws ClientException;
+
+    /**
+     * Release the scroll
+     *
+     * @param scrollId
+     * @throws ClientException
+     */
+    protected abstract void clearScroll(String scrollId) throws ClientException;
+
+    /**
+     * Get an empty stream
+     *
+     * @return
+     */
+    public static <T> ResultStream<T> empty() {
+        return new ScrollResultStream<T>(new ScrollPage<>(null, 0, Collections.<T>emptyList())) {
+
+            @Override
+            protected ScrollPage<T> fetchPage(String scrollId) {
+                return new ScrollPage<>(null, 0, Collections.<T>emptyList());
+            }
+
+            @Override
+            protected void clearScroll(String scrollId) {
+            }
+        };
+    }
+
+    /**
+     * Convert the converted query to the scroll query: the offset is removed, the limit is replaced by the batch size and, if the query is not sorted, the results
+     * are sorted by the index order (the cheapest one to scroll)
+     *
+     * @param queryMap
+     * @param batchSize
+     * @return
+     */
+    public static ObjectNode toScrollQuery(JsonNode queryMap, int batchSize) {
+        ObjectNode scrollQuery = ((ObjectNode) queryMap).deepCopy();
+        scrollQuery.remove(SchemaKeys.KEY_FROM);
+        scrollQuery.put(SchemaKeys.KEY_SIZE, batchSize);
+        JsonNode sortNode = scrollQuery.get(SchemaKeys.KEY_SORT);
+        if (sortNode == null || sortNode.size() == 0) {
+            ArrayNode docSortNode = scrollQuery.putArray(SchemaKeys.KEY_SORT);
+            docSortNode.add(KEY_DOC_ORDER);
+        }
+        return scrollQuery;
+    }
+
+    @Override
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page.hasNext()) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            ScrollPage<T> nextPage = fetchPage(scrollId);
+            scrollId = nextPage.scrollId != null ? nextPage.scrollId : scrollId;
+            page = nextPage.results.iterator();
+            if (!page.hasNext()) {
+                close();
+                return false;
+            }
+            return true;
+        } catch (ClientException e) {
+            closeQuietly();
+            throw new KapuaRuntimeException(ClientErrorCodes.ACTION_ERROR, e, e.getMessage());
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void close() throws ClientException {
+        if (!closed) {
+            closed = true;
+            // the results of the current page are dropped too
+            page = Collections.emptyIterator();
+            if (scrollId != null) {
+                clearScroll(scrollId);
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (ClientException e) {
+            // the scroll expires anyway
+        }
+    }
+
+    /**
+     * Scroll page
+     *
+     * @param <T>
+     *            result object type
+     */
+    public static class ScrollPage<T> {
+
+        private final String scrollId;
+        private final long totalCount;
+        private final List<T> results;
+
+        /**
+         * Construct the page
+         *
+         * @param scrollId
+         * @param totalCount
+         * @param results
+         */
+        public ScrollPage(String scrollId, long totalCount, List<T> results) {
+            this.scrollId = scrollId;
+            this.totalCount = totalCount;
+            this.results = results;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.eclipse.kapua.service.datastore.client.model;
 public class UpdateRequest extends Request {
 
     private String id;
+    private boolean insertOnly;
 
     /**
      * Construct the update request with the provided parameters
@@ -32,6 +33,20 @@ public class UpdateRequest extends Request {
         this.id = id;
     }
 
+    /**
+     * Construct the update request with the provided parameters
+     * 
+     * @param typeDescriptor
+     * @param id
+     * @param storable
+     * @param insertOnly
+     *            if true the object is stored only if it doesn't exist (an existing object is left untouched)
+     */
+    public UpdateRequest(TypeDescriptor typeDescriptor, String id, Object storable, boolean insertOnly) {
+        this(typeDescriptor, id, storable);
+        this.insertOnly = insertOnly;
+    }
+
     /**
      * Get the object id
      * 
@@ -50,4 +65,22 @@ public class UpdateRequest extends Request {
         this.id = id;
     }
 
+    /**
+     * Get the insert only flag (if true the object is stored only if it doesn't exist)
+     * 
+     * @return
+     */
+    public boolean isInsertOnly() {
+        return insertOnly;
+    }
+
+    /**
+     * Set the insert only flag (if true the object is stored only if it doesn't exist)
+     * 
+     * @param insertOnly
+     */
+    public void setInsertOnly(boolean insertOnly) {
+        this.insertOnly = insertOnly;
+    }
+
 }
@@ -44,7 +44,15 @@ public enum ClientSettingsKey implements SettingKey {
     /**
      * Scroll timeout
      */
-    SCROLL_TIMEOUT("datastore.scroll.timeout");
+    SCROLL_TIMEOUT("datastore.scroll.timeout"),
+    /**
+     * Maximum number of requests in flight for each node (it bounds both the connections opened to each node and the asynchronous requests in flight)
+     */
+    REQUEST_IN_FLIGHT_MAX_PER_NODE("datastore.elasticsearch.request.inflight.max.per.node"),
+    /**
+     * Maximum time (in milliseconds) an asynchronous request waits for the in flight requests to go under the limit
+     */
+    REQUEST_IN_FLIGHT_ACQUIRE_TIMEOUT("datastore.elasticsearch.request.inflight.acquire.timeout");
 
 
     private String key;
@@ -49,15 +49,26 @@ public class EsRestClientProvider implements ClientProvider<RestClient> {
     private static final String PROVIDER_CANNOT_CLOSE_CLIENT_MSG = "Cannot close ElasticSearch rest client. Client is already stopped or not initialized!";
 
     private static final int DEFAULT_PORT = 9200;
+    private static final int DEFAULT_REQUEST_IN_FLIGHT_MAX_PER_NODE = 10;
 
     private static EsRestClientProvider instance;
 
     private RestClient client;
+    private int nodesCount;
 
     private static int getDefaultPort() {
         return ClientSettings.getInstance().getInt(ClientSettingsKey.ELASTICSEARCH_PORT, DEFAULT_PORT);
     }
 
+    /**
+     * Get the maximum number of requests in flight for each node
+     *
+     * @return
+     */
+    public static int getRequestInFlightMaxPerNode() {
+        return ClientSettings.getInstance().getInt(ClientSettingsKey.REQUEST_IN_FLIGHT_MAX_PER_NODE, DEFAULT_REQUEST_IN_FLIGHT_MAX_PER_NODE);
+    }
+
     /**
      * Get the {@link EsRestClientProvider} instance
      * 
@@ -193,6 +204,7 @@ public class EsRestClientProvider implements ClientProvider<RestClient> {
                 throw new ClientUnavailableException(PROVIDER_NO_NODE_CONFIGURED_MSG);
             }
             client = getClient(addresses);
+            nodesCount = addresses.size();
         } catch (Throwable t) {
             throw new ClientUnavailableException(PROVIDER_FAILED_TO_CONFIGURE_MSG, t);
         }
@@ -204,6 +216,15 @@ public class EsRestClientProvider implements ClientProvider<RestClient> {
         return client;
     }
 
+    /**
+     * Get the number of configured nodes
+     *
+     * @return
+     */
+    public int getNodesCount() {
+        return nodesCount;
+    }
+
     static RestClient getClient(List<InetSocketAddress> addresses) throws ClientUnavailableException {
         if (addresses == null || addresses.isEmpty()) {
             throw new ClientUnavailableException(PROVIDER_NO_NODE_CONFIGURED_MSG);
@@ -212,7 +233,14 @@ public class EsRestClientProvider implements ClientProvider<RestClient> {
         for (InetSocketAddress address : addresses) {
             hosts.add(new HttpHost(address.getAddress(), address.getHostName(), address.getPort(), "http"));
         }
-        RestClient client = RestClient.builder(hosts.toArray(new HttpHost[hosts.size()])).build();
+        // the connections to each node are bounded (the requests over the bound wait for a free connection)
+        final int maxConnectionsPerNode = getRequestInFlightMaxPerNode();
+        final int maxConnections = maxConnectionsPerNode * hosts.size();
+        RestClient client = RestClient.builder(hosts.toArray(new HttpHost[hosts.size()]))
+                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                        .setMaxConnPerRoute(maxConnectionsPerNode)
+                        .setMaxConnTotal(maxConnections))
+                .build();
         return client;
     }
 
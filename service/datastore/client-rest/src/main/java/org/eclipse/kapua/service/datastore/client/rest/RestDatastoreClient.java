@@ -11,21 +11,29 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.client.rest;
 
+import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_AGGREGATIONS;
 import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_SOURCE;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.client.entity.EntityBuilder;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.message.BasicHeader;
-import org.apache.http.nio.entity.NStringEntity;
-import org.apache.http.util.EntityUtils;
+import org.eclipse.kapua.service.datastore.client.AsyncDatastoreClient;
 import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
 import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.client.ClientProvider;
@@ -33,24 +41,34 @@ import org.eclipse.kapua.service.datastore.client.ClientUnavailableException;
 import org.eclipse.kapua.service.datastore.client.ClientUndefinedException;
 import org.eclipse.kapua.service.datastore.client.ModelContext;
 import org.eclipse.kapua.service.datastore.client.QueryConverter;
+import org.eclipse.kapua.service.datastore.client.ReusableByteArrayOutputStream;
 import org.eclipse.kapua.service.datastore.client.SchemaKeys;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsRequest;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsResponse;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
 import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream.ScrollPage;
 import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
 import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -59,11 +77,13 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Client implementation based on Elasticsearch rest client.<br>
- * The Elasticsearch client provider is instantiated as singleton.
+ * The Elasticsearch client provider is instantiated as singleton.<br>
+ * The asynchronous methods ({@link AsyncDatastoreClient}) are built on the rest client asynchronous requests and the requests in flight are bounded by
+ * {@link ClientSettingsKey#REQUEST_IN_FLIGHT_MAX_PER_NODE} for each configured node.
  *
  * @since 1.0
  */
-public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.client.DatastoreClient {
+public class RestDatastoreClient implements AsyncDatastoreClient {
 
     private static final Logger logger = LoggerFactory.getLogger(RestDatastoreClient.class);
 
@@ -75,28 +95,52 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
 
     private static final String KEY_DOC = "doc";
     private static final String KEY_DOC_AS_UPSERT = "doc_as_upsert";
+    private static final String KEY_UPSERT = "upsert";
     private static final String KEY_DOC_ID = "_id";
     private static final String KEY_DOC_INDEX = "_index";
     private static final String KEY_DOC_TYPE = "_type";
 
+    private static final String KEY_ERROR = "error";
+    private static final String KEY_INDEX = "index";
     private static final String KEY_ITEMS = "items";
+    private static final String KEY_REASON = "reason";
     private static final String KEY_RESULT = "result";
     private static final String KEY_STATUS = "status";
     private static final String KEY_UPDATE = "update";
 
+    private static final String KEY_SCROLL = "scroll";
+    private static final String KEY_SCROLL_ID = "scroll_id";
+    private static final String KEY_DOC_SCROLL_ID = "_scroll_id";
     private static final String KEY_HITS = "hits";
     private static final String KEY_TOTAL = "total";
 
+    private static final String KEY_FORMAT = "format";
+    private static final String KEY_BYTES = "bytes";
+    private static final String KEY_HEADERS = "h";
+    private static final String KEY_CAT_DOCS_COUNT = "docs.count";
+    private static final String KEY_CAT_STORE_SIZE = "store.size";
+    private static final String KEY_CAT_PRIMARY_SHARDS = "pri";
+    private static final String KEY_CAT_PRIMARY_SEGMENTS_COUNT = "pri.segments.count";
+    private static final String KEY_MAX_NUM_SEGMENTS = "max_num_segments";
+
     private static final ObjectMapper MAPPER;
 
+    // the searches may target (comma separated) concrete indexes not yet (or no longer) existing
+    private static final Map<String, String> SEARCH_PARAMS = Collections.singletonMap("ignore_unavailable", "true");
+
     private static final String MSG_EMPTY_ERROR = "Empty error message";
 
     private static final String CLIENT_HITS_MAX_VALUE_EXCEDEED = "Total hits exceeds integer max value";
     private static final String CLIENT_UNDEFINED_MSG = "Elasticsearch client must be not null";
+    private static final String CLIENT_UNEXPECTED_RESPONSE_MSG = "Unexpected search response";
+    private static final String CLIENT_IN_FLIGHT_LIMIT_MSG = "Too many requests in flight. Cannot send the request within %s ms";
+    private static final String CLIENT_IN_FLIGHT_INTERRUPTED_MSG = "Interrupted while waiting for the requests in flight";
     private static final String CLIENT_CLEANUP_ERROR_MSG = "Cannot cleanup rest datastore driver. Cannot close Elasticsearch client instance";
     private static RestDatastoreClient instance;
 
     private ClientProvider<RestClient> esClientProvider;
+    // bounds the asynchronous requests in flight (the synchronous ones are bounded by their callers)
+    private Semaphore inFlightRequests;
 
     private ModelContext modelContext;
     private QueryConverter queryConverter;
@@ -138,7 +182,9 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
                         cleanupClient(true);
                     }
                     logger.info("Starting Elasticsearch rest client...");
-                    esClientProvider = EsRestClientProvider.init();
+                    EsRestClientProvider restClientProvider = EsRestClientProvider.init();
+                    esClientProvider = restClientProvider;
+                    inFlightRequests = new Semaphore(Math.max(1, restClientProvider.getNodesCount()) * EsRestClientProvider.getRequestInFlightMaxPerNode());
                     logger.info("Starting Elasticsearch rest client... DONE");
                 }
             }
@@ -185,21 +231,14 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
     public InsertResponse insert(InsertRequest insertRequest) throws ClientException {
         checkClient();
         try {
-            Map<String, Object> storableMap = modelContext.marshal(insertRequest.getStorable());
-            logger.debug("Insert - converted object: '{}'", storableMap);
-            String json = MAPPER.writeValueAsString(storableMap);
-            HttpEntity entity = new NStringEntity(json, ContentType.APPLICATION_JSON);
+            ReusableByteArrayOutputStream buffer = writeInsert(insertRequest);
             Response insertResponse = esClientProvider.getClient().performRequest(
                     POST_ACTION,
                     getTypePath(insertRequest.getTypeDescriptor()),
-                    Collections.<String, String>emptyMap(), 
-                    entity);
+                    Collections.<String, String>emptyMap(),
+                    toEntity(buffer, "Insert"));
             if (isRequestSuccessful(insertResponse)) {
-                JsonNode responseNode = MAPPER.readTree(EntityUtils.toString(insertResponse.getEntity()));
-                String id = responseNode.get(KEY_DOC_ID).asText();
-                String index = responseNode.get(KEY_DOC_INDEX).asText();
-                String type = responseNode.get(KEY_DOC_TYPE).asText();
-                return new InsertResponse(id, new TypeDescriptor(index, type));
+                return readInsertResponse(insertResponse);
             }
             else {
                 throw new ClientException(ClientErrorCodes.ACTION_ERROR, insertResponse.getStatusLine().getReasonPhrase());
@@ -209,28 +248,72 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    @Override
+    public CompletableFuture<InsertResponse> insertAsync(InsertRequest insertRequest) {
+        HttpEntity entity;
+        try {
+            entity = toAsyncEntity(writeInsert(insertRequest), "Insert");
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                POST_ACTION,
+                getTypePath(insertRequest.getTypeDescriptor()),
+                Collections.<String, String>emptyMap(),
+                entity,
+                this::readInsertResponse,
+                null);
+    }
+
+    @Override
+    public BulkInsertResponse insert(BulkInsertRequest bulkInsertRequest) throws ClientException {
+        checkClient();
+        try {
+            ReusableByteArrayOutputStream buffer = writeBulkInsert(bulkInsertRequest);
+            Response insertResponse = esClientProvider.getClient().performRequest(
+                    POST_ACTION,
+                    getBulkPath(),
+                    Collections.<String, String>emptyMap(),
+                    toEntity(buffer, "Bulk insert"));
+            if (isRequestSuccessful(insertResponse)) {
+                return readBulkInsertResponse(insertResponse);
+            } else {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, insertResponse.getStatusLine().getReasonPhrase());
+            }
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<BulkInsertResponse> insertAsync(BulkInsertRequest bulkInsertRequest) {
+        HttpEntity entity;
+        try {
+            entity = toAsyncEntity(writeBulkInsert(bulkInsertRequest), "Bulk insert");
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                POST_ACTION,
+                getBulkPath(),
+                Collections.<String, String>emptyMap(),
+                entity,
+                this::readBulkInsertResponse,
+                null);
+    }
+
     @Override
     public UpdateResponse upsert(UpdateRequest updateRequest) throws ClientException {
         checkClient();
         try {
-            Map<String, Object> storableMap = modelContext.marshal(updateRequest.getStorable());
-            Map<String, Object> updateRequestMap = new HashMap<>();
-            updateRequestMap.put(KEY_DOC, storableMap);
-            updateRequestMap.put(KEY_DOC_AS_UPSERT, true);
-            logger.debug("Upsert - converted object: '{}'", updateRequestMap);
-            String json = MAPPER.writeValueAsString(updateRequestMap);
-            HttpEntity entity = new NStringEntity(json, ContentType.APPLICATION_JSON);
+            ReusableByteArrayOutputStream buffer = writeUpsert(updateRequest);
             Response updateResponse = esClientProvider.getClient().performRequest(
                     POST_ACTION,
                     getUpsertPath(updateRequest.getTypeDescriptor(), updateRequest.getId()),
                     Collections.<String, String>emptyMap(),
-                    entity);
+                    toEntity(buffer, "Upsert"));
             if (isRequestSuccessful(updateResponse)) {
-                JsonNode responseNode = MAPPER.readTree(EntityUtils.toString(updateResponse.getEntity()));
-                String id = responseNode.get(KEY_DOC_ID).asText();
-                String index = responseNode.get(KEY_DOC_INDEX).asText();
-                String type = responseNode.get(KEY_DOC_TYPE).asText();
-                return new UpdateResponse(id, new TypeDescriptor(index, type));
+                return readUpdateResponse(updateResponse);
             } else {
                 throw new ClientException(ClientErrorCodes.ACTION_ERROR, updateResponse.getStatusLine().getReasonPhrase());
             }
@@ -239,63 +322,37 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    @Override
+    public CompletableFuture<UpdateResponse> upsertAsync(UpdateRequest updateRequest) {
+        HttpEntity entity;
+        String path;
+        try {
+            entity = toAsyncEntity(writeUpsert(updateRequest), "Upsert");
+            path = getUpsertPath(updateRequest.getTypeDescriptor(), updateRequest.getId());
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                POST_ACTION,
+                path,
+                Collections.<String, String>emptyMap(),
+                entity,
+                this::readUpdateResponse,
+                null);
+    }
+
     @Override
     public BulkUpdateResponse upsert(BulkUpdateRequest bulkUpdateRequest) throws ClientException {
         checkClient();
         try {
-            StringBuilder bulkOperation = new StringBuilder();
-            for (UpdateRequest upsertRequest : bulkUpdateRequest.getRequest()) {
-                Map<String, Object> storableMap = modelContext.marshal(upsertRequest.getStorable());
-                bulkOperation.append("{ \"update\": {\"_id\": \"")
-                        .append(upsertRequest.getId())
-                        .append("\", \"_type\": \"")
-                        .append(upsertRequest.getTypeDescriptor().getType())
-                        .append("\", \"_index\": \"")
-                        .append(upsertRequest.getTypeDescriptor().getIndex())
-                        .append("\"}\n");
-
-                bulkOperation.append("{ \"doc\": ")
-                        .append(MAPPER.writeValueAsString(storableMap))
-                        .append(", \"doc_as_upsert\": true }\n");
-            }
+            ReusableByteArrayOutputStream buffer = writeBulkUpsert(bulkUpdateRequest);
             Response updateResponse = esClientProvider.getClient().performRequest(
                     POST_ACTION,
                     getBulkPath(),
                     Collections.<String, String>emptyMap(),
-                    EntityBuilder.create().setText(bulkOperation.toString()).build(),
-                    new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
+                    toEntity(buffer, "Bulk upsert"));
             if (isRequestSuccessful(updateResponse)) {
-                BulkUpdateResponse bulkResponse = new BulkUpdateResponse();
-                JsonNode responseNode = MAPPER.readTree(EntityUtils.toString(updateResponse.getEntity()));
-                ArrayNode items = (ArrayNode) responseNode.get(KEY_ITEMS);
-                for (JsonNode item : items) {
-                    JsonNode jsonNode = item.get(KEY_UPDATE);
-                    if (jsonNode != null) {
-                        JsonNode idNode = jsonNode.get(KEY_DOC_ID);
-                        String metricId = null;
-                        if (idNode != null) {
-                            metricId = idNode.asText();
-                        }
-                        String indexName = jsonNode.get(KEY_DOC_INDEX).asText();
-                        String typeName = jsonNode.get(KEY_DOC_TYPE).asText();
-                        int responseCode = jsonNode.get(KEY_STATUS).asInt();
-                        if (!isRequestSuccessful(responseCode)) {
-                            JsonNode failureNode = jsonNode.get(KEY_RESULT);
-                            String failureMessage = MSG_EMPTY_ERROR;
-                            if (failureNode != null) {
-                                failureMessage = failureNode.asText();
-                            }
-                            bulkResponse.add(new UpdateResponse(metricId, new TypeDescriptor(indexName, typeName), failureMessage));
-                            logger.info("Upsert failed [{}, {}, {}]", new Object[] { indexName, typeName, failureMessage });
-                            continue;
-                        }
-                        bulkResponse.add(new UpdateResponse(metricId, new TypeDescriptor(indexName, typeName)));
-                        logger.debug("Upsert on channel metric succesfully executed [{}.{}, {}]", new Object[] { indexName, typeName, metricId });
-                    } else {
-                        throw new ClientException(ClientErrorCodes.ACTION_ERROR, "Unexpected action response");
-                    }
-                }
-                return bulkResponse;
+                return readBulkUpdateResponse(updateResponse);
             } else {
                 throw new ClientException(ClientErrorCodes.ACTION_ERROR, updateResponse.getStatusLine().getReasonPhrase());
             }
@@ -304,6 +361,164 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    @Override
+    public CompletableFuture<BulkUpdateResponse> upsertAsync(BulkUpdateRequest bulkUpdateRequest) {
+        HttpEntity entity;
+        try {
+            entity = toAsyncEntity(writeBulkUpsert(bulkUpdateRequest), "Bulk upsert");
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                POST_ACTION,
+                getBulkPath(),
+                Collections.<String, String>emptyMap(),
+                entity,
+                this::readBulkUpdateResponse,
+                null);
+    }
+
+    private ReusableByteArrayOutputStream writeInsert(InsertRequest insertRequest) throws ClientException, IOException {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer)) {
+            modelContext.marshal(insertRequest.getStorable(), generator);
+        }
+        return buffer;
+    }
+
+    private ReusableByteArrayOutputStream writeBulkInsert(BulkInsertRequest bulkInsertRequest) throws ClientException, IOException {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = createBulkGenerator(buffer)) {
+            for (InsertRequest insertRequest : bulkInsertRequest.getRequest()) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart(KEY_INDEX);
+                generator.writeStringField(KEY_DOC_TYPE, insertRequest.getTypeDescriptor().getType());
+                generator.writeStringField(KEY_DOC_INDEX, insertRequest.getTypeDescriptor().getIndex());
+                generator.writeEndObject();
+                generator.writeEndObject();
+                writeBulkLineEnd(generator, buffer);
+
+                modelContext.marshal(insertRequest.getStorable(), generator);
+                writeBulkLineEnd(generator, buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private ReusableByteArrayOutputStream writeUpsert(UpdateRequest updateRequest) throws ClientException, IOException {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer)) {
+            writeUpsertDocument(updateRequest, generator);
+        }
+        return buffer;
+    }
+
+    private ReusableByteArrayOutputStream writeBulkUpsert(BulkUpdateRequest bulkUpdateRequest) throws ClientException, IOException {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = createBulkGenerator(buffer)) {
+            for (UpdateRequest upsertRequest : bulkUpdateRequest.getRequest()) {
+                generator.writeStartObject();
+                generator.writeObjectFieldStart(KEY_UPDATE);
+                generator.writeStringField(KEY_DOC_ID, upsertRequest.getId());
+                generator.writeStringField(KEY_DOC_TYPE, upsertRequest.getTypeDescriptor().getType());
+                generator.writeStringField(KEY_DOC_INDEX, upsertRequest.getTypeDescriptor().getIndex());
+                generator.writeEndObject();
+                generator.writeEndObject();
+                writeBulkLineEnd(generator, buffer);
+
+                writeUpsertDocument(upsertRequest, generator);
+                writeBulkLineEnd(generator, buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private InsertResponse readInsertResponse(Response insertResponse) throws IOException {
+        JsonNode responseNode = readTree(insertResponse);
+        String id = responseNode.get(KEY_DOC_ID).asText();
+        String index = responseNode.get(KEY_DOC_INDEX).asText();
+        String type = responseNode.get(KEY_DOC_TYPE).asText();
+        return new InsertResponse(id, new TypeDescriptor(index, type));
+    }
+
+    private BulkInsertResponse readBulkInsertResponse(Response insertResponse) throws ClientException, IOException {
+        BulkInsertResponse bulkResponse = new BulkInsertResponse();
+        JsonNode responseNode = readTree(insertResponse);
+        ArrayNode items = (ArrayNode) responseNode.get(KEY_ITEMS);
+        for (JsonNode item : items) {
+            JsonNode jsonNode = item.get(KEY_INDEX);
+            if (jsonNode != null) {
+                JsonNode idNode = jsonNode.get(KEY_DOC_ID);
+                String id = null;
+                if (idNode != null) {
+                    id = idNode.asText();
+                }
+                String indexName = jsonNode.get(KEY_DOC_INDEX).asText();
+                String typeName = jsonNode.get(KEY_DOC_TYPE).asText();
+                int responseCode = jsonNode.get(KEY_STATUS).asInt();
+                if (!isRequestSuccessful(responseCode)) {
+                    String failureMessage = MSG_EMPTY_ERROR;
+                    JsonNode failureNode = jsonNode.path(KEY_ERROR).get(KEY_REASON);
+                    if (failureNode != null) {
+                        failureMessage = failureNode.asText();
+                    }
+                    bulkResponse.add(new InsertResponse(id, new TypeDescriptor(indexName, typeName), failureMessage));
+                    logger.info("Insert failed [{}, {}, {}]", new Object[] { indexName, typeName, failureMessage });
+                    continue;
+                }
+                InsertResponse response = new InsertResponse(id, new TypeDescriptor(indexName, typeName));
+                response.setResult(true);
+                bulkResponse.add(response);
+                logger.debug("Insert succesfully executed [{}.{}, {}]", new Object[] { indexName, typeName, id });
+            } else {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, "Unexpected action response");
+            }
+        }
+        return bulkResponse;
+    }
+
+    private UpdateResponse readUpdateResponse(Response updateResponse) throws IOException {
+        JsonNode responseNode = readTree(updateResponse);
+        String id = responseNode.get(KEY_DOC_ID).asText();
+        String index = responseNode.get(KEY_DOC_INDEX).asText();
+        String type = responseNode.get(KEY_DOC_TYPE).asText();
+        return new UpdateResponse(id, new TypeDescriptor(index, type));
+    }
+
+    private BulkUpdateResponse readBulkUpdateResponse(Response updateResponse) throws ClientException, IOException {
+        BulkUpdateResponse bulkResponse = new BulkUpdateResponse();
+        JsonNode responseNode = readTree(updateResponse);
+        ArrayNode items = (ArrayNode) responseNode.get(KEY_ITEMS);
+        for (JsonNode item : items) {
+            JsonNode jsonNode = item.get(KEY_UPDATE);
+            if (jsonNode != null) {
+                JsonNode idNode = jsonNode.get(KEY_DOC_ID);
+                String metricId = null;
+                if (idNode != null) {
+                    metricId = idNode.asText();
+                }
+                String indexName = jsonNode.get(KEY_DOC_INDEX).asText();
+                String typeName = jsonNode.get(KEY_DOC_TYPE).asText();
+                int responseCode = jsonNode.get(KEY_STATUS).asInt();
+                if (!isRequestSuccessful(responseCode)) {
+                    JsonNode failureNode = jsonNode.get(KEY_RESULT);
+                    String failureMessage = MSG_EMPTY_ERROR;
+                    if (failureNode != null) {
+                        failureMessage = failureNode.asText();
+                    }
+                    bulkResponse.add(new UpdateResponse(metricId, new TypeDescriptor(indexName, typeName), failureMessage));
+                    logger.info("Upsert failed [{}, {}, {}]", new Object[] { indexName, typeName, failureMessage });
+                    continue;
+                }
+                bulkResponse.add(new UpdateResponse(metricId, new TypeDescriptor(indexName, typeName)));
+                logger.debug("Upsert on channel metric succesfully executed [{}.{}, {}]", new Object[] { indexName, typeName, metricId });
+            } else {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, "Unexpected action response");
+            }
+        }
+        return bulkResponse;
+    }
+
     @Override
     public <T> T find(TypeDescriptor typeDescriptor, Object query, Class<T> clazz) throws ClientException {
         checkClient();
@@ -321,49 +536,109 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         JsonNode queryMap = queryConverter.convertQuery(query);
         Object queryFetchStyle = queryConverter.getFetchStyle(query);
         logger.debug("Query - converted query: '{}'", queryMap);
-        long totalCount = 0;
         Response queryResponse = null;
-        ArrayNode resultsNode = null;
         try {
             queryResponse = esClientProvider.getClient().performRequest(
                     GET_ACTION,
                     getSearchPath(typeDescriptor),
-                    Collections.<String, String>emptyMap(),
+                    SEARCH_PARAMS,
                     EntityBuilder.create().setText(MAPPER.writeValueAsString(queryMap)).build(),
                     new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
             if (isRequestSuccessful(queryResponse)) {
-                JsonNode responseNode = MAPPER.readTree(EntityUtils.toString(queryResponse.getEntity()));
-                JsonNode hitsNode = responseNode.get(KEY_HITS);
-                totalCount = hitsNode.get(KEY_TOTAL).asInt();
-                if (totalCount > Integer.MAX_VALUE) {
-                    throw new ClientException(ClientErrorCodes.ACTION_ERROR, "Total hits exceeds integer max value");
-                }
-                resultsNode = ((ArrayNode) hitsNode.get(KEY_HITS));
+                return readResultList(queryResponse, clazz, queryFetchStyle);
             } else {
                 throw new ClientException(ClientErrorCodes.ACTION_ERROR, queryResponse.getStatusLine().getReasonPhrase());
             }
         } catch (ResponseException re) {
             handleResponseException(re, typeDescriptor.getIndex(), "QUERY");
-        } catch (JsonProcessingException e) {
-            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
         } catch (IOException e) {
             throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
         }
-        ResultList<T> resultList = new ResultList<>(totalCount);
-        if (resultsNode != null && resultsNode.size() > 0) {
-            for (JsonNode result : resultsNode) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> object = MAPPER.convertValue(result.get(KEY_SOURCE), Map.class);
-                String id = result.get(KEY_DOC_ID).asText();
-                String index = result.get(KEY_DOC_INDEX).asText();
-                String type = result.get(KEY_DOC_TYPE).asText();
-                object.put(ModelContext.TYPE_DESCRIPTOR_KEY, new TypeDescriptor(index, type));
-                object.put(ModelContext.DATASTORE_ID_KEY, id);
-                object.put(QueryConverter.QUERY_FETCH_STYLE_KEY, queryFetchStyle);
-                resultList.add(modelContext.unmarshal(clazz, object));
+        return new ResultList<>(0);
+    }
+
+    @Override
+    public <T> CompletableFuture<ResultList<T>> queryAsync(TypeDescriptor typeDescriptor, Object query, Class<T> clazz) {
+        HttpEntity entity;
+        Object queryFetchStyle;
+        try {
+            JsonNode queryMap = queryConverter.convertQuery(query);
+            queryFetchStyle = queryConverter.getFetchStyle(query);
+            logger.debug("Query - converted query: '{}'", queryMap);
+            entity = new ByteArrayEntity(MAPPER.writeValueAsBytes(queryMap), ContentType.APPLICATION_JSON);
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                GET_ACTION,
+                getSearchPath(typeDescriptor),
+                SEARCH_PARAMS,
+                entity,
+                response -> readResultList(response, clazz, queryFetchStyle),
+                new MissingResourceHandler<>(typeDescriptor.getIndex(), "QUERY", new ResultList<>(0)));
+    }
+
+    @Override
+    public <T> ResultStream<T> stream(TypeDescriptor typeDescriptor, Object query, Class<T> clazz, int batchSize) throws ClientException {
+        checkClient();
+        JsonNode queryMap = ScrollResultStream.toScrollQuery(queryConverter.convertQuery(query), batchSize);
+        Object queryFetchStyle = queryConverter.getFetchStyle(query);
+        logger.debug("Stream - converted query: '{}'", queryMap);
+        Map<String, String> scrollParams = new HashMap<>(SEARCH_PARAMS);
+        scrollParams.put(KEY_SCROLL, getScrollTimeout());
+        ScrollPage<T> firstPage = performScrollRequest(GET_ACTION, getSearchPath(typeDescriptor), scrollParams, queryMap, typeDescriptor.getIndex(), clazz, queryFetchStyle);
+        return new ScrollResultStream<T>(firstPage) {
+
+            @Override
+            protected ScrollPage<T> fetchPage(String scrollId) throws ClientException {
+                checkClient();
+                ObjectNode scrollNode = MAPPER.createObjectNode();
+                scrollNode.put(KEY_SCROLL, getScrollTimeout());
+                scrollNode.put(KEY_SCROLL_ID, scrollId);
+                return performScrollRequest(POST_ACTION, getScrollPath(), Collections.<String, String>emptyMap(), scrollNode, typeDescriptor.getIndex(), clazz, queryFetchStyle);
+            }
+
+            @Override
+            protected void clearScroll(String scrollId) throws ClientException {
+                checkClient();
+                ObjectNode scrollNode = MAPPER.createObjectNode();
+                scrollNode.putArray(KEY_SCROLL_ID).add(scrollId);
+                try {
+                    esClientProvider.getClient().performRequest(
+                            DELETE_ACTION,
+                            getScrollPath(),
+                            Collections.<String, String>emptyMap(),
+                            EntityBuilder.create().setText(MAPPER.writeValueAsString(scrollNode)).build(),
+                            new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
+                } catch (ResponseException re) {
+                    handleResponseException(re, typeDescriptor.getIndex(), "CLEAR SCROLL");
+                } catch (IOException e) {
+                    throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+                }
+            }
+        };
+    }
+
+    private <T> ScrollPage<T> performScrollRequest(String method, String path, Map<String, String> params, JsonNode requestNode, String index, Class<T> clazz, Object queryFetchStyle)
+            throws ClientException {
+        try {
+            Response scrollResponse = esClientProvider.getClient().performRequest(
+                    method,
+                    path,
+                    params,
+                    EntityBuilder.create().setText(MAPPER.writeValueAsString(requestNode)).build(),
+                    new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
+            if (!isRequestSuccessful(scrollResponse)) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, scrollResponse.getStatusLine().getReasonPhrase());
             }
+            SearchHits<T> searchHits = readSearchHits(scrollResponse, clazz, queryFetchStyle);
+            return new ScrollPage<>(searchHits.scrollId, searchHits.totalCount, searchHits.results);
+        } catch (ResponseException re) {
+            handleResponseException(re, index, "SCROLL");
+            return new ScrollPage<>(null, 0, Collections.<T>emptyList());
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
         }
-        return resultList;
     }
 
     @Override
@@ -377,16 +652,11 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
             queryResponse = esClientProvider.getClient().performRequest(
                     GET_ACTION,
                     getSearchPath(typeDescriptor),
-                    Collections.<String, String>emptyMap(),
+                    SEARCH_PARAMS,
                     EntityBuilder.create().setText(MAPPER.writeValueAsString(queryMap)).build(),
                     new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
             if (isRequestSuccessful(queryResponse)) {
-                JsonNode responseNode = MAPPER.readTree(EntityUtils.toString(queryResponse.getEntity()));
-                JsonNode hitsNode = responseNode.get(KEY_HITS);
-                totalCount = hitsNode.get(KEY_TOTAL).asInt();
-                if (totalCount > Integer.MAX_VALUE) {
-                    throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_HITS_MAX_VALUE_EXCEDEED);
-                }
+                totalCount = readCount(queryResponse);
             } else {
                 throw new ClientException(ClientErrorCodes.ACTION_ERROR, queryResponse.getStatusLine().getReasonPhrase());
             }
@@ -398,6 +668,53 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         return totalCount;
     }
 
+    @Override
+    public CompletableFuture<Long> countAsync(TypeDescriptor typeDescriptor, Object query) {
+        HttpEntity entity;
+        try {
+            JsonNode queryMap = queryConverter.convertQuery(query);
+            logger.debug("Query - converted query: '{}'", queryMap);
+            entity = new ByteArrayEntity(MAPPER.writeValueAsBytes(queryMap), ContentType.APPLICATION_JSON);
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        return performRequestAsync(
+                GET_ACTION,
+                getSearchPath(typeDescriptor),
+                SEARCH_PARAMS,
+                entity,
+                this::readCount,
+                new MissingResourceHandler<>(typeDescriptor.getIndex(), "COUNT", 0L));
+    }
+
+    @Override
+    public JsonNode aggregate(TypeDescriptor typeDescriptor, Object query) throws ClientException {
+        checkClient();
+        JsonNode queryMap = queryConverter.convertQuery(query);
+        logger.debug("Query - converted query: '{}'", queryMap);
+        JsonNode aggregationsNode = null;
+        Response queryResponse = null;
+        try {
+            queryResponse = esClientProvider.getClient().performRequest(
+                    GET_ACTION,
+                    getSearchPath(typeDescriptor),
+                    SEARCH_PARAMS,
+                    EntityBuilder.create().setText(MAPPER.writeValueAsString(queryMap)).build(),
+                    new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
+            if (isRequestSuccessful(queryResponse)) {
+                JsonNode responseNode = readTree(queryResponse);
+                aggregationsNode = responseNode.get(KEY_AGGREGATIONS);
+            } else {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, queryResponse.getStatusLine().getReasonPhrase());
+            }
+        } catch (ResponseException re) {
+            handleResponseException(re, typeDescriptor.getIndex(), "AGGREGATE");
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+        return aggregationsNode;
+    }
+
     @Override
     public void delete(TypeDescriptor typeDescriptor, String id) throws ClientException {
         logger.debug("Delete - id: '{}'", id);
@@ -429,7 +746,7 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
             deleteResponse = esClientProvider.getClient().performRequest(
                     POST_ACTION,
                     getDeleteByQueryPath(typeDescriptor),
-                    Collections.<String, String>emptyMap(),
+                    SEARCH_PARAMS,
                     EntityBuilder.create().setText(MAPPER.writeValueAsString(deleteRequestNode)).build(),
                     new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()));
             if (!isRequestSuccessful(deleteResponse)) {
@@ -484,6 +801,80 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    @Override
+    public List<IndexInfo> getIndexes(String indexPattern) throws ClientException {
+        logger.debug("Get indexes - index pattern: '{}'", indexPattern);
+        checkClient();
+        List<IndexInfo> indexes = new ArrayList<>();
+        try {
+            Map<String, String> catParams = new HashMap<>();
+            catParams.put(KEY_FORMAT, "json");
+            catParams.put(KEY_BYTES, "b");
+            catParams.put(KEY_HEADERS, String.format("%s,%s,%s,%s,%s", KEY_INDEX, KEY_CAT_DOCS_COUNT, KEY_CAT_STORE_SIZE, KEY_CAT_PRIMARY_SHARDS, KEY_CAT_PRIMARY_SEGMENTS_COUNT));
+            Response catResponse = esClientProvider.getClient().performRequest(
+                    GET_ACTION,
+                    getCatIndicesPath(indexPattern),
+                    catParams);
+            if (!isRequestSuccessful(catResponse)) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, catResponse.getStatusLine().getReasonPhrase());
+            }
+            JsonNode catNode = readTree(catResponse);
+
+            for (JsonNode indexNode : catNode) {
+                // the closed indexes don't report the counters
+                indexes.add(new IndexInfo(indexNode.path(KEY_INDEX).asText(),
+                        indexNode.path(KEY_CAT_DOCS_COUNT).asLong(0),
+                        indexNode.path(KEY_CAT_STORE_SIZE).asLong(0),
+                        indexNode.path(KEY_CAT_PRIMARY_SHARDS).asInt(0),
+                        indexNode.path(KEY_CAT_PRIMARY_SEGMENTS_COUNT).asLong(0)));
+            }
+        } catch (ResponseException re) {
+            handleResponseException(re, indexPattern, "GET INDEXES");
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+        return indexes;
+    }
+
+    @Override
+    public void forceMerge(String indexName, int maxSegments) throws ClientException {
+        logger.debug("Force merge - index: '{}', max segments: {}", indexName, maxSegments);
+        checkClient();
+        Response forceMergeResponse = null;
+        try {
+            forceMergeResponse = esClientProvider.getClient().performRequest(
+                    POST_ACTION,
+                    getForceMergePath(indexName),
+                    Collections.singletonMap(KEY_MAX_NUM_SEGMENTS, Integer.toString(maxSegments)));
+            if (!isRequestSuccessful(forceMergeResponse)) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, forceMergeResponse.getStatusLine().getReasonPhrase());
+            }
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public void deleteIndexes(List<String> indexNames) throws ClientException {
+        logger.debug("Delete indexes - indexes: '{}'", indexNames);
+        checkClient();
+        if (indexNames.isEmpty()) {
+            return;
+        }
+        Response deleteIndexResponse = null;
+        try {
+            deleteIndexResponse = esClientProvider.getClient().performRequest(
+                    DELETE_ACTION,
+                    getIndexPath(String.join(",", indexNames)),
+                    Collections.<String, String>emptyMap());
+            if (!isRequestSuccessful(deleteIndexResponse)) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, deleteIndexResponse.getStatusLine().getReasonPhrase());
+            }
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+    }
+
     @Override
     public boolean isMappingExists(TypeDescriptor typeDescriptor) throws ClientException {
         logger.debug("Mapping exists - mapping name: '{} - {}'", typeDescriptor.getIndex(), typeDescriptor.getType());
@@ -582,6 +973,240 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    private void writeUpsertDocument(UpdateRequest updateRequest, JsonGenerator generator) throws ClientException, IOException {
+        generator.writeStartObject();
+        if (updateRequest.isInsertOnly()) {
+            // the empty partial document leaves the existing object untouched (noop update)
+            generator.writeObjectFieldStart(KEY_DOC);
+            generator.writeEndObject();
+            generator.writeFieldName(KEY_UPSERT);
+            modelContext.marshal(updateRequest.getStorable(), generator);
+        } else {
+            generator.writeFieldName(KEY_DOC);
+            modelContext.marshal(updateRequest.getStorable(), generator);
+            generator.writeBooleanField(KEY_DOC_AS_UPSERT, true);
+        }
+        generator.writeEndObject();
+    }
+
+    private JsonGenerator createBulkGenerator(ReusableByteArrayOutputStream buffer) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer);
+        // the bulk lines are separated by new lines
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private void writeBulkLineEnd(JsonGenerator generator, ReusableByteArrayOutputStream buffer) throws IOException {
+        generator.flush();
+        buffer.write('\n');
+    }
+
+    private HttpEntity toEntity(ReusableByteArrayOutputStream buffer, String action) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} - converted object: '{}'", action, new String(buffer.getBuffer(), 0, buffer.size(), StandardCharsets.UTF_8));
+        }
+        return new ByteArrayEntity(buffer.getBuffer(), 0, buffer.size(), ContentType.APPLICATION_JSON);
+    }
+
+    private HttpEntity toAsyncEntity(ReusableByteArrayOutputStream buffer, String action) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} - converted object: '{}'", action, new String(buffer.getBuffer(), 0, buffer.size(), StandardCharsets.UTF_8));
+        }
+        // the thread buffer is reused by the next request of the same thread, so the request in flight keeps a copy
+        return new ByteArrayEntity(buffer.toByteArray(), ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * Perform the request without waiting for the response.<br>
+     * The caller is blocked only if the requests in flight limit is reached (up to the configured timeout).
+     *
+     * @param method
+     * @param endpoint
+     * @param params
+     * @param entity
+     * @param reader
+     *            the successful response reader (it's called by the client I/O thread)
+     * @param missingResourceHandler
+     *            the not found and bad request responses handler (if null these responses fail the request)
+     * @return
+     */
+    private <R> CompletableFuture<R> performRequestAsync(String method, String endpoint, Map<String, String> params, HttpEntity entity, ResponseReader<R> reader,
+            MissingResourceHandler<R> missingResourceHandler) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        long acquireTimeout = ClientSettings.getInstance().getLong(ClientSettingsKey.REQUEST_IN_FLIGHT_ACQUIRE_TIMEOUT, 10000);
+        try {
+            checkClient();
+            if (!inFlightRequests.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                result.completeExceptionally(new ClientException(ClientErrorCodes.ACTION_ERROR, String.format(CLIENT_IN_FLIGHT_LIMIT_MSG, acquireTimeout)));
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new ClientException(ClientErrorCodes.ACTION_ERROR, e, CLIENT_IN_FLIGHT_INTERRUPTED_MSG));
+            return result;
+        } catch (ClientException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        try {
+            esClientProvider.getClient().performRequestAsync(method, endpoint, params, entity, new ResponseListener() {
+
+                @Override
+                public void onSuccess(Response response) {
+                    inFlightRequests.release();
+                    try {
+                        if (isRequestSuccessful(response)) {
+                            result.complete(reader.read(response));
+                        } else {
+                            result.completeExceptionally(new ClientException(ClientErrorCodes.ACTION_ERROR, response.getStatusLine().getReasonPhrase()));
+                        }
+                    } catch (Throwable t) {
+                        result.completeExceptionally(toClientException(t));
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    inFlightRequests.release();
+                    if (missingResourceHandler != null && exception instanceof ResponseException) {
+                        try {
+                            result.complete(missingResourceHandler.handle((ResponseException) exception));
+                        } catch (ClientException e) {
+                            result.completeExceptionally(e);
+                        }
+                    } else {
+                        result.completeExceptionally(toClientException(exception));
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            inFlightRequests.release();
+            result.completeExceptionally(toClientException(t));
+        }
+        return result;
+    }
+
+    private static <R> CompletableFuture<R> failedFuture(Throwable t) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        result.completeExceptionally(toClientException(t));
+        return result;
+    }
+
+    private static ClientException toClientException(Throwable t) {
+        if (t instanceof ClientException) {
+            return (ClientException) t;
+        }
+        return new ClientException(ClientErrorCodes.ACTION_ERROR, t, t.getLocalizedMessage());
+    }
+
+    private JsonNode readTree(Response response) throws IOException {
+        try (InputStream content = response.getEntity().getContent()) {
+            return MAPPER.readTree(content);
+        }
+    }
+
+    /**
+     * Read the search (or scroll) response hits directly from the response content (the hits sources are converted by the model context without intermediate
+     * objects)
+     *
+     * @param response
+     * @param clazz
+     * @param queryFetchStyle
+     * @return
+     * @throws ClientException
+     * @throws IOException
+     */
+    private <T> SearchHits<T> readSearchHits(Response response, Class<T> clazz, Object queryFetchStyle) throws ClientException, IOException {
+        SearchHits<T> searchHits = new SearchHits<>();
+        try (JsonParser parser = MAPPER.getFactory().createParser(response.getEntity().getContent())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_UNEXPECTED_RESPONSE_MSG);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (KEY_DOC_SCROLL_ID.equals(fieldName)) {
+                    searchHits.scrollId = parser.getValueAsString();
+                } else if (KEY_HITS.equals(fieldName) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String hitsFieldName = parser.getCurrentName();
+                        token = parser.nextToken();
+                        if (KEY_TOTAL.equals(hitsFieldName)) {
+                            searchHits.totalCount = parser.getValueAsLong();
+                        } else if (KEY_HITS.equals(hitsFieldName) && token == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                searchHits.results.add(readSearchHit(parser, clazz, queryFetchStyle));
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return searchHits;
+    }
+
+    private <T> T readSearchHit(JsonParser parser, Class<T> clazz, Object queryFetchStyle) throws ClientException, IOException {
+        String id = null;
+        T result = null;
+        JsonNode sourceNode = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (KEY_DOC_ID.equals(fieldName)) {
+                id = parser.getText();
+            } else if (KEY_SOURCE.equals(fieldName)) {
+                if (id != null) {
+                    result = modelContext.unmarshal(clazz, id, queryFetchStyle, parser);
+                } else {
+                    // the source precedes the id (it's not the Elasticsearch fields order), so it's converted once the id is read
+                    sourceNode = parser.readValueAsTree();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (sourceNode != null) {
+            try (JsonParser sourceParser = MAPPER.treeAsTokens(sourceNode)) {
+                sourceParser.nextToken();
+                result = modelContext.unmarshal(clazz, id, queryFetchStyle, sourceParser);
+            }
+        }
+        if (result == null) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_UNEXPECTED_RESPONSE_MSG);
+        }
+        return result;
+    }
+
+    private <T> ResultList<T> readResultList(Response response, Class<T> clazz, Object queryFetchStyle) throws ClientException, IOException {
+        SearchHits<T> searchHits = readSearchHits(response, clazz, queryFetchStyle);
+        if (searchHits.totalCount > Integer.MAX_VALUE) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_HITS_MAX_VALUE_EXCEDEED);
+        }
+        ResultList<T> resultList = new ResultList<>(searchHits.totalCount);
+        for (T result : searchHits.results) {
+            resultList.add(result);
+        }
+        return resultList;
+    }
+
+    private long readCount(Response response) throws ClientException, IOException {
+        JsonNode responseNode = readTree(response);
+        JsonNode hitsNode = responseNode.get(KEY_HITS);
+        long totalCount = hitsNode.get(KEY_TOTAL).asInt();
+        if (totalCount > Integer.MAX_VALUE) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_HITS_MAX_VALUE_EXCEDEED);
+        }
+        return totalCount;
+    }
+
+    private String getScrollTimeout() {
+        return ClientSettings.getInstance().getLong(ClientSettingsKey.SCROLL_TIMEOUT, 60000) + "ms";
+    }
+
     private boolean isRequestSuccessful(Response response) {
         return isRequestSuccessful(response.getStatusLine().getStatusCode());
     }
@@ -598,6 +1223,14 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         return String.format("/%s", index);
     }
 
+    private String getCatIndicesPath(String indexPattern) {
+        return String.format("/_cat/indices/%s", indexPattern);
+    }
+
+    private String getForceMergePath(String index) {
+        return String.format("/%s/_forcemerge", index);
+    }
+
     private String getBulkPath() {
         return String.format("/_bulk");
     }
@@ -622,6 +1255,10 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         return String.format("/%s/%s/%s/_update", typeDescriptor.getIndex(), typeDescriptor.getType(), URLEncoder.encode(id, "UTF-8"));
     }
 
+    private String getScrollPath() {
+        return "/_search/scroll";
+    }
+
     private String getSearchPath(TypeDescriptor typeDescriptor) {
         return String.format("/%s/%s/_search", typeDescriptor.getIndex(), typeDescriptor.getType());
     }
@@ -632,4 +1269,53 @@ public class RestDatastoreClient implements org.eclipse.kapua.service.datastore.
         }
     }
 
+    /**
+     * Successful response reader
+     *
+     * @param <R>
+     *            result type
+     */
+    @FunctionalInterface
+    private interface ResponseReader<R> {
+
+        R read(Response response) throws ClientException, IOException;
+    }
+
+    /**
+     * Not found and bad request responses handler (these responses are logged and the provided result is returned, as done by the synchronous methods)
+     *
+     * @param <R>
+     *            result type
+     */
+    private class MissingResourceHandler<R> {
+
+        private final String index;
+        private final String action;
+        private final R result;
+
+        private MissingResourceHandler(String index, String action, R result) {
+            this.index = index;
+            this.action = action;
+            this.result = result;
+        }
+
+        private R handle(ResponseException re) throws ClientException {
+            handleResponseException(re, index, action);
+            return result;
+        }
+    }
+
+    /**
+     * Search response hits
+     *
+     * @param <T>
+     *            result object type
+     */
+    private static class SearchHits<T> {
+
+        private String scrollId;
+        private long totalCount;
+        private final List<T> results = new ArrayList<>();
+    }
+
 }
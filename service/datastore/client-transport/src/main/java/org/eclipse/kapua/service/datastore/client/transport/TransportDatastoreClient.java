@@ -12,7 +12,10 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.client.transport;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
@@ -22,13 +25,19 @@ import org.eclipse.kapua.service.datastore.client.ClientUnavailableException;
 import org.eclipse.kapua.service.datastore.client.ClientUndefinedException;
 import org.eclipse.kapua.service.datastore.client.ModelContext;
 import org.eclipse.kapua.service.datastore.client.QueryConverter;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsRequest;
 import org.eclipse.kapua.service.datastore.client.model.IndexExistsResponse;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
 import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream.ScrollPage;
 import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
 import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
 import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
@@ -37,11 +46,15 @@ import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeResponse;
 import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsRequest;
 import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshAction;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.admin.indices.stats.IndexStats;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -51,12 +64,15 @@ import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -66,15 +82,18 @@ import org.elasticsearch.indices.InvalidIndexNameException;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_AGGREGATIONS;
 import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_EXCLUDES;
 import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_INCLUDES;
 import static org.eclipse.kapua.service.datastore.client.SchemaKeys.KEY_SOURCE;
@@ -89,10 +108,14 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
 
     private static final Logger logger = LoggerFactory.getLogger(TransportDatastoreClient.class);
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private static final String CLIENT_UNDEFINED_MSG = "Elasticsearch client must be not null";
     private static final String CLIENT_CLEANUP_ERROR_MSG = "Cannot cleanup transport datastore driver. Cannot close Elasticsearch client instance";
     private static final String CLIENT_QUERY_PARSING_ERROR_MSG = "Cannot parse query!";
     private static final String CLIENT_CANNOT_DELETE_INDEX_ERROR_MSG = "Cannot delete indexes!";
+    private static final String CLIENT_CANNOT_MERGE_INDEX_ERROR_MSG = "Cannot merge index '%s'!";
+
     private static final String CLIENT_CANNOT_REFRESH_INDEX_ERROR_MSG = "Cannot refresh indexes!";
 
     private static TransportDatastoreClient instance;
@@ -197,6 +220,39 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         return new InsertResponse(response.getId(), insertRequest.getTypeDescriptor());
     }
 
+    @Override
+    public BulkInsertResponse insert(BulkInsertRequest bulkInsertRequest) throws ClientException {
+        checkClient();
+        BulkRequest bulkRequest = new BulkRequest();
+        for (InsertRequest insertRequest : bulkInsertRequest.getRequest()) {
+            Map<String, Object> storableMap = modelContext.marshal(insertRequest.getStorable());
+            logger.debug("Insert - converted object: '{}'", storableMap);
+            bulkRequest.add(new IndexRequest(insertRequest.getTypeDescriptor().getIndex(), insertRequest.getTypeDescriptor().getType()).source(storableMap));
+        }
+
+        BulkResponse bulkResponse = esClientProvider.getClient().bulk(bulkRequest).actionGet(getQueryTimeout());
+
+        BulkInsertResponse response = new BulkInsertResponse();
+        BulkItemResponse[] itemResponses = bulkResponse.getItems();
+        if (itemResponses != null) {
+            for (BulkItemResponse bulkItemResponse : itemResponses) {
+                String indexName = bulkItemResponse.getIndex();
+                String typeName = bulkItemResponse.getType();
+                if (bulkItemResponse.isFailed()) {
+                    String failureMessage = bulkItemResponse.getFailureMessage();
+                    response.add(new InsertResponse(bulkItemResponse.getId(), new TypeDescriptor(indexName, typeName), failureMessage));
+                    logger.info("Insert failed [{}, {}, {}]", indexName, typeName, failureMessage);
+                    continue;
+                }
+                InsertResponse insertResponse = new InsertResponse(bulkItemResponse.getId(), new TypeDescriptor(indexName, typeName));
+                insertResponse.setResult(true);
+                response.add(insertResponse);
+                logger.debug("Insert succesfully executed [{}.{}, {}]", indexName, typeName, bulkItemResponse.getId());
+            }
+        }
+        return response;
+    }
+
     @Override
     public UpdateResponse upsert(UpdateRequest upsertRequest) throws ClientException {
         checkClient();
@@ -204,7 +260,7 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         logger.debug("Upsert - converted object: '{}'", storableMap);
         IndexRequest idxRequest = new IndexRequest(upsertRequest.getTypeDescriptor().getIndex(), upsertRequest.getTypeDescriptor().getType(), upsertRequest.getId()).source(storableMap);
         org.elasticsearch.action.update.UpdateRequest updateRequest = new org.elasticsearch.action.update.UpdateRequest(upsertRequest.getTypeDescriptor().getIndex(),
-                upsertRequest.getTypeDescriptor().getType(), upsertRequest.getId()).doc(storableMap);
+                upsertRequest.getTypeDescriptor().getType(), upsertRequest.getId()).doc(getUpdateDocument(upsertRequest, storableMap));
         org.elasticsearch.action.update.UpdateResponse response = esClientProvider.getClient().update(updateRequest.upsert(idxRequest)).actionGet(getQueryTimeout());
         return new UpdateResponse(response.getId(), upsertRequest.getTypeDescriptor());
     }
@@ -220,7 +276,7 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
             Map<String, Object> mappedObject = modelContext.marshal(upsertRequest.getStorable());
             logger.debug("Upsert - converted object: '{}'", mappedObject);
             IndexRequest idxRequest = new IndexRequest(index, type, id).source(mappedObject);
-            org.elasticsearch.action.update.UpdateRequest updateRequest = new org.elasticsearch.action.update.UpdateRequest(index, type, id).doc(mappedObject);
+            org.elasticsearch.action.update.UpdateRequest updateRequest = new org.elasticsearch.action.update.UpdateRequest(index, type, id).doc(getUpdateDocument(upsertRequest, mappedObject));
             updateRequest.upsert(idxRequest);
             bulkRequest.add(updateRequest);
         }
@@ -248,6 +304,11 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         return response;
     }
 
+    private static Map<String, Object> getUpdateDocument(UpdateRequest upsertRequest, Map<String, Object> storableMap) {
+        // the empty partial document leaves the existing object untouched (noop update)
+        return upsertRequest.isInsertOnly() ? Collections.emptyMap() : storableMap;
+    }
+
     @Override
     public <T> T find(TypeDescriptor typeDescriptor, Object query, Class<T> clazz) throws ClientException {
         ResultList<T> result = query(typeDescriptor, query, clazz);
@@ -268,7 +329,7 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         ObjectNode fetchSourceFields = (ObjectNode) queryMap.path(KEY_SOURCE);
         String[] includesFields = toIncludedExcludedFields(fetchSourceFields.path(KEY_INCLUDES));
         String[] excludesFields = toIncludedExcludedFields(fetchSourceFields.path(KEY_EXCLUDES));
-        SearchRequestBuilder searchReqBuilder = esClientProvider.getClient().prepareSearch(typeDescriptor.getIndex());
+        SearchRequestBuilder searchReqBuilder = esClientProvider.getClient().prepareSearch(getIndexes(typeDescriptor)).setIndicesOptions(IndicesOptions.lenientExpandOpen());
         searchReqBuilder.setTypes(typeDescriptor.getType())
                 .setSource(toSearchSourceBuilder(queryMap))
                 .setFetchSource(includesFields, excludesFields);
@@ -304,12 +365,71 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         return result;
     }
 
+    @Override
+    public <T> ResultStream<T> stream(TypeDescriptor typeDescriptor, Object query, Class<T> clazz, int batchSize) throws ClientException {
+        checkClient();
+        JsonNode queryMap = ScrollResultStream.toScrollQuery(queryConverter.convertQuery(query), batchSize);
+        Object queryFetchStyle = queryConverter.getFetchStyle(query);
+        logger.debug("Stream - converted query: '{}'", queryMap);
+        ObjectNode fetchSourceFields = (ObjectNode) queryMap.path(KEY_SOURCE);
+        String[] includesFields = toIncludedExcludedFields(fetchSourceFields.path(KEY_INCLUDES));
+        String[] excludesFields = toIncludedExcludedFields(fetchSourceFields.path(KEY_EXCLUDES));
+        SearchResponse response = null;
+        try {
+            response = esClientProvider.getClient().prepareSearch(getIndexes(typeDescriptor))
+                    .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                    .setTypes(typeDescriptor.getType())
+                    .setScroll(getScrollTimeout())
+                    .setSource(toSearchSourceBuilder(queryMap))
+                    .setFetchSource(includesFields, excludesFields)
+                    .get(getQueryTimeout());
+        } catch (IndexNotFoundException infe) {
+            logger.warn("Cannot find index '{}'", typeDescriptor.getIndex());
+        } catch (SearchPhaseExecutionException spee) {
+            logger.warn("Generic search error {}", spee.getMessage(), spee);
+        }
+        return new ScrollResultStream<T>(toScrollPage(response, clazz, queryFetchStyle)) {
+
+            @Override
+            protected ScrollPage<T> fetchPage(String scrollId) throws ClientException {
+                checkClient();
+                return toScrollPage(esClientProvider.getClient().prepareSearchScroll(scrollId)
+                        .setScroll(getScrollTimeout())
+                        .get(getQueryTimeout()), clazz, queryFetchStyle);
+            }
+
+            @Override
+            protected void clearScroll(String scrollId) throws ClientException {
+                checkClient();
+                esClientProvider.getClient().prepareClearScroll()
+                        .addScrollId(scrollId)
+                        .get(getQueryTimeout());
+            }
+        };
+    }
+
+    private <T> ScrollPage<T> toScrollPage(SearchResponse response, Class<T> clazz, Object queryFetchStyle) throws ClientException {
+        if (response == null) {
+            return new ScrollPage<>(null, 0, Collections.<T>emptyList());
+        }
+        SearchHit[] searchHits = response.getHits().getHits();
+        List<T> results = new ArrayList<>(searchHits.length);
+        for (SearchHit searchHit : searchHits) {
+            Map<String, Object> object = searchHit.getSource();
+            object.put(ModelContext.TYPE_DESCRIPTOR_KEY, new TypeDescriptor(searchHit.getIndex(), searchHit.getType()));
+            object.put(ModelContext.DATASTORE_ID_KEY, searchHit.getId());
+            object.put(QueryConverter.QUERY_FETCH_STYLE_KEY, queryFetchStyle);
+            results.add(modelContext.unmarshal(clazz, object));
+        }
+        return new ScrollPage<>(response.getScrollId(), response.getHits().getTotalHits(), results);
+    }
+
     @Override
     public long count(TypeDescriptor typeDescriptor, Object query) throws ClientException {
         checkClient();
         // TODO check for fetch none
         JsonNode queryMap = queryConverter.convertQuery(query);
-        SearchRequestBuilder searchReqBuilder = esClientProvider.getClient().prepareSearch(typeDescriptor.getIndex());
+        SearchRequestBuilder searchReqBuilder = esClientProvider.getClient().prepareSearch(getIndexes(typeDescriptor)).setIndicesOptions(IndicesOptions.lenientExpandOpen());
         SearchHits searchHits = null;
         try {
             SearchResponse response = searchReqBuilder.setTypes(typeDescriptor.getType())
@@ -328,6 +448,39 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         return searchHits.getTotalHits();
     }
 
+    @Override
+    public JsonNode aggregate(TypeDescriptor typeDescriptor, Object query) throws ClientException {
+        checkClient();
+        JsonNode queryMap = queryConverter.convertQuery(query);
+        SearchRequestBuilder searchReqBuilder = esClientProvider.getClient().prepareSearch(getIndexes(typeDescriptor)).setIndicesOptions(IndicesOptions.lenientExpandOpen());
+        Aggregations aggregations = null;
+        try {
+            SearchResponse response = searchReqBuilder.setTypes(typeDescriptor.getType())
+                    .setSource(toSearchSourceBuilder(queryMap))
+                    .execute()
+                    .actionGet(getQueryTimeout());
+            aggregations = response.getAggregations();
+        } catch (IndexNotFoundException infe) {
+            logger.warn("Cannot find index '{}'", typeDescriptor.getIndex());
+        } catch (SearchPhaseExecutionException spee) {
+            // a failed aggregation (e.g. too many buckets) is reported, as by the rest client, rather than returned as an empty result
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, spee, spee.getLocalizedMessage());
+        }
+        if (aggregations == null) {
+            return null;
+        }
+        // same representation returned by the rest client
+        try {
+            XContentBuilder builder = XContentFactory.jsonBuilder();
+            builder.startObject();
+            ((ToXContent) aggregations).toXContent(builder, ToXContent.EMPTY_PARAMS);
+            builder.endObject();
+            return MAPPER.readTree(builder.string()).get(KEY_AGGREGATIONS);
+        } catch (IOException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, e.getLocalizedMessage());
+        }
+    }
+
     @Override
     public void delete(TypeDescriptor typeDescriptor, String id) throws ClientException {
         checkClient();
@@ -354,7 +507,8 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         SearchResponse scrollResponse = null;
         try {
             // delete by query API is deprecated, scroll with bulk delete must be used
-            scrollResponse = esClientProvider.getClient().prepareSearch(typeDescriptor.getIndex())
+            scrollResponse = esClientProvider.getClient().prepareSearch(getIndexes(typeDescriptor))
+                    .setIndicesOptions(IndicesOptions.lenientExpandOpen())
                     .setTypes(typeDescriptor.getType())
                     .setFetchSource(false)
                     .addSort("_doc", SortOrder.ASC)
@@ -415,6 +569,70 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
                 .actionGet(getQueryTimeout());
     }
 
+    @Override
+    public List<IndexInfo> getIndexes(String indexPattern) throws ClientException {
+        checkClient();
+        List<IndexInfo> indexes = new ArrayList<>();
+        try {
+            IndicesStatsResponse statsResponse = esClientProvider.getClient().admin()
+                    .indices()
+                    .prepareStats(indexPattern)
+                    .clear()
+                    .setDocs(true)
+                    .setStore(true)
+                    .setSegments(true)
+                    .execute()
+                    .actionGet(getQueryTimeout());
+            for (IndexStats indexStats : statsResponse.getIndices().values()) {
+                int primaryShards = 0;
+                for (ShardStats shardStats : indexStats.getShards()) {
+                    if (shardStats.getShardRouting().primary()) {
+                        primaryShards++;
+                    }
+                }
+                indexes.add(new IndexInfo(indexStats.getIndex(),
+                        indexStats.getPrimaries().getDocs().getCount(),
+                        indexStats.getTotal().getStore().getSizeInBytes(),
+                        primaryShards,
+                        indexStats.getPrimaries().getSegments().getCount()));
+            }
+        } catch (IndexNotFoundException e) {
+            logger.warn("Indexes '{}' not found", indexPattern);
+        }
+        return indexes;
+    }
+
+    @Override
+    public void forceMerge(String indexName, int maxSegments) throws ClientException {
+        checkClient();
+        // the merge duration depends on the index size, so no timeout is applied
+        ForceMergeResponse forceMergeResponse = esClientProvider.getClient().admin()
+                .indices()
+                .prepareForceMerge(indexName)
+                .setMaxNumSegments(maxSegments)
+                .execute()
+                .actionGet();
+        if (forceMergeResponse.getFailedShards() > 0) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, String.format(CLIENT_CANNOT_MERGE_INDEX_ERROR_MSG, indexName));
+        }
+    }
+
+    @Override
+    public void deleteIndexes(List<String> indexNames) throws ClientException {
+        checkClient();
+        if (indexNames.isEmpty()) {
+            return;
+        }
+        DeleteIndexResponse deleteResponse = esClientProvider.getClient().admin()
+                .indices()
+                .prepareDelete(indexNames.toArray(new String[indexNames.size()]))
+                .execute()
+                .actionGet(getQueryTimeout());
+        if (!deleteResponse.isAcknowledged()) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, CLIENT_CANNOT_DELETE_INDEX_ERROR_MSG);
+        }
+    }
+
     @Override
     public boolean isMappingExists(TypeDescriptor typeDescriptor) throws ClientException {
         checkClient();
@@ -528,4 +746,14 @@ public class TransportDatastoreClient implements org.eclipse.kapua.service.datas
         return TimeValue.timeValueMillis(ClientSettings.getInstance().getLong(ClientSettingsKey.QUERY_TIMEOUT, 15000));
     }
 
+    /**
+     * Get the indexes of the type descriptor (the searches may target a comma separated list of concrete indexes not yet, or no longer, existing)
+     *
+     * @param typeDescriptor
+     * @return
+     */
+    private static String[] getIndexes(TypeDescriptor typeDescriptor) {
+        return typeDescriptor.getIndex().split(",");
+    }
+
 }
@@ -159,6 +159,7 @@ public class ChannelInfoRegistryFacade {
             mediator.onBeforeChannelInfoDelete(channelInfo);
             TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, ChannelInfoSchema.CHANNEL_TYPE_NAME);
             client.delete(typeDescriptor, id.toString());
+            mediator.onAfterChannelInfoDelete(channelInfo);
         }
     }
 
@@ -289,6 +290,7 @@ public class ChannelInfoRegistryFacade {
         }
         TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, ChannelInfoSchema.CHANNEL_TYPE_NAME);
         client.deleteByQuery(typeDescriptor, query);
+        mediator.onAfterChannelInfoDelete(query);
     }
 
 }
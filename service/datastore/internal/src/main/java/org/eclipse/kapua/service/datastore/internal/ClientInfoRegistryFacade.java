@@ -94,14 +94,14 @@ public class ClientInfoRegistryFacade {
         StorableId storableId = new StorableIdImpl(clientInfoId);
 
         UpdateResponse response = null;
-        // Store channel. Look up channel in the cache, and cache it if it doesn't exist
-        if (!DatastoreCacheManager.getInstance().getClientsCache().get(clientInfo.getClientId())) {
+        // Store client. Look up client in the cache (by client info id, as the registry bulk writer), and cache it if it doesn't exist
+        if (!DatastoreCacheManager.getInstance().getClientsCache().get(clientInfoId)) {
             // The code is safe even without the synchronized block
             // Synchronize in order to let the first thread complete its update
             // then the others of the same type will find the cache updated and
             // skip the update.
             synchronized (metadataUpdateSync) {
-                if (!DatastoreCacheManager.getInstance().getClientsCache().get(clientInfo.getClientId())) {
+                if (!DatastoreCacheManager.getInstance().getClientsCache().get(clientInfoId)) {
                     // fix #REPLACE_ISSUE_NUMBER
                     ClientInfo storedField = find(clientInfo.getScopeId(), storableId);
                     if (storedField == null) {
@@ -119,7 +119,7 @@ public class ClientInfoRegistryFacade {
                                 ClientInfoSchema.CLIENT_TYPE_NAME, response.getId()));
                         // Update cache if asset update is completed successfully
                     }
-                    DatastoreCacheManager.getInstance().getClientsCache().put(clientInfo.getClientId(), true);
+                    DatastoreCacheManager.getInstance().getClientsCache().put(clientInfoId, true);
                 }
             }
         }
@@ -152,8 +152,12 @@ public class ClientInfoRegistryFacade {
         }
 
         String indexName = SchemaUtil.getKapuaIndexName(scopeId);
-        TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, ClientInfoSchema.CLIENT_TYPE_NAME);
-        client.delete(typeDescriptor, id.toString());
+        ClientInfo clientInfo = find(scopeId, id);
+        if (clientInfo != null) {
+            TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, ClientInfoSchema.CLIENT_TYPE_NAME);
+            client.delete(typeDescriptor, id.toString());
+            mediator.onAfterClientInfoDelete(scopeId, clientInfo);
+        }
     }
 
     /**
@@ -278,6 +282,7 @@ public class ClientInfoRegistryFacade {
         String indexName = SchemaUtil.getKapuaIndexName(query.getScopeId());
         TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, ClientInfoSchema.CLIENT_TYPE_NAME);
         client.deleteByQuery(typeDescriptor, query);
+        mediator.onAfterClientInfoDelete(query);
     }
 
 }
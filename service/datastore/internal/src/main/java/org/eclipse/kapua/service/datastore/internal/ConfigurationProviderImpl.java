@@ -12,6 +12,9 @@
 package org.eclipse.kapua.service.datastore.internal;
 
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
 import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.account.Account;
@@ -21,13 +24,25 @@ import org.eclipse.kapua.service.datastore.internal.mediator.ConfigurationExcept
 import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
 import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
 
+import com.codahale.metrics.Counter;
+
 /**
- * Datastore configuration provider implementation.
+ * Datastore configuration provider implementation.<br>
+ * The parsed configuration and the account are cached by scope id (see {@link DatastoreCacheManager}) so the store path doesn't hit the database in steady state.
  * 
  * @since 1.0.0
  */
 public class ConfigurationProviderImpl implements ConfigurationProvider {
 
+    private static final String METRIC_MODULE_NAME = "datastore";
+    private static final String METRIC_COMPONENT_NAME = "configuration";
+
+    private static final MetricsService METRICS_SERVICE = MetricServiceFactory.getInstance();
+    private static final Counter METRIC_CONFIGURATION_HIT = METRICS_SERVICE.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "cache", "configuration", "hit", "count");
+    private static final Counter METRIC_CONFIGURATION_MISS = METRICS_SERVICE.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "cache", "configuration", "miss", "count");
+    private static final Counter METRIC_ACCOUNT_HIT = METRICS_SERVICE.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "cache", "account", "hit", "count");
+    private static final Counter METRIC_ACCOUNT_MISS = METRICS_SERVICE.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "cache", "account", "miss", "count");
+
     private AccountService accountService;
     private KapuaConfigurableService configurableService;
 
@@ -46,12 +61,21 @@ public class ConfigurationProviderImpl implements ConfigurationProvider {
     @Override
     public MessageStoreConfiguration getConfiguration(KapuaId scopeId)
             throws ConfigurationException {
-        MessageStoreConfiguration messageStoreConfiguration = null;
+        LocalCache<KapuaId, MessageStoreConfiguration> configurationCache = DatastoreCacheManager.getInstance().getConfigurationCache();
+        MessageStoreConfiguration messageStoreConfiguration = scopeId != null ? configurationCache.get(scopeId) : null;
+        if (messageStoreConfiguration != null) {
+            METRIC_CONFIGURATION_HIT.inc();
+            return messageStoreConfiguration;
+        }
+        METRIC_CONFIGURATION_MISS.inc();
         try {
             messageStoreConfiguration = new MessageStoreConfiguration(configurableService.getConfigValues(scopeId));
         } catch (KapuaException e) {
             throw new ConfigurationException("Cannot load configuration parameters", e);
         }
+        if (scopeId != null) {
+            configurationCache.put(scopeId, messageStoreConfiguration);
+        }
         return messageStoreConfiguration;
     }
 
@@ -60,13 +84,33 @@ public class ConfigurationProviderImpl implements ConfigurationProvider {
             throws ConfigurationException {
         Account account = null;
         if (scopeId != null) {
-            try {
-                account = KapuaSecurityUtils.doPrivileged(() -> accountService.find(scopeId));
-            } catch (Exception exc) {
-                throw new ConfigurationException("Cannot get account information", exc);
+            LocalCache<KapuaId, Account> accountsCache = DatastoreCacheManager.getInstance().getAccountsCache();
+            account = accountsCache.get(scopeId);
+            if (account != null) {
+                METRIC_ACCOUNT_HIT.inc();
+            } else {
+                METRIC_ACCOUNT_MISS.inc();
+                try {
+                    account = KapuaSecurityUtils.doPrivileged(() -> accountService.find(scopeId));
+                } catch (Exception exc) {
+                    throw new ConfigurationException("Cannot get account information", exc);
+                }
+                if (account != null) {
+                    accountsCache.put(scopeId, account);
+                }
             }
         }
         return new MessageInfo(account);
     }
 
+    /**
+     * Invalidate the cached configuration and account for the given scope
+     * 
+     * @param scopeId
+     */
+    public static void invalidate(KapuaId scopeId) {
+        DatastoreCacheManager.getInstance().getConfigurationCache().remove(scopeId);
+        DatastoreCacheManager.getInstance().getAccountsCache().remove(scopeId);
+    }
+
 }
@@ -11,7 +11,12 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.internal;
 
+import org.eclipse.kapua.commons.cache.Cache;
+import org.eclipse.kapua.commons.cache.FingerprintCache;
 import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.account.Account;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
 import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
 import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
 import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
@@ -26,23 +31,40 @@ public class DatastoreCacheManager {
 
     private static final DatastoreCacheManager INSTANCE = new DatastoreCacheManager();
 
+    private static final String CACHE_TYPE_FINGERPRINT = "fingerprint";
+
     private final LocalCache<String, Metadata> schemaCache;
-    private final LocalCache<String, Boolean> channelsCache;
-    private final LocalCache<String, Boolean> metricsCache;
-    private final LocalCache<String, Boolean> clientsCache;
+    private final Cache<String, Boolean> channelsCache;
+    private final Cache<String, Boolean> metricsCache;
+    private final Cache<String, Boolean> clientsCache;
+    private final LocalCache<KapuaId, MessageStoreConfiguration> configurationCache;
+    private final LocalCache<KapuaId, Account> accountsCache;
 
     private DatastoreCacheManager() {
         DatastoreSettings config = DatastoreSettings.getInstance();
         int expireAfter = config.getInt(DatastoreSettingKey.CONFIG_CACHE_LOCAL_EXPIRE_AFTER);
         int sizeMax = config.getInt(DatastoreSettingKey.CONFIG_CACHE_LOCAL_SIZE_MAXIMUM);
         int sizeMaxMetadata = config.getInt(DatastoreSettingKey.CONFIG_CACHE_METADATA_LOCAL_SIZE_MAXIMUM);
+        int expireAfterMetadata = config.getInt(DatastoreSettingKey.CONFIG_CACHE_METADATA_LOCAL_EXPIRE_AFTER, 600);
+        int expireAfterConfiguration = config.getInt(DatastoreSettingKey.CONFIG_CACHE_CONFIGURATION_EXPIRE_AFTER, 60);
+        int sizeMaxConfiguration = config.getInt(DatastoreSettingKey.CONFIG_CACHE_CONFIGURATION_SIZE_MAXIMUM, 1000);
 
         // TODO set expiration to happen frequently because the reset cache method will not get
         // called from service clients any more
-        channelsCache = new LocalCache<>(sizeMax, expireAfter, false);
-        metricsCache = new LocalCache<>(sizeMax, expireAfter, false);
-        clientsCache = new LocalCache<>(sizeMax, expireAfter, false);
-        schemaCache = new LocalCache<>(sizeMaxMetadata, null);
+        boolean fingerprintCache = CACHE_TYPE_FINGERPRINT.equals(config.getString(DatastoreSettingKey.CONFIG_CACHE_LOCAL_TYPE, null));
+        channelsCache = createRegistryCache(fingerprintCache, sizeMax, expireAfter);
+        metricsCache = createRegistryCache(fingerprintCache, sizeMax, expireAfter);
+        clientsCache = createRegistryCache(fingerprintCache, sizeMax, expireAfter);
+        schemaCache = new LocalCache<>(sizeMaxMetadata, expireAfterMetadata, null);
+        configurationCache = new LocalCache<>(sizeMaxConfiguration, expireAfterConfiguration, null);
+        accountsCache = new LocalCache<>(sizeMaxConfiguration, expireAfterConfiguration, null);
+    }
+
+    private static Cache<String, Boolean> createRegistryCache(boolean fingerprintCache, int sizeMax, int expireAfter) {
+        if (fingerprintCache) {
+            return new FingerprintCache(sizeMax, expireAfter, false);
+        }
+        return new LocalCache<>(sizeMax, expireAfter, false);
     }
 
     /**
@@ -63,7 +85,7 @@ public class DatastoreCacheManager {
      * 
      * @since 1.0.0
      */
-    public LocalCache<String, Boolean> getChannelsCache() {
+    public Cache<String, Boolean> getChannelsCache() {
         return channelsCache;
     }
 
@@ -74,18 +96,18 @@ public class DatastoreCacheManager {
      * 
      * @since 1.0.0
      */
-    public LocalCache<String, Boolean> getMetricsCache() {
+    public Cache<String, Boolean> getMetricsCache() {
         return metricsCache;
     }
 
     /**
-     * Get the clients informations cache
+     * Get the clients informations cache (by client info id, derived from the scope id and the client id)
      * 
      * @return
      * 
      * @since 1.0.0
      */
-    public LocalCache<String, Boolean> getClientsCache() {
+    public Cache<String, Boolean> getClientsCache() {
         return clientsCache;
     }
 
@@ -99,4 +121,26 @@ public class DatastoreCacheManager {
     public LocalCache<String, Metadata> getMetadataCache() {
         return schemaCache;
     }
+
+    /**
+     * Get the message store configuration cache (by scope id)
+     * 
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public LocalCache<KapuaId, MessageStoreConfiguration> getConfigurationCache() {
+        return configurationCache;
+    }
+
+    /**
+     * Get the accounts cache (by scope id)
+     * 
+     * @return
+     * 
+     * @since 1.0.0
+     */
+    public LocalCache<KapuaId, Account> getAccountsCache() {
+        return accountsCache;
+    }
 }
@@ -25,20 +25,28 @@ import org.eclipse.kapua.service.datastore.internal.model.DoubleMetric;
 import org.eclipse.kapua.service.datastore.internal.model.FloatMetric;
 import org.eclipse.kapua.service.datastore.internal.model.IntMetric;
 import org.eclipse.kapua.service.datastore.internal.model.LongMetric;
+import org.eclipse.kapua.service.datastore.internal.model.MessageAggregationBucketImpl;
+import org.eclipse.kapua.service.datastore.internal.model.MessageAggregationResultImpl;
+import org.eclipse.kapua.service.datastore.internal.model.MessageDeleteJobImpl;
 import org.eclipse.kapua.service.datastore.internal.model.MessageListResultImpl;
 import org.eclipse.kapua.service.datastore.internal.model.MetricInfoListResultImpl;
 import org.eclipse.kapua.service.datastore.internal.model.StringMetric;
 import org.eclipse.kapua.service.datastore.internal.model.query.ChannelInfoQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.ClientInfoQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageAggregationQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.MetricInfoQueryImpl;
 import org.eclipse.kapua.service.datastore.model.ChannelInfoListResult;
 import org.eclipse.kapua.service.datastore.model.ClientInfoListResult;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.Metric;
 import org.eclipse.kapua.service.datastore.model.MetricInfoListResult;
 import org.eclipse.kapua.service.datastore.model.query.ChannelInfoQuery;
 import org.eclipse.kapua.service.datastore.model.query.ClientInfoQuery;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
 import org.eclipse.kapua.service.datastore.model.query.MetricInfoQuery;
 
@@ -80,6 +88,26 @@ public class DatastoreObjectFactoryImpl implements DatastoreObjectFactory {
         return new MessageListResultImpl();
     }
 
+    @Override
+    public MessageAggregationQuery newMessageAggregationQuery(KapuaId scopeId) {
+        return new MessageAggregationQueryImpl(scopeId);
+    }
+
+    @Override
+    public MessageAggregationResult newMessageAggregationResult() {
+        return new MessageAggregationResultImpl();
+    }
+
+    @Override
+    public MessageAggregationBucket newMessageAggregationBucket() {
+        return new MessageAggregationBucketImpl();
+    }
+
+    @Override
+    public MessageDeleteJob newMessageDeleteJob() {
+        return new MessageDeleteJobImpl();
+    }
+
     @Override
     public MetricInfoQuery newMetricInfoQuery(KapuaId scopeId) {
         return new MetricInfoQueryImpl(scopeId);
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.message.KapuaPayload;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.model.StorableIdImpl;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Message store bulk writer.<br>
+ * The messages to be stored are queued into a bounded queue and a single flusher thread coalesces them into bulk insert requests.<br>
+ * A bulk request is sent once the configured messages count, the configured (estimated) size or the linger time is reached.<br>
+ * <br>
+ * The {@link #store(TypeDescriptor, DatastoreMessage, MessageInfo)} caller is blocked until the bulk request containing its message is completed
+ * (and the registries are updated), so the message acknowledge (if any) can be delayed until the message is durably accepted by the datastore.<br>
+ * Once the queue is full the caller waits for a free slot (backpressure) up to the configured offer timeout.
+ *
+ * @since 1.0.0
+ */
+public class MessageStoreBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStoreBulkWriter.class);
+
+    private static final String METRIC_MODULE_NAME = "datastore";
+    private static final String METRIC_COMPONENT_NAME = "bulk";
+
+    // rough estimation of the marshalled message size (without body and metrics)
+    private static final int MESSAGE_BASE_SIZE = 512;
+    private static final int METRIC_BASE_SIZE = 64;
+
+    private final DatastoreClient client;
+    private final MessageStoreMediator mediator;
+
+    private final BlockingQueue<PendingMessage> queue;
+    private final int maxActions;
+    private final long maxBytes;
+    private final long lingerTime;
+    private final long offerTimeout;
+    private final long storeTimeout;
+
+    private final Thread flusher;
+    private volatile boolean running;
+
+    // metrics
+    private final Counter metricQueueFull;
+    private final Counter metricStoreError;
+    private final Histogram metricBulkSize;
+    private final Timer metricBulkTime;
+
+    /**
+     * Constructs the bulk writer (the flusher thread is started by the {@link #start()} method)
+     *
+     * @param client
+     * @param mediator
+     *
+     * @since 1.0.0
+     */
+    public MessageStoreBulkWriter(DatastoreClient client, MessageStoreMediator mediator) {
+        this.client = client;
+        this.mediator = mediator;
+
+        DatastoreSettings config = DatastoreSettings.getInstance();
+        queue = new LinkedBlockingQueue<>(config.getInt(DatastoreSettingKey.CONFIG_BULK_QUEUE_SIZE, 10000));
+        maxActions = config.getInt(DatastoreSettingKey.CONFIG_BULK_ACTIONS_MAX, 500);
+        maxBytes = config.getLong(DatastoreSettingKey.CONFIG_BULK_SIZE_MAX, 5L * 1024 * 1024);
+        lingerTime = config.getLong(DatastoreSettingKey.CONFIG_BULK_LINGER_TIME, 50L);
+        offerTimeout = config.getLong(DatastoreSettingKey.CONFIG_BULK_OFFER_TIMEOUT, 10000L);
+        storeTimeout = config.getLong(DatastoreSettingKey.CONFIG_BULK_STORE_TIMEOUT, 30000L);
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricQueueFull = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "queue", "full", "count");
+        metricStoreError = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "store", "error", "count");
+        metricBulkSize = metricsService.getHistogram(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "request", "size", "count");
+        metricBulkTime = metricsService.getTimer(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "request", "time", "s");
+        try {
+            metricsService.registerGauge((Gauge<Integer>) queue::size, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "queue", "size", "count");
+        } catch (KapuaException e) {
+            logger.warn("Cannot register the bulk queue size gauge: {}", e.getMessage());
+        }
+
+        flusher = new Thread(this::flushLoop, "datastore-bulk-writer");
+        flusher.setDaemon(true);
+    }
+
+    /**
+     * Start the flusher thread
+     *
+     * @since 1.0.0
+     */
+    public void start() {
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stop the flusher thread.<br>
+     * The messages already queued are flushed before the thread exits, so the caller waits for the flush (up to the configured store timeout).
+     *
+     * @since 1.0.0
+     */
+    public void stop() {
+        // the flusher is not interrupted, so an in-flight bulk request is completed (the flusher polls the queue with a bounded wait)
+        running = false;
+        try {
+            flusher.join(storeTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            logger.warn("Bulk writer not stopped within {} ms, {} queued messages may be lost", storeTimeout, queue.size());
+        }
+    }
+
+    /**
+     * Queue the message and wait for the bulk request containing it to be completed
+     *
+     * @param typeDescriptor
+     * @param message
+     * @param messageInfo
+     * @return
+     * @throws ClientException
+     *             if the queue is full for more than the configured offer timeout, if the bulk request fails or if it is not completed in time
+     *
+     * @since 1.0.0
+     */
+    public InsertResponse store(TypeDescriptor typeDescriptor, DatastoreMessage message, MessageInfo messageInfo) throws ClientException {
+        try {
+            return storeAsync(typeDescriptor, message, messageInfo).get(storeTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, "Interrupted while waiting for the bulk store");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ClientException) {
+                throw (ClientException) e.getCause();
+            }
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e.getCause(), e.getCause().getLocalizedMessage());
+        } catch (TimeoutException e) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, String.format("Bulk store not completed within %s ms", storeTimeout));
+        }
+    }
+
+    /**
+     * Queue the message without waiting for the bulk request containing it to be completed
+     *
+     * @param typeDescriptor
+     * @param message
+     * @param messageInfo
+     * @return the future completed once the bulk request containing the message is completed (and the registries are updated)
+     * @throws ClientException
+     *             if the writer is not running or if the queue is full for more than the configured offer timeout
+     *
+     * @since 1.0.0
+     */
+    public CompletableFuture<InsertResponse> storeAsync(TypeDescriptor typeDescriptor, DatastoreMessage message, MessageInfo messageInfo) throws ClientException {
+        if (!running) {
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, "Bulk writer is not running");
+        }
+        PendingMessage pendingMessage = new PendingMessage(typeDescriptor, message, messageInfo);
+        try {
+            if (!queue.offer(pendingMessage, offerTimeout, TimeUnit.MILLISECONDS)) {
+                metricQueueFull.inc();
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, String.format("Bulk queue full. Cannot store the message within %s ms", offerTimeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, "Interrupted while waiting for the bulk queue");
+        }
+        return pendingMessage.result;
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxActions);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long batchBytes = first.estimatedSize;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerTime);
+                while (batch.size() < maxActions && batchBytes < maxBytes) {
+                    PendingMessage next = queue.poll();
+                    if (next == null) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    batchBytes += next.estimatedSize;
+                }
+            } catch (InterruptedException e) {
+                // flush what is already collected and drain the queue
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        // messages queued while stopping
+        PendingMessage pendingMessage;
+        while ((pendingMessage = queue.poll()) != null) {
+            pendingMessage.result.completeExceptionally(new ClientException(ClientErrorCodes.ACTION_ERROR, "Bulk writer is not running"));
+        }
+        logger.info("Bulk writer stopped");
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        metricBulkSize.update(batch.size());
+        BulkInsertRequest bulkInsertRequest = new BulkInsertRequest();
+        for (PendingMessage pendingMessage : batch) {
+            bulkInsertRequest.add(new InsertRequest(pendingMessage.typeDescriptor, pendingMessage.message));
+        }
+        BulkInsertResponse bulkInsertResponse;
+        Context metricBulkTimeContext = metricBulkTime.time();
+        try {
+            bulkInsertResponse = client.insert(bulkInsertRequest);
+        } catch (Throwable t) {
+            logger.error("Bulk insert of {} messages failed", batch.size(), t);
+            metricStoreError.inc(batch.size());
+            for (PendingMessage pendingMessage : batch) {
+                pendingMessage.result.completeExceptionally(t);
+            }
+            return;
+        } finally {
+            metricBulkTimeContext.stop();
+        }
+
+        List<InsertResponse> responses = bulkInsertResponse.getResponse();
+        if (responses.size() != batch.size()) {
+            ClientException e = new ClientException(ClientErrorCodes.ACTION_ERROR,
+                    String.format("Bulk insert response count (%s) doesn't match the request count (%s)", responses.size(), batch.size()));
+            metricStoreError.inc(batch.size());
+            for (PendingMessage pendingMessage : batch) {
+                pendingMessage.result.completeExceptionally(e);
+            }
+            return;
+        }
+        List<PendingMessage> stored = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pendingMessage = batch.get(i);
+            InsertResponse insertResponse = responses.get(i);
+            if (!insertResponse.isResult()) {
+                metricStoreError.inc();
+                pendingMessage.result.completeExceptionally(new ClientException(ClientErrorCodes.ACTION_ERROR, insertResponse.getDescription()));
+                continue;
+            }
+            pendingMessage.message.setDatastoreId(new StorableIdImpl(insertResponse.getId()));
+            pendingMessage.insertResponse = insertResponse;
+            stored.add(pendingMessage);
+        }
+        if (!stored.isEmpty()) {
+            updateRegistries(stored);
+        }
+    }
+
+    /**
+     * Update the registries for the stored messages.<br>
+     * The flusher thread has no user session, so the registries (that read the account configuration) are updated in a privileged context.<br>
+     * The registry entries of the whole batch are coalesced into a single update; if it fails the messages are processed one by one, so only the messages
+     * whose registry update fails are reported as failed.
+     */
+    private void updateRegistries(List<PendingMessage> stored) {
+        List<DatastoreMessage> messages = new ArrayList<>(stored.size());
+        for (PendingMessage pendingMessage : stored) {
+            messages.add(pendingMessage.message);
+        }
+        try {
+            KapuaSecurityUtils.doPrivileged(() -> mediator.onAfterMessagesStore(messages));
+            for (PendingMessage pendingMessage : stored) {
+                pendingMessage.result.complete(pendingMessage.insertResponse);
+            }
+            return;
+        } catch (Throwable t) {
+            logger.warn("Registries update of {} messages failed, updating them one by one", stored.size(), t);
+        }
+        for (PendingMessage pendingMessage : stored) {
+            try {
+                KapuaSecurityUtils.doPrivileged(() -> mediator.onAfterMessageStore(pendingMessage.messageInfo, pendingMessage.message));
+                pendingMessage.result.complete(pendingMessage.insertResponse);
+            } catch (Throwable t) {
+                metricStoreError.inc();
+                pendingMessage.result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Queued message and the future completed once the bulk request containing it is done
+     */
+    private static class PendingMessage {
+
+        private final TypeDescriptor typeDescriptor;
+        private final DatastoreMessage message;
+        private final MessageInfo messageInfo;
+        private final long estimatedSize;
+        private final CompletableFuture<InsertResponse> result = new CompletableFuture<>();
+        private InsertResponse insertResponse;
+
+        private PendingMessage(TypeDescriptor typeDescriptor, DatastoreMessage message, MessageInfo messageInfo) {
+            this.typeDescriptor = typeDescriptor;
+            this.message = message;
+            this.messageInfo = messageInfo;
+            this.estimatedSize = estimateSize(message);
+        }
+
+        private static long estimateSize(DatastoreMessage message) {
+            long size = MESSAGE_BASE_SIZE;
+            KapuaPayload payload = message.getPayload();
+            if (payload != null) {
+                if (payload.getBody() != null) {
+                    // base64 encoded
+                    size += payload.getBody().length * 4 / 3;
+                }
+                if (payload.getMetrics() != null) {
+                    size += payload.getMetrics().size() * METRIC_BASE_SIZE;
+                }
+            }
+            return size;
+        }
+    }
+}
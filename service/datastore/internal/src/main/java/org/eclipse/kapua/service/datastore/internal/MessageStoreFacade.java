@@ -13,15 +13,24 @@ package org.eclipse.kapua.service.datastore.internal;
 
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.KapuaIllegalArgumentException;
-import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.commons.cache.Cache;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
 import org.eclipse.kapua.commons.util.ArgumentValidator;
 import org.eclipse.kapua.commons.util.KapuaDateUtils;
 import org.eclipse.kapua.message.KapuaMessage;
 import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.AsyncDatastoreClient;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
 import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.client.ClientUnavailableException;
 import org.eclipse.kapua.service.datastore.client.DatastoreClient;
@@ -29,10 +38,14 @@ import org.eclipse.kapua.service.datastore.client.QueryMappingException;
 import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
 import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream;
 import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
 import org.eclipse.kapua.service.datastore.internal.client.DatastoreClientFactory;
 import org.eclipse.kapua.service.datastore.internal.mediator.ConfigurationException;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreChannel;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache.MetricName;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
 import org.eclipse.kapua.service.datastore.internal.mediator.InvalidChannelException;
 import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
@@ -42,12 +55,15 @@ import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediato
 import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
 import org.eclipse.kapua.service.datastore.internal.model.DataIndexBy;
 import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.internal.model.MessageAggregationBucketImpl;
+import org.eclipse.kapua.service.datastore.internal.model.MessageAggregationResultImpl;
 import org.eclipse.kapua.service.datastore.internal.model.MessageListResultImpl;
 import org.eclipse.kapua.service.datastore.internal.model.StorableIdImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.ChannelInfoQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.ChannelMatchPredicateImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.ClientInfoQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.IdsPredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageAggregationQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.MetricInfoQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.schema.ChannelInfoSchema;
@@ -56,17 +72,29 @@ import org.eclipse.kapua.service.datastore.internal.schema.MessageSchema;
 import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
 import org.eclipse.kapua.service.datastore.internal.schema.MetricInfoSchema;
 import org.eclipse.kapua.service.datastore.internal.schema.SchemaUtil;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
 import org.eclipse.kapua.service.datastore.model.ChannelInfo;
 import org.eclipse.kapua.service.datastore.model.ClientInfo;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.MetricInfo;
 import org.eclipse.kapua.service.datastore.model.StorableId;
+import org.eclipse.kapua.service.datastore.model.query.AggregationGroupBy;
+import org.eclipse.kapua.service.datastore.model.query.AndPredicate;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.eclipse.kapua.service.datastore.model.query.RangePredicate;
 import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
+import org.eclipse.kapua.service.datastore.model.query.StorablePredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 /**
  * Message store facade
  *
@@ -77,9 +105,32 @@ public final class MessageStoreFacade {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageStoreFacade.class);
 
+    private static final String KEY_BUCKETS = "buckets";
+    private static final String KEY_BUCKET_KEY = "key";
+    private static final String KEY_DOC_COUNT = "doc_count";
+    private static final String KEY_MIN = "min";
+    private static final String KEY_MAX = "max";
+    private static final String KEY_AVG = "avg";
+    private static final String KEY_SUM = "sum";
+    private static final String KEY_VALUES = "values";
+
     private final MessageStoreMediator mediator;
     private final ConfigurationProvider configProvider;
     private DatastoreClient client;
+    private MessageStoreBulkWriter bulkWriter;
+    private AsyncDatastoreClient asyncClient;
+    private Semaphore pendingStores;
+    private int pendingStoresMax;
+    private long pendingStoreTimeout;
+    private ExecutorService storeCompletionExecutor;
+    private MessageStoreRetentionManager retentionManager;
+    // started on the first message delete job, guarded by the lock
+    private final Object purgeManagerLock = new Object();
+    private MessageStorePurgeManager purgeManager;
+    private boolean purgeManagerClosed;
+    private final boolean indexPruningEnabled;
+    private final int indexPruningMaxIndexes;
+    private final long aggregationBucketsMax;
 
     /**
      * Constructs the message store facade
@@ -91,9 +142,46 @@ public final class MessageStoreFacade {
      * @since 1.0.0
      */
     public MessageStoreFacade(ConfigurationProvider confProvider, MessageStoreMediator mediator) throws ClientUnavailableException {
+        this(confProvider, mediator, DatastoreClientFactory.getInstance());
+    }
+
+    /**
+     * Constructs the message store facade using the provided datastore client
+     *
+     * @param confProvider
+     * @param mediator
+     * @param client
+     *
+     * @since 1.0.0
+     */
+    MessageStoreFacade(ConfigurationProvider confProvider, MessageStoreMediator mediator, DatastoreClient client) {
         configProvider = confProvider;
         this.mediator = mediator;
-        client = DatastoreClientFactory.getInstance();
+        this.client = client;
+        indexPruningEnabled = DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_QUERY_INDEX_PRUNING_ENABLED, true);
+        indexPruningMaxIndexes = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_QUERY_INDEX_PRUNING_INDEXES_MAX, 60);
+        aggregationBucketsMax = DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_AGGREGATION_BUCKETS_MAX, 10000L);
+        if (DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_BULK_ENABLED, false)) {
+            logger.info("Bulk message store enabled");
+            bulkWriter = new MessageStoreBulkWriter(client, mediator);
+            bulkWriter.start();
+        } else if (client instanceof AsyncDatastoreClient) {
+            asyncClient = (AsyncDatastoreClient) client;
+            pendingStoresMax = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_STORE_ASYNC_PENDING_MAX, 1000);
+            pendingStores = new Semaphore(pendingStoresMax);
+            pendingStoreTimeout = DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_STORE_ASYNC_PENDING_TIMEOUT, 10000L);
+            // the registries are updated by synchronous datastore requests, so not by the client I/O threads completing the inserts
+            storeCompletionExecutor = Executors.newFixedThreadPool(DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_STORE_ASYNC_COMPLETION_THREADS, 4), runnable -> {
+                Thread thread = new Thread(runnable, "datastore-store-completion");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_RETENTION_ENABLED, false)) {
+            logger.info("Message store retention enabled");
+            retentionManager = new MessageStoreRetentionManager(client, configProvider, mediator);
+            retentionManager.start();
+        }
     }
 
     /**
@@ -109,6 +197,85 @@ public final class MessageStoreFacade {
             throws KapuaIllegalArgumentException,
             ConfigurationException,
             ClientException {
+        PendingStore pendingStore = prepareStore(message);
+        if (bulkWriter != null) {
+            // the bulk writer updates the registries once the bulk request is completed
+            return bulkWriter.store(pendingStore.typeDescriptor, pendingStore.message, pendingStore.messageInfo);
+        }
+
+        InsertRequest insertRequest = new InsertRequest(pendingStore.typeDescriptor, pendingStore.message);
+        InsertResponse insertResponse = client.insert(insertRequest);
+        completeStore(pendingStore, insertResponse);
+        return insertResponse;
+    }
+
+    /**
+     * Store a message without waiting for the datastore response.<br>
+     * The message is validated (and the schema updated) by the caller thread, then the returned future is completed once the message is stored and the
+     * registries are updated.<br>
+     * If the datastore client doesn't support the asynchronous requests the message is stored synchronously.<br>
+     * Once the configured pending stores limit is reached the caller is blocked until a pending store is completed.
+     *
+     * @param message
+     * @return
+     * @throws KapuaIllegalArgumentException
+     * @throws ConfigurationException
+     * @throws ClientException
+     */
+    public CompletableFuture<InsertResponse> storeAsync(KapuaMessage<?, ?> message)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            ClientException {
+        PendingStore pendingStore = prepareStore(message);
+        if (bulkWriter != null) {
+            return bulkWriter.storeAsync(pendingStore.typeDescriptor, pendingStore.message, pendingStore.messageInfo);
+        }
+        if (asyncClient == null) {
+            InsertResponse insertResponse = client.insert(new InsertRequest(pendingStore.typeDescriptor, pendingStore.message));
+            completeStore(pendingStore, insertResponse);
+            return CompletableFuture.completedFuture(insertResponse);
+        }
+
+        try {
+            if (!pendingStores.tryAcquire(pendingStoreTimeout, TimeUnit.MILLISECONDS)) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, String.format("Too many pending stores. Cannot store the message within %s ms", pendingStoreTimeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, "Interrupted while waiting for the pending stores");
+        }
+        CompletableFuture<InsertResponse> result;
+        try {
+            result = asyncClient.insertAsync(new InsertRequest(pendingStore.typeDescriptor, pendingStore.message))
+                    .thenApplyAsync(insertResponse -> {
+                        // the completion threads have no session while the registries lookups check the caller permissions
+                        try {
+                            KapuaSecurityUtils.doPrivileged(() -> completeStore(pendingStore, insertResponse));
+                        } catch (KapuaException e) {
+                            throw new CompletionException(e);
+                        }
+                        return insertResponse;
+                    }, storeCompletionExecutor);
+        } catch (RuntimeException e) {
+            pendingStores.release();
+            throw e;
+        }
+        result.whenComplete((insertResponse, t) -> pendingStores.release());
+        return result;
+    }
+
+    private void completeStore(PendingStore pendingStore, InsertResponse insertResponse)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            ClientException {
+        pendingStore.message.setDatastoreId(new StorableIdImpl(insertResponse.getId()));
+        mediator.onAfterMessageStore(pendingStore.messageInfo, pendingStore.message);
+    }
+
+    private PendingStore prepareStore(KapuaMessage<?, ?> message)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            ClientException {
         ArgumentValidator.notNull(message, "message");
         ArgumentValidator.notNull(message.getScopeId(), "scopeId");
         ArgumentValidator.notNull(message.getReceivedOn(), "receivedOn");
@@ -147,30 +314,26 @@ public final class MessageStoreFacade {
         // Save message (the big one)
         DatastoreMessage messageToStore = convertTo(message);
         messageToStore.setTimestamp(indexedOnDate);
-        InsertRequest insertRequest = new InsertRequest(typeDescriptor, messageToStore);
         // Possibly update the schema with new metric mappings
-        Map<String, Metric> metrics = new HashMap<>();
+        Map<String, Metric> metrics = null;
         if (message.getPayload()!=null && message.getPayload().getMetrics()!=null && message.getPayload().getMetrics().size()>0) {
             Map<String, Object> messageMetrics = message.getPayload().getMetrics();
-            Iterator<String> metricsIterator = messageMetrics.keySet().iterator();
-            while (metricsIterator.hasNext()) {
-                String kapuaMetricName = metricsIterator.next();
-                String metricName = DatastoreUtils.normalizeMetricName(kapuaMetricName);
-                Object metricValue = messageMetrics.get(kapuaMetricName);
-                String clientMetricType = DatastoreUtils.getClientMetricFromType(metricValue.getClass());
-                Metric metric = new Metric(metricName, clientMetricType);
-                // each metric is potentially a dynamic field so report it a new mapping
-                String mappedName = DatastoreUtils.getMetricValueQualifier(metricName, clientMetricType);
-                metrics.put(mappedName, metric);
+            Map<String, Metric> messageMappings = schemaMetadata.getMessageMappingsCache();
+            for (Map.Entry<String, Object> messageMetric : messageMetrics.entrySet()) {
+                MetricName metricName = DatastoreNameCache.getMetricName(messageMetric.getKey(), messageMetric.getValue().getClass());
+                // each metric is potentially a dynamic field so report it a new mapping (unless already mapped)
+                if (!messageMappings.containsKey(metricName.getQualifier())) {
+                    if (metrics == null) {
+                        metrics = new HashMap<>();
+                    }
+                    metrics.put(metricName.getQualifier(), metricName.getMetric());
+                }
             }
         }
-        mediator.onUpdatedMappings(message.getScopeId(), indexedOn, metrics);
-
-        InsertResponse insertResponse = client.insert(insertRequest);
-        messageToStore.setDatastoreId(new StorableIdImpl(insertResponse.getId()));
-
-        mediator.onAfterMessageStore(messageInfo, messageToStore);
-        return insertResponse;
+        if (metrics != null) {
+            mediator.onUpdatedMappings(message.getScopeId(), indexedOn, metrics);
+        }
+        return new PendingStore(typeDescriptor, messageToStore, messageInfo);
     }
 
     /**
@@ -270,11 +433,41 @@ public final class MessageStoreFacade {
             return new MessageListResultImpl();
         }
 
-        String dataIndexName = SchemaUtil.getDataIndexName(query.getScopeId());
+        String dataIndexName = getDataIndexName(query, accountServicePlan);
         TypeDescriptor typeDescriptor = new TypeDescriptor(dataIndexName, MessageSchema.MESSAGE_TYPE_NAME);
         return new MessageListResultImpl(client.query(typeDescriptor, query, DatastoreMessage.class));
     }
 
+    /**
+     * Stream the messages matching the given query
+     * 
+     * @param query
+     * @param batchSize
+     * @return
+     * @throws KapuaIllegalArgumentException
+     * @throws ConfigurationException
+     * @throws ClientException
+     */
+    public ResultStream<DatastoreMessage> stream(MessageQuery query, int batchSize)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            ClientException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+
+        MessageStoreConfiguration accountServicePlan = configProvider.getConfiguration(query.getScopeId());
+        long ttl = accountServicePlan.getDataTimeToLiveMilliseconds();
+
+        if (!accountServicePlan.getDataStorageEnabled() || ttl == MessageStoreConfiguration.DISABLED) {
+            logger.debug("Storage not enabled for account {}, returning empty result", query.getScopeId());
+            return ScrollResultStream.empty();
+        }
+
+        String dataIndexName = getDataIndexName(query, accountServicePlan);
+        TypeDescriptor typeDescriptor = new TypeDescriptor(dataIndexName, MessageSchema.MESSAGE_TYPE_NAME);
+        return client.stream(typeDescriptor, query, DatastoreMessage.class, batchSize);
+    }
+
     /**
      * Get messages count matching the given query
      * 
@@ -301,11 +494,94 @@ public final class MessageStoreFacade {
             return 0;
         }
 
-        String indexName = SchemaUtil.getDataIndexName(query.getScopeId());
+        String indexName = getDataIndexName(query, accountServicePlan);
         TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MessageSchema.MESSAGE_TYPE_NAME);
         return client.count(typeDescriptor, query);
     }
 
+    /**
+     * Aggregate the metric values of the messages matching the given query
+     * 
+     * @param query
+     * @return
+     * @throws KapuaIllegalArgumentException
+     * @throws ConfigurationException
+     * @throws QueryMappingException
+     * @throws ClientException
+     */
+    public MessageAggregationResult aggregate(MessageAggregationQuery query)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            QueryMappingException,
+            ClientException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+        ArgumentValidator.numRange(query.getInterval(), 1, Long.MAX_VALUE, "query.interval");
+
+        MessageAggregationResult result = new MessageAggregationResultImpl();
+        MessageStoreConfiguration accountServicePlan = configProvider.getConfiguration(query.getScopeId());
+        long ttl = accountServicePlan.getDataTimeToLiveMilliseconds();
+
+        if (!accountServicePlan.getDataStorageEnabled() || ttl == MessageStoreConfiguration.DISABLED) {
+            logger.debug("Storage not enabled for account {}, returning empty result", query.getScopeId());
+            return result;
+        }
+
+        // the buckets span the queried time window (the data retained by the account if the window is not bounded)
+        long end = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        long start = end - ttl;
+        TimestampRange range = new TimestampRange();
+        if (range.collect(query.getPredicate())) {
+            start = range.start != null ? range.start : start;
+            end = range.end != null ? range.end : end;
+        }
+        // each group has its own buckets (groups * buckets is compared without overflow)
+        long groups = query.getGroupBy() == null || query.getGroupBy() == AggregationGroupBy.NONE ? 1 : Math.max(query.getMaxGroups(), 1);
+        if (end > start && (end - start) / query.getInterval() >= (aggregationBucketsMax + groups - 1) / groups) {
+            throw new KapuaIllegalArgumentException("query.interval", String.valueOf(query.getInterval()));
+        }
+
+        String indexName = getDataIndexName(query, accountServicePlan);
+        TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MessageSchema.MESSAGE_TYPE_NAME);
+        JsonNode aggregationsNode = client.aggregate(typeDescriptor, query);
+        if (aggregationsNode == null) {
+            return result;
+        }
+        JsonNode groupsNode = aggregationsNode.get(MessageAggregationQueryImpl.GROUPS_AGGREGATION);
+        if (groupsNode != null) {
+            for (JsonNode groupNode : groupsNode.path(KEY_BUCKETS)) {
+                addAggregationBuckets(result, groupNode.path(KEY_BUCKET_KEY).asText(), groupNode.path(MessageAggregationQueryImpl.HISTOGRAM_AGGREGATION));
+            }
+        } else {
+            addAggregationBuckets(result, null, aggregationsNode.path(MessageAggregationQueryImpl.HISTOGRAM_AGGREGATION));
+        }
+        return result;
+    }
+
+    private static void addAggregationBuckets(MessageAggregationResult result, String group, JsonNode histogramNode) {
+        for (JsonNode histogramBucketNode : histogramNode.path(KEY_BUCKETS)) {
+            MessageAggregationBucket bucket = new MessageAggregationBucketImpl();
+            bucket.setGroup(group);
+            bucket.setTimestamp(new Date(histogramBucketNode.path(KEY_BUCKET_KEY).asLong()));
+            bucket.setCount(histogramBucketNode.path(KEY_DOC_COUNT).asLong());
+            JsonNode statsNode = histogramBucketNode.path(MessageAggregationQueryImpl.STATS_AGGREGATION);
+            bucket.setMin(getAggregationValue(statsNode.get(KEY_MIN)));
+            bucket.setMax(getAggregationValue(statsNode.get(KEY_MAX)));
+            bucket.setAvg(getAggregationValue(statsNode.get(KEY_AVG)));
+            bucket.setSum(getAggregationValue(statsNode.get(KEY_SUM)));
+            // the percentile values are returned in the requested order
+            for (JsonNode percentileNode : histogramBucketNode.path(MessageAggregationQueryImpl.PERCENTILES_AGGREGATION).path(KEY_VALUES)) {
+                bucket.getPercentiles().add(getAggregationValue(percentileNode));
+            }
+            result.getBuckets().add(bucket);
+        }
+    }
+
+    private static Double getAggregationValue(JsonNode valueNode) {
+        // empty buckets have no values (null or NaN)
+        return valueNode != null && valueNode.isNumber() ? valueNode.asDouble() : null;
+    }
+
     /**
      * Delete messages count matching the given query.<br>
      * <b>Be careful using this function since it doesn't guarantee the datastore consistency.<br>
@@ -333,11 +609,156 @@ public final class MessageStoreFacade {
             return;
         }
 
-        String indexName = SchemaUtil.getDataIndexName(query.getScopeId());
+        String indexName = getDataIndexName(query, accountServicePlan);
         TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MessageSchema.MESSAGE_TYPE_NAME);
         client.deleteByQuery(typeDescriptor, query);
     }
 
+    /**
+     * Start a job deleting the messages matching the given query (see {@link MessageStorePurgeManager}).<br>
+     * <b>As {@link #delete(MessageQuery)} it doesn't check the consistency of the registries.</b>
+     * 
+     * @param query
+     * @return the job status
+     * @throws KapuaIllegalArgumentException
+     */
+    public MessageDeleteJob deleteAsync(MessageQuery query)
+            throws KapuaIllegalArgumentException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+
+        return getPurgeManager(true).submit(query);
+    }
+
+    /**
+     * Find the message delete job by identifier
+     * 
+     * @param scopeId
+     * @param jobId
+     * @return the job status or null if the job is unknown
+     */
+    public MessageDeleteJob findDeleteJob(KapuaId scopeId, String jobId) {
+        MessageStorePurgeManager manager = getPurgeManager(false);
+        return manager != null ? manager.find(scopeId, jobId) : null;
+    }
+
+    /**
+     * Resume the failed message delete job from the first not yet completed slice
+     * 
+     * @param scopeId
+     * @param jobId
+     * @return the job status or null if the job is unknown
+     */
+    public MessageDeleteJob resumeDeleteJob(KapuaId scopeId, String jobId) {
+        MessageStorePurgeManager manager = getPurgeManager(false);
+        return manager != null ? manager.resume(scopeId, jobId) : null;
+    }
+
+    /**
+     * Get the purge manager, creating and starting it if requested and not yet done (the jobs are kept by the node that started them, so no job
+     * can be found before the first one is submitted)
+     * 
+     * @param create
+     * @return the purge manager or null if not yet created
+     */
+    private MessageStorePurgeManager getPurgeManager(boolean create) {
+        synchronized (purgeManagerLock) {
+            if (purgeManager == null && create) {
+                if (purgeManagerClosed) {
+                    throw new IllegalStateException("Message store purge manager not started");
+                }
+                logger.info("Starting the message store purge manager");
+                purgeManager = new MessageStorePurgeManager(client, configProvider, mediator);
+                purgeManager.start();
+            }
+            return purgeManager;
+        }
+    }
+
+    /**
+     * Get the data indexes targeted by the message query.<br>
+     * If the query predicate bounds the message timestamp (the indexing date) only the data indexes overlapping the queried range are returned, otherwise all the account
+     * data indexes (wildcard index name).<br>
+     * A missing upper bound is replaced by the current date only if the account indexes the messages by the server timestamp (with the device timestamp a message
+     * can be indexed in the future).
+     *
+     * @param query
+     * @param accountServicePlan
+     * @return
+     */
+    private String getDataIndexName(MessageQuery query, MessageStoreConfiguration accountServicePlan) {
+        if (indexPruningEnabled) {
+            TimestampRange range = new TimestampRange();
+            if (range.collect(query.getPredicate())) {
+                if (range.end == null && DataIndexBy.SERVER_TIMESTAMP.equals(accountServicePlan.getDataIndexBy())) {
+                    range.end = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+                }
+                if (range.start != null && range.end != null) {
+                    String dataIndexNames = DatastoreUtils.getDataIndexNames(query.getScopeId(), range.start, range.end, indexPruningMaxIndexes);
+                    if (dataIndexNames != null) {
+                        return dataIndexNames;
+                    }
+                }
+            }
+        }
+        return SchemaUtil.getDataIndexName(query.getScopeId());
+    }
+
+    /**
+     * Message timestamp range required by a query predicate (intersection of the timestamp range predicates that every matching message must satisfy)
+     */
+    static class TimestampRange {
+
+        Long start;
+        Long end;
+        // true if the predicate has no condition other than the timestamp ranges
+        boolean timestampOnly = true;
+
+        /**
+         * Collect the timestamp bounds of the predicate
+         *
+         * @param predicate
+         * @return false if a timestamp bound cannot be evaluated (so no bound can be trusted)
+         */
+        boolean collect(StorablePredicate predicate) {
+            if (predicate instanceof AndPredicate) {
+                for (StorablePredicate andPredicate : ((AndPredicate) predicate).getPredicates()) {
+                    if (!collect(andPredicate)) {
+                        return false;
+                    }
+                }
+            } else if (predicate instanceof RangePredicate && MessageField.TIMESTAMP.field().equals(((RangePredicate) predicate).getField())) {
+                RangePredicate rangePredicate = (RangePredicate) predicate;
+                if (rangePredicate.getMinValue() != null) {
+                    Long min = toTimestamp(rangePredicate.getMinValue());
+                    if (min == null) {
+                        return false;
+                    }
+                    start = start != null ? Math.max(start, min) : min;
+                }
+                if (rangePredicate.getMaxValue() != null) {
+                    Long max = toTimestamp(rangePredicate.getMaxValue());
+                    if (max == null) {
+                        return false;
+                    }
+                    end = end != null ? Math.min(end, max) : max;
+                }
+            } else if (predicate != null) {
+                timestampOnly = false;
+            }
+            return true;
+        }
+
+        private static Long toTimestamp(Object value) {
+            if (value instanceof Date) {
+                return ((Date) value).getTime();
+            } else if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            return null;
+        }
+    }
+
     // TODO cache will not be reset from the client code it should be automatically reset
     // after some time.
     @SuppressWarnings("unused")
@@ -381,7 +802,7 @@ public final class MessageStoreFacade {
             ResultList<MetricInfo> metrics = client.query(typeDescriptor, metricQuery, MetricInfo.class);
 
             totalHits = metrics.getTotalCount();
-            LocalCache<String, Boolean> metricsCache = DatastoreCacheManager.getInstance().getMetricsCache();
+            Cache<String, Boolean> metricsCache = DatastoreCacheManager.getInstance().getMetricsCache();
             long toBeProcessed = totalHits > pageSize ? pageSize : totalHits;
 
             for (int i = 0; i < toBeProcessed; i++) {
@@ -414,7 +835,7 @@ public final class MessageStoreFacade {
             ResultList<ChannelInfo> channels = client.query(typeDescriptor, channelQuery, ChannelInfo.class);
 
             totalHits = channels.getTotalCount();
-            LocalCache<String, Boolean> channelsCache = DatastoreCacheManager.getInstance().getChannelsCache();
+            Cache<String, Boolean> channelsCache = DatastoreCacheManager.getInstance().getChannelsCache();
             long toBeProcessed = totalHits > pageSize ? pageSize : totalHits;
 
             for (int i = 0; i < toBeProcessed; i++) {
@@ -448,7 +869,7 @@ public final class MessageStoreFacade {
                 ResultList<ClientInfo> clients = client.query(typeDescriptor, clientInfoQuery, ClientInfo.class);
 
                 totalHits = clients.getTotalCount();
-                LocalCache<String, Boolean> clientsCache = DatastoreCacheManager.getInstance().getClientsCache();
+                Cache<String, Boolean> clientsCache = DatastoreCacheManager.getInstance().getClientsCache();
                 long toBeProcessed = totalHits > pageSize ? pageSize : totalHits;
 
                 for (int i = 0; i < toBeProcessed; i++) {
@@ -517,6 +938,40 @@ public final class MessageStoreFacade {
         return datastoreMessage;
     }
 
+    /**
+     * Stop the message store background tasks.<br>
+     * The messages already queued by the bulk writer and the pending asynchronous stores are completed (registries included) before returning.
+     */
+    public void close() {
+        if (retentionManager != null) {
+            retentionManager.stop();
+        }
+        synchronized (purgeManagerLock) {
+            purgeManagerClosed = true;
+            if (purgeManager != null) {
+                purgeManager.stop();
+            }
+        }
+        if (bulkWriter != null) {
+            bulkWriter.stop();
+        }
+        if (storeCompletionExecutor != null) {
+            try {
+                // wait for the pending stores, since the completion of a store still in flight is rejected by a shut down executor
+                if (!pendingStores.tryAcquire(pendingStoresMax, pendingStoreTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The pending stores are not completed within {} ms", pendingStoreTimeout);
+                }
+                storeCompletionExecutor.shutdown();
+                if (!storeCompletionExecutor.awaitTermination(pendingStoreTimeout, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The store completion threads are not terminated within {} ms", pendingStoreTimeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                storeCompletionExecutor.shutdownNow();
+            }
+        }
+    }
+
     public void refreshAllIndexes() throws ClientException {
         client.refreshAllIndexes();
     }
@@ -524,4 +979,20 @@ public final class MessageStoreFacade {
     public void deleteAllIndexes() throws ClientException {
         client.deleteAllIndexes();
     }
+
+    /**
+     * Message ready to be stored
+     */
+    private static class PendingStore {
+
+        private final TypeDescriptor typeDescriptor;
+        private final DatastoreMessage message;
+        private final MessageInfo messageInfo;
+
+        private PendingStore(TypeDescriptor typeDescriptor, DatastoreMessage message, MessageInfo messageInfo) {
+            this.typeDescriptor = typeDescriptor;
+            this.message = message;
+            this.messageInfo = messageInfo;
+        }
+    }
 }
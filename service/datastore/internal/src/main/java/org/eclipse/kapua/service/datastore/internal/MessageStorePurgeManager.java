@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.eclipse.kapua.service.datastore.model.query.SortField.ascending;
+import static org.eclipse.kapua.service.datastore.model.query.SortField.descending;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.commons.util.KapuaDateUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
+import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.MessageStoreFacade.TimestampRange;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.model.MessageDeleteJobImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.AndPredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.RangePredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.MessageSchema;
+import org.eclipse.kapua.service.datastore.internal.schema.SchemaUtil;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJobStatus;
+import org.eclipse.kapua.service.datastore.model.query.AndPredicate;
+import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
+import org.eclipse.kapua.service.datastore.model.query.StorablePredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Message store purge manager: it runs the asynchronous message delete jobs.<br>
+ * A job deletes the messages matching its query one data index at a time (oldest first):
+ * <ul>
+ * <li>if the query bounds only the message timestamp and the range covers all the messages of the data index, the whole index is dropped (the
+ * index is checked again just before the drop, so a message stored in the meantime outside the range is not lost)</li>
+ * <li>otherwise the messages are deleted by query, one time slice ({@link DatastoreSettingKey#CONFIG_PURGE_SLICE}) at a time, from the oldest to the newest
+ * matching message of the data index</li>
+ * </ul>
+ * The delete requests of each job are throttled to {@link DatastoreSettingKey#CONFIG_PURGE_REQUESTS_PER_SECOND}.<br>
+ * A failed job keeps the position of the first not yet completed slice, so it can be resumed from there.<br>
+ * The jobs are kept in memory (by the node that started them) until {@link DatastoreSettingKey#CONFIG_PURGE_JOB_EXPIRE_AFTER} after their end.
+ *
+ * @since 1.0.0
+ */
+public class MessageStorePurgeManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStorePurgeManager.class);
+
+    private static final String METRIC_MODULE_NAME = "datastore";
+    private static final String METRIC_COMPONENT_NAME = "purge";
+
+    private static final long STOP_TIMEOUT = 30000L;
+
+    // the data indexes are named <scope id>-<year>-<week>
+    private static final Pattern DATA_INDEX_NAME = Pattern.compile("^[0-9]+-[0-9]{4}-[0-9]{2}$");
+
+    private final DatastoreClient client;
+    private final ConfigurationProvider configProvider;
+    private final MessageStoreMediator mediator;
+
+    private final int threads;
+    private final long slice;
+    private final double requestsPerSecond;
+    private final long jobExpireAfter;
+
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private volatile boolean stopping;
+
+    // metrics
+    private final Counter metricJobStarted;
+    private final Counter metricJobFailed;
+    private final Counter metricIndexDeleted;
+    private final Counter metricSliceDeleted;
+    private final Timer metricSliceTime;
+
+    /**
+     * Constructs the purge manager (the jobs are accepted once the {@link #start()} method is called)
+     *
+     * @param client
+     * @param configProvider
+     * @param mediator
+     *
+     * @since 1.0.0
+     */
+    public MessageStorePurgeManager(DatastoreClient client, ConfigurationProvider configProvider, MessageStoreMediator mediator) {
+        this(client, configProvider, mediator,
+                DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_PURGE_THREADS, 1),
+                TimeUnit.SECONDS.toMillis(DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_PURGE_SLICE, 86400L)),
+                DatastoreSettings.getInstance().getDouble(DatastoreSettingKey.CONFIG_PURGE_REQUESTS_PER_SECOND, 1.0),
+                TimeUnit.SECONDS.toMillis(DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_PURGE_JOB_EXPIRE_AFTER, 86400L)));
+    }
+
+    /**
+     * Constructs the purge manager with the provided limits
+     *
+     * @param client
+     * @param configProvider
+     * @param mediator
+     * @param threads
+     * @param slice
+     * @param requestsPerSecond
+     * @param jobExpireAfter
+     *
+     * @since 1.0.0
+     */
+    MessageStorePurgeManager(DatastoreClient client, ConfigurationProvider configProvider, MessageStoreMediator mediator, int threads, long slice, double requestsPerSecond,
+            long jobExpireAfter) {
+        this.client = client;
+        this.configProvider = configProvider;
+        this.mediator = mediator;
+        this.threads = threads;
+        this.slice = slice;
+        this.requestsPerSecond = requestsPerSecond;
+        this.jobExpireAfter = jobExpireAfter;
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricJobStarted = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "job", "started", "count");
+        metricJobFailed = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "job", "failed", "count");
+        metricIndexDeleted = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "index", "deleted", "count");
+        metricSliceDeleted = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "slice", "deleted", "count");
+        metricSliceTime = metricsService.getTimer(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "slice", "time", "s");
+    }
+
+    /**
+     * Start the purge threads
+     *
+     * @since 1.0.0
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        stopping = false;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "datastore-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the purge threads (no new job is accepted).<br>
+     * The running and queued jobs are interrupted at the next delete request and marked as failed (the jobs are not resumable once stopped).
+     *
+     * @since 1.0.0
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            stopping = true;
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The message delete jobs are not stopped within {} ms", STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Queue a new job deleting the messages matching the query
+     *
+     * @param query
+     * @return the job status
+     *
+     * @since 1.0.0
+     */
+    public MessageDeleteJob submit(MessageQuery query) {
+        evictEndedJobs();
+
+        PurgeJob job = new PurgeJob(UUID.randomUUID().toString(), query);
+        jobs.put(job.id, job);
+        execute(job);
+        metricJobStarted.inc();
+        return job.getStatus();
+    }
+
+    /**
+     * Get the job status
+     *
+     * @param scopeId
+     * @param jobId
+     * @return the job status or null if the job is unknown (or belongs to another scope)
+     *
+     * @since 1.0.0
+     */
+    public MessageDeleteJob find(KapuaId scopeId, String jobId) {
+        PurgeJob job = getJob(scopeId, jobId);
+        return job != null ? job.getStatus() : null;
+    }
+
+    /**
+     * Queue again a failed job (it restarts from the first not yet completed slice). The job is left untouched if not failed.
+     *
+     * @param scopeId
+     * @param jobId
+     * @return the job status or null if the job is unknown (or belongs to another scope)
+     *
+     * @since 1.0.0
+     */
+    public MessageDeleteJob resume(KapuaId scopeId, String jobId) {
+        PurgeJob job = getJob(scopeId, jobId);
+        if (job == null) {
+            return null;
+        }
+        if (job.queueAgain()) {
+            execute(job);
+        }
+        return job.getStatus();
+    }
+
+    private PurgeJob getJob(KapuaId scopeId, String jobId) {
+        PurgeJob job = jobs.get(jobId);
+        return job != null && job.query.getScopeId().equals(scopeId) ? job : null;
+    }
+
+    private synchronized void execute(PurgeJob job) {
+        if (executor == null) {
+            throw new IllegalStateException("Message store purge manager not started");
+        }
+        executor.execute(job);
+    }
+
+    private void evictEndedJobs() {
+        long now = System.currentTimeMillis();
+        for (Iterator<PurgeJob> iterator = jobs.values().iterator(); iterator.hasNext();) {
+            Date endedOn = iterator.next().getStatus().getEndedOn();
+            if (endedOn != null && endedOn.getTime() < now - jobExpireAfter) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Message delete job.<br>
+     * The status is guarded by the job monitor, while the progress position is used only by the thread running the job.
+     */
+    private final class PurgeJob implements Runnable {
+
+        private final String id;
+        private final MessageQuery query;
+        private final MessageDeleteJobImpl status = new MessageDeleteJobImpl();
+
+        // progress position: the data indexes to be processed (null until the job is started), the current data index and, if the data index
+        // is being deleted by query, the start of the next slice and the timestamp of the last matching message
+        private List<String> indexes;
+        private int nextIndex;
+        private Long nextSliceStart;
+        private long lastTimestamp;
+
+        private PurgeJob(String id, MessageQuery query) {
+            this.id = id;
+            this.query = query;
+            status.setId(id);
+            status.setScopeId(query.getScopeId());
+            status.setStatus(MessageDeleteJobStatus.QUEUED);
+            status.setCreatedOn(new Date());
+        }
+
+        private synchronized MessageDeleteJob getStatus() {
+            return new MessageDeleteJobImpl(status);
+        }
+
+        private synchronized boolean queueAgain() {
+            if (status.getStatus() != MessageDeleteJobStatus.FAILED) {
+                return false;
+            }
+            status.setStatus(MessageDeleteJobStatus.QUEUED);
+            status.setEndedOn(null);
+            status.setErrorMessage(null);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                status.setStatus(MessageDeleteJobStatus.RUNNING);
+                status.setStartedOn(new Date());
+            }
+            try {
+                RateLimiter rateLimiter = RateLimiter.create(requestsPerSecond);
+                if (indexes == null) {
+                    indexes = getIndexes();
+                    synchronized (this) {
+                        status.setIndexesTotal(indexes.size());
+                    }
+                }
+                String activeIndexName = DatastoreUtils.getDataIndexName(query.getScopeId(), KapuaDateUtils.getKapuaSysDate().toEpochMilli());
+                while (nextIndex < indexes.size()) {
+                    checkNotStopping();
+                    purgeIndex(indexes.get(nextIndex), activeIndexName, rateLimiter);
+                    nextIndex++;
+                    nextSliceStart = null;
+                    synchronized (this) {
+                        status.setIndexesCompleted(nextIndex);
+                    }
+                }
+                synchronized (this) {
+                    status.setStatus(MessageDeleteJobStatus.COMPLETED);
+                    status.setEndedOn(new Date());
+                }
+                logger.info("Message delete job {} completed", id);
+            } catch (Throwable t) {
+                metricJobFailed.inc();
+                logger.warn("Message delete job {} failed", id, t);
+                synchronized (this) {
+                    status.setStatus(MessageDeleteJobStatus.FAILED);
+                    status.setEndedOn(new Date());
+                    status.setErrorMessage(t.getMessage() != null ? t.getMessage() : t.getClass().getName());
+                }
+            } finally {
+                // a failed job may have deleted some messages too
+                mediator.onAfterMessagesDelete(query.getScopeId());
+            }
+        }
+
+        private List<String> getIndexes() throws Exception {
+            KapuaId scopeId = query.getScopeId();
+            MessageStoreConfiguration accountServicePlan = KapuaSecurityUtils.doPrivileged(() -> configProvider.getConfiguration(scopeId));
+            if (!accountServicePlan.getDataStorageEnabled() || accountServicePlan.getDataTimeToLiveMilliseconds() == MessageStoreConfiguration.DISABLED) {
+                logger.debug("Storage not enabled for account {}, skipping delete", scopeId);
+                return Collections.emptyList();
+            }
+            List<String> indexNames = new ArrayList<>();
+            for (IndexInfo indexInfo : client.getIndexes(SchemaUtil.getDataIndexName(scopeId))) {
+                if (DATA_INDEX_NAME.matcher(indexInfo.getIndex()).matches() && indexInfo.getDocsCount() > 0) {
+                    indexNames.add(indexInfo.getIndex());
+                }
+            }
+            Collections.sort(indexNames);
+            return indexNames;
+        }
+
+        private void purgeIndex(String indexName, String activeIndexName, RateLimiter rateLimiter) throws ClientException {
+            TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MessageSchema.MESSAGE_TYPE_NAME);
+            if (nextSliceStart == null) {
+                Long oldestTimestamp = getTimestamp(typeDescriptor, null, true);
+                if (oldestTimestamp == null) {
+                    return;
+                }
+                // the active index may still receive messages outside the range, so it's never dropped
+                if (!indexName.equals(activeIndexName) && coversIndex(oldestTimestamp, getTimestamp(typeDescriptor, null, false)) &&
+                        coversIndexBeforeDelete(typeDescriptor, rateLimiter)) {
+                    client.deleteIndexes(Collections.singletonList(indexName));
+                    // a late message for the deleted index creates it again (with the proper mappings): the other nodes check the index again once
+                    // their cached metadata expires (see DatastoreSettingKey#CONFIG_CACHE_METADATA_LOCAL_EXPIRE_AFTER)
+                    DatastoreCacheManager.getInstance().getMetadataCache().remove(indexName);
+                    metricIndexDeleted.inc();
+                    synchronized (this) {
+                        status.setIndexesDeleted(status.getIndexesDeleted() + 1);
+                    }
+                    logger.info("Message delete job {}: data index {} deleted", id, indexName);
+                    return;
+                }
+                Long firstTimestamp = getTimestamp(typeDescriptor, query.getPredicate(), true);
+                Long newestTimestamp = getTimestamp(typeDescriptor, query.getPredicate(), false);
+                if (firstTimestamp == null || newestTimestamp == null) {
+                    return;
+                }
+                nextSliceStart = firstTimestamp;
+                lastTimestamp = newestTimestamp;
+            }
+            while (nextSliceStart <= lastTimestamp) {
+                checkNotStopping();
+                long sliceEnd = Math.min(nextSliceStart + slice - 1, lastTimestamp);
+                rateLimiter.acquire();
+                Context metricSliceTimeContext = metricSliceTime.time();
+                try {
+                    client.deleteByQuery(typeDescriptor, newSliceQuery(nextSliceStart, sliceEnd));
+                } finally {
+                    metricSliceTimeContext.stop();
+                }
+                metricSliceDeleted.inc();
+                nextSliceStart = sliceEnd + 1;
+                synchronized (this) {
+                    status.setSlicesCompleted(status.getSlicesCompleted() + 1);
+                }
+            }
+        }
+
+        private void checkNotStopping() {
+            if (stopping) {
+                throw new IllegalStateException("Message store purge manager stopped");
+            }
+        }
+
+        /**
+         * Check if the query matches all the messages of a data index (so the index can be dropped)
+         *
+         * @param oldestTimestamp
+         * @param newestTimestamp
+         * @return
+         */
+        private boolean coversIndex(long oldestTimestamp, long newestTimestamp) {
+            TimestampRange range = new TimestampRange();
+            return range.collect(query.getPredicate()) && range.timestampOnly &&
+                    (range.start == null || range.start <= oldestTimestamp) &&
+                    (range.end == null || range.end >= newestTimestamp);
+        }
+
+        /**
+         * Check again, just before dropping the data index, that the query still matches all its messages: a late message (stored while waiting for
+         * the rate limiter) outside the query range makes the index deleted by query instead
+         *
+         * @param typeDescriptor
+         * @param rateLimiter
+         * @return
+         * @throws ClientException
+         */
+        private boolean coversIndexBeforeDelete(TypeDescriptor typeDescriptor, RateLimiter rateLimiter) throws ClientException {
+            rateLimiter.acquire();
+            Long oldestTimestamp = getTimestamp(typeDescriptor, null, true);
+            Long newestTimestamp = getTimestamp(typeDescriptor, null, false);
+            if (oldestTimestamp == null || newestTimestamp == null || !coversIndex(oldestTimestamp, newestTimestamp)) {
+                logger.info("Message delete job {}: data index {} changed, deleting by query", id, typeDescriptor.getIndex());
+                return false;
+            }
+            return true;
+        }
+
+        private MessageQuery newSliceQuery(long sliceStart, long sliceEnd) {
+            AndPredicate andPredicate = new AndPredicateImpl();
+            if (query.getPredicate() != null) {
+                andPredicate.addPredicate(query.getPredicate());
+            }
+            andPredicate.addPredicate(new RangePredicateImpl(MessageField.TIMESTAMP, new Date(sliceStart), new Date(sliceEnd)));
+            MessageQuery sliceQuery = new MessageQueryImpl(query.getScopeId());
+            sliceQuery.setPredicate(andPredicate);
+            return sliceQuery;
+        }
+
+        private Long getTimestamp(TypeDescriptor typeDescriptor, StorablePredicate predicate, boolean oldest) throws ClientException {
+            MessageQuery messageQuery = new MessageQueryImpl(query.getScopeId());
+            messageQuery.setPredicate(predicate);
+            messageQuery.setAskTotalCount(false);
+            messageQuery.setFetchStyle(StorableFetchStyle.FIELDS);
+            messageQuery.setLimit(1);
+            messageQuery.setOffset(0);
+            messageQuery.setSortFields(Collections.singletonList(oldest ? ascending(MessageSchema.MESSAGE_TIMESTAMP) : descending(MessageSchema.MESSAGE_TIMESTAMP)));
+
+            ResultList<DatastoreMessage> result = client.query(typeDescriptor, messageQuery, DatastoreMessage.class);
+            if (result.getResult().isEmpty() || result.getResult().get(0).getTimestamp() == null) {
+                return null;
+            }
+            return result.getResult().get(0).getTimestamp().getTime();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.eclipse.kapua.service.datastore.model.query.SortField.descending;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.commons.util.KapuaDateUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
+import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.MessageSchema;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Message store retention manager.<br>
+ * A background job (run every {@link DatastoreSettingKey#CONFIG_RETENTION_INTERVAL}) walks the data indexes of all the accounts and:
+ * <ul>
+ * <li>deletes the data indexes whose newest message is older than the account data time to live (the whole index is dropped, so no delete by query is
+ * needed)</li>
+ * <li>if the warm phase is enabled, merges the data indexes whose newest message is older than {@link DatastoreSettingKey#CONFIG_RETENTION_WARM_AFTER}
+ * (no longer written). The merged indexes are not write blocked, so the message deletes, the delete jobs and the late messages (indexed by device timestamp) still
+ * work: an index written after the merge has more segments than the merge target and it is merged again by a later run</li>
+ * <li>reports the active data indexes bigger than {@link DatastoreSettingKey#CONFIG_RETENTION_ACTIVE_INDEX_SIZE_MAX}</li>
+ * </ul>
+ * The data index of the current period and the empty data indexes (such as the pre-created ones) are never deleted.
+ *
+ * @since 1.0.0
+ */
+public class MessageStoreRetentionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStoreRetentionManager.class);
+
+    private static final String METRIC_MODULE_NAME = "datastore";
+    private static final String METRIC_COMPONENT_NAME = "retention";
+
+    private static final long STOP_TIMEOUT = 30000L;
+
+    // the data indexes are named <scope id>-<year>-<week>
+    private static final String DATA_INDEX_PATTERN = "*-*";
+    private static final Pattern DATA_INDEX_NAME = Pattern.compile("^([0-9]+)-[0-9]{4}-[0-9]{2}$");
+
+    private final DatastoreClient client;
+    private final ConfigurationProvider configProvider;
+    private final MessageStoreMediator mediator;
+
+    private final long interval;
+    private final boolean warmEnabled;
+    private final long warmAfter;
+    private final int warmSegmentsMax;
+    private final long activeIndexSizeMax;
+
+    private ScheduledExecutorService executor;
+    private volatile boolean stopping;
+
+    // metrics
+    private final Counter metricIndexDeleted;
+    private final Counter metricReclaimedBytes;
+    private final Counter metricIndexWarm;
+    private final Counter metricIndexOversized;
+    private final Counter metricError;
+    private final Timer metricRunTime;
+
+    /**
+     * Constructs the retention manager (the job is scheduled by the {@link #start()} method)
+     *
+     * @param client
+     * @param configProvider
+     * @param mediator
+     *
+     * @since 1.0.0
+     */
+    public MessageStoreRetentionManager(DatastoreClient client, ConfigurationProvider configProvider, MessageStoreMediator mediator) {
+        this(client, configProvider, mediator,
+                DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_RETENTION_INTERVAL, 3600L),
+                DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_RETENTION_WARM_ENABLED, false),
+                TimeUnit.SECONDS.toMillis(DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_RETENTION_WARM_AFTER, 1209600L)),
+                DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_RETENTION_WARM_SEGMENTS_MAX, 1),
+                DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_RETENTION_ACTIVE_INDEX_SIZE_MAX, 0L));
+    }
+
+    /**
+     * Constructs the retention manager with the provided limits
+     *
+     * @param client
+     * @param configProvider
+     * @param mediator
+     * @param interval
+     * @param warmEnabled
+     * @param warmAfter
+     * @param warmSegmentsMax
+     * @param activeIndexSizeMax
+     *
+     * @since 1.0.0
+     */
+    MessageStoreRetentionManager(DatastoreClient client, ConfigurationProvider configProvider, MessageStoreMediator mediator, long interval, boolean warmEnabled, long warmAfter,
+            int warmSegmentsMax, long activeIndexSizeMax) {
+        this.client = client;
+        this.configProvider = configProvider;
+        this.mediator = mediator;
+        this.interval = interval;
+        this.warmEnabled = warmEnabled;
+        this.warmAfter = warmAfter;
+        this.warmSegmentsMax = warmSegmentsMax;
+        this.activeIndexSizeMax = activeIndexSizeMax;
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricIndexDeleted = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "index", "deleted", "count");
+        metricReclaimedBytes = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "index", "reclaimed", "bytes");
+        metricIndexWarm = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "index", "warm", "count");
+        metricIndexOversized = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "index", "oversized", "count");
+        metricError = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "error", "count");
+        metricRunTime = metricsService.getTimer(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "run", "time", "s");
+    }
+
+    /**
+     * Schedule the retention job
+     *
+     * @since 1.0.0
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        stopping = false;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datastore-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the retention job (a running job completes the scope being processed and skips the other ones)
+     *
+     * @since 1.0.0
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            stopping = true;
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The retention job is not stopped within {} ms", STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Run the retention job once
+     *
+     * @since 1.0.0
+     */
+    public void run() {
+        Context metricRunTimeContext = metricRunTime.time();
+        try {
+            Map<BigInteger, List<IndexInfo>> scopeIndexes = new HashMap<>();
+            for (IndexInfo indexInfo : client.getIndexes(DATA_INDEX_PATTERN)) {
+                Matcher matcher = DATA_INDEX_NAME.matcher(indexInfo.getIndex());
+                if (matcher.matches()) {
+                    scopeIndexes.computeIfAbsent(new BigInteger(matcher.group(1)), scope -> new ArrayList<>()).add(indexInfo);
+                }
+            }
+            long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+            for (Map.Entry<BigInteger, List<IndexInfo>> entry : scopeIndexes.entrySet()) {
+                if (stopping) {
+                    logger.info("Retention job stopped");
+                    break;
+                }
+                try {
+                    applyRetention(new KapuaEid(entry.getKey()), entry.getValue(), now);
+                } catch (Exception e) {
+                    metricError.inc();
+                    logger.warn("Cannot apply the retention to the data indexes of the scope {}", entry.getKey(), e);
+                }
+            }
+        } catch (Throwable t) {
+            // the next runs must be scheduled anyway
+            metricError.inc();
+            logger.error("Retention job failed", t);
+        } finally {
+            metricRunTimeContext.stop();
+        }
+    }
+
+    private void applyRetention(KapuaId scopeId, List<IndexInfo> indexes, long now) throws Exception {
+        MessageStoreConfiguration accountServicePlan = KapuaSecurityUtils.doPrivileged(() -> configProvider.getConfiguration(scopeId));
+        long ttl = accountServicePlan.getDataTimeToLiveMilliseconds();
+        String activeIndexName = DatastoreUtils.getDataIndexName(scopeId, now);
+
+        List<String> expiredIndexes = new ArrayList<>();
+        long expiredBytes = 0;
+        for (IndexInfo indexInfo : indexes) {
+            if (indexInfo.getIndex().equals(activeIndexName)) {
+                if (activeIndexSizeMax > 0 && indexInfo.getStoreSize() > activeIndexSizeMax) {
+                    metricIndexOversized.inc();
+                    logger.warn("The active data index {} size ({} bytes) exceeds the configured maximum ({} bytes)", indexInfo.getIndex(), indexInfo.getStoreSize(), activeIndexSizeMax);
+                }
+                continue;
+            }
+            if (indexInfo.getDocsCount() == 0) {
+                continue;
+            }
+            Long newestMessageOn = getNewestMessageTimestamp(scopeId, indexInfo.getIndex());
+            if (newestMessageOn == null) {
+                continue;
+            }
+            if (ttl != MessageStoreConfiguration.DISABLED && newestMessageOn < now - ttl) {
+                expiredIndexes.add(indexInfo.getIndex());
+                expiredBytes += indexInfo.getStoreSize();
+            } else if (warmEnabled && newestMessageOn < now - warmAfter && indexInfo.getSegmentsCount() > (long) warmSegmentsMax * indexInfo.getPrimaryShards()) {
+                warm(indexInfo);
+            }
+        }
+
+        if (!expiredIndexes.isEmpty()) {
+            client.deleteIndexes(expiredIndexes);
+            for (String expiredIndex : expiredIndexes) {
+                // a late message for the deleted index creates it again (with the proper mappings): the other nodes check the index again once their
+                // cached metadata expires (see DatastoreSettingKey#CONFIG_CACHE_METADATA_LOCAL_EXPIRE_AFTER)
+                DatastoreCacheManager.getInstance().getMetadataCache().remove(expiredIndex);
+            }
+            mediator.onAfterMessagesDelete(scopeId);
+            metricIndexDeleted.inc(expiredIndexes.size());
+            metricReclaimedBytes.inc(expiredBytes);
+            logger.info("Expired data indexes deleted: {} ({} bytes reclaimed)", expiredIndexes, expiredBytes);
+        }
+    }
+
+    private void warm(IndexInfo indexInfo) {
+        try {
+            client.forceMerge(indexInfo.getIndex(), warmSegmentsMax);
+            metricIndexWarm.inc();
+            logger.info("Data index {} merged ({} segments)", indexInfo.getIndex(), indexInfo.getSegmentsCount());
+        } catch (ClientException e) {
+            // the merge is tried again by the next run (the merge may still be running anyway)
+            logger.warn("Cannot merge the data index {}", indexInfo.getIndex(), e);
+        }
+    }
+
+    private Long getNewestMessageTimestamp(KapuaId scopeId, String indexName) throws ClientException {
+        MessageQuery messageQuery = new MessageQueryImpl(scopeId);
+        messageQuery.setAskTotalCount(false);
+        messageQuery.setFetchStyle(StorableFetchStyle.FIELDS);
+        messageQuery.setLimit(1);
+        messageQuery.setOffset(0);
+        messageQuery.setSortFields(Collections.singletonList(descending(MessageSchema.MESSAGE_TIMESTAMP)));
+
+        ResultList<DatastoreMessage> result = client.query(new TypeDescriptor(indexName, MessageSchema.MESSAGE_TYPE_NAME), messageQuery, DatastoreMessage.class);
+        if (result.getResult().isEmpty() || result.getResult().get(0).getTimestamp() == null) {
+            return null;
+        }
+        return result.getResult().get(0).getTimestamp().getTime();
+    }
+}
@@ -11,9 +11,15 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.internal;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.KapuaIllegalArgumentException;
 import org.eclipse.kapua.commons.configuration.AbstractKapuaConfigurableService;
 import org.eclipse.kapua.commons.util.ArgumentValidator;
+import org.eclipse.kapua.commons.util.ShutdownHooks;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.locator.KapuaProvider;
 import org.eclipse.kapua.message.KapuaMessage;
@@ -28,12 +34,18 @@ import org.eclipse.kapua.service.datastore.DatastoreDomain;
 import org.eclipse.kapua.service.datastore.MessageStoreService;
 import org.eclipse.kapua.service.datastore.client.ClientUnavailableException;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.internal.client.DatastoreClientFactory;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreMediator;
+import org.eclipse.kapua.service.datastore.internal.schema.Schema;
 import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
 import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
 import org.eclipse.kapua.service.datastore.model.MessageListResult;
 import org.eclipse.kapua.service.datastore.model.StorableId;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
 import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
 import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
 
@@ -53,6 +65,9 @@ public class MessageStoreServiceImpl extends AbstractKapuaConfigurableService im
     private final AuthorizationService authorizationService = LOCATOR.getService(AuthorizationService.class);
     private final PermissionFactory permissionFactory = LOCATOR.getFactory(PermissionFactory.class);
     private final static Integer MAX_ENTRIES_ON_DELETE = DatastoreSettings.getInstance().get(Integer.class, DatastoreSettingKey.CONFIG_MAX_ENTRIES_ON_DELETE);
+    private final static int MAX_STREAM_BATCH_SIZE = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_STREAM_BATCH_SIZE_MAX, 10000);
+    private final static int MAX_AGGREGATION_GROUPS = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_AGGREGATION_GROUPS_MAX, 1000);
+    private final static long MIN_AGGREGATION_INTERVAL = DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_AGGREGATION_INTERVAL_MIN, 1000L);
 
     private final MessageStoreFacade messageStoreFacade;
 
@@ -64,9 +79,20 @@ public class MessageStoreServiceImpl extends AbstractKapuaConfigurableService im
     public MessageStoreServiceImpl() throws ClientUnavailableException {
         super(MessageStoreService.class.getName(), DATASTORE_DOMAIN, DatastoreEntityManagerFactory.getInstance());
 
+        Schema schema = DatastoreMediator.getInstance().getSchema();
+        schema.start();
+        ShutdownHooks.register("datastore schema", schema::stop);
+        if (DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_REGISTRY_BULK_ENABLED, false)) {
+            RegistryBulkWriter registryBulkWriter = new RegistryBulkWriter(DatastoreClientFactory.getInstance(), DatastoreMediator.getInstance());
+            registryBulkWriter.start();
+            DatastoreMediator.getInstance().setRegistryBulkWriter(registryBulkWriter);
+            // registered before the message store, so it's stopped after the message store has completed the pending stores (which queue registry entries)
+            ShutdownHooks.register("registry bulk writer", registryBulkWriter::stop);
+        }
         ConfigurationProviderImpl configurationProvider = new ConfigurationProviderImpl(this, accountService);
         messageStoreFacade = new MessageStoreFacade(configurationProvider, DatastoreMediator.getInstance());
         DatastoreMediator.getInstance().setMessageStoreFacade(messageStoreFacade);
+        ShutdownHooks.register("message store", messageStoreFacade::close);
     }
 
     @Override
@@ -82,6 +108,29 @@ public class MessageStoreServiceImpl extends AbstractKapuaConfigurableService im
         }
     }
 
+    @Override
+    public CompletableFuture<InsertResponse> storeAsync(KapuaMessage<?, ?> message)
+            throws KapuaException {
+        ArgumentValidator.notNull(message.getScopeId(), "message.scopeId");
+
+        checkDataAccess(message.getScopeId(), Actions.write);
+        CompletableFuture<InsertResponse> storeResult;
+        try {
+            storeResult = messageStoreFacade.storeAsync(message);
+        } catch (Exception e) {
+            throw KapuaException.internalError(e);
+        }
+        CompletableFuture<InsertResponse> result = new CompletableFuture<>();
+        storeResult.whenComplete((insertResponse, t) -> {
+            if (t == null) {
+                result.complete(insertResponse);
+            } else {
+                result.completeExceptionally(KapuaException.internalError(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t));
+            }
+        });
+        return result;
+    }
+
     @Override
     public void delete(KapuaId scopeId, StorableId id)
             throws KapuaException {
@@ -122,6 +171,54 @@ public class MessageStoreServiceImpl extends AbstractKapuaConfigurableService im
         }
     }
 
+    @Override
+    public ResultStream<DatastoreMessage> stream(MessageQuery query, int batchSize)
+            throws KapuaException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+        if (batchSize < 1 || batchSize > MAX_STREAM_BATCH_SIZE) {
+            throw new KapuaIllegalArgumentException("batchSize", String.valueOf(batchSize));
+        }
+
+        checkDataAccess(query.getScopeId(), Actions.read);
+        try {
+            return messageStoreFacade.stream(query, batchSize);
+        } catch (Exception e) {
+            throw KapuaException.internalError(e);
+        }
+    }
+
+    @Override
+    public MessageAggregationResult aggregate(MessageAggregationQuery query)
+            throws KapuaException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+        ArgumentValidator.notEmptyOrNull(query.getMetricName(), "query.metricName");
+        ArgumentValidator.notNull(query.getMetricType(), "query.metricType");
+        // only the numeric metrics can be aggregated
+        Class<?> metricType = query.getMetricType();
+        if (metricType != Integer.class && metricType != Long.class && metricType != Float.class && metricType != Double.class) {
+            throw new KapuaIllegalArgumentException("query.metricType", metricType.getName());
+        }
+        ArgumentValidator.notNull(query.getGroupBy(), "query.groupBy");
+        ArgumentValidator.numRange(query.getInterval(), MIN_AGGREGATION_INTERVAL, Long.MAX_VALUE, "query.interval");
+        ArgumentValidator.numRange(query.getMaxGroups(), 1, MAX_AGGREGATION_GROUPS, "query.maxGroups");
+        if (query.getPercentiles() != null) {
+            for (Double percentile : query.getPercentiles()) {
+                if (percentile == null || percentile < 0 || percentile > 100) {
+                    throw new KapuaIllegalArgumentException("query.percentiles", String.valueOf(percentile));
+                }
+            }
+        }
+
+        checkDataAccess(query.getScopeId(), Actions.read);
+        try {
+            return messageStoreFacade.aggregate(query);
+        } catch (Exception e) {
+            throw KapuaException.internalError(e);
+        }
+    }
+
     @Override
     public long count(MessageQuery query)
             throws KapuaException {
@@ -151,6 +248,47 @@ public class MessageStoreServiceImpl extends AbstractKapuaConfigurableService im
         }
     }
 
+    @Override
+    public MessageDeleteJob deleteAsync(MessageQuery query)
+            throws KapuaException {
+        ArgumentValidator.notNull(query, "query");
+        ArgumentValidator.notNull(query.getScopeId(), "query.scopeId");
+
+        checkDataAccess(query.getScopeId(), Actions.delete);
+        try {
+            return messageStoreFacade.deleteAsync(query);
+        } catch (Exception e) {
+            throw KapuaException.internalError(e);
+        }
+    }
+
+    @Override
+    public MessageDeleteJob findDeleteJob(KapuaId scopeId, String jobId)
+            throws KapuaException {
+        ArgumentValidator.notNull(scopeId, "scopeId");
+        ArgumentValidator.notEmptyOrNull(jobId, "jobId");
+
+        checkDataAccess(scopeId, Actions.read);
+        return messageStoreFacade.findDeleteJob(scopeId, jobId);
+    }
+
+    @Override
+    public MessageDeleteJob resumeDeleteJob(KapuaId scopeId, String jobId)
+            throws KapuaException {
+        ArgumentValidator.notNull(scopeId, "scopeId");
+        ArgumentValidator.notEmptyOrNull(jobId, "jobId");
+
+        checkDataAccess(scopeId, Actions.delete);
+        return messageStoreFacade.resumeDeleteJob(scopeId, jobId);
+    }
+
+    @Override
+    public void setConfigValues(KapuaId scopeId, KapuaId parentId, Map<String, Object> values)
+            throws KapuaException {
+        super.setConfigValues(scopeId, parentId, values);
+        ConfigurationProviderImpl.invalidate(scopeId);
+    }
+
     private void checkDataAccess(KapuaId scopeId, Actions action)
             throws KapuaException {
         Permission permission = permissionFactory.newPermission(DATASTORE_DOMAIN, action, scopeId);
@@ -214,8 +214,12 @@ public class MetricInfoRegistryFacade {
         }
 
         String indexName = SchemaUtil.getKapuaIndexName(scopeId);
-        TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MetricInfoSchema.METRIC_TYPE_NAME);
-        client.delete(typeDescriptor, id.toString());
+        MetricInfo metricInfo = find(scopeId, id);
+        if (metricInfo != null) {
+            TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MetricInfoSchema.METRIC_TYPE_NAME);
+            client.delete(typeDescriptor, id.toString());
+            mediator.onAfterMetricInfoDelete(scopeId, metricInfo);
+        }
     }
 
     /**
@@ -340,5 +344,6 @@ public class MetricInfoRegistryFacade {
         String indexName = SchemaUtil.getKapuaIndexName(query.getScopeId());
         TypeDescriptor typeDescriptor = new TypeDescriptor(indexName, MetricInfoSchema.METRIC_TYPE_NAME);
         client.deleteByQuery(typeDescriptor, query);
+        mediator.onAfterMetricInfoDelete(query);
     }
 }
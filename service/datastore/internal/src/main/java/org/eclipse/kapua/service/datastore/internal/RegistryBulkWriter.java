@@ -0,0 +1,447 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.cache.Cache;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.schema.ChannelInfoSchema;
+import org.eclipse.kapua.service.datastore.internal.schema.ClientInfoSchema;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.internal.schema.MetricInfoSchema;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Registries (client, channel and metric informations) bulk writer.<br>
+ * The registry entries not yet registered are queued (once per identifier) and a single flusher thread writes all of them (whatever the registry) by a bulk
+ * request every flush interval.<br>
+ * The entries are written as insert only upserts, so no lookup is needed before the write (an existing entry, and so its first message, is left untouched).<br>
+ * <br>
+ * The registered identifiers are kept by a bloom filter checked before the registry caches, so an already registered identifier costs neither a cache lookup
+ * nor a datastore request. The filter is renewed once it holds the expected number of identifiers or after the configured time (the previous filter is still
+ * checked until the next renewal), so a false positive (an entry never written) lasts at most two renewals.
+ *
+ * @since 1.0.0
+ */
+public class RegistryBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistryBulkWriter.class);
+
+    private static final String METRIC_MODULE_NAME = "datastore";
+    private static final String METRIC_COMPONENT_NAME = "registry";
+
+    private static final long STOP_TIMEOUT = 30000L;
+
+    /**
+     * Registry
+     *
+     * @since 1.0.0
+     */
+    public enum RegistryType {
+        CLIENT(ClientInfoSchema.CLIENT_TYPE_NAME),
+        CHANNEL(ChannelInfoSchema.CHANNEL_TYPE_NAME),
+        METRIC(MetricInfoSchema.METRIC_TYPE_NAME);
+
+        private final String typeName;
+
+        private RegistryType(String typeName) {
+            this.typeName = typeName;
+        }
+
+        private Cache<String, Boolean> getCache() {
+            switch (this) {
+            case CLIENT:
+                return DatastoreCacheManager.getInstance().getClientsCache();
+            case CHANNEL:
+                return DatastoreCacheManager.getInstance().getChannelsCache();
+            default:
+                return DatastoreCacheManager.getInstance().getMetricsCache();
+            }
+        }
+    }
+
+    private final DatastoreClient client;
+    private final MessageStoreMediator mediator;
+
+    private final long flushInterval;
+    private final int maxActions;
+    private final int maxPending;
+    private final int filterExpectedInsertions;
+    private final double filterFpp;
+    private final long filterExpireAfter;
+
+    private final Map<String, PendingRegistration> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean pendingFull = new AtomicBoolean();
+
+    private final Object filterLock = new Object();
+    private volatile BloomFilter<CharSequence> filter;
+    private volatile BloomFilter<CharSequence> previousFilter;
+    private int filterInsertions;
+    private long filterCreatedOn;
+
+    private ScheduledExecutorService executor;
+
+    // metrics
+    private final Counter metricFilterHit;
+    private final Counter metricCacheHit;
+    private final Counter metricDropped;
+    private final Counter metricWriteError;
+    private final Histogram metricBulkSize;
+    private final Timer metricBulkTime;
+
+    /**
+     * Constructs the registries bulk writer (the flusher thread is started by the {@link #start()} method)
+     *
+     * @param client
+     * @param mediator
+     *
+     * @since 1.0.0
+     */
+    public RegistryBulkWriter(DatastoreClient client, MessageStoreMediator mediator) {
+        this(client, mediator,
+                DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_REGISTRY_BULK_FLUSH_INTERVAL, 1000L),
+                DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_REGISTRY_BULK_ACTIONS_MAX, 1000),
+                DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_REGISTRY_BULK_PENDING_MAX, 100000),
+                DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_REGISTRY_FILTER_EXPECTED_INSERTIONS, 1000000),
+                DatastoreSettings.getInstance().getDouble(DatastoreSettingKey.CONFIG_REGISTRY_FILTER_FPP, 0.000001d),
+                TimeUnit.SECONDS.toMillis(DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_REGISTRY_FILTER_EXPIRE_AFTER, 3600L)));
+    }
+
+    /**
+     * Constructs the registries bulk writer with the provided limits
+     *
+     * @param client
+     * @param mediator
+     * @param flushInterval
+     * @param maxActions
+     * @param maxPending
+     * @param filterExpectedInsertions
+     * @param filterFpp
+     * @param filterExpireAfter
+     *
+     * @since 1.0.0
+     */
+    RegistryBulkWriter(DatastoreClient client, MessageStoreMediator mediator, long flushInterval, int maxActions, int maxPending, int filterExpectedInsertions, double filterFpp,
+            long filterExpireAfter) {
+        this.client = client;
+        this.mediator = mediator;
+        this.flushInterval = flushInterval;
+        this.maxActions = maxActions;
+        this.maxPending = maxPending;
+        this.filterExpectedInsertions = filterExpectedInsertions;
+        this.filterFpp = filterFpp;
+        this.filterExpireAfter = filterExpireAfter;
+        clear();
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricFilterHit = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "filter", "hit", "count");
+        metricCacheHit = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "cache", "hit", "count");
+        metricDropped = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "pending", "dropped", "count");
+        metricWriteError = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write", "error", "count");
+        metricBulkSize = metricsService.getHistogram(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "request", "size", "count");
+        metricBulkTime = metricsService.getTimer(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "request", "time", "s");
+        try {
+            metricsService.registerGauge((Gauge<Integer>) pending::size, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "pending", "size", "count");
+        } catch (KapuaException e) {
+            logger.warn("Cannot register the registry pending size gauge: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Start the flusher thread
+     *
+     * @since 1.0.0
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datastore-registry-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the flusher thread.<br>
+     * The entries already queued are flushed before returning.
+     *
+     * @since 1.0.0
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.execute(this::flush);
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The registry writer is not stopped within {} ms ({} entries not written)", STOP_TIMEOUT, pending.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Check if the registry entry is already registered (or queued)
+     *
+     * @param registryType
+     * @param id
+     * @return
+     *
+     * @since 1.0.0
+     */
+    public boolean isRegistered(RegistryType registryType, String id) {
+        if (filter.mightContain(id) || previousFilter.mightContain(id)) {
+            metricFilterHit.inc();
+            return true;
+        }
+        if (registryType.getCache().get(id)) {
+            // registered by the registry services
+            metricCacheHit.inc();
+            markRegistered(id);
+            return true;
+        }
+        return pending.containsKey(id);
+    }
+
+    /**
+     * Queue the registry entry (it is written by the next flush).<br>
+     * If the pending entries limit is reached the entry is dropped (it will be queued again by a later message): the dropped entries are counted and the limit
+     * is logged once until the pending entries are flushed.
+     *
+     * @param registryType
+     * @param id
+     * @param registryEntry
+     * @param scopeId
+     * @param firstMessageOn
+     *
+     * @since 1.0.0
+     */
+    public void register(RegistryType registryType, String id, Object registryEntry, KapuaId scopeId, Date firstMessageOn) {
+        if (pending.size() >= maxPending) {
+            metricDropped.inc();
+            if (pendingFull.compareAndSet(false, true)) {
+                logger.warn("The registry pending entries limit ({}) is reached, the new entries are dropped until the next flush", maxPending);
+            }
+            return;
+        }
+        pending.putIfAbsent(id, new PendingRegistration(registryType, id, registryEntry, scopeId, firstMessageOn));
+        if (pending.size() >= maxActions && flushRequested.compareAndSet(false, true)) {
+            ScheduledExecutorService currentExecutor = executor;
+            if (currentExecutor != null) {
+                currentExecutor.execute(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Discard the registered identifiers and the queued entries (to be called once the registries are deleted)
+     *
+     * @since 1.0.0
+     */
+    public void clear() {
+        synchronized (filterLock) {
+            pending.clear();
+            resetFilters();
+        }
+    }
+
+    /**
+     * Discard the registered identifiers of the registry (to be called once some of its entries are deleted), so its entries are checked again by the next
+     * messages.<br>
+     * The filter is shared by the registries, so the identifiers of the other registries are discarded too (they are marked again by the registry caches).
+     *
+     * @param registryType
+     *
+     * @since 1.0.0
+     */
+    public void invalidate(RegistryType registryType) {
+        registryType.getCache().invalidateAll();
+        synchronized (filterLock) {
+            resetFilters();
+        }
+    }
+
+    /**
+     * Discard the registered identifiers (to be called once messages are deleted, since the registry entries referencing them may be deleted as well)
+     *
+     * @since 1.0.0
+     */
+    public void invalidate() {
+        synchronized (filterLock) {
+            resetFilters();
+        }
+    }
+
+    /**
+     * Get the number of queued entries
+     *
+     * @return
+     *
+     * @since 1.0.0
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private void resetFilters() {
+        filter = createFilter();
+        previousFilter = createFilter();
+        filterInsertions = 0;
+        filterCreatedOn = System.currentTimeMillis();
+    }
+
+    private void markRegistered(String id) {
+        synchronized (filterLock) {
+            if (filterInsertions >= filterExpectedInsertions) {
+                renewFilter();
+            }
+            // the filter puts are serialized while the lookups may see the bits set so far (a missed bit just costs a cache lookup)
+            filter.put(id);
+            filterInsertions++;
+        }
+    }
+
+    private void renewFilterIfExpired() {
+        synchronized (filterLock) {
+            if (System.currentTimeMillis() - filterCreatedOn >= filterExpireAfter) {
+                renewFilter();
+            }
+        }
+    }
+
+    private void renewFilter() {
+        previousFilter = filter;
+        filter = createFilter();
+        filterInsertions = 0;
+        filterCreatedOn = System.currentTimeMillis();
+    }
+
+    private BloomFilter<CharSequence> createFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), filterExpectedInsertions, filterFpp);
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        pendingFull.set(false);
+        try {
+            renewFilterIfExpired();
+            while (!pending.isEmpty()) {
+                Map<String, PendingRegistration> batch = new LinkedHashMap<>();
+                BulkUpdateRequest bulkRequest = new BulkUpdateRequest();
+                Iterator<PendingRegistration> pendingIterator = pending.values().iterator();
+                while (pendingIterator.hasNext() && batch.size() < maxActions) {
+                    PendingRegistration registration = pendingIterator.next();
+                    // a registration queued again while the bulk is in flight is written twice (the second write is a noop)
+                    pendingIterator.remove();
+                    try {
+                        Metadata metadata = mediator.getMetadata(registration.scopeId, registration.firstMessageOn.getTime());
+                        TypeDescriptor typeDescriptor = new TypeDescriptor(metadata.getRegistryIndexName(), registration.registryType.typeName);
+                        bulkRequest.add(new UpdateRequest(typeDescriptor, registration.id, registration.registryEntry, true));
+                        batch.put(registration.id, registration);
+                    } catch (Exception e) {
+                        metricWriteError.inc();
+                        logger.warn("Cannot get the registry index of the entry {}", registration.id, e);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    write(batch, bulkRequest);
+                }
+            }
+        } catch (Throwable t) {
+            // the next flushes must be scheduled anyway
+            logger.error("Registry flush failed", t);
+        }
+    }
+
+    private void write(Map<String, PendingRegistration> batch, BulkUpdateRequest bulkRequest) {
+        metricBulkSize.update(batch.size());
+        BulkUpdateResponse bulkResponse;
+        Context metricBulkTimeContext = metricBulkTime.time();
+        try {
+            bulkResponse = client.upsert(bulkRequest);
+        } catch (Throwable t) {
+            // the entries are not marked as registered, so they are queued again by the next messages
+            metricWriteError.inc(batch.size());
+            logger.warn("Bulk upsert of {} registry entries failed", batch.size(), t);
+            return;
+        } finally {
+            metricBulkTimeContext.stop();
+        }
+        for (UpdateResponse response : bulkResponse.getResponse()) {
+            PendingRegistration registration = response.getId() != null ? batch.get(response.getId()) : null;
+            if (!response.isResult() || registration == null) {
+                metricWriteError.inc();
+                logger.warn("Registry entry upsert failed [{}, {}]", response.getId(), response.getDescription());
+                continue;
+            }
+            registration.registryType.getCache().put(registration.id, true);
+            markRegistered(registration.id);
+        }
+    }
+
+    /**
+     * Queued registry entry
+     */
+    private static class PendingRegistration {
+
+        private final RegistryType registryType;
+        private final String id;
+        private final Object registryEntry;
+        private final KapuaId scopeId;
+        private final Date firstMessageOn;
+
+        private PendingRegistration(RegistryType registryType, String id, Object registryEntry, KapuaId scopeId, Date firstMessageOn) {
+            this.registryType = registryType;
+            this.id = id;
+            this.registryEntry = registryEntry;
+            this.scopeId = scopeId;
+            this.firstMessageOn = firstMessageOn;
+        }
+    }
+}
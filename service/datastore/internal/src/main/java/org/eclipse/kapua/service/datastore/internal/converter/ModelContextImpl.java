@@ -14,6 +14,7 @@ package org.eclipse.kapua.service.datastore.internal.converter;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +31,8 @@ import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.datastore.client.DatamodelMappingException;
 import org.eclipse.kapua.service.datastore.client.ModelContext;
 import org.eclipse.kapua.service.datastore.client.QueryConverter;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache.MetricName;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
 import org.eclipse.kapua.service.datastore.internal.model.ChannelInfoImpl;
 import org.eclipse.kapua.service.datastore.internal.model.ClientInfoImpl;
@@ -49,7 +52,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
 /**
@@ -66,6 +72,8 @@ public class ModelContextImpl implements ModelContext {
     private static final String UNSUPPORTED_OBJECT_TYPE_ERROR_MSG = "The conversion of object [%s] is not supported!";
     private static final String UNMARSHAL_INVALID_PARAMETERS_ERROR_MSG = "Object and/or object type cannot be null!";
     private static final String MARSHAL_INVALID_PARAMETERS_ERROR_MSG = "Object and/or object type cannot be null!";
+    private static final String UNEXPECTED_TOKEN_ERROR_MSG = "Unexpected token [%s]: the serialized object must start with a start object token!";
+    private static final String MISSING_FIELD_ERROR_MSG = "Missing field [%s]!";
 
     @SuppressWarnings("unchecked")
     @Override
@@ -113,6 +121,59 @@ public class ModelContextImpl implements ModelContext {
         throw new DatamodelMappingException(String.format(UNSUPPORTED_OBJECT_TYPE_ERROR_MSG, object.getClass().getName()));
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T unmarshal(Class<T> clazz, String id, Object fetchStyle, JsonParser parser) throws DatamodelMappingException, IOException {
+        if (clazz == null || parser == null) {
+            throw new DatamodelMappingException(UNMARSHAL_INVALID_PARAMETERS_ERROR_MSG);
+        }
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new DatamodelMappingException(String.format(UNEXPECTED_TOKEN_ERROR_MSG, parser.getCurrentToken()));
+        }
+        try {
+            if (DatastoreMessage.class.isAssignableFrom(clazz)) {
+                return (T) readDatastoreMessage(id, getStorableFetchStyle(fetchStyle), parser);
+            } else if (ClientInfo.class.isAssignableFrom(clazz)) {
+                return (T) readClientInfo(id, parser);
+            } else if (MetricInfo.class.isAssignableFrom(clazz)) {
+                return (T) readMetricInfo(id, parser);
+            } else if (ChannelInfo.class.isAssignableFrom(clazz)) {
+                return (T) readChannelInfo(id, parser);
+            }
+        } catch (ParseException | IllegalArgumentException e) {
+            throw new DatamodelMappingException(CONVERSION_ERROR_MSG, e);
+        }
+        throw new DatamodelMappingException(String.format(UNSUPPORTED_OBJECT_TYPE_ERROR_MSG, clazz.getName()));
+    }
+
+    @Override
+    public void marshal(Object object, JsonGenerator generator) throws DatamodelMappingException, IOException {
+        if (object == null || generator == null) {
+            throw new DatamodelMappingException(MARSHAL_INVALID_PARAMETERS_ERROR_MSG);
+        }
+        try {
+            if (object instanceof DatastoreMessage) {
+                writeDatastoreMessage((DatastoreMessage) object, generator);
+                return;
+            }
+            if (object instanceof ClientInfo) {
+                writeClientInfo((ClientInfo) object, generator);
+                return;
+            }
+            if (object instanceof ChannelInfo) {
+                writeChannelInfo((ChannelInfo) object, generator);
+                return;
+            }
+            if (object instanceof MetricInfo) {
+                writeMetricInfo((MetricInfo) object, generator);
+                return;
+            }
+        } catch (ParseException e) {
+            throw new DatamodelMappingException(DATE_CONVERSION_ERROR_MSG, e);
+        }
+        throw new DatamodelMappingException(String.format(UNSUPPORTED_OBJECT_TYPE_ERROR_MSG, object.getClass().getName()));
+    }
+
     /*
      * 
      * unmarshal section
@@ -333,9 +394,9 @@ public class ModelContextImpl implements ModelContext {
             for (String kapuaMetricName : metricNames) {
                 Object metricValue = kapuaMetrics.get(kapuaMetricName);
                 // Sanitize field names: '.' is not allowed
-                String metricName = DatastoreUtils.normalizeMetricName(kapuaMetricName);
-                String clientMetricType = DatastoreUtils.getClientMetricFromType(metricValue.getClass());
-                String clientMetricTypeAcronim = DatastoreUtils.getClientMetricFromAcronym(clientMetricType);
+                MetricName cachedMetricName = DatastoreNameCache.getMetricName(kapuaMetricName, metricValue.getClass());
+                String metricName = cachedMetricName.getName();
+                String clientMetricTypeAcronim = DatastoreUtils.getClientMetricFromAcronym(cachedMetricName.getType());
                 Map<String, Object> field = new HashMap<String, Object>();
                 if (DatastoreUtils.isDateMetric(clientMetricTypeAcronim) && metricValue instanceof Date) {
                     field.put(clientMetricTypeAcronim, KapuaDateUtils.formatDate((Date) metricValue));
@@ -382,8 +443,500 @@ public class ModelContextImpl implements ModelContext {
         return unmarshalledMetricInfo;
     }
 
+    /*
+     * 
+     * streaming unmarshal section (the same conversion of the unmarshal section, reading the client object from the parser)
+     * 
+     */
+    private DatastoreMessage readDatastoreMessage(String id, StorableFetchStyle fetchStyle, JsonParser parser) throws DatamodelMappingException, IOException, ParseException {
+        DatastoreMessageImpl message = new DatastoreMessageImpl();
+        message.setDatastoreId(new StorableIdImpl(id));
+        KapuaDataChannelImpl dataChannel = new KapuaDataChannelImpl();
+        message.setChannel(dataChannel);
+        KapuaDataPayloadImpl payload = new KapuaDataPayloadImpl();
+        boolean fieldsOnly = fetchStyle.equals(StorableFetchStyle.FIELDS);
+        boolean fullSource = fetchStyle.equals(StorableFetchStyle.SOURCE_FULL);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case MessageSchema.MESSAGE_SCOPE_ID:
+                message.setScopeId(new KapuaEid(new BigInteger(parser.getText())));
+                break;
+            case MessageSchema.MESSAGE_DEVICE_ID:
+                String deviceId = readString(parser);
+                message.setDeviceId(deviceId != null ? new KapuaEid(new BigInteger(deviceId)) : null);
+                break;
+            case MessageSchema.MESSAGE_CLIENT_ID:
+                message.setClientId(readString(parser));
+                break;
+            case MessageSchema.MESSAGE_TIMESTAMP:
+                message.setTimestamp(KapuaDateUtils.parseDate(readString(parser)));
+                break;
+            case MessageSchema.MESSAGE_CHANNEL_PARTS:
+                if (fieldsOnly || parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                } else {
+                    List<String> channelParts = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        channelParts.add(parser.getText());
+                    }
+                    dataChannel.setSemanticParts(channelParts);
+                }
+                break;
+            case MessageSchema.MESSAGE_POSITION:
+                if (fieldsOnly || parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                } else {
+                    message.setPosition(readPosition(parser));
+                }
+                break;
+            case MessageSchema.MESSAGE_CAPTURED_ON:
+                if (!fieldsOnly) {
+                    message.setCapturedOn(KapuaDateUtils.parseDate(readString(parser)));
+                }
+                break;
+            case MessageSchema.MESSAGE_SENT_ON:
+                if (!fieldsOnly) {
+                    message.setSentOn(KapuaDateUtils.parseDate(readString(parser)));
+                }
+                break;
+            case MessageSchema.MESSAGE_RECEIVED_ON:
+                if (!fieldsOnly) {
+                    message.setReceivedOn(KapuaDateUtils.parseDate(readString(parser)));
+                }
+                break;
+            case MessageSchema.MESSAGE_METRICS:
+                if (fieldsOnly || parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                } else {
+                    payload.setMetrics(readMetrics(parser));
+                }
+                break;
+            case MessageSchema.MESSAGE_BODY:
+                if (fullSource && parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    payload.setBody(parser.getBinaryValue(Base64Variants.getDefaultVariant()));
+                }
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+        if (message.getScopeId() == null) {
+            throw new DatamodelMappingException(String.format(MISSING_FIELD_ERROR_MSG, MessageSchema.MESSAGE_SCOPE_ID));
+        }
+        // the payload is returned only with the full source (see the unmarshal section)
+        if (fullSource) {
+            message.setPayload(payload);
+        }
+        return message;
+    }
+
+    private KapuaPosition readPosition(JsonParser parser) throws IOException, ParseException {
+        KapuaPositionImpl position = new KapuaPositionImpl();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (fieldName) {
+            case MessageSchema.MESSAGE_POS_LOCATION:
+                while (token == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String locationFieldName = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    if (MessageSchema.MESSAGE_POSITION_LATITUDE.equals(locationFieldName)) {
+                        position.setLatitude(parser.getDoubleValue());
+                    } else if (MessageSchema.MESSAGE_POSITION_LONGITUDE.equals(locationFieldName)) {
+                        position.setLongitude(parser.getDoubleValue());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                break;
+            case MessageSchema.MESSAGE_POS_ALT:
+                position.setAltitude(parser.getDoubleValue());
+                break;
+            case MessageSchema.MESSAGE_POS_HEADING:
+                position.setHeading(parser.getDoubleValue());
+                break;
+            case MessageSchema.MESSAGE_POS_PRECISION:
+                position.setPrecision(parser.getDoubleValue());
+                break;
+            case MessageSchema.MESSAGE_POS_SATELLITES:
+                position.setSatellites(parser.getIntValue());
+                break;
+            case MessageSchema.MESSAGE_POS_SPEED:
+                position.setSpeed(parser.getDoubleValue());
+                break;
+            case MessageSchema.MESSAGE_POS_STATUS:
+                position.setStatus(parser.getIntValue());
+                break;
+            case MessageSchema.MESSAGE_POS_TIMESTAMP:
+                position.setTimestamp(KapuaDateUtils.parseDate(parser.getText()));
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+        return position;
+    }
+
+    private Map<String, Object> readMetrics(JsonParser parser) throws IOException {
+        Map<String, Object> payloadMetrics = new HashMap<String, Object>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String metricName = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            // the metric value is the first (and only) field of the metric object
+            if (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String valueType = parser.getCurrentName();
+                parser.nextToken();
+                Object value = readScalar(parser);
+                // since elasticsearch doesn't return always the same type of the saved field
+                // (usually due to some promotion of the field type)
+                // we need to check the metric type returned by elasticsearch and, if needed, convert to the proper type
+                payloadMetrics.put(DatastoreUtils.restoreMetricName(metricName), DatastoreUtils.convertToCorrectType(valueType, value));
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+        }
+        return payloadMetrics;
+    }
+
+    private MetricInfo readMetricInfo(String id, JsonParser parser) throws DatamodelMappingException, IOException, ParseException {
+        String scopeId = null;
+        String clientId = null;
+        String channel = null;
+        String name = null;
+        String type = null;
+        String lastMsgTimestamp = null;
+        String lastMsgId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case MetricInfoSchema.METRIC_SCOPE_ID:
+                scopeId = readString(parser);
+                break;
+            case MetricInfoSchema.METRIC_CLIENT_ID:
+                clientId = readString(parser);
+                break;
+            case MetricInfoSchema.METRIC_CHANNEL:
+                channel = readString(parser);
+                break;
+            case MetricInfoSchema.METRIC_MTR:
+                if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    break;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String metricFieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (metricFieldName) {
+                    case MetricInfoSchema.METRIC_MTR_NAME:
+                        name = readString(parser);
+                        break;
+                    case MetricInfoSchema.METRIC_MTR_TYPE:
+                        type = readString(parser);
+                        break;
+                    case MetricInfoSchema.METRIC_MTR_TIMESTAMP:
+                        lastMsgTimestamp = readString(parser);
+                        break;
+                    case MetricInfoSchema.METRIC_MTR_MSG_ID:
+                        lastMsgId = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                    }
+                }
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+        MetricInfo metricInfo = new MetricInfoImpl(toScopeId(scopeId, MetricInfoSchema.METRIC_SCOPE_ID));
+        metricInfo.setId(new StorableIdImpl(id));
+        metricInfo.setClientId(clientId);
+        metricInfo.setChannel(channel);
+        metricInfo.setFirstMessageId(new StorableIdImpl(lastMsgId));
+        metricInfo.setName(name != null ? DatastoreUtils.restoreMetricName(name) : null);
+        metricInfo.setFirstMessageOn(KapuaDateUtils.parseDate(lastMsgTimestamp));
+        metricInfo.setMetricType(DatastoreUtils.convertToKapuaType(type));
+        return metricInfo;
+    }
+
+    private ChannelInfo readChannelInfo(String id, JsonParser parser) throws DatamodelMappingException, IOException, ParseException {
+        String scopeId = null;
+        String clientId = null;
+        String name = null;
+        String messageId = null;
+        String timestamp = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case ChannelInfoSchema.CHANNEL_SCOPE_ID:
+                scopeId = readString(parser);
+                break;
+            case ChannelInfoSchema.CHANNEL_CLIENT_ID:
+                clientId = readString(parser);
+                break;
+            case ChannelInfoSchema.CHANNEL_NAME:
+                name = readString(parser);
+                break;
+            case ChannelInfoSchema.CHANNEL_MESSAGE_ID:
+                messageId = readString(parser);
+                break;
+            case ChannelInfoSchema.CHANNEL_TIMESTAMP:
+                timestamp = readString(parser);
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+        ChannelInfo channelInfo = new ChannelInfoImpl(toScopeId(scopeId, ChannelInfoSchema.CHANNEL_SCOPE_ID));
+        channelInfo.setId(new StorableIdImpl(id));
+        channelInfo.setClientId(clientId);
+        channelInfo.setName(name);
+        channelInfo.setFirstMessageId(new StorableIdImpl(messageId));
+        channelInfo.setFirstMessageOn(KapuaDateUtils.parseDate(timestamp));
+        return channelInfo;
+    }
+
+    private ClientInfo readClientInfo(String id, JsonParser parser) throws DatamodelMappingException, IOException, ParseException {
+        String scopeId = null;
+        String clientId = null;
+        String messageId = null;
+        String timestamp = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+            case ClientInfoSchema.CLIENT_SCOPE_ID:
+                scopeId = readString(parser);
+                break;
+            case ClientInfoSchema.CLIENT_ID:
+                clientId = readString(parser);
+                break;
+            case ClientInfoSchema.CLIENT_MESSAGE_ID:
+                messageId = readString(parser);
+                break;
+            case ClientInfoSchema.CLIENT_TIMESTAMP:
+                timestamp = readString(parser);
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+        ClientInfo clientInfo = new ClientInfoImpl(toScopeId(scopeId, ClientInfoSchema.CLIENT_SCOPE_ID));
+        clientInfo.setId(new StorableIdImpl(id));
+        clientInfo.setClientId(clientId);
+        clientInfo.setFirstMessageId(new StorableIdImpl(messageId));
+        clientInfo.setFirstMessageOn(KapuaDateUtils.parseDate(timestamp));
+        return clientInfo;
+    }
+
+    private static KapuaId toScopeId(String scopeId, String fieldName) throws DatamodelMappingException {
+        if (scopeId == null) {
+            throw new DatamodelMappingException(String.format(MISSING_FIELD_ERROR_MSG, fieldName));
+        }
+        return new KapuaEid(new BigInteger(scopeId));
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    private static Object readScalar(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            return parser.getNumberValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        default:
+            parser.skipChildren();
+            return null;
+        }
+    }
+
+    /*
+     * 
+     * streaming marshal section (the same conversion of the marshal section, writing the client object to the generator)
+     */
+    private void writeDatastoreMessage(DatastoreMessage message, JsonGenerator generator) throws ParseException, IOException {
+        generator.writeStartObject();
+        generator.writeStringField(MessageSchema.MESSAGE_TIMESTAMP, KapuaDateUtils.formatDate(message.getTimestamp()));
+        generator.writeStringField(MessageSchema.MESSAGE_RECEIVED_ON, KapuaDateUtils.formatDate(message.getReceivedOn()));
+        generator.writeStringField(MessageSchema.MESSAGE_IP_ADDRESS, "127.0.0.1");// TODO
+        generator.writeStringField(MessageSchema.MESSAGE_SCOPE_ID, message.getScopeId().toStringId());
+        generator.writeStringField(MessageSchema.MESSAGE_DEVICE_ID, message.getDeviceId() == null ? null : message.getDeviceId().toStringId());
+        generator.writeStringField(MessageSchema.MESSAGE_CLIENT_ID, message.getClientId());
+        generator.writeStringField(MessageSchema.MESSAGE_CHANNEL, message.getChannel().toString());
+        List<String> channelParts = message.getChannel().getSemanticParts();
+        if (channelParts != null) {
+            generator.writeArrayFieldStart(MessageSchema.MESSAGE_CHANNEL_PARTS);
+            for (String channelPart : channelParts) {
+                generator.writeString(channelPart);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeNullField(MessageSchema.MESSAGE_CHANNEL_PARTS);
+        }
+        generator.writeStringField(MessageSchema.MESSAGE_CAPTURED_ON, KapuaDateUtils.formatDate(message.getCapturedOn()));
+        generator.writeStringField(MessageSchema.MESSAGE_SENT_ON, KapuaDateUtils.formatDate(message.getSentOn()));
+
+        KapuaPosition kapuaPosition = message.getPosition();
+        if (kapuaPosition != null) {
+            generator.writeObjectFieldStart(MessageSchema.MESSAGE_POSITION);
+            if (kapuaPosition.getLongitude() != null && kapuaPosition.getLatitude() != null) {
+                generator.writeObjectFieldStart(MessageSchema.MESSAGE_POS_LOCATION);
+                generator.writeNumberField(MessageSchema.MESSAGE_POSITION_LONGITUDE, kapuaPosition.getLongitude());
+                generator.writeNumberField(MessageSchema.MESSAGE_POSITION_LATITUDE, kapuaPosition.getLatitude());
+                generator.writeEndObject();
+            } else {
+                generator.writeNullField(MessageSchema.MESSAGE_POS_LOCATION);
+            }
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_ALT, kapuaPosition.getAltitude());
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_PRECISION, kapuaPosition.getPrecision());
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_HEADING, kapuaPosition.getHeading());
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_SPEED, kapuaPosition.getSpeed());
+            generator.writeStringField(MessageSchema.MESSAGE_POS_TIMESTAMP, KapuaDateUtils.formatDate(kapuaPosition.getTimestamp()));
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_SATELLITES, kapuaPosition.getSatellites());
+            writeNumberField(generator, MessageSchema.MESSAGE_POS_STATUS, kapuaPosition.getStatus());
+            generator.writeEndObject();
+        }
+        KapuaPayload payload = message.getPayload();
+        if (payload != null) {
+            byte[] body = payload.getBody();
+            if (body != null) {
+                generator.writeBinaryField(MessageSchema.MESSAGE_BODY, body);
+            } else {
+                generator.writeNullField(MessageSchema.MESSAGE_BODY);
+            }
+            Map<String, Object> kapuaMetrics = payload.getMetrics();
+            if (kapuaMetrics != null) {
+                generator.writeObjectFieldStart(MessageSchema.MESSAGE_METRICS);
+                for (Map.Entry<String, Object> kapuaMetric : kapuaMetrics.entrySet()) {
+                    Object metricValue = kapuaMetric.getValue();
+                    // Sanitize field names: '.' is not allowed
+                    MetricName cachedMetricName = DatastoreNameCache.getMetricName(kapuaMetric.getKey(), metricValue.getClass());
+                    String clientMetricTypeAcronim = DatastoreUtils.getClientMetricFromAcronym(cachedMetricName.getType());
+                    generator.writeObjectFieldStart(cachedMetricName.getName());
+                    generator.writeFieldName(clientMetricTypeAcronim);
+                    if (DatastoreUtils.isDateMetric(clientMetricTypeAcronim) && metricValue instanceof Date) {
+                        generator.writeString(KapuaDateUtils.formatDate((Date) metricValue));
+                    } else {
+                        writeScalar(generator, metricValue);
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeClientInfo(ClientInfo clientInfo, JsonGenerator generator) throws ParseException, IOException {
+        generator.writeStartObject();
+        generator.writeStringField(ClientInfoSchema.CLIENT_ID, clientInfo.getClientId());
+        generator.writeStringField(ClientInfoSchema.CLIENT_MESSAGE_ID, clientInfo.getFirstMessageId().toString());
+        generator.writeStringField(ClientInfoSchema.CLIENT_TIMESTAMP, KapuaDateUtils.formatDate(clientInfo.getFirstMessageOn()));
+        generator.writeStringField(ClientInfoSchema.CLIENT_SCOPE_ID, clientInfo.getScopeId().toStringId());
+        generator.writeEndObject();
+    }
+
+    private void writeChannelInfo(ChannelInfo channelInfo, JsonGenerator generator) throws ParseException, IOException {
+        generator.writeStartObject();
+        generator.writeStringField(ChannelInfoSchema.CHANNEL_NAME, channelInfo.getName());
+        generator.writeStringField(ChannelInfoSchema.CHANNEL_TIMESTAMP, KapuaDateUtils.formatDate(channelInfo.getFirstMessageOn()));
+        generator.writeStringField(ChannelInfoSchema.CHANNEL_CLIENT_ID, channelInfo.getClientId());
+        generator.writeStringField(ChannelInfoSchema.CHANNEL_SCOPE_ID, channelInfo.getScopeId().toStringId());
+        generator.writeStringField(ChannelInfoSchema.CHANNEL_MESSAGE_ID, channelInfo.getFirstMessageId().toString());
+        generator.writeEndObject();
+    }
+
+    private void writeMetricInfo(MetricInfo metricInfo, JsonGenerator generator) throws ParseException, IOException {
+        generator.writeStartObject();
+        generator.writeStringField(MetricInfoSchema.METRIC_SCOPE_ID, metricInfo.getScopeId().toStringId());
+        generator.writeStringField(MetricInfoSchema.METRIC_CLIENT_ID, metricInfo.getClientId());
+        generator.writeStringField(MetricInfoSchema.METRIC_CHANNEL, metricInfo.getChannel());
+        generator.writeObjectFieldStart(MetricInfoSchema.METRIC_MTR);
+        generator.writeStringField(MetricInfoSchema.METRIC_MTR_NAME, metricInfo.getName());
+        generator.writeStringField(MetricInfoSchema.METRIC_MTR_TYPE, DatastoreUtils.convertToClientMetricType(metricInfo.getMetricType()));
+        generator.writeStringField(MetricInfoSchema.METRIC_MTR_TIMESTAMP, KapuaDateUtils.formatDate(metricInfo.getFirstMessageOn()));
+        generator.writeStringField(MetricInfoSchema.METRIC_MTR_MSG_ID, metricInfo.getFirstMessageId().toString());
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String fieldName, Double value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(fieldName, value);
+        } else {
+            generator.writeNullField(fieldName);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String fieldName, Integer value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(fieldName, value);
+        } else {
+            generator.writeNullField(fieldName);
+        }
+    }
+
+    private static void writeScalar(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
     private StorableFetchStyle getStorableFetchStyle(Map<String, Object> objectMap) {
-        Object storableFetchStyle = objectMap.get(QueryConverter.QUERY_FETCH_STYLE_KEY);
+        return getStorableFetchStyle(objectMap.get(QueryConverter.QUERY_FETCH_STYLE_KEY));
+    }
+
+    private StorableFetchStyle getStorableFetchStyle(Object storableFetchStyle) {
         if (storableFetchStyle instanceof StorableFetchStyle) {
             return (StorableFetchStyle) storableFetchStyle;
         } else {
@@ -17,6 +17,7 @@ import org.eclipse.kapua.service.datastore.client.DatamodelMappingException;
 import org.eclipse.kapua.service.datastore.client.QueryConverter;
 import org.eclipse.kapua.service.datastore.client.QueryMappingException;
 import org.eclipse.kapua.service.datastore.internal.AbstractStorableQuery;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageAggregationQueryImpl;
 import org.eclipse.kapua.service.datastore.internal.schema.SchemaUtil;
 import org.eclipse.kapua.service.datastore.model.query.SortField;
 
@@ -73,6 +74,13 @@ public class QueryConverterImpl implements QueryConverter {
             rootNode.set(KEY_SIZE, SchemaUtil.getNumericNode(limit));
         }
         rootNode.set(KEY_SORT, sortNode);
+        // aggregations (only the aggregated values are returned)
+        if (storableQuery instanceof MessageAggregationQueryImpl) {
+            rootNode.remove(KEY_FROM);
+            rootNode.remove(KEY_SORT);
+            rootNode.set(KEY_SIZE, SchemaUtil.getNumericNode(0));
+            rootNode.set(MessageAggregationQueryImpl.AGGREGATIONS_KEY, ((MessageAggregationQueryImpl) storableQuery).toSerializedAggregations());
+        }
         return rootNode;
     }
 
@@ -67,7 +67,7 @@ public enum ChannelInfoField implements StorableField {
      * @param channel
      * @return
      */
-    private static String getOrDeriveId(StorableId id, KapuaId scopeId, String clientId, String channel) {
+    public static String getOrDeriveId(StorableId id, KapuaId scopeId, String clientId, String channel) {
         if (id == null) {
             return DatastoreUtils.getHashCode(scopeId.toCompactId(), clientId, channel);
         } else {
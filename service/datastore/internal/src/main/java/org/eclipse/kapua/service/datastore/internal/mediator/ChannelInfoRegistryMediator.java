@@ -17,6 +17,7 @@ import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.client.QueryMappingException;
 import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
 import org.eclipse.kapua.service.datastore.model.ChannelInfo;
+import org.eclipse.kapua.service.datastore.model.query.ChannelInfoQuery;
 
 /**
  * Channel information registry mediator definition
@@ -57,4 +58,11 @@ public interface ChannelInfoRegistryMediator {
      * @param channelInfo
      */
     public void onAfterChannelInfoDelete(ChannelInfo channelInfo);
+
+    /**
+     * On after channel info delete by query event handler
+     *
+     * @param query
+     */
+    public void onAfterChannelInfoDelete(ChannelInfoQuery query);
 }
@@ -16,6 +16,7 @@ import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
 import org.eclipse.kapua.service.datastore.model.ClientInfo;
+import org.eclipse.kapua.service.datastore.model.query.ClientInfoQuery;
 
 /**
  * Client information registry mediator definition
@@ -47,4 +48,11 @@ public interface ClientInfoRegistryMediator {
             throws KapuaIllegalArgumentException,
             ConfigurationException,
             ClientException;
+
+    /**
+     * On after client info delete by query event handler
+     *
+     * @param query
+     */
+    public void onAfterClientInfoDelete(ClientInfoQuery query);
 }
@@ -12,6 +12,9 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.internal.mediator;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kapua.KapuaIllegalArgumentException;
@@ -28,6 +31,8 @@ import org.eclipse.kapua.service.datastore.internal.ClientInfoRegistryFacade;
 import org.eclipse.kapua.service.datastore.internal.DatastoreCacheManager;
 import org.eclipse.kapua.service.datastore.internal.MessageStoreFacade;
 import org.eclipse.kapua.service.datastore.internal.MetricInfoRegistryFacade;
+import org.eclipse.kapua.service.datastore.internal.RegistryBulkWriter;
+import org.eclipse.kapua.service.datastore.internal.RegistryBulkWriter.RegistryType;
 import org.eclipse.kapua.service.datastore.internal.model.ChannelInfoImpl;
 import org.eclipse.kapua.service.datastore.internal.model.ClientInfoImpl;
 import org.eclipse.kapua.service.datastore.internal.model.MetricInfoImpl;
@@ -38,6 +43,9 @@ import org.eclipse.kapua.service.datastore.model.ChannelInfo;
 import org.eclipse.kapua.service.datastore.model.ClientInfo;
 import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
 import org.eclipse.kapua.service.datastore.model.MetricInfo;
+import org.eclipse.kapua.service.datastore.model.query.ChannelInfoQuery;
+import org.eclipse.kapua.service.datastore.model.query.ClientInfoQuery;
+import org.eclipse.kapua.service.datastore.model.query.MetricInfoQuery;
 
 /**
  * Datastore mediator definition
@@ -57,6 +65,7 @@ public class DatastoreMediator implements MessageStoreMediator,
     private ClientInfoRegistryFacade clientInfoStoreFacade;
     private ChannelInfoRegistryFacade channelInfoStoreFacade;
     private MetricInfoRegistryFacade metricInfoStoreFacade;
+    private RegistryBulkWriter registryBulkWriter;
 
     static {
         INSTANCE = new DatastoreMediator();
@@ -81,6 +90,16 @@ public class DatastoreMediator implements MessageStoreMediator,
         return INSTANCE;
     }
 
+    /**
+     * Get the datastore schema
+     *
+     * @return
+     * @since 1.0.0
+     */
+    public Schema getSchema() {
+        return esSchema;
+    }
+
     /**
      * Set the message store facade
      *
@@ -121,6 +140,16 @@ public class DatastoreMediator implements MessageStoreMediator,
         this.metricInfoStoreFacade = metricInfoStoreFacade;
     }
 
+    /**
+     * Set the registries bulk writer (if set, the registries are updated by the bulk writer after a message store operation)
+     *
+     * @param registryBulkWriter
+     * @since 1.0.0
+     */
+    public void setRegistryBulkWriter(RegistryBulkWriter registryBulkWriter) {
+        this.registryBulkWriter = registryBulkWriter;
+    }
+
     /*
      * 
      * Message Store Mediator methods
@@ -141,51 +170,124 @@ public class DatastoreMediator implements MessageStoreMediator,
             throws KapuaIllegalArgumentException,
             ConfigurationException,
             ClientException {
+        onAfterMessagesStore(Collections.singletonList(message));
+    }
+
+    @Override
+    public void onAfterMessagesStore(List<DatastoreMessage> messages)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException,
+            ClientException {
+        if (registryBulkWriter != null) {
+            for (DatastoreMessage message : messages) {
+                registerAfterMessageStore(message, getSemanticChannel(message));
+            }
+            return;
+        }
+
+        // the registry entries are built from the first message referencing them (as the registries keep the first message only)
+        Map<String, ClientInfoImpl> clientInfos = new LinkedHashMap<>();
+        Map<String, ChannelInfoImpl> channelInfos = new LinkedHashMap<>();
+        Map<String, MetricInfoImpl> metricInfos = new LinkedHashMap<>();
+        for (DatastoreMessage message : messages) {
+            String semanticChannel = getSemanticChannel(message);
+            String clientInfoId = ClientInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId());
+            if (!clientInfos.containsKey(clientInfoId)) {
+                clientInfos.put(clientInfoId, newClientInfo(message, clientInfoId));
+            }
+            String channelInfoId = ChannelInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId(), semanticChannel);
+            if (!channelInfos.containsKey(channelInfoId)) {
+                channelInfos.put(channelInfoId, newChannelInfo(message, semanticChannel, channelInfoId));
+            }
+            KapuaPayload payload = message.getPayload();
+            if (payload == null || payload.getMetrics() == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : payload.getMetrics().entrySet()) {
+                String metricInfoId = MetricInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId(), semanticChannel, entry.getKey(), entry.getValue().getClass());
+                if (!metricInfos.containsKey(metricInfoId)) {
+                    metricInfos.put(metricInfoId, newMetricInfo(message, semanticChannel, entry, metricInfoId));
+                }
+            }
+        }
+
+        for (ClientInfoImpl clientInfo : clientInfos.values()) {
+            clientInfoStoreFacade.upstore(clientInfo);
+        }
+        for (ChannelInfoImpl channelInfo : channelInfos.values()) {
+            channelInfoStoreFacade.upstore(channelInfo);
+        }
+        if (!metricInfos.isEmpty()) {
+            metricInfoStoreFacade.upstore(metricInfos.values().toArray(new MetricInfoImpl[metricInfos.size()]));
+        }
+    }
+
+    @Override
+    public void onAfterMessagesDelete(KapuaId scopeId) {
+        // the registry entries referencing the deleted messages may be deleted by the registries coherence task, so the filter is renewed
+        if (registryBulkWriter != null) {
+            registryBulkWriter.invalidate();
+        }
+    }
+
+    private void registerAfterMessageStore(DatastoreMessage message, String semanticChannel) {
+        // the registry entries are built only if their identifiers are not yet registered
+        String clientInfoId = ClientInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId());
+        if (!registryBulkWriter.isRegistered(RegistryType.CLIENT, clientInfoId)) {
+            registryBulkWriter.register(RegistryType.CLIENT, clientInfoId, newClientInfo(message, clientInfoId), message.getScopeId(), message.getTimestamp());
+        }
+
+        String channelInfoId = ChannelInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId(), semanticChannel);
+        if (!registryBulkWriter.isRegistered(RegistryType.CHANNEL, channelInfoId)) {
+            registryBulkWriter.register(RegistryType.CHANNEL, channelInfoId, newChannelInfo(message, semanticChannel, channelInfoId), message.getScopeId(), message.getTimestamp());
+        }
+
+        KapuaPayload payload = message.getPayload();
+        if (payload == null || payload.getMetrics() == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : payload.getMetrics().entrySet()) {
+            String metricInfoId = MetricInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId(), semanticChannel, entry.getKey(), entry.getValue().getClass());
+            if (!registryBulkWriter.isRegistered(RegistryType.METRIC, metricInfoId)) {
+                registryBulkWriter.register(RegistryType.METRIC, metricInfoId, newMetricInfo(message, semanticChannel, entry, metricInfoId), message.getScopeId(), message.getTimestamp());
+            }
+        }
+    }
+
+    private static String getSemanticChannel(DatastoreMessage message) {
         // convert semantic channel to String
-        String semanticChannel = message.getChannel() != null ? message.getChannel().toString() : "";
+        return message.getChannel() != null ? message.getChannel().toString() : "";
+    }
 
+    private static ClientInfoImpl newClientInfo(DatastoreMessage message, String clientInfoId) {
         ClientInfoImpl clientInfo = new ClientInfoImpl(message.getScopeId());
         clientInfo.setClientId(message.getClientId());
-        clientInfo.setId(new StorableIdImpl(ClientInfoField.getOrDeriveId(null, message.getScopeId(), message.getClientId())));
+        clientInfo.setId(new StorableIdImpl(clientInfoId));
         clientInfo.setFirstMessageId(message.getDatastoreId());
         clientInfo.setFirstMessageOn(message.getTimestamp());
-        clientInfoStoreFacade.upstore(clientInfo);
+        return clientInfo;
+    }
 
+    private static ChannelInfoImpl newChannelInfo(DatastoreMessage message, String semanticChannel, String channelInfoId) {
         ChannelInfoImpl channelInfo = new ChannelInfoImpl(message.getScopeId());
         channelInfo.setClientId(message.getClientId());
         channelInfo.setName(semanticChannel);
+        channelInfo.setId(new StorableIdImpl(channelInfoId));
         channelInfo.setFirstMessageId(message.getDatastoreId());
         channelInfo.setFirstMessageOn(message.getTimestamp());
-        channelInfo.setId(new StorableIdImpl(ChannelInfoField.getOrDeriveId(null, channelInfo)));
-        clientInfo.setFirstMessageId(message.getDatastoreId());
-        clientInfo.setFirstMessageOn(message.getTimestamp());
-        channelInfoStoreFacade.upstore(channelInfo);
-
-        KapuaPayload payload = message.getPayload();
-        if (payload == null) {
-            return;
-        }
-
-        Map<String, Object> metrics = payload.getMetrics();
-        if (metrics == null) {
-            return;
-        }
-
-        int i = 0;
-        MetricInfoImpl[] messageMetrics = new MetricInfoImpl[metrics.size()];
-        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
-            MetricInfoImpl metricInfo = new MetricInfoImpl(message.getScopeId());
-            metricInfo.setClientId(message.getClientId());
-            metricInfo.setChannel(semanticChannel);
-            metricInfo.setName(entry.getKey());
-            metricInfo.setMetricType(entry.getValue().getClass());
-            metricInfo.setId(new StorableIdImpl(MetricInfoField.getOrDeriveId(null, metricInfo)));
-            metricInfo.setFirstMessageId(message.getDatastoreId());
-            metricInfo.setFirstMessageOn(message.getTimestamp());
-            messageMetrics[i++] = metricInfo;
-        }
+        return channelInfo;
+    }
 
-        metricInfoStoreFacade.upstore(messageMetrics);
+    private static MetricInfoImpl newMetricInfo(DatastoreMessage message, String semanticChannel, Map.Entry<String, Object> metric, String metricInfoId) {
+        MetricInfoImpl metricInfo = new MetricInfoImpl(message.getScopeId());
+        metricInfo.setClientId(message.getClientId());
+        metricInfo.setChannel(semanticChannel);
+        metricInfo.setName(metric.getKey());
+        metricInfo.setMetricType(metric.getValue().getClass());
+        metricInfo.setId(new StorableIdImpl(metricInfoId));
+        metricInfo.setFirstMessageId(message.getDatastoreId());
+        metricInfo.setFirstMessageOn(message.getTimestamp());
+        return metricInfo;
     }
 
     /*
@@ -200,6 +302,12 @@ public class DatastoreMediator implements MessageStoreMediator,
         // nothing to do at the present
         // the datastore coherence will be guarantee by a periodic task that will scan the datastore looking for a no more referenced info registry record
         // otherwise the computational cost for each delete operation will be too high
+        invalidateRegistry(RegistryType.CLIENT);
+    }
+
+    @Override
+    public void onAfterClientInfoDelete(ClientInfoQuery query) {
+        invalidateRegistry(RegistryType.CLIENT);
     }
 
     /*
@@ -222,6 +330,12 @@ public class DatastoreMediator implements MessageStoreMediator,
         // nothing to do at the present
         // the datastore coherence will be guarantee by a periodic task that will scan the datastore looking for a no more referenced info registry record
         // otherwise the computational cost for each delete operation will be too high
+        invalidateRegistry(RegistryType.CHANNEL);
+    }
+
+    @Override
+    public void onAfterChannelInfoDelete(ChannelInfoQuery query) {
+        invalidateRegistry(RegistryType.CHANNEL);
     }
 
     /*
@@ -233,6 +347,19 @@ public class DatastoreMediator implements MessageStoreMediator,
         // nothing to do at the present
         // the datastore coherence will be guarantee by a periodic task that will scan the datastore looking for a no more referenced info registry record
         // otherwise the computational cost for each delete operation will be too high
+        invalidateRegistry(RegistryType.METRIC);
+    }
+
+    @Override
+    public void onAfterMetricInfoDelete(MetricInfoQuery query) {
+        invalidateRegistry(RegistryType.METRIC);
+    }
+
+    private void invalidateRegistry(RegistryType registryType) {
+        // the deleted entries must be written again by the next messages, so they cannot be reported as registered by the bulk writer filter
+        if (registryBulkWriter != null) {
+            registryBulkWriter.invalidate(registryType);
+        }
     }
 
     public void refreshAllIndexes() throws ClientException {
@@ -249,6 +376,11 @@ public class DatastoreMediator implements MessageStoreMediator,
         DatastoreCacheManager.getInstance().getClientsCache().invalidateAll();
         DatastoreCacheManager.getInstance().getMetricsCache().invalidateAll();
         DatastoreCacheManager.getInstance().getMetadataCache().invalidateAll();
+        DatastoreCacheManager.getInstance().getConfigurationCache().invalidateAll();
+        DatastoreCacheManager.getInstance().getAccountsCache().invalidateAll();
+        if (registryBulkWriter != null) {
+            registryBulkWriter.clear();
+        }
     }
 
 }
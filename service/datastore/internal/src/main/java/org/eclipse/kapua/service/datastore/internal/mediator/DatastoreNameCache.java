@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.mediator;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
+import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettings;
+
+/**
+ * Caches of the names computed for every stored message.<br>
+ * <br>
+ * <ul>
+ * <li>metric names: the normalized name, the client metric type and the qualifier (see {@link DatastoreUtils#getMetricValueQualifier(String, String)}) by raw metric
+ * name and value class. The cached instances are shared, so the same metric name is kept once in memory. Once
+ * {@link DatastoreSettingKey#CONFIG_CACHE_METRIC_NAME_SIZE_MAXIMUM} metric names are cached the further names are computed on each call.</li>
+ * <li>data index names: the data index name by scope and day (the data index name, see {@link DatastoreUtils#getDataIndexName(KapuaId, long)}, doesn't change within
+ * the same day)</li>
+ * </ul>
+ * A lookup hitting the caches doesn't allocate.
+ *
+ * @since 1.0
+ */
+public final class DatastoreNameCache {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int METRIC_NAME_SIZE_MAXIMUM = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_CACHE_METRIC_NAME_SIZE_MAXIMUM, 10000);
+    private static final AtomicInteger METRIC_NAME_SIZE = new AtomicInteger();
+
+    private static final ClassValue<ConcurrentMap<String, MetricName>> METRIC_NAMES = new ClassValue<ConcurrentMap<String, MetricName>>() {
+
+        @Override
+        protected ConcurrentMap<String, MetricName> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final LocalCache<BigInteger, DataIndexName> DATA_INDEX_NAMES = new LocalCache<>(
+            DatastoreSettings.getInstance().getInt(DatastoreSettingKey.CONFIG_CACHE_INDEX_NAME_SIZE_MAXIMUM, 1000),
+            null);
+
+    private DatastoreNameCache() {
+    }
+
+    /**
+     * Get the metric name descriptor for the raw metric name and the metric value class
+     *
+     * @param name
+     *            the raw (not normalized) metric name
+     * @param valueClass
+     *            the metric value class
+     * @return
+     * @throws IllegalArgumentException
+     *             if the metric value type is not supported
+     */
+    public static MetricName getMetricName(String name, Class<?> valueClass) {
+        if (valueClass == null) {
+            throw new NullPointerException("Metric value must not be null");
+        }
+        ConcurrentMap<String, MetricName> metricNames = METRIC_NAMES.get(valueClass);
+        MetricName metricName = metricNames.get(name);
+        if (metricName == null) {
+            metricName = new MetricName(name, valueClass);
+            if (METRIC_NAME_SIZE.get() < METRIC_NAME_SIZE_MAXIMUM) {
+                MetricName previous = metricNames.putIfAbsent(name, metricName);
+                if (previous != null) {
+                    metricName = previous;
+                } else {
+                    METRIC_NAME_SIZE.incrementAndGet();
+                }
+            }
+        }
+        return metricName;
+    }
+
+    /**
+     * Get the data index name for the specified scope and timestamp
+     *
+     * @param scopeId
+     * @param timestamp
+     * @return
+     */
+    public static String getDataIndexName(KapuaId scopeId, long timestamp) {
+        long day = Math.floorDiv(timestamp, DAY_MILLIS);
+        DataIndexName dataIndexName = DATA_INDEX_NAMES.get(scopeId.getId());
+        if (dataIndexName == null || dataIndexName.day != day) {
+            dataIndexName = new DataIndexName(day, DatastoreUtils.getDataIndexName(scopeId, timestamp));
+            DATA_INDEX_NAMES.put(scopeId.getId(), dataIndexName);
+        }
+        return dataIndexName.name;
+    }
+
+    /**
+     * Metric names (normalized name, client metric type and qualifier) computed for a raw metric name and value class
+     *
+     * @since 1.0
+     */
+    public static final class MetricName {
+
+        private final String qualifier;
+        private final Metric metric;
+
+        private MetricName(String name, Class<?> valueClass) {
+            String normalizedName = DatastoreUtils.normalizeMetricName(name);
+            String clientMetricType = DatastoreUtils.getClientMetricFromType(valueClass);
+            qualifier = DatastoreUtils.getMetricValueQualifier(normalizedName, clientMetricType);
+            metric = new Metric(normalizedName, clientMetricType);
+        }
+
+        /**
+         * Get the normalized metric name
+         *
+         * @return
+         */
+        public String getName() {
+            return metric.getName();
+        }
+
+        /**
+         * Get the client metric type
+         *
+         * @return
+         */
+        public String getType() {
+            return metric.getType();
+        }
+
+        /**
+         * Get the metric value qualifier (the name used to store the metric value)
+         *
+         * @return
+         */
+        public String getQualifier() {
+            return qualifier;
+        }
+
+        /**
+         * Get the metric (shared instance, it must not be modified)
+         *
+         * @return
+         */
+        public Metric getMetric() {
+            return metric;
+        }
+    }
+
+    private static class DataIndexName {
+
+        private final long day;
+        private final String name;
+
+        private DataIndexName(long day, String name) {
+            this.day = day;
+            this.name = name;
+        }
+    }
+}
@@ -17,9 +17,13 @@ import java.text.ParseException;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.eclipse.kapua.commons.util.KapuaDateUtils;
@@ -27,8 +31,6 @@ import org.eclipse.kapua.model.id.KapuaId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.hash.Hashing;
-
 /**
  * Datastore utility class
  *
@@ -67,27 +69,21 @@ public class DatastoreUtils {
     public static final String CLIENT_METRIC_TYPE_BOOLEAN_ACRONYM = "bln";
     public static final String CLIENT_METRIC_TYPE_BINARY_ACRONYM = "bin";
 
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
     private static final DateTimeFormatter DATA_INDEX_FORMATTER = DateTimeFormatter.ofPattern("yyyy-ww", Locale.US);
 
+    private static final ThreadLocal<HashCodeDigest> HASH_CODE_DIGEST = ThreadLocal.withInitial(HashCodeDigest::new);
+
     /**
-     * Return the hash code for the provided components (typically components are a sequence of account - client id - channel ...)
+     * Return the hash code for the provided components (typically components are a sequence of account - client id - channel ...).<br>
+     * The hash code is the Base64 encoded SHA-256 digest of the UTF-8 encoded concatenation of the components.
      * 
      * @param components
      * @return
      */
     public static String getHashCode(String... components) {
-        String concatString = "";
-        for (String str : components) {
-            concatString = concatString.concat(str);
-        }
-
-        byte[] hashCode = Hashing.sha256()
-                .hashString(concatString, StandardCharsets.UTF_8)
-                .asBytes();
-
-        // ES 5.2 FIX
-        // return Base64.encodeBytes(hashCode);
-        return Base64.getEncoder().encodeToString(hashCode);
+        // the components are streamed into a per thread digest, so neither the concatenation nor the intermediate byte arrays are allocated
+        return HASH_CODE_DIGEST.get().digest(components);
     }
 
     private static String normalizeIndexName(String name) {
@@ -218,6 +214,36 @@ public class DatastoreUtils {
         return sb.toString();
     }
 
+    /**
+     * Get the data indexes covering the specified time window (bounds included), as a comma separated list of index names.<br>
+     * The list may contain indexes not yet (or no longer) existing, so the queries targeting it must ignore the unavailable indexes.
+     *
+     * @param scopeId
+     * @param startTimestamp
+     * @param endTimestamp
+     * @param maxIndexes
+     *            maximum number of indexes to be returned
+     * @return the comma separated data index names or null if the window is covered by more than maxIndexes indexes
+     * @since 1.0.0
+     */
+    public static String getDataIndexNames(KapuaId scopeId, long startTimestamp, long endTimestamp, int maxIndexes) {
+        String lastIndexName = getDataIndexName(scopeId, startTimestamp);
+        final StringBuilder sb = new StringBuilder(lastIndexName);
+        int indexes = 1;
+        // step by day, so the resolution works for any index granularity not finer than a day
+        for (long timestamp = startTimestamp + DAY_MILLIS; timestamp - DAY_MILLIS < endTimestamp; timestamp += DAY_MILLIS) {
+            String indexName = getDataIndexName(scopeId, Math.min(timestamp, endTimestamp));
+            if (!indexName.equals(lastIndexName)) {
+                if (++indexes > maxIndexes) {
+                    return null;
+                }
+                sb.append(',').append(indexName);
+                lastIndexName = indexName;
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * Get the Kapua index name for the specified base name
      *
@@ -466,4 +492,92 @@ public class DatastoreUtils {
         return value != null ? value.getClass().toString() : "null";
     }
 
+
+    /**
+     * Per thread SHA-256 digest of the UTF-8 encoded components (the unpaired surrogates are encoded as '?', as {@link String#getBytes(java.nio.charset.Charset)}
+     * does) returning the Base64 encoded digest
+     */
+    private static final class HashCodeDigest {
+
+        private static final int DIGEST_LENGTH = 32;
+        private static final int BUFFER_LENGTH = 256;
+        private static final byte REPLACEMENT = '?';
+
+        private final MessageDigest messageDigest;
+        private final byte[] buffer = new byte[BUFFER_LENGTH];
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final byte[] encoded = new byte[(DIGEST_LENGTH + 2) / 3 * 4];
+        private int position;
+
+        private HashCodeDigest() {
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private String digest(String... components) {
+            // discard the state left by a previous digest aborted by an exception (such as a null component)
+            messageDigest.reset();
+            position = 0;
+            // a surrogate pair may be split over two components, so the pending high surrogate is kept across them
+            char highSurrogate = 0;
+            for (String component : components) {
+                for (int i = 0; i < component.length(); i++) {
+                    char c = component.charAt(i);
+                    if (highSurrogate != 0) {
+                        if (Character.isLowSurrogate(c)) {
+                            write(Character.toCodePoint(highSurrogate, c));
+                            highSurrogate = 0;
+                            continue;
+                        }
+                        write(REPLACEMENT);
+                        highSurrogate = 0;
+                    }
+                    if (Character.isHighSurrogate(c)) {
+                        highSurrogate = c;
+                    } else if (Character.isLowSurrogate(c)) {
+                        write(REPLACEMENT);
+                    } else {
+                        write(c);
+                    }
+                }
+            }
+            if (highSurrogate != 0) {
+                write(REPLACEMENT);
+            }
+            messageDigest.update(buffer, 0, position);
+            position = 0;
+            try {
+                messageDigest.digest(digest, 0, DIGEST_LENGTH);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            int length = Base64.getEncoder().encode(digest, encoded);
+            return new String(encoded, 0, length, StandardCharsets.US_ASCII);
+        }
+
+        private void write(int codePoint) {
+            if (position > BUFFER_LENGTH - 4) {
+                messageDigest.update(buffer, 0, position);
+                position = 0;
+            }
+            if (codePoint < 0x80) {
+                buffer[position++] = (byte) codePoint;
+            } else if (codePoint < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (codePoint >> 6));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (codePoint < 0x10000) {
+                buffer[position++] = (byte) (0xe0 | (codePoint >> 12));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            }
+        }
+    }
 }
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.internal.mediator;
 
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kapua.KapuaIllegalArgumentException;
@@ -56,4 +57,22 @@ public interface MessageStoreMediator {
     public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message)
             throws KapuaIllegalArgumentException,
             ConfigurationException, ClientException;
+
+    /**
+     * On after messages store event handler (for the messages stored by a single bulk request).<br>
+     * The registry entries of the messages are coalesced, so every client, channel and metric is updated once per call.
+     *
+     * @param messages
+     * @throws ClientException
+     */
+    public void onAfterMessagesStore(List<DatastoreMessage> messages)
+            throws KapuaIllegalArgumentException,
+            ConfigurationException, ClientException;
+
+    /**
+     * On after messages delete event handler (for the messages deleted by the retention or by a message delete job)
+     *
+     * @param scopeId
+     */
+    public void onAfterMessagesDelete(KapuaId scopeId);
 }
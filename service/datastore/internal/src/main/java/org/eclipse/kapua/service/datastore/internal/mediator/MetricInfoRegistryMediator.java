@@ -15,6 +15,7 @@ import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
 import org.eclipse.kapua.service.datastore.model.MetricInfo;
+import org.eclipse.kapua.service.datastore.model.query.MetricInfoQuery;
 
 /**
  * Metric information registry mediator definition
@@ -42,4 +43,11 @@ public interface MetricInfoRegistryMediator {
      * @throws ClientException
      */
     public void onAfterMetricInfoDelete(KapuaId scopeId, MetricInfo metricInfo) throws ClientException;
+
+    /**
+     * On after metric info delete by query event handler
+     *
+     * @param query
+     */
+    public void onAfterMetricInfoDelete(MetricInfoQuery query);
 }
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+
+/**
+ * Message aggregation bucket implementation
+ *
+ * @since 1.0
+ */
+public class MessageAggregationBucketImpl implements MessageAggregationBucket {
+
+    private String group;
+    private Date timestamp;
+    private long count;
+    private Double min;
+    private Double max;
+    private Double avg;
+    private Double sum;
+    private List<Double> percentiles = new ArrayList<>();
+
+    @Override
+    public String getGroup() {
+        return group;
+    }
+
+    @Override
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    @Override
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void setTimestamp(Date timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public Double getMin() {
+        return min;
+    }
+
+    @Override
+    public void setMin(Double min) {
+        this.min = min;
+    }
+
+    @Override
+    public Double getMax() {
+        return max;
+    }
+
+    @Override
+    public void setMax(Double max) {
+        this.max = max;
+    }
+
+    @Override
+    public Double getAvg() {
+        return avg;
+    }
+
+    @Override
+    public void setAvg(Double avg) {
+        this.avg = avg;
+    }
+
+    @Override
+    public Double getSum() {
+        return sum;
+    }
+
+    @Override
+    public void setSum(Double sum) {
+        this.sum = sum;
+    }
+
+    @Override
+    public List<Double> getPercentiles() {
+        return percentiles;
+    }
+
+    @Override
+    public void setPercentiles(List<Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+}
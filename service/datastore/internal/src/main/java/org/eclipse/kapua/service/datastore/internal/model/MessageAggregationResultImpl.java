@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kapua.service.datastore.model.MessageAggregationBucket;
+import org.eclipse.kapua.service.datastore.model.MessageAggregationResult;
+
+/**
+ * Message aggregation result implementation
+ *
+ * @since 1.0
+ */
+public class MessageAggregationResultImpl implements MessageAggregationResult {
+
+    private List<MessageAggregationBucket> buckets = new ArrayList<>();
+
+    @Override
+    public List<MessageAggregationBucket> getBuckets() {
+        return buckets;
+    }
+}
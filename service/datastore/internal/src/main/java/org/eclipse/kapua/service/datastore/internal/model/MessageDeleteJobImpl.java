@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.model;
+
+import java.util.Date;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJobStatus;
+
+/**
+ * Message delete job implementation
+ *
+ * @since 1.0
+ */
+public class MessageDeleteJobImpl implements MessageDeleteJob {
+
+    private String id;
+    private KapuaId scopeId;
+    private MessageDeleteJobStatus status;
+    private Date createdOn;
+    private Date startedOn;
+    private Date endedOn;
+    private int indexesTotal;
+    private int indexesCompleted;
+    private int indexesDeleted;
+    private long slicesCompleted;
+    private String errorMessage;
+
+    /**
+     * Default constructor
+     */
+    public MessageDeleteJobImpl() {
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param job
+     */
+    public MessageDeleteJobImpl(MessageDeleteJob job) {
+        id = job.getId();
+        scopeId = job.getScopeId();
+        status = job.getStatus();
+        createdOn = job.getCreatedOn();
+        startedOn = job.getStartedOn();
+        endedOn = job.getEndedOn();
+        indexesTotal = job.getIndexesTotal();
+        indexesCompleted = job.getIndexesCompleted();
+        indexesDeleted = job.getIndexesDeleted();
+        slicesCompleted = job.getSlicesCompleted();
+        errorMessage = job.getErrorMessage();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public KapuaId getScopeId() {
+        return scopeId;
+    }
+
+    @Override
+    public void setScopeId(KapuaId scopeId) {
+        this.scopeId = scopeId;
+    }
+
+    @Override
+    public MessageDeleteJobStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public void setStatus(MessageDeleteJobStatus status) {
+        this.status = status;
+    }
+
+    @Override
+    public Date getCreatedOn() {
+        return createdOn;
+    }
+
+    @Override
+    public void setCreatedOn(Date createdOn) {
+        this.createdOn = createdOn;
+    }
+
+    @Override
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    @Override
+    public void setStartedOn(Date startedOn) {
+        this.startedOn = startedOn;
+    }
+
+    @Override
+    public Date getEndedOn() {
+        return endedOn;
+    }
+
+    @Override
+    public void setEndedOn(Date endedOn) {
+        this.endedOn = endedOn;
+    }
+
+    @Override
+    public int getIndexesTotal() {
+        return indexesTotal;
+    }
+
+    @Override
+    public void setIndexesTotal(int indexesTotal) {
+        this.indexesTotal = indexesTotal;
+    }
+
+    @Override
+    public int getIndexesCompleted() {
+        return indexesCompleted;
+    }
+
+    @Override
+    public void setIndexesCompleted(int indexesCompleted) {
+        this.indexesCompleted = indexesCompleted;
+    }
+
+    @Override
+    public int getIndexesDeleted() {
+        return indexesDeleted;
+    }
+
+    @Override
+    public void setIndexesDeleted(int indexesDeleted) {
+        this.indexesDeleted = indexesDeleted;
+    }
+
+    @Override
+    public long getSlicesCompleted() {
+        return slicesCompleted;
+    }
+
+    @Override
+    public void setSlicesCompleted(long slicesCompleted) {
+        this.slicesCompleted = slicesCompleted;
+    }
+
+    @Override
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
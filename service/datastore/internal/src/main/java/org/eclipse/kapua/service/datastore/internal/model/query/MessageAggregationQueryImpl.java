@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.model.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.DatamodelMappingException;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.internal.schema.MessageSchema;
+import org.eclipse.kapua.service.datastore.internal.schema.SchemaUtil;
+import org.eclipse.kapua.service.datastore.model.query.AggregationGroupBy;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Message aggregation query implementation
+ *
+ * @since 1.0
+ */
+public class MessageAggregationQueryImpl extends MessageQueryImpl implements MessageAggregationQuery {
+
+    public static final String AGGREGATIONS_KEY = "aggs";
+    public static final String GROUPS_AGGREGATION = "groups";
+    public static final String HISTOGRAM_AGGREGATION = "histogram";
+    public static final String STATS_AGGREGATION = "stats";
+    public static final String PERCENTILES_AGGREGATION = "percentiles";
+
+    private static final String TERMS_KEY = "terms";
+    private static final String DATE_HISTOGRAM_KEY = "date_histogram";
+    private static final String FIELD_KEY = "field";
+    private static final String SIZE_KEY = "size";
+    private static final String INTERVAL_KEY = "interval";
+    private static final String PERCENTS_KEY = "percents";
+
+    private String metricName;
+    private Class<?> metricType;
+    private long interval;
+    private AggregationGroupBy groupBy = AggregationGroupBy.NONE;
+    private int maxGroups = 10;
+    private List<Double> percentiles = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param scopeId
+     */
+    public MessageAggregationQueryImpl(KapuaId scopeId) {
+        super(scopeId);
+    }
+
+    @Override
+    public String getMetricName() {
+        return metricName;
+    }
+
+    @Override
+    public void setMetricName(String metricName) {
+        this.metricName = metricName;
+    }
+
+    @Override
+    public Class<?> getMetricType() {
+        return metricType;
+    }
+
+    @Override
+    public void setMetricType(Class<?> metricType) {
+        this.metricType = metricType;
+    }
+
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public AggregationGroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    @Override
+    public void setGroupBy(AggregationGroupBy groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    @Override
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    @Override
+    public void setMaxGroups(int maxGroups) {
+        this.maxGroups = maxGroups;
+    }
+
+    @Override
+    public List<Double> getPercentiles() {
+        return percentiles;
+    }
+
+    @Override
+    public void setPercentiles(List<Double> percentiles) {
+        this.percentiles = percentiles != null ? percentiles : new ArrayList<>();
+    }
+
+    /**
+     * <pre>
+     *  {
+     *      "groups": {
+     *          "terms": { "field": "client_id", "size": 10 },
+     *          "aggs": {
+     *              "histogram": {
+     *                  "date_histogram": { "field": "timestamp", "interval": "300000ms" },
+     *                  "aggs": {
+     *                      "stats": { "stats": { "field": "metrics.temperature.dbl" } },
+     *                      "percentiles": { "percentiles": { "field": "metrics.temperature.dbl", "percents": [ 50, 95 ] } }
+     *                  }
+     *              }
+     *          }
+     *      }
+     *  }
+     * </pre>
+     *
+     * The groups aggregation is omitted if the messages are not grouped.
+     *
+     * @return
+     * @throws DatamodelMappingException
+     */
+    public ObjectNode toSerializedAggregations() throws DatamodelMappingException {
+        String metricField = String.format("%s.%s", MessageSchema.MESSAGE_METRICS, DatastoreNameCache.getMetricName(metricName, metricType).getQualifier());
+
+        ObjectNode metricAggregationsNode = SchemaUtil.getObjectNode();
+        ObjectNode statsNode = SchemaUtil.getObjectNode();
+        statsNode.set(STATS_AGGREGATION, SchemaUtil.getField(FIELD_KEY, metricField));
+        metricAggregationsNode.set(STATS_AGGREGATION, statsNode);
+        if (!percentiles.isEmpty()) {
+            ObjectNode percentilesFieldNode = SchemaUtil.getField(FIELD_KEY, metricField);
+            ArrayNode percentsNode = percentilesFieldNode.putArray(PERCENTS_KEY);
+            for (Double percentile : percentiles) {
+                percentsNode.add(percentile);
+            }
+            ObjectNode percentilesNode = SchemaUtil.getObjectNode();
+            percentilesNode.set(PERCENTILES_AGGREGATION, percentilesFieldNode);
+            metricAggregationsNode.set(PERCENTILES_AGGREGATION, percentilesNode);
+        }
+
+        ObjectNode dateHistogramNode = SchemaUtil.getField(FIELD_KEY, MessageField.TIMESTAMP.field());
+        SchemaUtil.appendField(dateHistogramNode, INTERVAL_KEY, interval + "ms");
+        ObjectNode histogramNode = SchemaUtil.getObjectNode();
+        histogramNode.set(DATE_HISTOGRAM_KEY, dateHistogramNode);
+        histogramNode.set(AGGREGATIONS_KEY, metricAggregationsNode);
+        ObjectNode histogramAggregationsNode = SchemaUtil.getObjectNode();
+        histogramAggregationsNode.set(HISTOGRAM_AGGREGATION, histogramNode);
+
+        String groupField = getGroupField();
+        if (groupField == null) {
+            return histogramAggregationsNode;
+        }
+        ObjectNode termsNode = SchemaUtil.getField(FIELD_KEY, groupField);
+        SchemaUtil.appendField(termsNode, SIZE_KEY, maxGroups);
+        ObjectNode groupsNode = SchemaUtil.getObjectNode();
+        groupsNode.set(TERMS_KEY, termsNode);
+        groupsNode.set(AGGREGATIONS_KEY, histogramAggregationsNode);
+        ObjectNode aggregationsNode = SchemaUtil.getObjectNode();
+        aggregationsNode.set(GROUPS_AGGREGATION, groupsNode);
+        return aggregationsNode;
+    }
+
+    private String getGroupField() {
+        switch (groupBy) {
+        case CLIENT_ID:
+            return MessageField.CLIENT_ID.field();
+        case CHANNEL:
+            return MessageField.CHANNEL.field();
+        default:
+            return null;
+        }
+    }
+}
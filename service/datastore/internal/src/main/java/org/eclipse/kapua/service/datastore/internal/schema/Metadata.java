@@ -13,6 +13,8 @@ package org.eclipse.kapua.service.datastore.internal.schema;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
 
@@ -35,6 +37,13 @@ public class Metadata {
     private Map<String, Metric> messageMappingsCache;
     //
 
+    // Message mappings being sent (by metric), the mappings batch still open to new metrics and the last batch (sent after the previous one completes).
+    // Guarded by this metadata instance, see Schema#updateMessageMappings
+    final Map<String, CompletableFuture<Void>> pendingMappings = new HashMap<>();
+    Map<String, Metric> openMappingsBatch;
+    CompletableFuture<Void> openMappingsBatchFuture;
+    CompletableFuture<Void> lastMappingsBatchFuture;
+
     /**
      * Get the mappings cache
      * 
@@ -48,7 +57,7 @@ public class Metadata {
      * Contruct metadata
      */
     public Metadata(String dataIndexName, String registryIndexName) {
-        messageMappingsCache = new HashMap<String, Metric>(100);
+        messageMappingsCache = new ConcurrentHashMap<String, Metric>(100);
         this.dataIndexName = dataIndexName;
         this.registryIndexName = registryIndexName;
     }
@@ -11,14 +11,24 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.datastore.internal.schema;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kapua.commons.util.KapuaDateUtils;
 import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
 import org.eclipse.kapua.service.datastore.client.ClientException;
 import org.eclipse.kapua.service.datastore.client.DatamodelMappingException;
 import org.eclipse.kapua.service.datastore.client.DatastoreClient;
@@ -27,6 +37,7 @@ import org.eclipse.kapua.service.datastore.client.model.IndexExistsResponse;
 import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
 import org.eclipse.kapua.service.datastore.internal.DatastoreCacheManager;
 import org.eclipse.kapua.service.datastore.internal.client.DatastoreClientFactory;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
 import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
 import org.eclipse.kapua.service.datastore.internal.setting.DatastoreSettingKey;
@@ -52,7 +63,14 @@ import static org.eclipse.kapua.service.datastore.client.SchemaKeys.TYPE_STRING;
 import static org.eclipse.kapua.service.datastore.client.SchemaKeys.VALUE_TRUE;
 
 /**
- * Datastore schema creation/update
+ * Datastore schema creation/update<br>
+ * <br>
+ * The indexes are created (and the message mappings updated) without any global lock: the concurrent callers for the same index await the single in-flight creation
+ * while the callers for the other indexes proceed.<br>
+ * The new metric mappings of the messages stored into an index while the previous put mapping request of the same index is in flight are merged and sent as
+ * a single request once the previous one completes (so the requests are merged under load without delaying the first one).<br>
+ * If enabled ({@link DatastoreSettingKey#CONFIG_SCHEMA_PRECREATE_ENABLED}), a background job (scheduled by {@link #start()}) creates ahead of the rollover the next
+ * data indexes of the accounts that stored messages since the previous run.
  * 
  * @since 1.0
  *
@@ -61,11 +79,88 @@ public class Schema {
 
     private static final Logger logger = LoggerFactory.getLogger(Schema.class);
 
+    private static final long STOP_TIMEOUT = 30000L;
+
+    private final ConcurrentMap<String, CompletableFuture<Metadata>> inFlightDataIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlightRegistryIndexes = new ConcurrentHashMap<>();
+
+    // accounts that stored messages since the last index pre-creation run
+    private final ConcurrentMap<BigInteger, KapuaId> activeScopes = new ConcurrentHashMap<>();
+
+    private final ClientProvider clientProvider;
+    private final boolean preCreateEnabled;
+    private final long preCreateInterval;
+    private final long preCreateLookahead;
+
+    private ScheduledExecutorService preCreateExecutor;
+    private volatile boolean stopping;
+
     /**
      * Construct the Elasticsearch schema
      * 
      */
     public Schema() {
+        this(DatastoreClientFactory::getInstance,
+                DatastoreSettings.getInstance().getBoolean(DatastoreSettingKey.CONFIG_SCHEMA_PRECREATE_ENABLED, false),
+                DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_SCHEMA_PRECREATE_INTERVAL, 3600L),
+                TimeUnit.SECONDS.toMillis(DatastoreSettings.getInstance().getLong(DatastoreSettingKey.CONFIG_SCHEMA_PRECREATE_LOOKAHEAD, 86400L)));
+    }
+
+    /**
+     * Construct the schema using the provided datastore client
+     * 
+     * @param client
+     * @param preCreateEnabled
+     * @param preCreateLookahead
+     *            the time (in milliseconds) the next data indexes are created ahead of the rollover
+     */
+    Schema(DatastoreClient client, boolean preCreateEnabled, long preCreateLookahead) {
+        this(() -> client, preCreateEnabled, 3600L, preCreateLookahead);
+    }
+
+    private Schema(ClientProvider clientProvider, boolean preCreateEnabled, long preCreateInterval, long preCreateLookahead) {
+        this.clientProvider = clientProvider;
+        this.preCreateEnabled = preCreateEnabled;
+        this.preCreateInterval = preCreateInterval;
+        this.preCreateLookahead = preCreateLookahead;
+    }
+
+    /**
+     * Schedule the index pre-creation job (if enabled)
+     * 
+     * @since 1.0
+     */
+    public synchronized void start() {
+        if (!preCreateEnabled || preCreateExecutor != null) {
+            return;
+        }
+        stopping = false;
+        preCreateExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datastore-index-precreate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        preCreateExecutor.scheduleWithFixedDelay(this::preCreateIndexes, preCreateInterval, preCreateInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the index pre-creation job (a running job completes the index being created and skips the other ones)
+     * 
+     * @since 1.0
+     */
+    public synchronized void stop() {
+        if (preCreateExecutor != null) {
+            stopping = true;
+            preCreateExecutor.shutdown();
+            try {
+                if (!preCreateExecutor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    logger.warn("The index pre-creation job is not stopped within {} ms", STOP_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            preCreateExecutor = null;
+        }
     }
 
     /**
@@ -78,54 +173,96 @@ public class Schema {
      */
     public Metadata synch(KapuaId scopeId, long time)
             throws ClientException {
-        String dataIndexName = DatastoreUtils.getDataIndexName(scopeId, time);
+        if (preCreateEnabled && !activeScopes.containsKey(scopeId.getId())) {
+            activeScopes.put(scopeId.getId(), scopeId);
+        }
+        return synchIndex(scopeId, DatastoreNameCache.getDataIndexName(scopeId, time));
+    }
+
+    private Metadata synchIndex(KapuaId scopeId, String dataIndexName)
+            throws ClientException {
         Metadata currentMetadata = DatastoreCacheManager.getInstance().getMetadataCache().get(dataIndexName);
         if (currentMetadata != null) {
             return currentMetadata;
         }
 
-        logger.debug("Before entering updating metadata");
-        synchronized (Schema.class) {
-            logger.debug("Entered updating metadata");
-            DatastoreClient datastoreClient = DatastoreClientFactory.getInstance();
-            // Check existence of the data index
-            IndexExistsResponse dataIndexExistsResponse = datastoreClient.isIndexExists(new IndexExistsRequest(dataIndexName));
-            if (!dataIndexExistsResponse.isIndexExists()) {
-                datastoreClient.createIndex(dataIndexName, getMappingSchema(dataIndexName));
-                logger.info("Data index created: " + dataIndexName);
+        CompletableFuture<Metadata> creation = new CompletableFuture<>();
+        CompletableFuture<Metadata> inFlight = inFlightDataIndexes.putIfAbsent(dataIndexName, creation);
+        if (inFlight != null) {
+            logger.debug("Waiting for the in-flight metadata update of {}", dataIndexName);
+            return await(inFlight, dataIndexName);
+        }
+        try {
+            // the metadata may have been cached by a creation completed after the first lookup
+            currentMetadata = DatastoreCacheManager.getInstance().getMetadataCache().get(dataIndexName);
+            if (currentMetadata == null) {
+                logger.debug("Updating metadata of {}", dataIndexName);
+                currentMetadata = createIndexes(scopeId, dataIndexName);
+
+                // Current metadata can only increase the custom mappings
+                // other fields does not change within the same account id
+                // and custom mappings are not and must not be exposed to
+                // outside this class to preserve thread safetyness
+                DatastoreCacheManager.getInstance().getMetadataCache().put(dataIndexName, currentMetadata);
             }
+            creation.complete(currentMetadata);
+            return currentMetadata;
+        } catch (ClientException | RuntimeException e) {
+            creation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightDataIndexes.remove(dataIndexName, creation);
+        }
+    }
 
-            boolean enableAllField = false;
-            boolean enableSourceField = true;
+    private Metadata createIndexes(KapuaId scopeId, String dataIndexName)
+            throws ClientException {
+        DatastoreClient datastoreClient = clientProvider.getClient();
+        // Check existence of the data index
+        IndexExistsResponse dataIndexExistsResponse = datastoreClient.isIndexExists(new IndexExistsRequest(dataIndexName));
+        if (!dataIndexExistsResponse.isIndexExists()) {
+            datastoreClient.createIndex(dataIndexName, getMappingSchema(dataIndexName));
+            logger.info("Data index created: " + dataIndexName);
+        }
 
-            datastoreClient.putMapping(new TypeDescriptor(dataIndexName, MessageSchema.MESSAGE_TYPE_NAME), MessageSchema.getMesageTypeSchema(enableAllField, enableSourceField));
-            // Check existence of the kapua internal index
-            String registryIndexName = DatastoreUtils.getRegistryIndexName(scopeId);
-            IndexExistsResponse registryIndexExistsResponse = datastoreClient.isIndexExists(new IndexExistsRequest(registryIndexName));
-            if (!registryIndexExistsResponse.isIndexExists()) {
-                datastoreClient.createIndex(registryIndexName, getMappingSchema(registryIndexName));
-                logger.info("Metadata index created: " + registryIndexExistsResponse);
+        boolean enableAllField = false;
+        boolean enableSourceField = true;
 
-                datastoreClient.putMapping(new TypeDescriptor(registryIndexName, ChannelInfoSchema.CHANNEL_TYPE_NAME), ChannelInfoSchema.getChannelTypeSchema(enableAllField, enableSourceField));
-                datastoreClient.putMapping(new TypeDescriptor(registryIndexName, MetricInfoSchema.METRIC_TYPE_NAME), MetricInfoSchema.getMetricTypeSchema(enableAllField, enableSourceField));
-                datastoreClient.putMapping(new TypeDescriptor(registryIndexName, ClientInfoSchema.CLIENT_TYPE_NAME), ClientInfoSchema.getClientTypeSchema(enableAllField, enableSourceField));
-            }
+        datastoreClient.putMapping(new TypeDescriptor(dataIndexName, MessageSchema.MESSAGE_TYPE_NAME), MessageSchema.getMesageTypeSchema(enableAllField, enableSourceField));
 
-            currentMetadata = new Metadata(dataIndexName, registryIndexName);
-            logger.debug("Leaving updating metadata");
-        }
+        // Check existence of the kapua internal index
+        String registryIndexName = DatastoreUtils.getRegistryIndexName(scopeId);
+        CompletableFuture<Void> creation = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = inFlightRegistryIndexes.putIfAbsent(registryIndexName, creation);
+        if (inFlight != null) {
+            await(inFlight, registryIndexName);
+        } else {
+            try {
+                IndexExistsResponse registryIndexExistsResponse = datastoreClient.isIndexExists(new IndexExistsRequest(registryIndexName));
+                if (!registryIndexExistsResponse.isIndexExists()) {
+                    datastoreClient.createIndex(registryIndexName, getMappingSchema(registryIndexName));
+                    logger.info("Metadata index created: " + registryIndexExistsResponse);
 
-        // Current metadata can only increase the custom mappings
-        // other fields does not change within the same account id
-        // and custom mappings are not and must not be exposed to
-        // outside this class to preserve thread safetyness
-        DatastoreCacheManager.getInstance().getMetadataCache().put(dataIndexName, currentMetadata);
+                    datastoreClient.putMapping(new TypeDescriptor(registryIndexName, ChannelInfoSchema.CHANNEL_TYPE_NAME), ChannelInfoSchema.getChannelTypeSchema(enableAllField, enableSourceField));
+                    datastoreClient.putMapping(new TypeDescriptor(registryIndexName, MetricInfoSchema.METRIC_TYPE_NAME), MetricInfoSchema.getMetricTypeSchema(enableAllField, enableSourceField));
+                    datastoreClient.putMapping(new TypeDescriptor(registryIndexName, ClientInfoSchema.CLIENT_TYPE_NAME), ClientInfoSchema.getClientTypeSchema(enableAllField, enableSourceField));
+                }
+                creation.complete(null);
+            } catch (ClientException | RuntimeException e) {
+                creation.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlightRegistryIndexes.remove(registryIndexName, creation);
+            }
+        }
 
-        return currentMetadata;
+        return new Metadata(dataIndexName, registryIndexName);
     }
 
     /**
-     * Update metric mappings
+     * Update metric mappings.<br>
+     * The new metrics are merged with the new metrics of the concurrent callers for the same index and the caller returns once the put mapping request containing
+     * them is completed.
      * 
      * @param scopeId
      * @param time
@@ -137,23 +274,153 @@ public class Schema {
         if (metrics == null || metrics.size() == 0) {
             return;
         }
-        String newIndex = DatastoreUtils.getDataIndexName(scopeId, time);
-        Metadata currentMetadata = DatastoreCacheManager.getInstance().getMetadataCache().get(newIndex);
+        Metadata currentMetadata = synch(scopeId, time);
+
+        // Update mappings only if a metric is new (not in cache)
+        Map<String, Metric> messageMappings = currentMetadata.getMessageMappingsCache();
+        boolean newMetrics = false;
+        for (String metricKey : metrics.keySet()) {
+            if (!messageMappings.containsKey(metricKey)) {
+                newMetrics = true;
+                break;
+            }
+        }
+        if (!newMetrics) {
+            return;
+        }
+
+        List<CompletableFuture<Void>> pendingMappings = new ArrayList<>(1);
+        CompletableFuture<Void> previousBatchFuture = null;
+        boolean batchOwner = false;
+        synchronized (currentMetadata) {
+            for (Entry<String, Metric> metric : metrics.entrySet()) {
+                if (messageMappings.containsKey(metric.getKey())) {
+                    continue;
+                }
+                CompletableFuture<Void> pendingMapping = currentMetadata.pendingMappings.get(metric.getKey());
+                if (pendingMapping == null) {
+                    if (currentMetadata.openMappingsBatch == null) {
+                        currentMetadata.openMappingsBatch = new HashMap<>();
+                        currentMetadata.openMappingsBatchFuture = new CompletableFuture<>();
+                        previousBatchFuture = currentMetadata.lastMappingsBatchFuture;
+                        currentMetadata.lastMappingsBatchFuture = currentMetadata.openMappingsBatchFuture;
+                        batchOwner = true;
+                    }
+                    currentMetadata.openMappingsBatch.put(metric.getKey(), metric.getValue());
+                    pendingMapping = currentMetadata.openMappingsBatchFuture;
+                    currentMetadata.pendingMappings.put(metric.getKey(), pendingMapping);
+                }
+                if (!pendingMappings.contains(pendingMapping)) {
+                    pendingMappings.add(pendingMapping);
+                }
+            }
+        }
 
-        ObjectNode metricsMapping = null;
-        Map<String, Metric> diffs = null;
+        if (batchOwner) {
+            sendMappingsBatch(currentMetadata, previousBatchFuture);
+        }
+        for (CompletableFuture<Void> pendingMapping : pendingMappings) {
+            await(pendingMapping, currentMetadata.getDataIndexName());
+        }
+    }
 
-        synchronized (Schema.class) {
-            // Update mappings only if a metric is new (not in cache)
-            diffs = getMessageMappingDiffs(currentMetadata, metrics);
-            if (diffs == null || diffs.size() == 0) {
-                return;
+    private void sendMappingsBatch(Metadata metadata, CompletableFuture<Void> previousBatchFuture) {
+        // the batch takes the new metrics of the concurrent messages until the previous put mapping request of the index completes
+        boolean interrupted = false;
+        if (previousBatchFuture != null) {
+            try {
+                previousBatchFuture.get();
+            } catch (ExecutionException e) {
+                // reported to the callers waiting for the previous batch
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
-            metricsMapping = getNewMessageMappingsBuilder(diffs);
         }
 
-        logger.trace("Sending dynamic message mappings: " + metricsMapping);
-        DatastoreClientFactory.getInstance().putMapping(new TypeDescriptor(currentMetadata.getDataIndexName(), MessageSchema.MESSAGE_TYPE_NAME), metricsMapping);
+        Map<String, Metric> batch;
+        CompletableFuture<Void> batchFuture;
+        synchronized (metadata) {
+            batch = metadata.openMappingsBatch;
+            batchFuture = metadata.openMappingsBatchFuture;
+            metadata.openMappingsBatch = null;
+            metadata.openMappingsBatchFuture = null;
+        }
+
+        Throwable error = null;
+        try {
+            ObjectNode metricsMapping = getNewMessageMappingsBuilder(batch);
+            logger.trace("Sending dynamic message mappings: " + metricsMapping);
+            clientProvider.getClient().putMapping(new TypeDescriptor(metadata.getDataIndexName(), MessageSchema.MESSAGE_TYPE_NAME), metricsMapping);
+            metadata.getMessageMappingsCache().putAll(batch);
+        } catch (Throwable t) {
+            error = t;
+        }
+        synchronized (metadata) {
+            // on failure the metrics are sent again by the next message containing them
+            for (String metricKey : batch.keySet()) {
+                metadata.pendingMappings.remove(metricKey);
+            }
+            if (metadata.lastMappingsBatchFuture == batchFuture) {
+                metadata.lastMappingsBatchFuture = null;
+            }
+        }
+        if (error == null) {
+            batchFuture.complete(null);
+        } else {
+            batchFuture.completeExceptionally(error);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Create the next data indexes of the accounts that stored messages since the previous run (if the rollover is within the lookahead)
+     */
+    void preCreateIndexes() {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        long ahead = now + preCreateLookahead;
+        for (KapuaId scopeId : activeScopes.values()) {
+            if (stopping) {
+                logger.info("Index pre-creation job stopped");
+                break;
+            }
+            // the scope is tracked again as soon as it stores a new message
+            activeScopes.remove(scopeId.getId());
+            String nextDataIndexName = DatastoreUtils.getDataIndexName(scopeId, ahead);
+            if (nextDataIndexName.equals(DatastoreUtils.getDataIndexName(scopeId, now))) {
+                continue;
+            }
+            try {
+                synchIndex(scopeId, nextDataIndexName);
+                logger.debug("Data index pre-created: {}", nextDataIndexName);
+            } catch (Exception e) {
+                logger.warn("Cannot pre-create the data index {}", nextDataIndexName, e);
+            }
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, String indexName) throws ClientException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e, String.format("Interrupted while waiting for the index '%s' update", indexName));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ClientException) {
+                throw (ClientException) e.getCause();
+            }
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, e.getCause(), String.format("Cannot update the index '%s'", indexName));
+        }
+    }
+
+    /**
+     * Datastore client lookup (the client is instantiated on first use)
+     */
+    @FunctionalInterface
+    private interface ClientProvider {
+
+        DatastoreClient getClient() throws ClientException;
     }
 
     private ObjectNode getNewMessageMappingsBuilder(Map<String, Metric> esMetrics) throws DatamodelMappingException {
@@ -195,27 +462,6 @@ public class Schema {
         return typeNode;
     }
 
-    private Map<String, Metric> getMessageMappingDiffs(Metadata currentMetadata, Map<String, Metric> esMetrics) {
-        if (esMetrics == null || esMetrics.size() == 0) {
-            return null;
-        }
-
-        Entry<String, Metric> el;
-        Map<String, Metric> diffs = null;
-        Iterator<Entry<String, Metric>> iter = esMetrics.entrySet().iterator();
-        while (iter.hasNext()) {
-            el = iter.next();
-            if (!currentMetadata.getMessageMappingsCache().containsKey(el.getKey())) {
-                if (diffs == null) {
-                    diffs = new HashMap<String, Metric>(100);
-                }
-                currentMetadata.getMessageMappingsCache().put(el.getKey(), el.getValue());
-                diffs.put(el.getKey(), el.getValue());
-            }
-        }
-        return diffs;
-    }
-
     private ObjectNode getMappingSchema(String idxName) throws DatamodelMappingException {
         String idxRefreshInterval = String.format("%ss", DatastoreSettings.getInstance().getLong(DatastoreSettingKey.INDEX_REFRESH_INTERVAL));
         Integer idxShardNumber = DatastoreSettings.getInstance().getInt(DatastoreSettingKey.INDEX_SHARD_NUMBER, 1);
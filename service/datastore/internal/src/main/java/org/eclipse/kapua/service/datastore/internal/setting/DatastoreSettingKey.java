@@ -34,10 +34,58 @@ public enum DatastoreSettingKey implements SettingKey {
      * Local cache maximum size
      */
     CONFIG_CACHE_LOCAL_SIZE_MAXIMUM("datastore.cache.local.size.maximum"),
+    /**
+     * Local (registries) cache implementation: 'local' (default) or 'fingerprint'
+     */
+    CONFIG_CACHE_LOCAL_TYPE("datastore.cache.local.type"),
     /**
      * Metadata cache maximum size
      */
     CONFIG_CACHE_METADATA_LOCAL_SIZE_MAXIMUM("datastore.cache.metadata.local.size.maximum"),
+    /**
+     * Metadata cache expire time (the data indexes deleted by another node are checked again once expired)
+     */
+    CONFIG_CACHE_METADATA_LOCAL_EXPIRE_AFTER("datastore.cache.metadata.local.expire.after"),
+    /**
+     * Message store configuration (and account) cache expire time
+     */
+    CONFIG_CACHE_CONFIGURATION_EXPIRE_AFTER("datastore.cache.configuration.expire.after"),
+    /**
+     * Message store configuration (and account) cache maximum size
+     */
+    CONFIG_CACHE_CONFIGURATION_SIZE_MAXIMUM("datastore.cache.configuration.size.maximum"),
+    /**
+     * Metric names (normalized name and qualifier) cache maximum size
+     */
+    CONFIG_CACHE_METRIC_NAME_SIZE_MAXIMUM("datastore.cache.metric.name.size.maximum"),
+    /**
+     * Data index names cache maximum size
+     */
+    CONFIG_CACHE_INDEX_NAME_SIZE_MAXIMUM("datastore.cache.index.name.size.maximum"),
+    /**
+     * Maximum number of messages fetched by a single request of a message stream
+     */
+    CONFIG_STREAM_BATCH_SIZE_MAX("datastore.query.stream.batch.size.max"),
+    /**
+     * Maximum number of groups (clients or channels) returned by a message aggregation
+     */
+    CONFIG_AGGREGATION_GROUPS_MAX("datastore.query.aggregation.groups.max"),
+    /**
+     * Minimum bucket interval (in milliseconds) of a message aggregation
+     */
+    CONFIG_AGGREGATION_INTERVAL_MIN("datastore.query.aggregation.interval.min"),
+    /**
+     * Maximum number of buckets of a message aggregation (all the groups together)
+     */
+    CONFIG_AGGREGATION_BUCKETS_MAX("datastore.query.aggregation.buckets.max"),
+    /**
+     * Enable the message queries targeting only the data indexes overlapping the queried timestamp range
+     */
+    CONFIG_QUERY_INDEX_PRUNING_ENABLED("datastore.query.index.pruning.enabled"),
+    /**
+     * Maximum number of data indexes targeted by a message query (the queries spanning more indexes target all the account data indexes)
+     */
+    CONFIG_QUERY_INDEX_PRUNING_INDEXES_MAX("datastore.query.index.pruning.indexes.max"),
     /**
      * Enable datastore timing profile
      */
@@ -61,7 +109,118 @@ public enum DatastoreSettingKey implements SettingKey {
     /**
      * Elasticsearch index refresh interval (the data is available for a search operation only if it is indexed)
      */
-    CONFIG_MAX_ENTRIES_ON_DELETE("datastore.delete.max_entries_on_delete");
+    CONFIG_MAX_ENTRIES_ON_DELETE("datastore.delete.max_entries_on_delete"),
+    /**
+     * Enable the bulk (asynchronous batching) message store mode
+     */
+    CONFIG_BULK_ENABLED("datastore.store.bulk.enabled"),
+    /**
+     * Maximum number of messages waiting to be flushed (the store caller is blocked once it is reached)
+     */
+    CONFIG_BULK_QUEUE_SIZE("datastore.store.bulk.queue.size"),
+    /**
+     * Maximum number of messages sent in a single bulk request
+     */
+    CONFIG_BULK_ACTIONS_MAX("datastore.store.bulk.actions.max"),
+    /**
+     * Maximum (estimated) size in bytes of a single bulk request
+     */
+    CONFIG_BULK_SIZE_MAX("datastore.store.bulk.size.max"),
+    /**
+     * Maximum time (in milliseconds) a message waits for other messages before the bulk request is sent
+     */
+    CONFIG_BULK_LINGER_TIME("datastore.store.bulk.linger.time"),
+    /**
+     * Maximum time (in milliseconds) the store caller waits for a free slot in the bulk queue
+     */
+    CONFIG_BULK_OFFER_TIMEOUT("datastore.store.bulk.offer.timeout"),
+    /**
+     * Maximum time (in milliseconds) the store caller waits for the bulk request containing its message to be completed
+     */
+    CONFIG_BULK_STORE_TIMEOUT("datastore.store.bulk.store.timeout"),
+    /**
+     * Maximum number of asynchronous message stores not yet completed (the store caller is blocked once it is reached)
+     */
+    CONFIG_STORE_ASYNC_PENDING_MAX("datastore.store.async.pending.max"),
+    /**
+     * Maximum time (in milliseconds) the asynchronous store caller waits once the pending stores limit is reached
+     */
+    CONFIG_STORE_ASYNC_PENDING_TIMEOUT("datastore.store.async.pending.timeout"),
+    /**
+     * Number of threads updating the registries once the asynchronous message stores are completed
+     */
+    CONFIG_STORE_ASYNC_COMPLETION_THREADS("datastore.store.async.completion.threads"),
+    /**
+     * Enable the registries (client, channel and metric informations) bulk writer
+     */
+    CONFIG_REGISTRY_BULK_ENABLED("datastore.registry.bulk.enabled"),
+    /**
+     * Registries bulk writer flush interval (in milliseconds)
+     */
+    CONFIG_REGISTRY_BULK_FLUSH_INTERVAL("datastore.registry.bulk.flush.interval"),
+    /**
+     * Maximum number of registry entries sent in a single bulk request (a flush is triggered once they are pending)
+     */
+    CONFIG_REGISTRY_BULK_ACTIONS_MAX("datastore.registry.bulk.actions.max"),
+    /**
+     * Maximum number of registry entries waiting to be flushed (the newer ones are discarded and registered by a later message)
+     */
+    CONFIG_REGISTRY_BULK_PENDING_MAX("datastore.registry.bulk.pending.max"),
+    /**
+     * Expected number of registry entries held by the registered identifiers filter
+     */
+    CONFIG_REGISTRY_FILTER_EXPECTED_INSERTIONS("datastore.registry.filter.expected.insertions"),
+    /**
+     * False positive probability of the registered identifiers filter
+     */
+    CONFIG_REGISTRY_FILTER_FPP("datastore.registry.filter.fpp"),
+    /**
+     * Time (in seconds) after which the registered identifiers filter is renewed
+     */
+    CONFIG_REGISTRY_FILTER_EXPIRE_AFTER("datastore.registry.filter.expire.after"),
+    CONFIG_SCHEMA_PRECREATE_ENABLED("datastore.schema.precreate.enabled"),
+    CONFIG_SCHEMA_PRECREATE_INTERVAL("datastore.schema.precreate.interval"),
+    CONFIG_SCHEMA_PRECREATE_LOOKAHEAD("datastore.schema.precreate.lookahead"),
+    /**
+     * Enable the retention job (it deletes the data indexes whose messages are all older than the account data time to live)
+     */
+    CONFIG_RETENTION_ENABLED("datastore.retention.enabled"),
+    /**
+     * Retention job run interval (in seconds)
+     */
+    CONFIG_RETENTION_INTERVAL("datastore.retention.interval"),
+    /**
+     * Enable the warm phase of the retention job (the data indexes no longer written are merged, they are not made read only)
+     */
+    CONFIG_RETENTION_WARM_ENABLED("datastore.retention.warm.enabled"),
+    /**
+     * Age (in seconds) of the newest message of a data index after which the index is considered no longer written
+     */
+    CONFIG_RETENTION_WARM_AFTER("datastore.retention.warm.after"),
+    /**
+     * Maximum number of segments per shard of the merged data indexes
+     */
+    CONFIG_RETENTION_WARM_SEGMENTS_MAX("datastore.retention.warm.segments.max"),
+    /**
+     * Size (in bytes) over which the active data index is reported as oversized (0 disables the check)
+     */
+    CONFIG_RETENTION_ACTIVE_INDEX_SIZE_MAX("datastore.retention.active.index.size.max"),
+    /**
+     * Number of threads running the message delete jobs
+     */
+    CONFIG_PURGE_THREADS("datastore.purge.threads"),
+    /**
+     * Time slice (in seconds) of the delete by query requests issued by the message delete jobs
+     */
+    CONFIG_PURGE_SLICE("datastore.purge.slice"),
+    /**
+     * Maximum delete requests per second issued by each message delete job
+     */
+    CONFIG_PURGE_REQUESTS_PER_SECOND("datastore.purge.requests.per.second"),
+    /**
+     * Time (in seconds) the ended message delete jobs are kept for the progress requests
+     */
+    CONFIG_PURGE_JOB_EXPIRE_AFTER("datastore.purge.job.expire.after");
 
     private String key;
 
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.account.Account;
+import org.eclipse.kapua.service.account.AccountService;
+import org.eclipse.kapua.service.config.KapuaConfigurableService;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+
+public class ConfigurationProviderImplTest extends Assert {
+
+    // the caches are shared by the JVM, so each test uses its own scope
+    private static final AtomicLong SCOPE_IDS = new AtomicLong(System.currentTimeMillis());
+
+    private KapuaId scopeId;
+    private KapuaConfigurableService configurableService;
+    private AccountService accountService;
+    private ConfigurationProviderImpl configurationProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        scopeId = new KapuaEid(BigInteger.valueOf(SCOPE_IDS.incrementAndGet()));
+        configurableService = mock(KapuaConfigurableService.class);
+        accountService = mock(AccountService.class);
+        configurationProvider = new ConfigurationProviderImpl(configurableService, accountService);
+    }
+
+    @Test
+    public void testConfigurationHitAndMissCounted() throws Exception {
+        when(configurableService.getConfigValues(scopeId)).thenReturn(newConfigValues(30));
+        long hits = getCounter("configuration", "hit").getCount();
+        long misses = getCounter("configuration", "miss").getCount();
+
+        assertEquals(30, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+        assertEquals(hits, getCounter("configuration", "hit").getCount());
+        assertEquals(misses + 1, getCounter("configuration", "miss").getCount());
+
+        // loaded once, then read from the cache
+        for (int i = 0; i < 3; i++) {
+            assertEquals(30, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+        }
+        assertEquals(hits + 3, getCounter("configuration", "hit").getCount());
+        assertEquals(misses + 1, getCounter("configuration", "miss").getCount());
+        verify(configurableService, times(1)).getConfigValues(scopeId);
+    }
+
+    @Test
+    public void testAccountHitAndMissCounted() throws Exception {
+        Account account = mock(Account.class);
+        when(accountService.find(scopeId)).thenReturn(account);
+        long hits = getCounter("account", "hit").getCount();
+        long misses = getCounter("account", "miss").getCount();
+
+        assertSame(account, configurationProvider.getInfo(scopeId).getAccount());
+        assertSame(account, configurationProvider.getInfo(scopeId).getAccount());
+
+        assertEquals(hits + 1, getCounter("account", "hit").getCount());
+        assertEquals(misses + 1, getCounter("account", "miss").getCount());
+        verify(accountService, times(1)).find(scopeId);
+    }
+
+    @Test
+    public void testInvalidateReloadsConfiguration() throws Exception {
+        when(configurableService.getConfigValues(scopeId)).thenReturn(newConfigValues(30), newConfigValues(60));
+        assertEquals(30, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+
+        // as done by MessageStoreServiceImpl.setConfigValues (the caches of this JVM only)
+        ConfigurationProviderImpl.invalidate(scopeId);
+        long misses = getCounter("configuration", "miss").getCount();
+        assertEquals(60, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+        assertEquals(misses + 1, getCounter("configuration", "miss").getCount());
+        verify(configurableService, times(2)).getConfigValues(scopeId);
+    }
+
+    @Test
+    public void testInvalidateOtherScopeKeepsConfiguration() throws Exception {
+        when(configurableService.getConfigValues(scopeId)).thenReturn(newConfigValues(30), newConfigValues(60));
+        assertEquals(30, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+
+        ConfigurationProviderImpl.invalidate(new KapuaEid(BigInteger.valueOf(SCOPE_IDS.incrementAndGet())));
+        assertEquals(30, configurationProvider.getConfiguration(scopeId).getDataTimeToLive());
+        verify(configurableService, times(1)).getConfigValues(scopeId);
+    }
+
+    private static Map<String, Object> newConfigValues(int dataTtl) {
+        Map<String, Object> values = new HashMap<>();
+        values.put(MessageStoreConfiguration.CONFIGURATION_DATA_TTL_KEY, dataTtl);
+        return values;
+    }
+
+    private static Counter getCounter(String cache, String result) {
+        return MetricServiceFactory.getInstance().getCounter("datastore", "configuration", "cache", cache, result, "count");
+    }
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkInsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.ConfigurationException;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageStoreBulkWriterTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+    private static final TypeDescriptor TYPE_DESCRIPTOR = new TypeDescriptor("1-2017-01", "message");
+
+    @Test
+    public void testRegistriesUpdatedOncePerBulkInPrivilegedContext() throws Exception {
+        RecordingMediator mediator = new RecordingMediator();
+        MessageStoreBulkWriter bulkWriter = new MessageStoreBulkWriter(newClient(), mediator);
+        bulkWriter.start();
+        try {
+            List<CompletableFuture<InsertResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(bulkWriter.storeAsync(TYPE_DESCRIPTOR, newMessage("client-" + i), null));
+            }
+            for (CompletableFuture<InsertResponse> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            bulkWriter.stop();
+        }
+
+        // every batch is reported once, with the messages datastore id set, in a privileged context
+        assertTrue(mediator.singleUpdates.isEmpty());
+        int updatedMessages = 0;
+        for (List<DatastoreMessage> messages : mediator.batchUpdates) {
+            for (DatastoreMessage message : messages) {
+                assertNotNull(message.getDatastoreId());
+            }
+            updatedMessages += messages.size();
+        }
+        assertEquals(10, updatedMessages);
+        assertTrue(mediator.batchUpdates.size() < 10);
+        assertFalse(mediator.notPrivileged);
+    }
+
+    @Test
+    public void testFailedRegistriesUpdateFallsBackToSingleMessages() throws Exception {
+        RecordingMediator mediator = new RecordingMediator();
+        mediator.failBatch = true;
+        mediator.failingClientId = "client-1";
+        MessageStoreBulkWriter bulkWriter = new MessageStoreBulkWriter(newClient(), mediator);
+        bulkWriter.start();
+        List<CompletableFuture<InsertResponse>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                results.add(bulkWriter.storeAsync(TYPE_DESCRIPTOR, newMessage("client-" + i), null));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).handle((v, t) -> null).get(10, TimeUnit.SECONDS);
+        } finally {
+            bulkWriter.stop();
+        }
+
+        // only the message whose registry update fails is reported as failed
+        assertNotNull(results.get(0).get());
+        try {
+            results.get(1).get();
+            fail("The registry update failure must be reported");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        assertNotNull(results.get(2).get());
+        assertEquals(3, mediator.singleUpdates.size());
+        assertFalse(mediator.notPrivileged);
+    }
+
+    @Test
+    public void testStopFlushesQueuedMessages() throws Exception {
+        RecordingMediator mediator = new RecordingMediator();
+        MessageStoreBulkWriter bulkWriter = new MessageStoreBulkWriter(newClient(), mediator);
+        bulkWriter.start();
+        List<CompletableFuture<InsertResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(bulkWriter.storeAsync(TYPE_DESCRIPTOR, newMessage("client-" + i), null));
+        }
+        bulkWriter.stop();
+
+        for (CompletableFuture<InsertResponse> result : results) {
+            assertTrue(result.isDone());
+            assertNotNull(result.get().getId());
+        }
+        try {
+            bulkWriter.storeAsync(TYPE_DESCRIPTOR, newMessage("client-late"), null);
+            fail("A stopped bulk writer must refuse the messages");
+        } catch (ClientException e) {
+            // expected
+        }
+    }
+
+    private static DatastoreClient newClient() throws ClientException {
+        DatastoreClient client = mock(DatastoreClient.class);
+        when(client.insert(any(BulkInsertRequest.class))).thenAnswer(invocation -> {
+            BulkInsertRequest bulkInsertRequest = (BulkInsertRequest) invocation.getArguments()[0];
+            BulkInsertResponse bulkInsertResponse = new BulkInsertResponse();
+            for (InsertRequest insertRequest : bulkInsertRequest.getRequest()) {
+                InsertResponse insertResponse = new InsertResponse(((DatastoreMessage) insertRequest.getStorable()).getClientId(), insertRequest.getTypeDescriptor());
+                insertResponse.setResult(true);
+                bulkInsertResponse.add(insertResponse);
+            }
+            return bulkInsertResponse;
+        });
+        return client;
+    }
+
+    private static DatastoreMessage newMessage(String clientId) {
+        DatastoreMessage message = new DatastoreMessageImpl();
+        message.setScopeId(SCOPE_ID);
+        message.setClientId(clientId);
+        return message;
+    }
+
+    /**
+     * Mediator recording the registries updates (and checking they are executed in a privileged context)
+     */
+    private static class RecordingMediator implements MessageStoreMediator {
+
+        private final List<List<DatastoreMessage>> batchUpdates = new CopyOnWriteArrayList<>();
+        private final List<DatastoreMessage> singleUpdates = new CopyOnWriteArrayList<>();
+        private volatile boolean notPrivileged;
+        private volatile boolean failBatch;
+        private volatile String failingClientId;
+
+        @Override
+        public Metadata getMetadata(KapuaId scopeId, long indexedOn) {
+            return null;
+        }
+
+        @Override
+        public void onUpdatedMappings(KapuaId scopeId, long indexedOn, Map<String, Metric> metrics) {
+        }
+
+        @Override
+        public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message) throws ConfigurationException {
+            checkPrivileged();
+            singleUpdates.add(message);
+            if (message.getClientId().equals(failingClientId)) {
+                throw new ConfigurationException("Registry update failure");
+            }
+        }
+
+        @Override
+        public void onAfterMessagesStore(List<DatastoreMessage> messages) throws ConfigurationException {
+            checkPrivileged();
+            if (failBatch) {
+                throw new ConfigurationException("Registries update failure");
+            }
+            batchUpdates.add(new ArrayList<>(messages));
+        }
+
+        @Override
+        public void onAfterMessagesDelete(KapuaId scopeId) {
+        }
+
+        private void checkPrivileged() {
+            if (KapuaSecurityUtils.getSession() == null || !KapuaSecurityUtils.getSession().isTrustedMode()) {
+                notPrivileged = true;
+            }
+        }
+    }
+}
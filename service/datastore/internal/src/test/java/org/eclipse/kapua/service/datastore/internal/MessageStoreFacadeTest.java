@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.KapuaIllegalArgumentException;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.message.device.data.KapuaDataMessage;
+import org.eclipse.kapua.message.internal.device.data.KapuaDataMessageImpl;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.AsyncDatastoreClient;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.InsertRequest;
+import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageAggregationQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.RangePredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.MessageSchema;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
+import org.eclipse.kapua.service.datastore.model.query.AggregationGroupBy;
+import org.eclipse.kapua.service.datastore.model.query.MessageAggregationQuery;
+import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class MessageStoreFacadeTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+
+    @Test
+    public void testAsyncStoreCompletedInPrivilegedContext() throws Exception {
+        RecordingMediator mediator = new RecordingMediator();
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), mediator, newAsyncClient(0));
+        try {
+            List<CompletableFuture<InsertResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(messageStoreFacade.storeAsync(newMessage("client-" + i)));
+            }
+            for (CompletableFuture<InsertResponse> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            messageStoreFacade.close();
+        }
+
+        // the registries are updated by the completion threads (having no session) in a privileged context
+        assertEquals(10, mediator.updates.size());
+        for (DatastoreMessage message : mediator.updates) {
+            assertNotNull(message.getDatastoreId());
+        }
+        assertFalse(mediator.notPrivileged);
+    }
+
+    @Test
+    public void testCloseCompletesPendingStores() throws Exception {
+        RecordingMediator mediator = new RecordingMediator();
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), mediator, newAsyncClient(500));
+        List<CompletableFuture<InsertResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(messageStoreFacade.storeAsync(newMessage("client-" + i)));
+        }
+        messageStoreFacade.close();
+
+        for (CompletableFuture<InsertResponse> result : results) {
+            assertTrue(result.isDone());
+            assertNotNull(result.get().getId());
+        }
+        assertEquals(10, mediator.updates.size());
+    }
+
+    @Test
+    public void testPurgeManagerStartedOnFirstDeleteJob() throws Exception {
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), mock(DatastoreClient.class));
+        MessageDeleteJob job;
+        try {
+            // no job before the first one is submitted
+            assertNull(messageStoreFacade.findDeleteJob(SCOPE_ID, "unknown"));
+            assertNull(messageStoreFacade.resumeDeleteJob(SCOPE_ID, "unknown"));
+
+            job = messageStoreFacade.deleteAsync(new MessageQueryImpl(SCOPE_ID));
+            assertNotNull(messageStoreFacade.findDeleteJob(SCOPE_ID, job.getId()));
+        } finally {
+            messageStoreFacade.close();
+        }
+        assertNotNull(messageStoreFacade.findDeleteJob(SCOPE_ID, job.getId()));
+        try {
+            messageStoreFacade.deleteAsync(new MessageQueryImpl(SCOPE_ID));
+            fail("No job should be accepted once closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAggregationBucketsLimited() throws Exception {
+        DatastoreClient client = mock(DatastoreClient.class);
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), client);
+        try {
+            long end = System.currentTimeMillis();
+            long start = end - TimeUnit.DAYS.toMillis(30);
+            // one bucket per hour
+            messageStoreFacade.aggregate(newAggregationQuery(start, end, TimeUnit.HOURS.toMillis(1)));
+            verify(client).aggregate(any(TypeDescriptor.class), any());
+
+            // one bucket per minute
+            try {
+                messageStoreFacade.aggregate(newAggregationQuery(start, end, TimeUnit.MINUTES.toMillis(1)));
+                fail("The aggregation should be rejected");
+            } catch (KapuaIllegalArgumentException e) {
+                assertEquals("query.interval", e.getArgumentName());
+            }
+            verify(client, times(1)).aggregate(any(TypeDescriptor.class), any());
+        } finally {
+            messageStoreFacade.close();
+        }
+    }
+
+    @Test
+    public void testGroupedAggregationBucketsLimited() throws Exception {
+        DatastoreClient client = mock(DatastoreClient.class);
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), client);
+        try {
+            long end = System.currentTimeMillis();
+            long start = end - TimeUnit.DAYS.toMillis(30);
+            // 720 buckets for each of the 10 groups
+            MessageAggregationQuery query = newAggregationQuery(start, end, TimeUnit.HOURS.toMillis(1));
+            query.setGroupBy(AggregationGroupBy.CLIENT_ID);
+            query.setMaxGroups(10);
+            messageStoreFacade.aggregate(query);
+            verify(client).aggregate(any(TypeDescriptor.class), any());
+
+            // 720 buckets for each of the 1000 groups
+            query.setMaxGroups(1000);
+            try {
+                messageStoreFacade.aggregate(query);
+                fail("The aggregation should be rejected");
+            } catch (KapuaIllegalArgumentException e) {
+                assertEquals("query.interval", e.getArgumentName());
+            }
+            verify(client, times(1)).aggregate(any(TypeDescriptor.class), any());
+        } finally {
+            messageStoreFacade.close();
+        }
+    }
+
+    @Test
+    public void testUnboundedAggregationLimitedByTimeToLive() throws Exception {
+        DatastoreClient client = mock(DatastoreClient.class);
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), client);
+        try {
+            // the data time to live is 90 days
+            messageStoreFacade.aggregate(newAggregationQuery(null, null, TimeUnit.HOURS.toMillis(1)));
+            try {
+                messageStoreFacade.aggregate(newAggregationQuery(null, null, TimeUnit.MINUTES.toMillis(1)));
+                fail("The aggregation should be rejected");
+            } catch (KapuaIllegalArgumentException e) {
+                assertEquals("query.interval", e.getArgumentName());
+            }
+            verify(client, times(1)).aggregate(any(TypeDescriptor.class), any());
+        } finally {
+            messageStoreFacade.close();
+        }
+    }
+
+    @Test
+    public void testStreamDelegatesToClient() throws Exception {
+        DatastoreClient client = mock(DatastoreClient.class);
+        ResultStream<DatastoreMessage> clientStream = ScrollResultStream.empty();
+        when(client.stream(any(TypeDescriptor.class), any(), eq(DatastoreMessage.class), eq(250))).thenReturn(clientStream);
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), client);
+        try {
+            long end = System.currentTimeMillis();
+            long start = end - TimeUnit.DAYS.toMillis(2);
+            MessageQuery query = new MessageQueryImpl(SCOPE_ID);
+            query.setPredicate(new RangePredicateImpl(MessageField.TIMESTAMP, new Date(start), new Date(end)));
+            assertSame(clientStream, messageStoreFacade.stream(query, 250));
+
+            // only the indexes of the queried time window are scrolled
+            ArgumentCaptor<TypeDescriptor> typeDescriptor = ArgumentCaptor.forClass(TypeDescriptor.class);
+            verify(client).stream(typeDescriptor.capture(), any(), eq(DatastoreMessage.class), eq(250));
+            assertEquals(DatastoreUtils.getDataIndexNames(SCOPE_ID, start, end, 60), typeDescriptor.getValue().getIndex());
+            assertEquals(MessageSchema.MESSAGE_TYPE_NAME, typeDescriptor.getValue().getType());
+        } finally {
+            messageStoreFacade.close();
+        }
+    }
+
+    private static MessageAggregationQuery newAggregationQuery(Long start, Long end, long interval) {
+        MessageAggregationQuery query = new MessageAggregationQueryImpl(SCOPE_ID);
+        query.setMetricName("temperature");
+        query.setMetricType(Double.class);
+        query.setGroupBy(AggregationGroupBy.NONE);
+        query.setInterval(interval);
+        if (start != null) {
+            query.setPredicate(new RangePredicateImpl(MessageField.TIMESTAMP, new Date(start), new Date(end)));
+        }
+        return query;
+    }
+
+    /**
+     * Asynchronous client completing the inserts by a different thread after the given delay
+     */
+    private static AsyncDatastoreClient newAsyncClient(long delay) {
+        AsyncDatastoreClient client = mock(AsyncDatastoreClient.class);
+        when(client.insertAsync(any(InsertRequest.class))).thenAnswer(invocation -> {
+            InsertRequest insertRequest = (InsertRequest) invocation.getArguments()[0];
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                InsertResponse insertResponse = new InsertResponse(((DatastoreMessage) insertRequest.getStorable()).getClientId(), insertRequest.getTypeDescriptor());
+                insertResponse.setResult(true);
+                return insertResponse;
+            });
+        });
+        return client;
+    }
+
+    private static KapuaDataMessage newMessage(String clientId) {
+        KapuaDataMessage message = new KapuaDataMessageImpl();
+        message.setScopeId(SCOPE_ID);
+        message.setClientId(clientId);
+        message.setReceivedOn(new Date());
+        return message;
+    }
+
+    private static class TestConfigurationProvider implements ConfigurationProvider {
+
+        @Override
+        public MessageStoreConfiguration getConfiguration(KapuaId scopeId) {
+            return new MessageStoreConfiguration(null);
+        }
+
+        @Override
+        public MessageInfo getInfo(KapuaId scopeId) {
+            return new MessageInfo(null);
+        }
+    }
+
+    /**
+     * Mediator recording the registries updates (and checking they are executed in a privileged context)
+     */
+    private static class RecordingMediator implements MessageStoreMediator {
+
+        private final List<DatastoreMessage> updates = new CopyOnWriteArrayList<>();
+        private volatile boolean notPrivileged;
+
+        @Override
+        public Metadata getMetadata(KapuaId scopeId, long indexedOn) {
+            return new Metadata("10-2017-01", "10");
+        }
+
+        @Override
+        public void onUpdatedMappings(KapuaId scopeId, long indexedOn, Map<String, Metric> metrics) {
+        }
+
+        @Override
+        public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message) {
+            if (KapuaSecurityUtils.getSession() == null || !KapuaSecurityUtils.getSession().isTrustedMode()) {
+                notPrivileged = true;
+            }
+            updates.add(message);
+        }
+
+        @Override
+        public void onAfterMessagesStore(List<DatastoreMessage> messages) {
+            for (DatastoreMessage message : messages) {
+                onAfterMessageStore(null, message);
+            }
+        }
+
+        @Override
+        public void onAfterMessagesDelete(KapuaId scopeId) {
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.util.KapuaDateUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
+import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.MessageStoreFacade.TimestampRange;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.RangePredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJob;
+import org.eclipse.kapua.service.datastore.model.MessageDeleteJobStatus;
+import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.eclipse.kapua.service.datastore.model.query.SortDirection;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageStorePurgeManagerTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // 2017-01-02T00:00:00Z (monday)
+    private static final long WEEK_START = 1483315200000L;
+    private static final String INDEX_NAME = DatastoreUtils.getDataIndexName(SCOPE_ID, WEEK_START);
+
+    @Test
+    public void testIndexCoveredByQueryIsDropped() throws Exception {
+        FakeDatastore datastore = new FakeDatastore();
+        datastore.addMessages(INDEX_NAME, WEEK_START + 1000, WEEK_START + 3 * DAY);
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            MessageDeleteJob job = waitForEnd(purgeManager, purgeManager.submit(newRangeQuery(WEEK_START, WEEK_START + 7 * DAY)));
+
+            assertEquals(MessageDeleteJobStatus.COMPLETED, job.getStatus());
+            assertEquals(1, job.getIndexesDeleted());
+            assertEquals(0, job.getSlicesCompleted());
+            assertEquals(1, datastore.deletedIndexes.size());
+            assertEquals(INDEX_NAME, datastore.deletedIndexes.get(0));
+            assertTrue(datastore.deletedSlices.isEmpty());
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    @Test
+    public void testIndexWithLateMessageIsDeletedBySlices() throws Exception {
+        FakeDatastore datastore = new FakeDatastore();
+        datastore.addMessages(INDEX_NAME, WEEK_START + 1000, WEEK_START + 3 * DAY);
+        // stored once the index is found covered by the query, before it's dropped
+        datastore.addLateMessage(2, INDEX_NAME, WEEK_START + 5 * DAY);
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            MessageDeleteJob job = waitForEnd(purgeManager, purgeManager.submit(newRangeQuery(WEEK_START, WEEK_START + 3 * DAY)));
+
+            assertEquals(MessageDeleteJobStatus.COMPLETED, job.getStatus());
+            assertEquals(0, job.getIndexesDeleted());
+            assertTrue(datastore.deletedIndexes.isEmpty());
+            assertSlices(datastore, WEEK_START + 1000, WEEK_START + DAY + 1000, WEEK_START + 2 * DAY + 1000);
+            // the late message is kept
+            assertEquals(Collections.singletonList(WEEK_START + 5 * DAY), datastore.indexes.get(INDEX_NAME));
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    @Test
+    public void testIndexPartiallyCoveredIsDeletedBySlices() throws Exception {
+        FakeDatastore datastore = new FakeDatastore();
+        datastore.addMessages(INDEX_NAME, WEEK_START + 1000, WEEK_START + DAY + 1000, WEEK_START + 2 * DAY + 1000, WEEK_START + 5 * DAY);
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            // the oldest message is not matched, so the index cannot be dropped
+            MessageDeleteJob job = waitForEnd(purgeManager, purgeManager.submit(newRangeQuery(WEEK_START + 2000, WEEK_START + 3 * DAY)));
+
+            assertEquals(MessageDeleteJobStatus.COMPLETED, job.getStatus());
+            assertEquals(0, job.getIndexesDeleted());
+            assertTrue(datastore.deletedIndexes.isEmpty());
+            // from the first to the last matching message, one day at a time
+            assertSlices(datastore, WEEK_START + DAY + 1000, WEEK_START + 2 * DAY + 1000);
+            assertEquals(2, job.getSlicesCompleted());
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    @Test
+    public void testActiveIndexIsNeverDropped() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        String activeIndexName = DatastoreUtils.getDataIndexName(SCOPE_ID, now);
+        FakeDatastore datastore = new FakeDatastore();
+        datastore.addMessages(activeIndexName, now - 2000, now - 1000);
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            MessageDeleteJob job = waitForEnd(purgeManager, purgeManager.submit(newRangeQuery(0, now + DAY)));
+
+            assertEquals(MessageDeleteJobStatus.COMPLETED, job.getStatus());
+            assertTrue(datastore.deletedIndexes.isEmpty());
+            assertSlices(datastore, now - 2000);
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    @Test
+    public void testFailedJobResumesFromFailedSlice() throws Exception {
+        FakeDatastore datastore = new FakeDatastore();
+        datastore.addMessages(INDEX_NAME, WEEK_START, WEEK_START + 1000, WEEK_START + DAY + 1000, WEEK_START + 2 * DAY + 1000);
+        // the second slice fails once
+        datastore.failingSlice = 2;
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            MessageDeleteJob job = waitForEnd(purgeManager, purgeManager.submit(newRangeQuery(WEEK_START + 1000, WEEK_START + 7 * DAY)));
+            assertEquals(MessageDeleteJobStatus.FAILED, job.getStatus());
+            assertNotNull(job.getErrorMessage());
+            assertEquals(1, job.getSlicesCompleted());
+
+            purgeManager.resume(SCOPE_ID, job.getId());
+            job = waitForEnd(purgeManager, job);
+            assertEquals(MessageDeleteJobStatus.COMPLETED, job.getStatus());
+            assertEquals(3, job.getSlicesCompleted());
+            // the completed slice is not deleted again
+            assertSlices(datastore, WEEK_START + 1000, WEEK_START + DAY + 1000, WEEK_START + 2 * DAY + 1000);
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    @Test
+    public void testJobsOfOtherScopesAreNotFound() throws Exception {
+        FakeDatastore datastore = new FakeDatastore();
+        MessageStorePurgeManager purgeManager = newPurgeManager(datastore);
+        try {
+            MessageDeleteJob job = purgeManager.submit(newRangeQuery(WEEK_START, WEEK_START + DAY));
+            assertNull(purgeManager.find(new KapuaEid(BigInteger.ONE), job.getId()));
+            assertNull(purgeManager.resume(new KapuaEid(BigInteger.ONE), job.getId()));
+            assertNotNull(purgeManager.find(SCOPE_ID, job.getId()));
+        } finally {
+            purgeManager.stop();
+        }
+    }
+
+    private static MessageStorePurgeManager newPurgeManager(FakeDatastore datastore) throws ClientException {
+        MessageStorePurgeManager purgeManager = new MessageStorePurgeManager(datastore.newClient(), new TestConfigurationProvider(), new TestMediator(), 1, DAY, 1000.0d,
+                TimeUnit.HOURS.toMillis(1));
+        purgeManager.start();
+        return purgeManager;
+    }
+
+    private static MessageQuery newRangeQuery(long start, long end) {
+        MessageQuery query = new MessageQueryImpl(SCOPE_ID);
+        query.setPredicate(new RangePredicateImpl(MessageField.TIMESTAMP, new Date(start), new Date(end)));
+        return query;
+    }
+
+    private static MessageDeleteJob waitForEnd(MessageStorePurgeManager purgeManager, MessageDeleteJob job) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            job = purgeManager.find(SCOPE_ID, job.getId());
+            if (job.getStatus() == MessageDeleteJobStatus.COMPLETED || job.getStatus() == MessageDeleteJobStatus.FAILED) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        fail("The job is not ended");
+        return null;
+    }
+
+    private static void assertSlices(FakeDatastore datastore, Long... sliceStarts) {
+        List<Long> starts = new ArrayList<>();
+        for (long[] slice : datastore.deletedSlices) {
+            starts.add(slice[0]);
+        }
+        assertEquals(Arrays.asList(sliceStarts), starts);
+    }
+
+    /**
+     * In memory data indexes (message timestamps by index name) backing a mocked datastore client
+     */
+    private static class FakeDatastore {
+
+        private final Map<String, List<Long>> indexes = new TreeMap<>();
+        private final List<String> deletedIndexes = new CopyOnWriteArrayList<>();
+        private final List<long[]> deletedSlices = new CopyOnWriteArrayList<>();
+        private final AtomicInteger sliceRequests = new AtomicInteger();
+        private volatile int failingSlice;
+        private final AtomicInteger queries = new AtomicInteger();
+        private volatile int lateMessageQuery;
+        private volatile Runnable lateMessage;
+
+        private void addMessages(String indexName, Long... timestamps) {
+            indexes.computeIfAbsent(indexName, name -> new CopyOnWriteArrayList<>()).addAll(Arrays.asList(timestamps));
+        }
+
+        /**
+         * Add the message once the given number of queries is done
+         */
+        private void addLateMessage(int afterQueries, String indexName, Long timestamp) {
+            lateMessageQuery = afterQueries;
+            lateMessage = () -> addMessages(indexName, timestamp);
+        }
+
+        @SuppressWarnings("unchecked")
+        private DatastoreClient newClient() throws ClientException {
+            DatastoreClient client = mock(DatastoreClient.class);
+            when(client.getIndexes(anyString())).thenAnswer(invocation -> {
+                List<IndexInfo> indexInfos = new ArrayList<>();
+                for (Map.Entry<String, List<Long>> index : indexes.entrySet()) {
+                    indexInfos.add(new IndexInfo(index.getKey(), index.getValue().size(), 0, 1, 1));
+                }
+                return indexInfos;
+            });
+            when(client.query(any(TypeDescriptor.class), any(), eq(DatastoreMessage.class))).thenAnswer(invocation -> {
+                String indexName = ((TypeDescriptor) invocation.getArguments()[0]).getIndex();
+                MessageQuery query = (MessageQuery) invocation.getArguments()[1];
+                boolean ascending = query.getSortFields().get(0).getSortDirection() == SortDirection.ASC;
+                Long found = null;
+                for (Long timestamp : matching(indexName, query)) {
+                    if (found == null || (ascending ? timestamp < found : timestamp > found)) {
+                        found = timestamp;
+                    }
+                }
+                ResultList<DatastoreMessage> result = new ResultList<>(found != null ? 1 : 0);
+                if (found != null) {
+                    DatastoreMessage message = new DatastoreMessageImpl();
+                    message.setTimestamp(new Date(found));
+                    result.add(message);
+                }
+                if (queries.incrementAndGet() == lateMessageQuery) {
+                    lateMessage.run();
+                }
+                return result;
+            });
+            doAnswer(invocation -> {
+                if (sliceRequests.incrementAndGet() == failingSlice) {
+                    throw new ClientException(ClientErrorCodes.CLIENT_UNAVAILABLE, "Delete failure");
+                }
+                String indexName = ((TypeDescriptor) invocation.getArguments()[0]).getIndex();
+                MessageQuery query = (MessageQuery) invocation.getArguments()[1];
+                List<Long> deleted = matching(indexName, query);
+                indexes.get(indexName).removeAll(deleted);
+                TimestampRange range = new TimestampRange();
+                range.collect(query.getPredicate());
+                deletedSlices.add(new long[] { range.start, range.end });
+                return null;
+            }).when(client).deleteByQuery(any(TypeDescriptor.class), any());
+            doAnswer(invocation -> {
+                for (String indexName : (List<String>) invocation.getArguments()[0]) {
+                    indexes.remove(indexName);
+                    deletedIndexes.add(indexName);
+                }
+                return null;
+            }).when(client).deleteIndexes(anyListOf(String.class));
+            return client;
+        }
+
+        private List<Long> matching(String indexName, MessageQuery query) {
+            TimestampRange range = new TimestampRange();
+            assertTrue(range.collect(query.getPredicate()));
+            List<Long> matching = new ArrayList<>();
+            for (Long timestamp : indexes.getOrDefault(indexName, new ArrayList<>())) {
+                if ((range.start == null || timestamp >= range.start) && (range.end == null || timestamp <= range.end)) {
+                    matching.add(timestamp);
+                }
+            }
+            return matching;
+        }
+    }
+
+    private static class TestConfigurationProvider implements ConfigurationProvider {
+
+        @Override
+        public MessageStoreConfiguration getConfiguration(KapuaId scopeId) {
+            return new MessageStoreConfiguration(null);
+        }
+
+        @Override
+        public MessageInfo getInfo(KapuaId scopeId) {
+            return new MessageInfo(null);
+        }
+    }
+
+    private static class TestMediator implements MessageStoreMediator {
+
+        @Override
+        public Metadata getMetadata(KapuaId scopeId, long indexedOn) {
+            return null;
+        }
+
+        @Override
+        public void onUpdatedMappings(KapuaId scopeId, long indexedOn, Map<String, Metric> metrics) {
+        }
+
+        @Override
+        public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message) {
+        }
+
+        @Override
+        public void onAfterMessagesStore(List<DatastoreMessage> messages) {
+        }
+
+        @Override
+        public void onAfterMessagesDelete(KapuaId scopeId) {
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.commons.util.KapuaDateUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.IndexInfo;
+import org.eclipse.kapua.service.datastore.client.model.ResultList;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageField;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfiguration;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageQueryImpl;
+import org.eclipse.kapua.service.datastore.internal.model.query.RangePredicateImpl;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.query.MessageQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class MessageStoreRetentionManagerTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long WARM_AFTER = 14 * DAY;
+
+    @Test
+    public void testExpiredIndexesDeleted() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        // the default data time to live is 90 days
+        String expiredIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 200 * DAY);
+        String liveIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 60 * DAY);
+        Map<IndexInfo, Long> indexes = new HashMap<>();
+        indexes.put(new IndexInfo(expiredIndex, 10, 1000, 1, 1), now - 200 * DAY);
+        indexes.put(new IndexInfo(liveIndex, 10, 1000, 1, 1), now - 60 * DAY);
+        DatastoreClient client = newClient(indexes);
+        RecordingMediator mediator = new RecordingMediator();
+
+        newRetentionManager(client, mediator, true).run();
+
+        verify(client).deleteIndexes(Collections.singletonList(expiredIndex));
+        // the registries are notified once the messages are deleted
+        assertEquals(Collections.singletonList(SCOPE_ID), mediator.deletes);
+    }
+
+    @Test
+    public void testActiveAndEmptyIndexesNeverDeleted() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        String activeIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now);
+        String emptyIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 200 * DAY);
+        Map<IndexInfo, Long> indexes = new HashMap<>();
+        // the newest message of the active index is expired (clock skew), but the index still receives messages
+        indexes.put(new IndexInfo(activeIndex, 10, 1000, 1, 10), now - 200 * DAY);
+        indexes.put(new IndexInfo(emptyIndex, 0, 100, 1, 0), null);
+        DatastoreClient client = newClient(indexes);
+        RecordingMediator mediator = new RecordingMediator();
+
+        newRetentionManager(client, mediator, true).run();
+
+        verify(client, never()).deleteIndexes(anyListOf(String.class));
+        verify(client, never()).forceMerge(anyString(), anyInt());
+        assertTrue(mediator.deletes.isEmpty());
+    }
+
+    @Test
+    public void testIndexesNoLongerWrittenMerged() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        String warmIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 30 * DAY);
+        String alreadyWarmIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 60 * DAY);
+        String hotIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, now - 7 * DAY);
+        Map<IndexInfo, Long> indexes = new HashMap<>();
+        indexes.put(new IndexInfo(warmIndex, 10, 1000, 2, 12), now - 30 * DAY);
+        // already merged (one segment per shard)
+        indexes.put(new IndexInfo(alreadyWarmIndex, 10, 1000, 2, 2), now - 60 * DAY);
+        indexes.put(new IndexInfo(hotIndex, 10, 1000, 2, 12), now - 7 * DAY);
+        DatastoreClient client = newClient(indexes);
+
+        newRetentionManager(client, new RecordingMediator(), true).run();
+
+        verify(client).forceMerge(warmIndex, 1);
+        verify(client, never()).forceMerge(eq(alreadyWarmIndex), anyInt());
+        verify(client, never()).forceMerge(eq(hotIndex), anyInt());
+        verify(client, never()).deleteIndexes(anyListOf(String.class));
+    }
+
+    @Test
+    public void testMessagesDeletedFromMergedIndex() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        long warmTimestamp = now - 30 * DAY;
+        String warmIndex = DatastoreUtils.getDataIndexName(SCOPE_ID, warmTimestamp);
+        Map<IndexInfo, Long> indexes = new HashMap<>();
+        indexes.put(new IndexInfo(warmIndex, 10, 1000, 1, 10), warmTimestamp);
+        DatastoreClient client = newClient(indexes);
+        newRetentionManager(client, new RecordingMediator(), true).run();
+        verify(client).forceMerge(warmIndex, 1);
+
+        // the merged index is still writable, so the messages can be deleted
+        MessageStoreFacade messageStoreFacade = new MessageStoreFacade(new TestConfigurationProvider(), new RecordingMediator(), client);
+        try {
+            MessageQuery messageQuery = new MessageQueryImpl(SCOPE_ID);
+            messageQuery.setPredicate(new RangePredicateImpl(MessageField.TIMESTAMP, new Date(warmTimestamp), new Date(warmTimestamp)));
+            messageStoreFacade.delete(messageQuery);
+        } finally {
+            messageStoreFacade.close();
+        }
+        ArgumentCaptor<TypeDescriptor> typeDescriptor = ArgumentCaptor.forClass(TypeDescriptor.class);
+        verify(client).deleteByQuery(typeDescriptor.capture(), any());
+        assertEquals(warmIndex, typeDescriptor.getValue().getIndex());
+    }
+
+    @Test
+    public void testWarmPhaseDisabled() throws Exception {
+        long now = KapuaDateUtils.getKapuaSysDate().toEpochMilli();
+        Map<IndexInfo, Long> indexes = new HashMap<>();
+        indexes.put(new IndexInfo(DatastoreUtils.getDataIndexName(SCOPE_ID, now - 30 * DAY), 10, 1000, 1, 10), now - 30 * DAY);
+        DatastoreClient client = newClient(indexes);
+
+        newRetentionManager(client, new RecordingMediator(), false).run();
+
+        verify(client, never()).forceMerge(anyString(), anyInt());
+    }
+
+    @Test
+    public void testStoppedJobNotScheduled() throws Exception {
+        DatastoreClient client = newClient(new HashMap<>());
+        MessageStoreRetentionManager retentionManager = newRetentionManager(client, new RecordingMediator(), true);
+        retentionManager.start();
+        retentionManager.stop();
+        // the job runs every hour, so the stop returns without waiting for it
+        verify(client, never()).getIndexes(anyString());
+    }
+
+    private static MessageStoreRetentionManager newRetentionManager(DatastoreClient client, MessageStoreMediator mediator, boolean warmEnabled) {
+        return new MessageStoreRetentionManager(client, new TestConfigurationProvider(), mediator, 3600L, warmEnabled, WARM_AFTER, 1, 0L);
+    }
+
+    /**
+     * Datastore client returning the given data indexes (with the timestamp of their newest message)
+     */
+    private static DatastoreClient newClient(Map<IndexInfo, Long> indexes) throws ClientException {
+        DatastoreClient client = mock(DatastoreClient.class);
+        when(client.getIndexes(anyString())).thenReturn(new ArrayList<>(indexes.keySet()));
+        when(client.query(any(TypeDescriptor.class), any(), eq(DatastoreMessage.class))).thenAnswer(invocation -> {
+            String indexName = ((TypeDescriptor) invocation.getArguments()[0]).getIndex();
+            ResultList<DatastoreMessage> result = new ResultList<>(0);
+            for (Map.Entry<IndexInfo, Long> index : indexes.entrySet()) {
+                if (index.getKey().getIndex().equals(indexName) && index.getValue() != null) {
+                    DatastoreMessage message = new DatastoreMessageImpl();
+                    message.setTimestamp(new Date(index.getValue()));
+                    result.add(message);
+                }
+            }
+            return result;
+        });
+        return client;
+    }
+
+    private static class TestConfigurationProvider implements ConfigurationProvider {
+
+        @Override
+        public MessageStoreConfiguration getConfiguration(KapuaId scopeId) {
+            return new MessageStoreConfiguration(null);
+        }
+
+        @Override
+        public MessageInfo getInfo(KapuaId scopeId) {
+            return new MessageInfo(null);
+        }
+    }
+
+    /**
+     * Mediator recording the messages delete notifications
+     */
+    private static class RecordingMediator implements MessageStoreMediator {
+
+        private final List<KapuaId> deletes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Metadata getMetadata(KapuaId scopeId, long indexedOn) {
+            return null;
+        }
+
+        @Override
+        public void onUpdatedMappings(KapuaId scopeId, long indexedOn, Map<String, Metric> metrics) {
+        }
+
+        @Override
+        public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message) {
+        }
+
+        @Override
+        public void onAfterMessagesStore(List<DatastoreMessage> messages) {
+        }
+
+        @Override
+        public void onAfterMessagesDelete(KapuaId scopeId) {
+            deletes.add(scopeId);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,12 +35,15 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.KapuaIllegalArgumentException;
 import org.eclipse.kapua.commons.util.KapuaDateUtils;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.message.KapuaChannel;
@@ -60,6 +64,7 @@ import org.eclipse.kapua.service.datastore.MessageStoreService;
 import org.eclipse.kapua.service.datastore.MetricInfoRegistryService;
 import org.eclipse.kapua.service.datastore.client.embedded.EsEmbeddedEngine;
 import org.eclipse.kapua.service.datastore.client.model.InsertResponse;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
 import org.eclipse.kapua.service.datastore.internal.mediator.ChannelInfoField;
 import org.eclipse.kapua.service.datastore.internal.mediator.ClientInfoField;
 import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreChannel;
@@ -69,6 +74,7 @@ import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreConfigu
 import org.eclipse.kapua.service.datastore.internal.mediator.MetricInfoField;
 import org.eclipse.kapua.service.datastore.internal.model.DataIndexBy;
 import org.eclipse.kapua.service.datastore.internal.model.MetricsIndexBy;
+import org.eclipse.kapua.service.datastore.internal.model.ClientInfoImpl;
 import org.eclipse.kapua.service.datastore.internal.model.StorableIdImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.AndPredicateImpl;
 import org.eclipse.kapua.service.datastore.internal.model.query.ChannelInfoQueryImpl;
@@ -797,6 +803,162 @@ public class MessageStoreServiceTest extends AbstractMessageStoreServiceTest {
                 new Range<>("receivedOn", messageTime));
     }
 
+
+    @Test
+    /**
+     * Test the asynchronous storage process: the message is stored (and the registries updated) once the returned future is completed
+     *
+     * @throws Exception
+     */
+    public void testMessageStoreAsync()
+            throws Exception {
+        Account account = createAccount(null, null);
+        Date messageTime = new Date();
+        String clientId = String.format("device-%d", messageTime.getTime());
+        DeviceCreator deviceCreator = DEVICE_FACTORY.newCreator(account.getId(), clientId);
+        Device device = DEVICE_REGISTRY_SERVICE.create(deviceCreator);
+
+        String topicSemanticPart = "testStoreAsync/testStoreAsync/" + Calendar.getInstance().getTimeInMillis();
+        Date sentOn = new Date(new SimpleDateFormat("dd/MM/yyyy").parse("01/01/2015").getTime());
+        Date capturedOn = new Date();
+        KapuaDataMessage message = createMessage(clientId, account.getId(), device.getId(), messageTime, capturedOn, sentOn);
+        setChannel(message, topicSemanticPart);
+        updatePayload(message, null);
+
+        updateConfiguration(MESSAGE_STORE_SERVICE, account.getId(), account.getScopeId(), DataIndexBy.DEVICE_TIMESTAMP, MetricsIndexBy.TIMESTAMP, 30, true);
+        InsertResponse response = MESSAGE_STORE_SERVICE.storeAsync(message).get(30, TimeUnit.SECONDS);
+
+        // Refresh indices before querying
+        DatastoreMediator.getInstance().refreshAllIndexes();
+
+        MessageQuery messageQuery = getBaseMessageQuery(account.getId(), 100);
+        setMessageQueryBaseCriteria(messageQuery, null);
+
+        MessageListResult result = MESSAGE_STORE_SERVICE.query(messageQuery);
+        DatastoreMessage messageQueried = checkMessagesCount(result, 1);
+        checkMessageId(messageQueried, new StorableIdImpl(response.getId()));
+        checkTopic(messageQueried, topicSemanticPart);
+
+        ClientInfoQuery clientInfoQuery = new ClientInfoQueryImpl(account.getId());
+        assertEquals("Wrong client info count", 1, CLIENT_INFO_REGISTRY_SERVICE.count(clientInfoQuery));
+    }
+
+    @Test
+    /**
+     * Test the client info registry caches the stored clients by client info id, the key checked by the registry bulk writer too
+     *
+     * @throws Exception
+     */
+    public void testClientInfoUpstoreCachedByClientInfoId()
+            throws Exception {
+        Account account = createAccount(null, null);
+        updateConfiguration(MESSAGE_STORE_SERVICE, account.getId(), account.getScopeId(), DataIndexBy.DEVICE_TIMESTAMP, MetricsIndexBy.TIMESTAMP, 30, true);
+        String clientId = String.format("device-%d", new Date().getTime());
+        String clientInfoId = ClientInfoField.getOrDeriveId(null, account.getId(), clientId);
+
+        ClientInfoImpl clientInfo = new ClientInfoImpl(account.getId());
+        clientInfo.setClientId(clientId);
+        clientInfo.setId(new StorableIdImpl(clientInfoId));
+        clientInfo.setFirstMessageId(new StorableIdImpl(UUID.randomUUID().toString()));
+        clientInfo.setFirstMessageOn(new Date());
+        ClientInfoRegistryFacade clientInfoRegistryFacade = new ClientInfoRegistryFacade(
+                new ConfigurationProviderImpl(MESSAGE_STORE_SERVICE, LOCATOR.getService(AccountService.class)), DatastoreMediator.getInstance());
+        assertEquals(clientInfoId, clientInfoRegistryFacade.upstore(clientInfo).toString());
+
+        assertTrue(DatastoreCacheManager.getInstance().getClientsCache().get(clientInfoId));
+        // the same client id of another scope is a different client
+        assertFalse(DatastoreCacheManager.getInstance().getClientsCache().get(ClientInfoField.getOrDeriveId(null, account.getScopeId(), clientId)));
+    }
+
+    @Test
+    /**
+     * Test the cached message store configuration is invalidated by the configuration update (the caches of the same JVM only)
+     *
+     * @throws Exception
+     */
+    public void testSetConfigValuesInvalidatesCachedConfiguration()
+            throws Exception {
+        Account account = createAccount(null, null);
+        ConfigurationProvider configurationProvider = new ConfigurationProviderImpl(MESSAGE_STORE_SERVICE, LOCATOR.getService(AccountService.class));
+
+        updateConfiguration(MESSAGE_STORE_SERVICE, account.getId(), account.getScopeId(), DataIndexBy.DEVICE_TIMESTAMP, MetricsIndexBy.TIMESTAMP, 30, true);
+        assertEquals(30, configurationProvider.getConfiguration(account.getId()).getDataTimeToLive());
+        assertNotNull(DatastoreCacheManager.getInstance().getConfigurationCache().get(account.getId()));
+
+        updateConfiguration(MESSAGE_STORE_SERVICE, account.getId(), account.getScopeId(), DataIndexBy.DEVICE_TIMESTAMP, MetricsIndexBy.TIMESTAMP, 60, true);
+        assertNull(DatastoreCacheManager.getInstance().getConfigurationCache().get(account.getId()));
+        assertEquals(60, configurationProvider.getConfiguration(account.getId()).getDataTimeToLive());
+    }
+
+    @Test
+    /**
+     * Test the message stream: all the messages matching the query are returned (the query limit is ignored), in the query order, fetching them page by page
+     *
+     * @throws Exception
+     */
+    public void testMessageStream()
+            throws Exception {
+        Account account = createAccount(null, null);
+        Date messageTime = new Date();
+        String clientId = String.format("device-%d", messageTime.getTime());
+        DeviceCreator deviceCreator = DEVICE_FACTORY.newCreator(account.getId(), clientId);
+        Device device = DEVICE_REGISTRY_SERVICE.create(deviceCreator);
+
+        String topicSemanticPart = "testStream/testStream/" + Calendar.getInstance().getTimeInMillis();
+        Date sentOn = new Date(new SimpleDateFormat("dd/MM/yyyy").parse("01/01/2015").getTime());
+        KapuaDataMessage[] messages = new KapuaDataMessage[25];
+        for (int i = 0; i < messages.length; i++) {
+            Date capturedOn = new Date(messageTime.getTime() - (messages.length - i) * 1000L);
+            messages[i] = createMessage(clientId, account.getId(), device.getId(), messageTime, capturedOn, sentOn);
+            setChannel(messages[i], topicSemanticPart);
+            updatePayload(messages[i], null);
+        }
+
+        updateConfiguration(MESSAGE_STORE_SERVICE, account.getId(), account.getScopeId(), DataIndexBy.DEVICE_TIMESTAMP, MetricsIndexBy.TIMESTAMP, 30, true);
+        List<StorableId> messageStoredIds = insertMessages(messages);
+
+        // Refresh indices before querying
+        DatastoreMediator.getInstance().refreshAllIndexes();
+
+        // sorted by descending timestamp
+        MessageQuery messageQuery = getBaseMessageQuery(account.getId(), 5);
+        setMessageQueryBaseCriteria(messageQuery, null);
+
+        List<String> streamedIds = new ArrayList<>();
+        try (ResultStream<DatastoreMessage> stream = MESSAGE_STORE_SERVICE.stream(messageQuery, 10)) {
+            assertEquals(messages.length, stream.getTotalCount());
+            while (stream.hasNext()) {
+                DatastoreMessage messageStreamed = stream.next();
+                checkTopic(messageStreamed, topicSemanticPart);
+                streamedIds.add(messageStreamed.getDatastoreId().toString());
+            }
+        }
+
+        List<String> expectedIds = messageStoredIds.stream().map(StorableId::toString).collect(Collectors.toList());
+        Collections.reverse(expectedIds);
+        assertEquals(expectedIds, streamedIds);
+    }
+
+    @Test
+    /**
+     * Test the message stream batch size limits
+     *
+     * @throws Exception
+     */
+    public void testMessageStreamBatchSizeLimited()
+            throws Exception {
+        Account account = createAccount(null, null);
+        MessageQuery messageQuery = getBaseMessageQuery(account.getId(), 100);
+        for (int batchSize : new int[] { 0, 10001 }) {
+            try {
+                MESSAGE_STORE_SERVICE.stream(messageQuery, batchSize).close();
+                fail("The batch size " + batchSize + " should be rejected");
+            } catch (KapuaIllegalArgumentException e) {
+                assertEquals("batchSize", e.getArgumentName());
+            }
+        }
+        MESSAGE_STORE_SERVICE.stream(messageQuery, 10000).close();
+    }
     @Test
     /**
      * Check the correctness of the client ids info stored in the channel info data by retrieving the channel info by account.
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.BulkUpdateResponse;
+import org.eclipse.kapua.service.datastore.client.model.UpdateRequest;
+import org.eclipse.kapua.service.datastore.client.model.UpdateResponse;
+import org.eclipse.kapua.service.datastore.internal.RegistryBulkWriter.RegistryType;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageInfo;
+import org.eclipse.kapua.service.datastore.internal.mediator.MessageStoreMediator;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.eclipse.kapua.service.datastore.internal.schema.Metadata;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RegistryBulkWriterTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+
+    @Test
+    public void testRegisteredOnceWritten() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(newClient(written), 50, 100);
+        registryBulkWriter.start();
+        String id = newId();
+        try {
+            assertFalse(registryBulkWriter.isRegistered(RegistryType.CLIENT, id));
+            registryBulkWriter.register(RegistryType.CLIENT, id, new Object(), SCOPE_ID, new Date());
+            // queued entries are reported as registered
+            assertTrue(registryBulkWriter.isRegistered(RegistryType.CLIENT, id));
+            waitForPendingCount(registryBulkWriter, 0);
+        } finally {
+            registryBulkWriter.stop();
+        }
+
+        assertEquals(1, written.size());
+        assertTrue(registryBulkWriter.isRegistered(RegistryType.CLIENT, id));
+    }
+
+    @Test
+    public void testFailedWriteIsNotRegistered() throws Exception {
+        DatastoreClient client = mock(DatastoreClient.class);
+        when(client.upsert(any(BulkUpdateRequest.class))).thenThrow(new ClientException(ClientErrorCodes.CLIENT_UNAVAILABLE, "Bulk failure"));
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(client, 3600000, 100);
+        registryBulkWriter.start();
+        String id = newId();
+        registryBulkWriter.register(RegistryType.CHANNEL, id, new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.stop();
+
+        // the entry is queued again by the next message
+        assertEquals(0, registryBulkWriter.getPendingCount());
+        assertFalse(registryBulkWriter.isRegistered(RegistryType.CHANNEL, id));
+    }
+
+    @Test
+    public void testStopFlushesPendingEntries() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        // the flush interval is longer than the test, so the entries are written by the stop only
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(newClient(written), 3600000, 100);
+        registryBulkWriter.start();
+        registryBulkWriter.register(RegistryType.CLIENT, newId(), new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.register(RegistryType.CHANNEL, newId(), new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.register(RegistryType.METRIC, newId(), new Object(), SCOPE_ID, new Date());
+        assertTrue(written.isEmpty());
+
+        registryBulkWriter.stop();
+        assertEquals(3, written.size());
+        assertEquals(0, registryBulkWriter.getPendingCount());
+    }
+
+    @Test
+    public void testEntriesDroppedWhenPendingFull() throws Exception {
+        // not started, so nothing is flushed
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(newClient(new CopyOnWriteArrayList<>()), 3600000, 2);
+        String droppedId = newId();
+        registryBulkWriter.register(RegistryType.METRIC, newId(), new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.register(RegistryType.METRIC, newId(), new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.register(RegistryType.METRIC, droppedId, new Object(), SCOPE_ID, new Date());
+
+        assertEquals(2, registryBulkWriter.getPendingCount());
+        assertFalse(registryBulkWriter.isRegistered(RegistryType.METRIC, droppedId));
+    }
+
+    @Test
+    public void testInvalidateAfterRegistryDelete() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(newClient(written), 3600000, 100);
+        registryBulkWriter.start();
+        String id = newId();
+        String otherRegistryId = newId();
+        registryBulkWriter.register(RegistryType.CHANNEL, id, new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.register(RegistryType.METRIC, otherRegistryId, new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.stop();
+        assertTrue(registryBulkWriter.isRegistered(RegistryType.CHANNEL, id));
+
+        // the deleted registry entries are written again by the next messages
+        registryBulkWriter.invalidate(RegistryType.CHANNEL);
+        assertFalse(registryBulkWriter.isRegistered(RegistryType.CHANNEL, id));
+        // the entries of the other registries are still found by the registry caches
+        assertTrue(registryBulkWriter.isRegistered(RegistryType.METRIC, otherRegistryId));
+    }
+
+    @Test
+    public void testInvalidateAfterMessagesDelete() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        RegistryBulkWriter registryBulkWriter = newRegistryBulkWriter(newClient(written), 3600000, 100);
+        registryBulkWriter.start();
+        String id = newId();
+        registryBulkWriter.register(RegistryType.CLIENT, id, new Object(), SCOPE_ID, new Date());
+        registryBulkWriter.stop();
+
+        registryBulkWriter.invalidate();
+        // the registry cache is checked again, so an entry deleted in the meantime (and no longer cached) is not reported as registered
+        DatastoreCacheManager.getInstance().getClientsCache().remove(id);
+        assertFalse(registryBulkWriter.isRegistered(RegistryType.CLIENT, id));
+    }
+
+    private static RegistryBulkWriter newRegistryBulkWriter(DatastoreClient client, long flushInterval, int maxPending) {
+        return new RegistryBulkWriter(client, new TestMediator(), flushInterval, 10, maxPending, 1000, 0.001d, 3600000L);
+    }
+
+    /**
+     * Datastore client recording the identifiers of the upserted entries
+     */
+    private static DatastoreClient newClient(List<String> written) throws ClientException {
+        DatastoreClient client = mock(DatastoreClient.class);
+        when(client.upsert(any(BulkUpdateRequest.class))).thenAnswer(invocation -> {
+            BulkUpdateResponse bulkResponse = new BulkUpdateResponse();
+            for (UpdateRequest request : ((BulkUpdateRequest) invocation.getArguments()[0]).getRequest()) {
+                UpdateResponse response = new UpdateResponse(request.getId(), request.getTypeDescriptor());
+                response.setResult(true);
+                bulkResponse.add(response);
+                written.add(request.getId());
+            }
+            return bulkResponse;
+        });
+        return client;
+    }
+
+    private static String newId() {
+        // the registry caches are shared by the tests
+        return UUID.randomUUID().toString();
+    }
+
+    private static void waitForPendingCount(RegistryBulkWriter registryBulkWriter, int pendingCount) throws InterruptedException {
+        for (int i = 0; i < 100 && registryBulkWriter.getPendingCount() != pendingCount; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(pendingCount, registryBulkWriter.getPendingCount());
+    }
+
+    private static class TestMediator implements MessageStoreMediator {
+
+        @Override
+        public Metadata getMetadata(KapuaId scopeId, long indexedOn) {
+            return new Metadata("10-2017-01", ".10");
+        }
+
+        @Override
+        public void onUpdatedMappings(KapuaId scopeId, long indexedOn, Map<String, Metric> metrics) {
+        }
+
+        @Override
+        public void onAfterMessageStore(MessageInfo messageInfo, DatastoreMessage message) {
+        }
+
+        @Override
+        public void onAfterMessagesStore(List<DatastoreMessage> messages) {
+        }
+
+        @Override
+        public void onAfterMessagesDelete(KapuaId scopeId) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.eclipse.kapua.commons.cache.Cache;
+import org.eclipse.kapua.commons.cache.FingerprintCache;
+import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry cache benchmark: {@link FingerprintCache} against {@link LocalCache} (the registry caches of {@link DatastoreCacheManager}) filled with registry
+ * identifiers.<br>
+ * Run it through the {@link #main(String[])} method: it logs the heap retained per entry by each cache, then it runs the lookup benchmarks (90% hits) with 1,
+ * 8 and 32 threads and reports the allocation per lookup (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RegistryCacheBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistryCacheBenchmark.class);
+
+    private static final int ENTRIES = 1000000;
+    private static final int EXPIRE_AFTER = 3600;
+
+    private final String[] ids = createIds(ENTRIES + ENTRIES / 9);
+    private final Cache<String, Boolean> localCache = fill(new LocalCache<>(ENTRIES, EXPIRE_AFTER, false), ids, ENTRIES);
+    private final Cache<String, Boolean> fingerprintCache = fill(new FingerprintCache(ENTRIES, EXPIRE_AFTER, false), ids, ENTRIES);
+
+    private static String[] createIds(int count) {
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            // channel identifier (scope, client id and channel)
+            ids[i] = DatastoreUtils.getHashCode("1", "device-" + (i / 100), "telemetry/" + (i % 100));
+        }
+        return ids;
+    }
+
+    private static Cache<String, Boolean> fill(Cache<String, Boolean> cache, String[] ids, int count) {
+        for (int i = 0; i < count; i++) {
+            cache.put(ids[i], true);
+        }
+        return cache;
+    }
+
+    @Benchmark
+    public Boolean localCacheLookup() {
+        return localCache.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Boolean fingerprintCacheLookup() {
+        return fingerprintCache.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long heapPerEntry(Supplier<Cache<String, Boolean>> cacheSupplier) {
+        long before = usedHeap();
+        Cache<String, Boolean> cache = cacheSupplier.get();
+        // the identifiers are referenced only by the cache (as the ones derived from the stored messages), so they are counted too
+        fill(cache, createIds(ENTRIES), ENTRIES);
+        long after = usedHeap();
+        // keep the cache reachable until the heap is measured
+        if (cache.get("") == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / ENTRIES;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        logger.info("LocalCache heap per entry: {} bytes", heapPerEntry(() -> new LocalCache<>(ENTRIES, EXPIRE_AFTER, false)));
+        logger.info("FingerprintCache heap per entry: {} bytes", heapPerEntry(() -> new FingerprintCache(ENTRIES, EXPIRE_AFTER, false)));
+        for (int threads : new int[] { 1, 8, 32 }) {
+            Options options = new OptionsBuilder()
+                    .include(RegistryCacheBenchmark.class.getSimpleName())
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
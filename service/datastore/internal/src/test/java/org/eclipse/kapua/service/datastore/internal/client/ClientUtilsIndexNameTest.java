@@ -39,4 +39,13 @@ public class ClientUtilsIndexNameTest {
         final String name = DatastoreUtils.getDataIndexName(ONE, instant.toEpochMilli());
         Assert.assertEquals("1-2017-02", name);
     }
+
+    @Test
+    public void testIndexNamesRange() {
+        final long start = ZonedDateTime.of(2017, 1, 6, 12, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        final long end = ZonedDateTime.of(2017, 1, 16, 0, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+        Assert.assertEquals("1-2017-01,1-2017-02,1-2017-03", DatastoreUtils.getDataIndexNames(ONE, start, end, 10));
+        Assert.assertEquals("1-2017-01", DatastoreUtils.getDataIndexNames(ONE, start, start + 1, 10));
+        Assert.assertNull(DatastoreUtils.getDataIndexNames(ONE, start, end, 2));
+    }
 }
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.eclipse.kapua.KapuaRuntimeException;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.SchemaKeys;
+import org.eclipse.kapua.service.datastore.client.model.ResultStream;
+import org.eclipse.kapua.service.datastore.client.model.ScrollResultStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class ScrollResultStreamTest extends Assert {
+
+    @Test
+    public void testMultiPageIteration() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(7, "scroll-1", "a", "b", "c"),
+                page("scroll-2", "d", "e", "f"),
+                page("scroll-2", "g"),
+                page("scroll-2"));
+        assertEquals(7, stream.getTotalCount());
+
+        List<String> results = new ArrayList<>();
+        while (stream.hasNext()) {
+            results.add(stream.next());
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f", "g"), results);
+        // the pages are fetched by the last scroll id returned
+        assertEquals(Arrays.asList("scroll-1", "scroll-2", "scroll-2"), stream.fetchedScrollIds);
+        // the scroll is released once exhausted
+        assertEquals(Collections.singletonList("scroll-2"), stream.clearedScrollIds);
+
+        stream.close();
+        assertEquals(1, stream.clearedScrollIds.size());
+        assertFalse(stream.hasNext());
+        try {
+            stream.next();
+            fail("The stream should be exhausted");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNextPageFetchedOnlyOnceConsumed() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(4, "scroll-1", "a", "b"),
+                page("scroll-1", "c", "d"),
+                page("scroll-1"));
+        assertEquals("a", stream.next());
+        assertEquals("b", stream.next());
+        assertTrue(stream.fetchedScrollIds.isEmpty());
+        assertEquals("c", stream.next());
+        assertEquals(1, stream.fetchedScrollIds.size());
+        stream.close();
+    }
+
+    @Test
+    public void testScrollClearedOnClose() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(6, "scroll-1", "a", "b", "c"),
+                page("scroll-1", "d", "e", "f"));
+        assertEquals("a", stream.next());
+
+        stream.close();
+        assertEquals(Collections.singletonList("scroll-1"), stream.clearedScrollIds);
+        // the remaining results are dropped, the next page is not fetched
+        assertFalse(stream.hasNext());
+        assertTrue(stream.fetchedScrollIds.isEmpty());
+
+        // the scroll is cleared only once
+        stream.close();
+        assertEquals(1, stream.clearedScrollIds.size());
+    }
+
+    @Test
+    public void testScrollClearedByTryWithResources() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(6, "scroll-1", "a", "b", "c"),
+                page("scroll-1", "d", "e", "f"));
+        try (ResultStream<String> results = stream) {
+            assertEquals("a", results.next());
+        }
+        assertEquals(Collections.singletonList("scroll-1"), stream.clearedScrollIds);
+    }
+
+    @Test
+    public void testErrorMidStream() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(6, "scroll-1", "a", "b"),
+                fetchError());
+        assertEquals("a", stream.next());
+        assertEquals("b", stream.next());
+        try {
+            stream.hasNext();
+            fail("The fetch error should be reported");
+        } catch (KapuaRuntimeException e) {
+            assertEquals(ClientErrorCodes.ACTION_ERROR, e.getCode());
+            assertTrue(e.getCause() instanceof ClientException);
+        }
+        // the scroll is released on error and the stream is closed
+        assertEquals(Collections.singletonList("scroll-1"), stream.clearedScrollIds);
+        assertFalse(stream.hasNext());
+        assertEquals(1, stream.fetchedScrollIds.size());
+    }
+
+    @Test
+    public void testErrorClearingScrollOnFetchErrorIgnored() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(6, "scroll-1", "a"),
+                fetchError());
+        stream.failClear = true;
+        assertEquals("a", stream.next());
+        try {
+            stream.next();
+            fail("The fetch error should be reported");
+        } catch (KapuaRuntimeException e) {
+            // the fetch error is reported, not the clear one
+            assertTrue(e.getCause().getMessage().contains("fetch error"));
+        }
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testSinglePageWithoutScroll() throws Exception {
+        TestScrollResultStream stream = new TestScrollResultStream(firstPage(2, null, "a", "b"), page(null));
+        assertEquals("a", stream.next());
+        assertEquals("b", stream.next());
+        assertFalse(stream.hasNext());
+        stream.close();
+        assertTrue(stream.clearedScrollIds.isEmpty());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ResultStream<String> stream = ScrollResultStream.empty();
+        assertEquals(0, stream.getTotalCount());
+        assertFalse(stream.hasNext());
+        stream.close();
+    }
+
+    @Test
+    public void testToScrollQuery() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode query = mapper.createObjectNode();
+        query.put(SchemaKeys.KEY_FROM, 100);
+        query.put(SchemaKeys.KEY_SIZE, 50);
+        query.putObject("query").putObject("match_all");
+
+        ObjectNode scrollQuery = ScrollResultStream.toScrollQuery(query, 500);
+        assertFalse(scrollQuery.has(SchemaKeys.KEY_FROM));
+        assertEquals(500, scrollQuery.get(SchemaKeys.KEY_SIZE).asInt());
+        // not sorted queries are scrolled by the index order
+        assertEquals(1, scrollQuery.get(SchemaKeys.KEY_SORT).size());
+        assertEquals("_doc", scrollQuery.get(SchemaKeys.KEY_SORT).get(0).asText());
+        assertTrue(scrollQuery.has("query"));
+        // the given query is not changed
+        assertEquals(100, query.get(SchemaKeys.KEY_FROM).asInt());
+        assertEquals(50, query.get(SchemaKeys.KEY_SIZE).asInt());
+
+        query.putArray(SchemaKeys.KEY_SORT).addObject().put("timestamp", "desc");
+        scrollQuery = ScrollResultStream.toScrollQuery(query, 500);
+        assertEquals(query.get(SchemaKeys.KEY_SORT), scrollQuery.get(SchemaKeys.KEY_SORT));
+    }
+
+    private static ScrollResultStream.ScrollPage<String> firstPage(long totalCount, String scrollId, String... results) {
+        return new ScrollResultStream.ScrollPage<>(scrollId, totalCount, Arrays.asList(results));
+    }
+
+    private static ScrollResultStream.ScrollPage<String> page(String scrollId, String... results) {
+        return new ScrollResultStream.ScrollPage<>(scrollId, 0, Arrays.asList(results));
+    }
+
+    private static ScrollResultStream.ScrollPage<String> fetchError() {
+        return null;
+    }
+
+    /**
+     * Stream returning the given pages (a null page is a fetch error) and recording the scroll requests
+     */
+    private static class TestScrollResultStream extends ScrollResultStream<String> {
+
+        private final LinkedList<ScrollPage<String>> nextPages;
+        private final List<String> fetchedScrollIds = new ArrayList<>();
+        private final List<String> clearedScrollIds = new ArrayList<>();
+        private boolean failClear;
+
+        @SafeVarargs
+        private TestScrollResultStream(ScrollPage<String> firstPage, ScrollPage<String>... nextPages) {
+            super(firstPage);
+            this.nextPages = new LinkedList<>(Arrays.asList(nextPages));
+        }
+
+        @Override
+        protected ScrollPage<String> fetchPage(String scrollId) throws ClientException {
+            fetchedScrollIds.add(scrollId);
+            ScrollPage<String> page = nextPages.poll();
+            if (page == null) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, "fetch error");
+            }
+            return page;
+        }
+
+        @Override
+        protected void clearScroll(String scrollId) throws ClientException {
+            clearedScrollIds.add(scrollId);
+            if (failClear) {
+                throw new ClientException(ClientErrorCodes.ACTION_ERROR, "clear error");
+            }
+        }
+    }
+}
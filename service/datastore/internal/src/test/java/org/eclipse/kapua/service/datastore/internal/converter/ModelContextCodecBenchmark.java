@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.converter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.message.internal.KapuaPositionImpl;
+import org.eclipse.kapua.message.internal.device.data.KapuaDataChannelImpl;
+import org.eclipse.kapua.message.internal.device.data.KapuaDataPayloadImpl;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ModelContext;
+import org.eclipse.kapua.service.datastore.client.QueryConverter;
+import org.eclipse.kapua.service.datastore.client.ReusableByteArrayOutputStream;
+import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Datastore message conversion benchmark: the {@link ModelContextImpl} streaming codec against the previous conversion through the intermediate maps and strings
+ * (the same steps done by the rest client to write a document and to read a search hit).<br>
+ * Run it through the {@link #main(String[])} method (it runs each benchmark with 1, 8 and 32 threads and reports the allocation per message, gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelContextCodecBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String ID = "AVxQ5jZqJm8sYv3Zk2Xb";
+
+    private final ModelContext modelContext = new ModelContextImpl();
+    private final DatastoreMessage message = new DatastoreMessageImpl();
+    private final byte[] source;
+
+    public ModelContextCodecBenchmark() {
+        Date now = new Date();
+        message.setScopeId(KapuaId.ONE);
+        message.setDeviceId(KapuaId.ONE);
+        message.setClientId("device-0001");
+        message.setTimestamp(now);
+        message.setReceivedOn(now);
+        message.setSentOn(now);
+        message.setCapturedOn(now);
+        KapuaDataChannelImpl channel = new KapuaDataChannelImpl();
+        channel.setSemanticParts(Arrays.asList("heater", "status"));
+        message.setChannel(channel);
+        KapuaPositionImpl position = new KapuaPositionImpl();
+        position.setLatitude(45.4642);
+        position.setLongitude(9.19);
+        position.setAltitude(122.0);
+        position.setTimestamp(now);
+        message.setPosition(position);
+        // a typical telemetry message
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("temperature.internal", 21.5d);
+        metrics.put("temperature.external", 12.25d);
+        metrics.put("humidity", 64.0f);
+        metrics.put("pressure", 1013);
+        metrics.put("uptime", 123456789L);
+        metrics.put("door.open", Boolean.FALSE);
+        metrics.put("firmware", "1.2.3");
+        metrics.put("last.maintenance", now);
+        KapuaDataPayloadImpl payload = new KapuaDataPayloadImpl();
+        payload.setMetrics(metrics);
+        payload.setBody("heater status".getBytes(StandardCharsets.UTF_8));
+        message.setPayload(payload);
+        try {
+            source = MAPPER.writeValueAsBytes(modelContext.marshal(message));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public void legacyWrite(Blackhole blackhole) throws Exception {
+        // conversion to map, serialization to string and entity creation
+        String json = MAPPER.writeValueAsString(modelContext.marshal(message));
+        blackhole.consume(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void streamingWrite(Blackhole blackhole) throws Exception {
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer)) {
+            modelContext.marshal(message, generator);
+        }
+        blackhole.consume(buffer.getBuffer());
+    }
+
+    @Benchmark
+    public void legacyRead(Blackhole blackhole) throws Exception {
+        // response to string, string to tree and source tree to map
+        JsonNode sourceNode = MAPPER.readTree(new String(source, StandardCharsets.UTF_8));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = MAPPER.convertValue(sourceNode, Map.class);
+        object.put(ModelContext.DATASTORE_ID_KEY, ID);
+        object.put(QueryConverter.QUERY_FETCH_STYLE_KEY, StorableFetchStyle.SOURCE_FULL);
+        blackhole.consume(modelContext.unmarshal(DatastoreMessage.class, object));
+    }
+
+    @Benchmark
+    public void streamingRead(Blackhole blackhole) throws Exception {
+        try (JsonParser parser = MAPPER.getFactory().createParser(source)) {
+            parser.nextToken();
+            blackhole.consume(modelContext.unmarshal(DatastoreMessage.class, ID, StorableFetchStyle.SOURCE_FULL, parser));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] { 1, 8, 32 }) {
+            Options options = new OptionsBuilder()
+                    .include(ModelContextCodecBenchmark.class.getSimpleName())
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
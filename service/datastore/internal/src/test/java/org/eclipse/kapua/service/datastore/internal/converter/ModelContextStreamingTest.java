@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.converter;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.kapua.message.internal.KapuaPositionImpl;
+import org.eclipse.kapua.message.internal.device.data.KapuaDataChannelImpl;
+import org.eclipse.kapua.message.internal.device.data.KapuaDataPayloadImpl;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ModelContext;
+import org.eclipse.kapua.service.datastore.client.QueryConverter;
+import org.eclipse.kapua.service.datastore.client.ReusableByteArrayOutputStream;
+import org.eclipse.kapua.service.datastore.internal.model.ChannelInfoImpl;
+import org.eclipse.kapua.service.datastore.internal.model.ClientInfoImpl;
+import org.eclipse.kapua.service.datastore.internal.model.DatastoreMessageImpl;
+import org.eclipse.kapua.service.datastore.internal.model.MetricInfoImpl;
+import org.eclipse.kapua.service.datastore.internal.model.StorableIdImpl;
+import org.eclipse.kapua.service.datastore.model.ChannelInfo;
+import org.eclipse.kapua.service.datastore.model.ClientInfo;
+import org.eclipse.kapua.service.datastore.model.DatastoreMessage;
+import org.eclipse.kapua.service.datastore.model.MetricInfo;
+import org.eclipse.kapua.service.datastore.model.query.StorableFetchStyle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ModelContextStreamingTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ModelContext modelContext = new ModelContextImpl();
+
+    @Test
+    public void testMarshalMessage() throws Exception {
+        DatastoreMessage message = newMessage();
+
+        String streamed = marshal(message);
+        Assert.assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(modelContext.marshal(message))), MAPPER.readTree(streamed));
+    }
+
+    @Test
+    public void testUnmarshalMessage() throws Exception {
+        DatastoreMessage message = newMessage();
+        String source = marshal(message);
+
+        DatastoreMessage streamed;
+        try (JsonParser parser = MAPPER.getFactory().createParser(source)) {
+            parser.nextToken();
+            streamed = modelContext.unmarshal(DatastoreMessage.class, "id", StorableFetchStyle.SOURCE_FULL, parser);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> sourceMap = MAPPER.readValue(source, Map.class);
+        sourceMap.put(ModelContext.DATASTORE_ID_KEY, "id");
+        sourceMap.put(QueryConverter.QUERY_FETCH_STYLE_KEY, StorableFetchStyle.SOURCE_FULL);
+        DatastoreMessage legacy = modelContext.unmarshal(DatastoreMessage.class, sourceMap);
+
+        Assert.assertEquals(legacy.getDatastoreId().toString(), streamed.getDatastoreId().toString());
+        Assert.assertEquals(legacy.getScopeId(), streamed.getScopeId());
+        Assert.assertEquals(legacy.getClientId(), streamed.getClientId());
+        Assert.assertEquals(legacy.getTimestamp(), streamed.getTimestamp());
+        Assert.assertEquals(legacy.getCapturedOn(), streamed.getCapturedOn());
+        Assert.assertEquals(legacy.getChannel().getSemanticParts(), streamed.getChannel().getSemanticParts());
+        Assert.assertEquals(legacy.getPosition().getLatitude(), streamed.getPosition().getLatitude());
+        Assert.assertEquals(legacy.getPosition().getAltitude(), streamed.getPosition().getAltitude());
+        Assert.assertEquals(legacy.getPayload().getMetrics(), streamed.getPayload().getMetrics());
+        Assert.assertArrayEquals(legacy.getPayload().getBody(), streamed.getPayload().getBody());
+        Assert.assertEquals(message.getPayload().getMetrics(), streamed.getPayload().getMetrics());
+    }
+
+    @Test
+    public void testUnmarshalMessageFields() throws Exception {
+        String source = marshal(newMessage());
+
+        try (JsonParser parser = MAPPER.getFactory().createParser(source)) {
+            parser.nextToken();
+            DatastoreMessage streamed = modelContext.unmarshal(DatastoreMessage.class, "id", StorableFetchStyle.FIELDS, parser);
+            Assert.assertEquals("device-0001", streamed.getClientId());
+            Assert.assertNull(streamed.getPayload());
+            Assert.assertNull(streamed.getPosition());
+            // the whole source is consumed
+            Assert.assertNull(parser.nextToken());
+        }
+    }
+
+    @Test
+    public void testClientInfoRoundTrip() throws Exception {
+        ClientInfo clientInfo = new ClientInfoImpl(KapuaId.ONE);
+        clientInfo.setClientId("device-0001");
+        clientInfo.setFirstMessageId(new StorableIdImpl("message-id"));
+        clientInfo.setFirstMessageOn(new Date());
+
+        String source = assertMarshalled(clientInfo);
+        ClientInfo streamed = unmarshal(ClientInfo.class, source);
+        ClientInfo legacy = unmarshalLegacy(ClientInfo.class, source);
+
+        Assert.assertEquals("id", streamed.getId().toString());
+        for (ClientInfo read : Arrays.asList(streamed, legacy)) {
+            Assert.assertEquals(clientInfo.getScopeId().getId(), read.getScopeId().getId());
+            Assert.assertEquals(clientInfo.getClientId(), read.getClientId());
+            Assert.assertEquals(clientInfo.getFirstMessageId().toString(), read.getFirstMessageId().toString());
+            Assert.assertEquals(clientInfo.getFirstMessageOn(), read.getFirstMessageOn());
+        }
+    }
+
+    @Test
+    public void testChannelInfoRoundTrip() throws Exception {
+        ChannelInfo channelInfo = new ChannelInfoImpl(KapuaId.ONE);
+        channelInfo.setClientId("device-0001");
+        channelInfo.setName("heater/status");
+        channelInfo.setFirstMessageId(new StorableIdImpl("message-id"));
+        channelInfo.setFirstMessageOn(new Date());
+
+        String source = assertMarshalled(channelInfo);
+        ChannelInfo streamed = unmarshal(ChannelInfo.class, source);
+        ChannelInfo legacy = unmarshalLegacy(ChannelInfo.class, source);
+
+        Assert.assertEquals("id", streamed.getId().toString());
+        for (ChannelInfo read : Arrays.asList(streamed, legacy)) {
+            Assert.assertEquals(channelInfo.getScopeId().getId(), read.getScopeId().getId());
+            Assert.assertEquals(channelInfo.getClientId(), read.getClientId());
+            Assert.assertEquals(channelInfo.getName(), read.getName());
+            Assert.assertEquals(channelInfo.getFirstMessageId().toString(), read.getFirstMessageId().toString());
+            Assert.assertEquals(channelInfo.getFirstMessageOn(), read.getFirstMessageOn());
+        }
+    }
+
+    @Test
+    public void testMetricInfoRoundTrip() throws Exception {
+        MetricInfo metricInfo = new MetricInfoImpl(KapuaId.ONE);
+        metricInfo.setClientId("device-0001");
+        metricInfo.setChannel("heater/status");
+        metricInfo.setName("temperature");
+        metricInfo.setMetricType(Double.class);
+        metricInfo.setFirstMessageId(new StorableIdImpl("message-id"));
+        metricInfo.setFirstMessageOn(new Date());
+
+        String source = assertMarshalled(metricInfo);
+        MetricInfo streamed = unmarshal(MetricInfo.class, source);
+        MetricInfo legacy = unmarshalLegacy(MetricInfo.class, source);
+
+        Assert.assertEquals("id", streamed.getId().toString());
+        for (MetricInfo read : Arrays.asList(streamed, legacy)) {
+            Assert.assertEquals(metricInfo.getScopeId().getId(), read.getScopeId().getId());
+            Assert.assertEquals(metricInfo.getClientId(), read.getClientId());
+            Assert.assertEquals(metricInfo.getChannel(), read.getChannel());
+            Assert.assertEquals(metricInfo.getName(), read.getName());
+            Assert.assertEquals(metricInfo.getMetricType(), read.getMetricType());
+            Assert.assertEquals(metricInfo.getFirstMessageId().toString(), read.getFirstMessageId().toString());
+            Assert.assertEquals(metricInfo.getFirstMessageOn(), read.getFirstMessageOn());
+        }
+    }
+
+    @Test
+    public void testLargeDocumentBufferNotRetained() throws Exception {
+        DatastoreMessage message = newMessage();
+        ((KapuaDataPayloadImpl) message.getPayload()).setBody(new byte[2 * ReusableByteArrayOutputStream.RETAINED_SIZE_MAX]);
+
+        ReusableByteArrayOutputStream buffer = ReusableByteArrayOutputStream.get();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(buffer)) {
+            modelContext.marshal(message, generator);
+        }
+        Assert.assertTrue(buffer.size() > ReusableByteArrayOutputStream.RETAINED_SIZE_MAX);
+        Assert.assertTrue(buffer.getBuffer().length > ReusableByteArrayOutputStream.RETAINED_SIZE_MAX);
+
+        // the grown buffer is dropped by the next use of the thread
+        ReusableByteArrayOutputStream nextBuffer = ReusableByteArrayOutputStream.get();
+        Assert.assertNotSame(buffer, nextBuffer);
+        Assert.assertEquals(ReusableByteArrayOutputStream.INITIAL_SIZE, nextBuffer.getBuffer().length);
+        Assert.assertEquals(0, nextBuffer.size());
+
+        // while a small document keeps the buffer
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(nextBuffer)) {
+            modelContext.marshal(newMessage(), generator);
+        }
+        Assert.assertSame(nextBuffer, ReusableByteArrayOutputStream.get());
+    }
+
+    /**
+     * Marshal the object by the streaming and the legacy (map) converters, checking that they produce the same document
+     */
+    private String assertMarshalled(Object object) throws Exception {
+        String streamed = marshal(object);
+        Assert.assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(modelContext.marshal(object))), MAPPER.readTree(streamed));
+        return streamed;
+    }
+
+    private <T> T unmarshal(Class<T> clazz, String source) throws Exception {
+        try (JsonParser parser = MAPPER.getFactory().createParser(source)) {
+            parser.nextToken();
+            T streamed = modelContext.unmarshal(clazz, "id", null, parser);
+            // the whole source is consumed
+            Assert.assertNull(parser.nextToken());
+            return streamed;
+        }
+    }
+
+    private <T> T unmarshalLegacy(Class<T> clazz, String source) throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> sourceMap = MAPPER.readValue(source, Map.class);
+        sourceMap.put(ModelContext.DATASTORE_ID_KEY, "id");
+        return modelContext.unmarshal(clazz, sourceMap);
+    }
+
+    private String marshal(Object object) throws Exception {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(writer)) {
+            modelContext.marshal(object, generator);
+        }
+        return writer.toString();
+    }
+
+    private static DatastoreMessage newMessage() {
+        Date now = new Date();
+        DatastoreMessage message = new DatastoreMessageImpl();
+        message.setScopeId(KapuaId.ONE);
+        message.setDeviceId(KapuaId.ONE);
+        message.setClientId("device-0001");
+        message.setTimestamp(now);
+        message.setReceivedOn(now);
+        message.setSentOn(now);
+        message.setCapturedOn(now);
+        KapuaDataChannelImpl channel = new KapuaDataChannelImpl();
+        channel.setSemanticParts(Arrays.asList("heater", "status"));
+        message.setChannel(channel);
+        KapuaPositionImpl position = new KapuaPositionImpl();
+        position.setLatitude(45.4642);
+        position.setLongitude(9.19);
+        position.setAltitude(122.0);
+        position.setTimestamp(now);
+        message.setPosition(position);
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("temperature.internal", 21.5d);
+        metrics.put("humidity", 64.5f);
+        metrics.put("pressure", 1013);
+        metrics.put("uptime", 123456789L);
+        metrics.put("door.open", Boolean.FALSE);
+        metrics.put("firmware", "1.2.3");
+        KapuaDataPayloadImpl payload = new KapuaDataPayloadImpl();
+        payload.setMetrics(metrics);
+        payload.setBody("heater status".getBytes(StandardCharsets.UTF_8));
+        message.setPayload(payload);
+        return message;
+    }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.converter;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.service.datastore.internal.model.query.MessageAggregationQueryImpl;
+import org.eclipse.kapua.service.datastore.model.query.AggregationGroupBy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class QueryConverterAggregationTest {
+
+    @Test
+    public void testHistogramAggregation() throws Exception {
+        MessageAggregationQueryImpl query = new MessageAggregationQueryImpl(new KapuaEid(BigInteger.ONE));
+        query.setMetricName("temperature");
+        query.setMetricType(Double.class);
+        query.setInterval(300000);
+
+        JsonNode queryNode = new QueryConverterImpl().convertQuery(query);
+        Assert.assertEquals(0, queryNode.get("size").asInt());
+        Assert.assertNull(queryNode.get("from"));
+        JsonNode histogramNode = queryNode.path("aggs").path("histogram");
+        Assert.assertEquals("timestamp", histogramNode.path("date_histogram").path("field").asText());
+        Assert.assertEquals("300000ms", histogramNode.path("date_histogram").path("interval").asText());
+        Assert.assertEquals("metrics.temperature.dbl", histogramNode.path("aggs").path("stats").path("stats").path("field").asText());
+        Assert.assertTrue(histogramNode.path("aggs").path("percentiles").isMissingNode());
+    }
+
+    @Test
+    public void testGroupedAggregation() throws Exception {
+        MessageAggregationQueryImpl query = new MessageAggregationQueryImpl(new KapuaEid(BigInteger.ONE));
+        query.setMetricName("temperature");
+        query.setMetricType(Integer.class);
+        query.setInterval(60000);
+        query.setGroupBy(AggregationGroupBy.CLIENT_ID);
+        query.setMaxGroups(5);
+        query.setPercentiles(Arrays.asList(50d, 95d));
+
+        JsonNode groupsNode = new QueryConverterImpl().convertQuery(query).path("aggs").path("groups");
+        Assert.assertEquals("client_id", groupsNode.path("terms").path("field").asText());
+        Assert.assertEquals(5, groupsNode.path("terms").path("size").asInt());
+        JsonNode percentilesNode = groupsNode.path("aggs").path("histogram").path("aggs").path("percentiles").path("percentiles");
+        Assert.assertEquals("metrics.temperature.int", percentilesNode.path("field").asText());
+        Assert.assertEquals(2, percentilesNode.path("percents").size());
+    }
+}
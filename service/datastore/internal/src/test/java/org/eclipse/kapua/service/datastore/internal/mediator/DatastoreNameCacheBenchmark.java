@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.mediator;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreNameCache.MetricName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per stored message names computation benchmark: {@link DatastoreNameCache} against the previous computation done for each message (metric names normalization,
+ * qualifiers and data index name).<br>
+ * Run it through the {@link #main(String[])} method (it runs each benchmark with 1, 8 and 32 threads and reports the allocation per operation, gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatastoreNameCacheBenchmark {
+
+    private final KapuaId scopeId = KapuaId.ONE;
+    private final long timestamp = new Date().getTime();
+    private final Map<String, Object> messageMetrics = new LinkedHashMap<>();
+    private final Map<String, Metric> messageMappings = new ConcurrentHashMap<>();
+
+    public DatastoreNameCacheBenchmark() {
+        // a typical telemetry message
+        messageMetrics.put("temperature.internal", 21.5d);
+        messageMetrics.put("temperature.external", 12.25d);
+        messageMetrics.put("humidity", 64.0f);
+        messageMetrics.put("pressure", 1013);
+        messageMetrics.put("uptime", 123456789L);
+        messageMetrics.put("door.open", Boolean.FALSE);
+        messageMetrics.put("firmware", "1.2.3");
+        messageMetrics.put("last.maintenance", new Date());
+        // steady state: the metrics are already mapped
+        for (Map.Entry<String, Object> messageMetric : messageMetrics.entrySet()) {
+            MetricName metricName = DatastoreNameCache.getMetricName(messageMetric.getKey(), messageMetric.getValue().getClass());
+            messageMappings.put(metricName.getQualifier(), metricName.getMetric());
+        }
+    }
+
+    @Benchmark
+    public void legacyNames(Blackhole blackhole) {
+        blackhole.consume(DatastoreUtils.getDataIndexName(scopeId, timestamp));
+        Map<String, Metric> metrics = new HashMap<>();
+        for (Map.Entry<String, Object> messageMetric : messageMetrics.entrySet()) {
+            String metricName = DatastoreUtils.normalizeMetricName(messageMetric.getKey());
+            String clientMetricType = DatastoreUtils.getClientMetricFromType(messageMetric.getValue().getClass());
+            Metric metric = new Metric(metricName, clientMetricType);
+            String mappedName = DatastoreUtils.getMetricValueQualifier(metricName, clientMetricType);
+            metrics.put(mappedName, metric);
+            // the message conversion normalizes the metric name again
+            blackhole.consume(DatastoreUtils.normalizeMetricName(messageMetric.getKey()));
+            blackhole.consume(DatastoreUtils.getClientMetricFromType(messageMetric.getValue().getClass()));
+        }
+        blackhole.consume(metrics);
+    }
+
+    @Benchmark
+    public void cachedNames(Blackhole blackhole) {
+        blackhole.consume(DatastoreNameCache.getDataIndexName(scopeId, timestamp));
+        Map<String, Metric> metrics = null;
+        for (Map.Entry<String, Object> messageMetric : messageMetrics.entrySet()) {
+            MetricName metricName = DatastoreNameCache.getMetricName(messageMetric.getKey(), messageMetric.getValue().getClass());
+            if (!messageMappings.containsKey(metricName.getQualifier())) {
+                if (metrics == null) {
+                    metrics = new HashMap<>();
+                }
+                metrics.put(metricName.getQualifier(), metricName.getMetric());
+            }
+            blackhole.consume(metricName.getName());
+            blackhole.consume(metricName.getType());
+        }
+        blackhole.consume(metrics);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] { 1, 8, 32 }) {
+            Options options = new OptionsBuilder()
+                    .include(DatastoreNameCacheBenchmark.class.getSimpleName())
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
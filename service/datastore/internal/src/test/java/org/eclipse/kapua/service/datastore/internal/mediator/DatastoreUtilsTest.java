@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.mediator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+
+public class DatastoreUtilsTest extends Assert {
+
+    @Test
+    public void testHashCodeAscii() {
+        assertHashCode("1", "device-0001");
+        assertHashCode("1", "device-0001", "building-12/floor-3/telemetry", "temperature.internal_dbl");
+    }
+
+    @Test
+    public void testHashCodeNonAscii() {
+        assertHashCode("1", "capteur-été", "中文/üß");
+    }
+
+    @Test
+    public void testHashCodeSurrogatePair() {
+        assertHashCode("1", "device-😀", "😀😁");
+    }
+
+    @Test
+    public void testHashCodeUnpairedSurrogate() {
+        // trailing high surrogate, high surrogate followed by a non low surrogate and lone low surrogate
+        assertHashCode("1", "device\uD83D");
+        assertHashCode("1", "device\uD83Dx", "\uD83D😀");
+        assertHashCode("1", "\uDE00device");
+    }
+
+    @Test
+    public void testHashCodeSplitSurrogatePair() {
+        // the surrogate pair is split over two components, the legacy derivation concatenates them
+        assertHashCode("1", "device\uD83D", "\uDE00channel");
+        assertHashCode("1", "device\uD83D", "", "\uDE00");
+    }
+
+    @Test
+    public void testHashCodeEmpty() {
+        assertHashCode();
+        assertHashCode("");
+        assertHashCode("", "", "");
+    }
+
+    @Test
+    public void testHashCodeLongComponents() {
+        // longer than the digest buffer
+        StringBuilder component = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            component.append("aé中😀");
+        }
+        assertHashCode("1", component.toString(), component.toString());
+    }
+
+    @Test
+    public void testHashCodeAfterNullComponent() {
+        try {
+            DatastoreUtils.getHashCode("1", "device-0001", null);
+            fail("A null component must be refused");
+        } catch (NullPointerException e) {
+            // expected (as the legacy derivation)
+        }
+        // the aborted digest doesn't affect the next one of the same thread
+        assertHashCode("1", "device-0001");
+    }
+
+    private static void assertHashCode(String... components) {
+        assertEquals(legacyHashCode(components), DatastoreUtils.getHashCode(components));
+    }
+
+    /**
+     * Derivation of the identifiers of the already stored registry entries
+     */
+    private static String legacyHashCode(String... components) {
+        String concatString = "";
+        for (String str : components) {
+            concatString = concatString.concat(str);
+        }
+        byte[] hashCode = Hashing.sha256()
+                .hashString(concatString, StandardCharsets.UTF_8)
+                .asBytes();
+        return Base64.getEncoder().encodeToString(hashCode);
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.mediator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Per stored message registry identifiers derivation benchmark (client, channel and metrics identifiers): {@link DatastoreUtils#getHashCode(String...)} against
+ * the previous derivation (components concatenation, SHA-256 digest and Base64 encoding of new arrays).<br>
+ * The two derivations are checked to return the same identifiers by {@link DatastoreUtilsTest}.<br>
+ * Run it through the {@link #main(String[])} method (it runs each benchmark with 1, 8 and 32 threads and reports the allocation per operation, gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryIdBenchmark {
+
+    private final String scopeId = KapuaId.ONE.toCompactId();
+    private final String clientId = "device-0001";
+    private final String channel = "building-12/floor-3/telemetry";
+    private final String[] metrics = new String[] {
+            "temperature.internal_dbl",
+            "temperature.external_dbl",
+            "humidity_flt",
+            "pressure_int",
+            "uptime_lng",
+            "door.open_bln",
+            "firmware_str",
+            "last.maintenance_dte" };
+
+    private static String legacyHashCode(String... components) {
+        String concatString = "";
+        for (String str : components) {
+            concatString = concatString.concat(str);
+        }
+        byte[] hashCode = Hashing.sha256()
+                .hashString(concatString, StandardCharsets.UTF_8)
+                .asBytes();
+        return Base64.getEncoder().encodeToString(hashCode);
+    }
+
+    @Benchmark
+    public void legacyIds(Blackhole blackhole) {
+        blackhole.consume(legacyHashCode(scopeId, clientId));
+        blackhole.consume(legacyHashCode(scopeId, clientId, channel));
+        for (String metric : metrics) {
+            blackhole.consume(legacyHashCode(scopeId, clientId, channel, metric));
+        }
+    }
+
+    @Benchmark
+    public void digestIds(Blackhole blackhole) {
+        blackhole.consume(DatastoreUtils.getHashCode(scopeId, clientId));
+        blackhole.consume(DatastoreUtils.getHashCode(scopeId, clientId, channel));
+        for (String metric : metrics) {
+            blackhole.consume(DatastoreUtils.getHashCode(scopeId, clientId, channel, metric));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] { 1, 8, 32 }) {
+            Options options = new OptionsBuilder()
+                    .include(RegistryIdBenchmark.class.getSimpleName())
+                    .addProfiler(GCProfiler.class)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.datastore.internal.schema;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.datastore.client.ClientErrorCodes;
+import org.eclipse.kapua.service.datastore.client.ClientException;
+import org.eclipse.kapua.service.datastore.client.DatastoreClient;
+import org.eclipse.kapua.service.datastore.client.model.IndexExistsRequest;
+import org.eclipse.kapua.service.datastore.client.model.IndexExistsResponse;
+import org.eclipse.kapua.service.datastore.client.model.TypeDescriptor;
+import org.eclipse.kapua.service.datastore.internal.mediator.DatastoreUtils;
+import org.eclipse.kapua.service.datastore.internal.mediator.Metric;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class SchemaTest extends Assert {
+
+    private static final int CALLERS = 8;
+
+    // the metadata cache is shared by the JVM, so every test uses its own indexes
+    private static final AtomicLong SCOPE_IDS = new AtomicLong(System.currentTimeMillis());
+
+    private ExecutorService executor;
+    private DatastoreClient client;
+    private KapuaId scopeId;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(CALLERS);
+        client = mock(DatastoreClient.class);
+        when(client.isIndexExists(any(IndexExistsRequest.class))).thenReturn(new IndexExistsResponse(false));
+        scopeId = new KapuaEid(BigInteger.valueOf(SCOPE_IDS.incrementAndGet()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentSynchCreatesIndexesOnce() throws Exception {
+        Schema schema = new Schema(client, false, 0);
+        long now = System.currentTimeMillis();
+        String dataIndexName = DatastoreUtils.getDataIndexName(scopeId, now);
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch created = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            creating.countDown();
+            created.await();
+            return null;
+        }).when(client).createIndex(eq(dataIndexName), any(ObjectNode.class));
+
+        List<Future<Metadata>> results = callConcurrently(() -> schema.synch(scopeId, now), creating, created);
+
+        Set<Metadata> metadata = new HashSet<>();
+        for (Future<Metadata> result : results) {
+            metadata.add(result.get(10, TimeUnit.SECONDS));
+        }
+        // the concurrent callers get the metadata of the single creation
+        assertEquals(1, metadata.size());
+        assertEquals(dataIndexName, metadata.iterator().next().getDataIndexName());
+        verify(client, times(1)).createIndex(eq(dataIndexName), any(ObjectNode.class));
+        verify(client, times(1)).createIndex(eq(DatastoreUtils.getRegistryIndexName(scopeId)), any(ObjectNode.class));
+
+        // then cached
+        assertSame(metadata.iterator().next(), schema.synch(scopeId, now));
+        verify(client, times(2)).isIndexExists(any(IndexExistsRequest.class));
+    }
+
+    @Test
+    public void testFailedCreationReportedToEveryCaller() throws Exception {
+        Schema schema = new Schema(client, false, 0);
+        long now = System.currentTimeMillis();
+        String dataIndexName = DatastoreUtils.getDataIndexName(scopeId, now);
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch failed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            creating.countDown();
+            failed.await();
+            throw new ClientException(ClientErrorCodes.ACTION_ERROR, "creation error");
+        }).when(client).createIndex(eq(dataIndexName), any(ObjectNode.class));
+
+        List<Future<Metadata>> results = callConcurrently(() -> schema.synch(scopeId, now), creating, failed);
+
+        for (Future<Metadata> result : results) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("The creation error should be reported");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ClientException);
+                assertTrue(e.getCause().getMessage().contains("creation error"));
+            }
+        }
+        verify(client, times(1)).createIndex(eq(dataIndexName), any(ObjectNode.class));
+
+        // the failed creation is not in flight anymore: the next caller creates the index again
+        reset(client);
+        when(client.isIndexExists(any(IndexExistsRequest.class))).thenReturn(new IndexExistsResponse(false));
+        assertEquals(dataIndexName, schema.synch(scopeId, now).getDataIndexName());
+        verify(client, times(1)).createIndex(eq(dataIndexName), any(ObjectNode.class));
+    }
+
+    @Test
+    public void testConcurrentMappingsMerged() throws Exception {
+        Schema schema = new Schema(client, false, 0);
+        long now = System.currentTimeMillis();
+        String dataIndexName = DatastoreUtils.getDataIndexName(scopeId, now);
+        schema.synch(scopeId, now);
+
+        // the first put mapping request is in flight while the other callers add their metrics
+        reset(client);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (sending.getCount() > 0) {
+                sending.countDown();
+                sent.await();
+            }
+            return null;
+        }).when(client).putMapping(any(TypeDescriptor.class), any(JsonNode.class));
+
+        Future<Void> first = executor.submit(() -> {
+            schema.updateMessageMappings(scopeId, now, metrics("first"));
+            return null;
+        });
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        List<Future<Void>> others = new ArrayList<>();
+        for (int i = 0; i < CALLERS - 1; i++) {
+            String metricName = "metric-" + i;
+            others.add(executor.submit(() -> {
+                schema.updateMessageMappings(scopeId, now, metrics(metricName, "first"));
+                return null;
+            }));
+        }
+        Thread.sleep(200);
+        sent.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        for (Future<Void> other : others) {
+            other.get(10, TimeUnit.SECONDS);
+        }
+
+        // the metrics of the concurrent callers are sent by a single request once the first one completes
+        ArgumentCaptor<TypeDescriptor> typeDescriptors = ArgumentCaptor.forClass(TypeDescriptor.class);
+        ArgumentCaptor<JsonNode> mappings = ArgumentCaptor.forClass(JsonNode.class);
+        verify(client, times(2)).putMapping(typeDescriptors.capture(), mappings.capture());
+        for (TypeDescriptor typeDescriptor : typeDescriptors.getAllValues()) {
+            assertEquals(dataIndexName, typeDescriptor.getIndex());
+            assertEquals(MessageSchema.MESSAGE_TYPE_NAME, typeDescriptor.getType());
+        }
+        assertEquals(Collections.singleton("first"), mappedMetrics(mappings.getAllValues().get(0)));
+        Set<String> mergedMetrics = mappedMetrics(mappings.getAllValues().get(1));
+        assertEquals(CALLERS - 1, mergedMetrics.size());
+        for (int i = 0; i < CALLERS - 1; i++) {
+            assertTrue(mergedMetrics.contains("metric-" + i));
+        }
+
+        // the mapped metrics are not sent again
+        schema.updateMessageMappings(scopeId, now, metrics("first", "metric-0"));
+        verify(client, times(2)).putMapping(any(TypeDescriptor.class), any(JsonNode.class));
+    }
+
+    @Test
+    public void testFailedMappingsSentAgain() throws Exception {
+        Schema schema = new Schema(client, false, 0);
+        long now = System.currentTimeMillis();
+        schema.synch(scopeId, now);
+
+        reset(client);
+        doThrow(new ClientException(ClientErrorCodes.ACTION_ERROR, "mapping error")).when(client).putMapping(any(TypeDescriptor.class), any(JsonNode.class));
+        try {
+            schema.updateMessageMappings(scopeId, now, metrics("temperature"));
+            fail("The mapping error should be reported");
+        } catch (ClientException e) {
+            assertTrue(e.getMessage().contains("mapping error"));
+        }
+
+        reset(client);
+        schema.updateMessageMappings(scopeId, now, metrics("temperature"));
+        verify(client, times(1)).putMapping(any(TypeDescriptor.class), any(JsonNode.class));
+    }
+
+    @Test
+    public void testNextIndexPreCreated() throws Exception {
+        long lookahead = TimeUnit.DAYS.toMillis(7);
+        Schema schema = new Schema(client, true, lookahead);
+        long now = System.currentTimeMillis();
+        schema.synch(scopeId, now);
+
+        // the registry index already exists
+        reset(client);
+        String registryIndexName = DatastoreUtils.getRegistryIndexName(scopeId);
+        when(client.isIndexExists(any(IndexExistsRequest.class)))
+                .thenAnswer(invocation -> new IndexExistsResponse(registryIndexName.equals(((IndexExistsRequest) invocation.getArguments()[0]).getIndex())));
+        schema.preCreateIndexes();
+
+        // the data index of the next week is created
+        ArgumentCaptor<String> indexNames = ArgumentCaptor.forClass(String.class);
+        verify(client, times(1)).createIndex(indexNames.capture(), any(ObjectNode.class));
+        String nextDataIndexName = indexNames.getValue();
+        assertNotEquals(DatastoreUtils.getDataIndexName(scopeId, now), nextDataIndexName);
+        assertTrue(nextDataIndexName.equals(DatastoreUtils.getDataIndexName(scopeId, now + lookahead))
+                || nextDataIndexName.equals(DatastoreUtils.getDataIndexName(scopeId, System.currentTimeMillis() + lookahead)));
+
+        // the account is pre-created again only once it stores new messages
+        schema.preCreateIndexes();
+        verify(client, times(1)).createIndex(any(String.class), any(ObjectNode.class));
+    }
+
+    @Test
+    public void testPreCreationDisabled() throws Exception {
+        Schema schema = new Schema(client, false, TimeUnit.DAYS.toMillis(7));
+        schema.synch(scopeId, System.currentTimeMillis());
+
+        reset(client);
+        schema.preCreateIndexes();
+        verify(client, never()).createIndex(any(String.class), any(ObjectNode.class));
+    }
+
+    /**
+     * Run {@link #CALLERS} concurrent calls: the first one blocks in the client (signaling entered) while the other ones are started, then the client call
+     * is released
+     */
+    private <T> List<Future<T>> callConcurrently(Callable<T> call, CountDownLatch entered, CountDownLatch release) throws InterruptedException {
+        List<Future<T>> results = new ArrayList<>();
+        results.add(executor.submit(call));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        CountDownLatch started = new CountDownLatch(CALLERS - 1);
+        for (int i = 0; i < CALLERS - 1; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return call.call();
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // let the callers reach the in-flight creation
+        Thread.sleep(200);
+        release.countDown();
+        return results;
+    }
+
+    private static Map<String, Metric> metrics(String... names) {
+        Map<String, Metric> metrics = new HashMap<>();
+        for (String name : names) {
+            metrics.put(name, new Metric(name, DatastoreUtils.CLIENT_METRIC_TYPE_DOUBLE));
+        }
+        return metrics;
+    }
+
+    private static Set<String> mappedMetrics(JsonNode mapping) {
+        Set<String> metrics = new HashSet<>();
+        mapping.path("message").path("properties").path("metrics").path("properties").fieldNames().forEachRemaining(metrics::add);
+        return metrics;
+    }
+}
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.call;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.service.device.call.message.DeviceMessage;
 import org.eclipse.kapua.service.device.call.message.app.request.DeviceRequestMessage;
@@ -96,6 +98,60 @@ public interface DeviceCall<RQ extends DeviceRequestMessage, RS extends DeviceRe
     public RS options(RQ requestMessage, Long timeout)
             throws KapuaException;
 
+    /**
+     * Executes a 'read command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> readAsync(RQ requestMessage, Long timeout);
+
+    /**
+     * Executes a 'create command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> createAsync(RQ requestMessage, Long timeout);
+
+    /**
+     * Executes a 'write command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> writeAsync(RQ requestMessage, Long timeout);
+
+    /**
+     * Executes a 'delete command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> deleteAsync(RQ requestMessage, Long timeout);
+
+    /**
+     * Executes an 'execute command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> executeAsync(RQ requestMessage, Long timeout);
+
+    /**
+     * Executes an 'options command' without blocking the caller
+     * 
+     * @param requestMessage
+     * @param timeout
+     * @return the future completed with the device response
+     */
+    public CompletableFuture<RS> optionsAsync(RQ requestMessage, Long timeout);
+
     /**
      * Get the device base message type
      * 
@@ -12,7 +12,10 @@
 package org.eclipse.kapua.service.device.call.kura;
 
 import java.util.Date;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.locator.KapuaLocator;
@@ -44,40 +47,88 @@ public class KuraDeviceCallImpl implements DeviceCall<KuraRequestMessage, KuraRe
         return send(requestMessage, timeout);
     }
 
+    @Override
+    public CompletableFuture<KuraResponseMessage> createAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     @Override
     public KuraResponseMessage read(KuraRequestMessage requestMessage, Long timeout)
             throws KapuaException {
         return send(requestMessage, timeout);
     }
 
+    @Override
+    public CompletableFuture<KuraResponseMessage> readAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     @Override
     public KuraResponseMessage options(KuraRequestMessage requestMessage, Long timeout)
             throws KapuaException {
         return send(requestMessage, timeout);
     }
 
+    @Override
+    public CompletableFuture<KuraResponseMessage> optionsAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     @Override
     public KuraResponseMessage delete(KuraRequestMessage requestMessage, Long timeout)
             throws KapuaException {
         return send(requestMessage, timeout);
     }
 
+    @Override
+    public CompletableFuture<KuraResponseMessage> deleteAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     @Override
     public KuraResponseMessage execute(KuraRequestMessage requestMessage, Long timeout)
             throws KapuaException {
         return send(requestMessage, timeout);
     }
 
+    @Override
+    public CompletableFuture<KuraResponseMessage> executeAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     @Override
     public KuraResponseMessage write(KuraRequestMessage requestMessage, Long timeout)
             throws KapuaException {
         return send(requestMessage, timeout);
     }
 
-    @SuppressWarnings({ "unchecked" })
+    @Override
+    public CompletableFuture<KuraResponseMessage> writeAsync(KuraRequestMessage requestMessage, Long timeout) {
+        return sendAsync(requestMessage, timeout);
+    }
+
     private KuraResponseMessage send(KuraRequestMessage requestMessage, Long timeout)
             throws KuraMqttDeviceCallException {
-        KuraResponseMessage response = null;
+        try {
+            return sendAsync(requestMessage, timeout).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
+                    e,
+                    (Object[]) null);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KuraMqttDeviceCallException) {
+                throw (KuraMqttDeviceCallException) e.getCause();
+            }
+            throw new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
+                    e.getCause(),
+                    (Object[]) null);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked" })
+    private CompletableFuture<KuraResponseMessage> sendAsync(KuraRequestMessage requestMessage, Long timeout) {
+        CompletableFuture<KuraResponseMessage> response = new CompletableFuture<>();
         TransportFacade transportFacade = null;
         try {
             //
@@ -96,9 +147,7 @@ public class KuraDeviceCallImpl implements DeviceCall<KuraRequestMessage, KuraRe
             KuraRequestChannel requestChannel = requestMessage.getChannel();
             KuraRequestPayload requestPayload = requestMessage.getPayload();
             if (timeout != null) {
-                // FIXME: create an utilty class to use the same synchronized random instance to avoid duplicates
-                Random r = new Random();
-                String requestId = String.valueOf(r.nextLong());
+                String requestId = String.valueOf(ThreadLocalRandom.current().nextLong());
 
                 requestChannel.setRequestId(requestId);
                 requestChannel.setRequesterClientId(transportFacade.getClientId());
@@ -107,30 +156,40 @@ public class KuraDeviceCallImpl implements DeviceCall<KuraRequestMessage, KuraRe
                 requestPayload.setRequesterClientId(transportFacade.getClientId());
             }
 
+            // Set current timestamp
+            requestMessage.setTimestamp(new Date());
+
             //
             // Do send
-            try {
-                // Set current timestamp
-                requestMessage.setTimestamp(new Date());
-
-                // Send
-                TransportMessage transportResponseMessage = transportFacade.sendSync((TransportMessage) translatorKuraTransport.translate(requestMessage), timeout);
-
-                // Translate response
-                response = (KuraResponseMessage) translatorTransportKura.translate(transportResponseMessage);
-            } catch (KapuaException e) {
-                throw new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CLIENT_SEND_ERROR,
-                        e,
-                        (Object[]) null);
-            }
+            // The response is translated when received, the caller thread is never blocked
+            final TransportFacade requestTransportFacade = transportFacade;
+            CompletableFuture<TransportMessage> transportResponse = requestTransportFacade.sendRequest((TransportMessage) translatorKuraTransport.translate(requestMessage), timeout);
+            transportResponse.whenComplete((transportResponseMessage, exception) -> {
+                requestTransportFacade.clean();
+                if (exception != null) {
+                    response.completeExceptionally(new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
+                            new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CLIENT_SEND_ERROR,
+                                    exception instanceof CompletionException ? exception.getCause() : exception,
+                                    (Object[]) null),
+                            (Object[]) null));
+                    return;
+                }
+                try {
+                    // Translate response
+                    response.complete(transportResponseMessage != null ? (KuraResponseMessage) translatorTransportKura.translate(transportResponseMessage) : null);
+                } catch (KapuaException e) {
+                    response.completeExceptionally(new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
+                            e,
+                            (Object[]) null));
+                }
+            });
         } catch (KapuaException ke) {
-            throw new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
-                    ke,
-                    (Object[]) null);
-        } finally {
             if (transportFacade != null) {
                 transportFacade.clean();
             }
+            response.completeExceptionally(new KuraMqttDeviceCallException(KuraMqttDeviceCallErrorCodes.CALL_ERROR,
+                    ke,
+                    (Object[]) null));
         }
 
         return response;
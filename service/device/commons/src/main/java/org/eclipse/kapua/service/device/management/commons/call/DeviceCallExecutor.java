@@ -11,7 +11,15 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.management.commons.call;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.commons.security.KapuaSession;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.service.device.call.DeviceCall;
 import org.eclipse.kapua.service.device.call.DeviceCallFactory;
@@ -70,49 +78,101 @@ public class DeviceCallExecutor<C extends KapuaRequestChannel, P extends KapuaRe
     }
 
     /**
-     * Performs the device call
+     * Performs the device call.<br>
+     * The device response is translated by the caller thread (the translation may look up the caller scope, so it requires the caller session).
      *
      * @return
      * @throws KapuaException
      */
-    @SuppressWarnings({ "unchecked" })
     public RS send()
             throws KapuaException {
-        //
-        // Get the correct device call
+        DeviceCall<DeviceRequestMessage, DeviceResponseMessage> deviceCall = newDeviceCall();
+        try {
+            return translateResponse(deviceCall, sendRequest(deviceCall).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw KapuaException.internalError(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KapuaException) {
+                throw (KapuaException) e.getCause();
+            }
+            throw KapuaException.internalError(e.getCause());
+        }
+    }
+
+    /**
+     * Performs the device call without waiting for the device response.<br>
+     * The device response is translated by the thread receiving it, bound to the caller {@link KapuaSession} and Shiro {@link Subject}.
+     *
+     * @return the future completed with the device response
+     * @throws KapuaException
+     *             if the request cannot be built
+     */
+    public CompletableFuture<RS> sendAsync()
+            throws KapuaException {
+        DeviceCall<DeviceRequestMessage, DeviceResponseMessage> deviceCall = newDeviceCall();
+        CompletableFuture<DeviceResponseMessage> responseMessage = sendRequest(deviceCall);
+
+        KapuaSession callerSession = KapuaSecurityUtils.getSession();
+        Subject callerSubject = ThreadContext.getSubject();
+        return responseMessage.thenApply(deviceResponseMessage -> {
+            KapuaSession previousSession = KapuaSecurityUtils.getSession();
+            KapuaSecurityUtils.setSession(callerSession);
+            try {
+                if (callerSubject != null) {
+                    return callerSubject.execute(() -> translateResponse(deviceCall, deviceResponseMessage));
+                }
+                return translateResponse(deviceCall, deviceResponseMessage);
+            } catch (org.apache.shiro.subject.ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            } catch (KapuaException e) {
+                throw new CompletionException(e);
+            } finally {
+                KapuaSecurityUtils.setSession(previousSession);
+            }
+        });
+    }
+
+    @SuppressWarnings({ "unchecked" })
+    private DeviceCall<DeviceRequestMessage, DeviceResponseMessage> newDeviceCall() {
         KapuaLocator locator = KapuaLocator.getInstance();
         DeviceCallFactory kapuaDeviceCallFactory = locator.getFactory(DeviceCallFactory.class);
-        DeviceCall<DeviceRequestMessage, DeviceResponseMessage> deviceCall = kapuaDeviceCallFactory.newDeviceCall();
+        return kapuaDeviceCallFactory.newDeviceCall();
+    }
+
+    @SuppressWarnings({ "unchecked" })
+    private CompletableFuture<DeviceResponseMessage> sendRequest(DeviceCall<DeviceRequestMessage, DeviceResponseMessage> deviceCall)
+            throws KapuaException {
         Translator tKapuaToClient = Translator.getTranslatorFor(requestMessage.getRequestClass(),
                 deviceCall.getBaseMessageClass());
 
-        DeviceResponseMessage responseMessage;
+        CompletableFuture<DeviceResponseMessage> responseMessage;
         timeout = timeout == null ? DeviceManagementSetting.getInstance().getLong(DeviceManagementSettingKey.REQUEST_TIMEOUT) : timeout;
 
         DeviceRequestMessage deviceRequestMessage = (DeviceRequestMessage) tKapuaToClient.translate(requestMessage);
         switch (requestMessage.getChannel().getMethod()) {
         case CREATE: {
-            responseMessage = deviceCall.create(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.createAsync(deviceRequestMessage, timeout);
         }
             break;
         case READ: {
-            responseMessage = deviceCall.read(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.readAsync(deviceRequestMessage, timeout);
         }
             break;
         case OPTIONS: {
-            responseMessage = deviceCall.options(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.optionsAsync(deviceRequestMessage, timeout);
         }
             break;
         case DELETE: {
-            responseMessage = deviceCall.delete(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.deleteAsync(deviceRequestMessage, timeout);
         }
             break;
         case EXECUTE: {
-            responseMessage = deviceCall.execute(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.executeAsync(deviceRequestMessage, timeout);
         }
             break;
         case WRITE: {
-            responseMessage = deviceCall.write(deviceRequestMessage, timeout);
+            responseMessage = deviceCall.writeAsync(deviceRequestMessage, timeout);
         }
             break;
         default:
@@ -121,9 +181,14 @@ public class DeviceCallExecutor<C extends KapuaRequestChannel, P extends KapuaRe
                     requestMessage.getChannel().getMethod());
         }
 
+        return responseMessage;
+    }
+
+    @SuppressWarnings({ "unchecked" })
+    private RS translateResponse(DeviceCall<DeviceRequestMessage, DeviceResponseMessage> deviceCall, DeviceResponseMessage deviceResponseMessage)
+            throws KapuaException {
         Translator tClientToKapua = Translator.getTranslatorFor(deviceCall.getBaseMessageClass(),
                 requestMessage.getResponseClass());
-
-        return (RS) tClientToKapua.translate(responseMessage);
+        return (RS) tClientToKapua.translate(deviceResponseMessage);
     }
 }
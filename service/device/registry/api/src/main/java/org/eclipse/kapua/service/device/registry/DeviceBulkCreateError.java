@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+import org.eclipse.kapua.KapuaSerializable;
+
+/**
+ * Bulk device creation error definition: the {@link DeviceCreator} that could not be created and the reason.
+ * 
+ * @since 1.0
+ */
+@XmlRootElement(name = "deviceBulkCreateError")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(propOrder = { "index", "clientId", "message" }, factoryClass = DeviceXmlRegistry.class, factoryMethod = "newDeviceBulkCreateError")
+public interface DeviceBulkCreateError extends KapuaSerializable {
+
+    /**
+     * Get the position of the device creator in the bulk creation list (zero based)
+     * 
+     * @return
+     */
+    @XmlElement(name = "index")
+    public int getIndex();
+
+    /**
+     * Set the position of the device creator in the bulk creation list (zero based)
+     * 
+     * @param index
+     */
+    public void setIndex(int index);
+
+    /**
+     * Get the client identifier of the device creator
+     * 
+     * @return
+     */
+    @XmlElement(name = "clientId")
+    public String getClientId();
+
+    /**
+     * Set the client identifier of the device creator
+     * 
+     * @param clientId
+     */
+    public void setClientId(String clientId);
+
+    /**
+     * Get the error message
+     * 
+     * @return
+     */
+    @XmlElement(name = "message")
+    public String getMessage();
+
+    /**
+     * Set the error message
+     * 
+     * @param message
+     */
+    public void setMessage(String message);
+}
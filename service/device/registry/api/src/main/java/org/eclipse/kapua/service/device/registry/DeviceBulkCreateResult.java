@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.eclipse.kapua.KapuaSerializable;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.model.id.KapuaIdAdapter;
+
+/**
+ * Bulk device creation result definition: the ids of the created {@link Device}s and the {@link DeviceBulkCreateError}s of the {@link DeviceCreator}s that could not be
+ * created.
+ * 
+ * @since 1.0
+ */
+@XmlRootElement(name = "deviceBulkCreateResult")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(propOrder = { "deviceIds", "errors" }, factoryClass = DeviceXmlRegistry.class, factoryMethod = "newDeviceBulkCreateResult")
+public interface DeviceBulkCreateResult extends KapuaSerializable {
+
+    /**
+     * Get the ids of the created devices (the devices themselves are not returned, since a bulk creation may create thousands of them)
+     * 
+     * @return
+     */
+    @XmlElementWrapper(name = "deviceIds")
+    @XmlElement(name = "deviceId")
+    @XmlJavaTypeAdapter(KapuaIdAdapter.class)
+    public List<KapuaId> getDeviceIds();
+
+    /**
+     * Get the errors of the device creators that could not be created
+     * 
+     * @return
+     */
+    @XmlElementWrapper(name = "errors")
+    @XmlElement(name = "error")
+    public List<DeviceBulkCreateError> getErrors();
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+import org.eclipse.kapua.KapuaSerializable;
+
+/**
+ * {@link DeviceBulkCreator} encapsulates the {@link DeviceCreator}s of a bulk device creation (see {@link DeviceRegistryService#createAll(List)}).
+ * 
+ * @since 1.0
+ */
+@XmlRootElement(name = "deviceBulkCreator")
+@XmlAccessorType(XmlAccessType.PROPERTY)
+@XmlType(factoryClass = DeviceXmlRegistry.class, factoryMethod = "newDeviceBulkCreator")
+public interface DeviceBulkCreator extends KapuaSerializable {
+
+    /**
+     * Get the device creators
+     * 
+     * @return
+     */
+    @XmlElementWrapper(name = "deviceCreators")
+    @XmlElement(name = "deviceCreator")
+    public List<DeviceCreator> getDeviceCreators();
+
+    /**
+     * Set the device creators
+     * 
+     * @param deviceCreators
+     */
+    public void setDeviceCreators(List<DeviceCreator> deviceCreators);
+}
@@ -31,4 +31,25 @@ public interface DeviceFactory extends KapuaEntityFactory<Device, DeviceCreator,
      */
     public DeviceCreator newCreator(KapuaId scopeId, String clientId);
 
+    /**
+     * Creates a new device bulk creator
+     * 
+     * @return
+     */
+    public DeviceBulkCreator newBulkCreator();
+
+    /**
+     * Creates a new device bulk create result
+     * 
+     * @return
+     */
+    public DeviceBulkCreateResult newBulkCreateResult();
+
+    /**
+     * Creates a new device bulk create error
+     * 
+     * @return
+     */
+    public DeviceBulkCreateError newBulkCreateError();
+
 }
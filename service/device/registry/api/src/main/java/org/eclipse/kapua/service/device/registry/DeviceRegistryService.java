@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.registry;
 
+import java.util.List;
+
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.model.query.KapuaQuery;
@@ -28,6 +30,21 @@ public interface DeviceRegistryService extends KapuaEntityService<Device, Device
         KapuaUpdatableEntityService<Device>,
         KapuaConfigurableService {
 
+    /**
+     * Creates the devices of the provided creators, in batches.<br>
+     * A creator that cannot be created (invalid, already existing client id, exceeding the scope devices limit, ...) doesn't abort the creation of the other ones:
+     * it is reported in the {@link DeviceBulkCreateResult#getErrors()} instead.<br>
+     * The number of creators is limited by the device.bulk.create.size.max setting.
+     * 
+     * @param deviceCreators
+     *            The {@link DeviceCreator}s of the devices to create.
+     * @return The {@link DeviceBulkCreateResult} with the ids of the created devices and the errors.
+     * @throws KapuaException
+     * @since 1.0.0
+     */
+    public DeviceBulkCreateResult createAll(List<DeviceCreator> deviceCreators)
+            throws KapuaException;
+
     /**
      * Returns the {@link DeviceListResult} with elements matching the provided query.
      * 
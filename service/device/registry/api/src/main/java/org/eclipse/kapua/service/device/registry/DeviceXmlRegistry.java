@@ -57,4 +57,31 @@ public class DeviceXmlRegistry {
     public DeviceQuery newQuery() {
         return factory.newQuery(null);
     }
+
+    /**
+     * Creates a new device bulk creator
+     * 
+     * @return
+     */
+    public DeviceBulkCreator newDeviceBulkCreator() {
+        return factory.newBulkCreator();
+    }
+
+    /**
+     * Creates a new device bulk create result
+     * 
+     * @return
+     */
+    public DeviceBulkCreateResult newDeviceBulkCreateResult() {
+        return factory.newBulkCreateResult();
+    }
+
+    /**
+     * Creates a new device bulk create error
+     * 
+     * @return
+     */
+    public DeviceBulkCreateError newDeviceBulkCreateError() {
+        return factory.newBulkCreateError();
+    }
 }
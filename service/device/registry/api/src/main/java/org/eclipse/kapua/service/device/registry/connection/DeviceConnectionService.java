@@ -49,6 +49,18 @@ public interface DeviceConnectionService extends KapuaEntityService<DeviceConnec
     public DeviceConnectionListResult query(KapuaQuery<DeviceConnection> query)
             throws KapuaException;
 
+    /**
+     * Queue the update of the device connection status (and connection properties) by client identifier.<br>
+     * If the write-behind is enabled (by the broker) the update is written asynchronously and coalesced with the further updates of the same client identifier
+     * queued before the write. Until written, the queued state is returned by the find and query methods of this service (of the same node).<br>
+     * Otherwise the update is written synchronously.
+     * 
+     * @param deviceConnection
+     * @throws KapuaException
+     */
+    public void updateDeferred(DeviceConnection deviceConnection)
+            throws KapuaException;
+
     /**
      * Updated the status of provided device connection to connected;
      * if a device connection for the provided clientId is not found,
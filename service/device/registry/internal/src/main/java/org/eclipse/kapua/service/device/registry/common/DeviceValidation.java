@@ -102,17 +102,40 @@ public final class DeviceValidation {
      * @throws KapuaException
      */
     public static DeviceCreator validateCreatePreconditions(DeviceCreator deviceCreator) throws KapuaException {
+        validateCreateArguments(deviceCreator);
+        validateCreatePermission(deviceCreator.getScopeId(), deviceCreator.getGroupId());
+
+        return deviceCreator;
+    }
+
+    /**
+     * Validates the device creates arguments (the part of the preconditions that depends on the single device creator)
+     *
+     * @param deviceCreator
+     * @return
+     * @throws KapuaException
+     */
+    public static DeviceCreator validateCreateArguments(DeviceCreator deviceCreator) throws KapuaException {
         ArgumentValidator.notNull(deviceCreator, "deviceCreator");
         ArgumentValidator.notNull(deviceCreator.getScopeId(), "deviceCreator.scopeId");
         ArgumentValidator.notEmptyOrNull(deviceCreator.getClientId(), "deviceCreator.clientId");
 
-        if (deviceCreator.getGroupId() != null) {
-            ArgumentValidator.notNull(groupService.find(deviceCreator.getScopeId(), deviceCreator.getGroupId()), "deviceCreator.groupId");
-        }
+        return deviceCreator;
+    }
 
-        authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_DOMAIN, Actions.write, deviceCreator.getScopeId(), deviceCreator.getGroupId()));
+    /**
+     * Validates the device creates group and permission (the part of the preconditions shared by the device creators of the same scope and group)
+     *
+     * @param scopeId
+     * @param groupId
+     * @throws KapuaException
+     */
+    public static void validateCreatePermission(KapuaId scopeId, KapuaId groupId) throws KapuaException {
+        if (groupId != null) {
+            ArgumentValidator.notNull(groupService.find(scopeId, groupId), "deviceCreator.groupId");
+        }
 
-        return deviceCreator;
+        authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_DOMAIN, Actions.write, scopeId, groupId));
     }
 
     /**
@@ -11,6 +11,9 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.registry.connection.internal;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.commons.jpa.EntityManager;
@@ -73,6 +76,21 @@ public class DeviceConnectionDAO extends ServiceDAO {
         return em.find(DeviceConnectionImpl.class, deviceConnectionId);
     }
 
+    /**
+     * Find the device connections of the given client identifiers in the scope
+     *
+     * @param em
+     * @param scopeId
+     * @param clientIds
+     * @return
+     */
+    public static List<DeviceConnectionImpl> findByClientIds(EntityManager em, KapuaId scopeId, Collection<String> clientIds) {
+        return em.createNamedQuery("DeviceConnection.findByClientIds", DeviceConnectionImpl.class)
+                .setParameter("scopeId", scopeId.getId())
+                .setParameter("clientIds", clientIds)
+                .getResultList();
+    }
+
     /**
      * Return the device connection list matching the provided query
      *
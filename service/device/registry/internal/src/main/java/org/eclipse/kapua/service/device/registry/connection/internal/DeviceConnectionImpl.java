@@ -19,6 +19,8 @@ import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 import org.eclipse.kapua.KapuaException;
@@ -36,6 +38,9 @@ import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionStat
  */
 
 @Entity(name = "DeviceConnection")
+@NamedQueries({
+        @NamedQuery(name = "DeviceConnection.findByClientIds", query = "SELECT dc FROM DeviceConnection dc WHERE dc.scopeId.eid = :scopeId AND dc.clientId IN :clientIds")
+})
 @Table(name = "dvc_device_connection")
 public class DeviceConnectionImpl extends AbstractKapuaUpdatableEntity implements DeviceConnection {
 
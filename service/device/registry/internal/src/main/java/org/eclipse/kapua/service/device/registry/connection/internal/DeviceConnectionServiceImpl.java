@@ -13,9 +13,11 @@ package org.eclipse.kapua.service.device.registry.connection.internal;
 
 import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
 import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
 import org.eclipse.kapua.commons.service.internal.AbstractKapuaService;
 import org.eclipse.kapua.commons.util.ArgumentValidator;
+import org.eclipse.kapua.commons.util.ShutdownHooks;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.locator.KapuaProvider;
 import org.eclipse.kapua.model.id.KapuaId;
@@ -30,7 +32,10 @@ import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionCrea
 import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionListResult;
 import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionPredicates;
 import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionService;
+import org.eclipse.kapua.service.device.registry.internal.DeviceBatchEntityManagerFactory;
 import org.eclipse.kapua.service.device.registry.internal.DeviceEntityManagerFactory;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettingKeys;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettings;
 
 /**
  * DeviceConnectionService exposes APIs to retrieve Device connections under a scope.
@@ -43,6 +48,12 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
 
     private static final Domain DEVICE_CONNECTION_DOMAIN = new DeviceConnectionDomain();
 
+    private static final boolean WRITE_BEHIND_ENABLED = KapuaDeviceRegistrySettings.getInstance().getBoolean(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_ENABLED,
+            false);
+
+    // created by the first deferred update (the broker only), so the other nodes don't start the flusher
+    private static volatile DeviceConnectionWriteBehindStore writeBehindStore;
+
     public DeviceConnectionServiceImpl() {
         super(DeviceEntityManagerFactory.instance());
     }
@@ -83,6 +94,7 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_CONNECTION_DOMAIN, Actions.write, deviceConnection.getScopeId()));
 
+        discardPending(deviceConnection.getScopeId(), deviceConnection.getClientId());
         return entityManagerSession.onTransactedResult(em -> {
             if (DeviceConnectionDAO.find(em, deviceConnection.getId()) == null) {
                 throw new KapuaEntityNotFoundException(DeviceConnection.TYPE, deviceConnection.getId());
@@ -91,6 +103,30 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
         });
     }
 
+    @Override
+    public void updateDeferred(DeviceConnection deviceConnection)
+            throws KapuaException {
+        //
+        // Argument Validation
+        ArgumentValidator.notNull(deviceConnection, "deviceConnection");
+        ArgumentValidator.notNull(deviceConnection.getScopeId(), "deviceConnection.scopeId");
+        ArgumentValidator.notEmptyOrNull(deviceConnection.getClientId(), "deviceConnection.clientId");
+        ArgumentValidator.notNull(deviceConnection.getStatus(), "deviceConnection.status");
+
+        //
+        // Check Access
+        KapuaLocator locator = KapuaLocator.getInstance();
+        AuthorizationService authorizationService = locator.getService(AuthorizationService.class);
+        PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
+        authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_CONNECTION_DOMAIN, Actions.write, deviceConnection.getScopeId()));
+
+        if (WRITE_BEHIND_ENABLED) {
+            getWriteBehindStore().update(deviceConnection);
+        } else {
+            DeviceConnectionWriteBehindStore.write(entityManagerSession, deviceConnection);
+        }
+    }
+
     @Override
     public DeviceConnection find(KapuaId scopeId, KapuaId entityId)
             throws KapuaException {
@@ -106,7 +142,7 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_CONNECTION_DOMAIN, Actions.read, scopeId));
 
-        return entityManagerSession.onResult(em -> DeviceConnectionDAO.find(em, entityId));
+        return overlayPending(entityManagerSession.onResult(em -> DeviceConnectionDAO.find(em, entityId)));
     }
 
     @Override
@@ -149,7 +185,11 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_CONNECTION_DOMAIN, Actions.read, query.getScopeId()));
 
-        return entityManagerSession.onResult(em -> DeviceConnectionDAO.query(em, query));
+        DeviceConnectionListResult result = entityManagerSession.onResult(em -> DeviceConnectionDAO.query(em, query));
+        for (DeviceConnection deviceConnection : result.getItems()) {
+            overlayPending(deviceConnection);
+        }
+        return result;
     }
 
     @Override
@@ -186,13 +226,43 @@ public class DeviceConnectionServiceImpl extends AbstractKapuaService implements
         authorizationService.checkPermission(permissionFactory.newPermission(DEVICE_CONNECTION_DOMAIN, Actions.write, scopeId));
 
         entityManagerSession.onTransactedAction(em -> {
-            if (DeviceConnectionDAO.find(em, deviceConnectionId) == null) {
+            DeviceConnection deviceConnection = DeviceConnectionDAO.find(em, deviceConnectionId);
+            if (deviceConnection == null) {
                 throw new KapuaEntityNotFoundException(DeviceConnection.TYPE, deviceConnectionId);
             }
+            discardPending(scopeId, deviceConnection.getClientId());
             DeviceConnectionDAO.delete(em, deviceConnectionId);
         });
     }
 
+    private static DeviceConnectionWriteBehindStore getWriteBehindStore() {
+        DeviceConnectionWriteBehindStore store = writeBehindStore;
+        if (store == null) {
+            synchronized (DeviceConnectionServiceImpl.class) {
+                store = writeBehindStore;
+                if (store == null) {
+                    // the write-behind updates are written through the batch writing session of the device persistence unit
+                    store = new DeviceConnectionWriteBehindStore(new EntityManagerSession(DeviceBatchEntityManagerFactory.instance()));
+                    ShutdownHooks.register("device connection write-behind store", store::stop);
+                    writeBehindStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    private static void discardPending(KapuaId scopeId, String clientId) {
+        DeviceConnectionWriteBehindStore store = writeBehindStore;
+        if (store != null) {
+            store.discard(scopeId, clientId);
+        }
+    }
+
+    private static DeviceConnection overlayPending(DeviceConnection deviceConnection) {
+        DeviceConnectionWriteBehindStore store = writeBehindStore;
+        return store != null ? store.overlay(deviceConnection) : deviceConnection;
+    }
+
     @Override
     public void connect(DeviceConnectionCreator creator)
             throws KapuaException {
@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.connection.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
+import org.eclipse.kapua.commons.metric.MetricServiceFactory;
+import org.eclipse.kapua.commons.metric.MetricsService;
+import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.device.registry.connection.DeviceConnection;
+import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionStatus;
+import org.eclipse.kapua.service.device.registry.internal.DeviceBatchEntityManagerFactory;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettingKeys;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Write-behind store of the {@link DeviceConnection} status transitions.<br>
+ * The updates are kept in memory by scope id and client id and written by a single flusher thread every
+ * {@link KapuaDeviceRegistrySettingKeys#DEVICE_CONNECTION_WRITE_BEHIND_FLUSH_INTERVAL} milliseconds. The transitions of the same client id queued within the same flush
+ * interval are coalesced (the last one wins), so a mass disconnection produces at most one write per device connection and flush interval.<br>
+ * Each flush loads the pending device connections of a scope with a single query and writes them in the same transaction, through the batch writing session of
+ * the device persistence unit ({@link DeviceBatchEntityManagerFactory}), so the updates are sent as JDBC batches.<br>
+ * <br>
+ * Until written, the pending state is overlaid on the device connections read through the {@link DeviceConnectionServiceImpl}, so the reads stay consistent with the
+ * latest transition.<br>
+ * Once {@link KapuaDeviceRegistrySettingKeys#DEVICE_CONNECTION_WRITE_BEHIND_PENDING_MAX} client ids are pending, the new ones are written synchronously (backpressure).<br>
+ * <br>
+ * If a batch cannot be written its updates are written one by one, and the ones still failing are kept pending and retried by the next flushes with an exponential
+ * backoff (up to {@link KapuaDeviceRegistrySettingKeys#DEVICE_CONNECTION_WRITE_BEHIND_RETRY_INTERVAL_MAX}). An update is dropped once
+ * {@link KapuaDeviceRegistrySettingKeys#DEVICE_CONNECTION_WRITE_BEHIND_RETRY_MAX} attempts are failed.
+ *
+ * @since 1.0
+ */
+public class DeviceConnectionWriteBehindStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceConnectionWriteBehindStore.class);
+
+    private static final String METRIC_MODULE_NAME = "device";
+    private static final String METRIC_COMPONENT_NAME = "connection";
+
+    private static final long STOP_TIMEOUT = 30000L;
+
+    private final EntityManagerSession entityManagerSession;
+
+    private final ConcurrentMap<PendingKey, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final long flushInterval;
+    private final int pendingMax;
+    private final int batchSize;
+    private final int retryMax;
+    private final long retryIntervalMax;
+
+    private final Object flushLock = new Object();
+    private final Thread flusher;
+    private volatile boolean running;
+
+    // metrics
+    private final Counter metricUpdateCoalesced;
+    private final Counter metricUpdateSync;
+    private final Counter metricUpdateError;
+    private final Counter metricUpdateDropped;
+    private final Histogram metricFlushSize;
+    private final Histogram metricFlushDelay;
+    private final Timer metricFlushTime;
+
+    /**
+     * Constructs and starts the write-behind store
+     *
+     * @param entityManagerSession
+     */
+    public DeviceConnectionWriteBehindStore(EntityManagerSession entityManagerSession) {
+        this(entityManagerSession,
+                KapuaDeviceRegistrySettings.getInstance().getLong(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_FLUSH_INTERVAL, 1000L),
+                KapuaDeviceRegistrySettings.getInstance().getInt(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_PENDING_MAX, 50000),
+                KapuaDeviceRegistrySettings.getInstance().getInt(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_BATCH_SIZE, 500),
+                KapuaDeviceRegistrySettings.getInstance().getInt(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_RETRY_MAX, 10),
+                KapuaDeviceRegistrySettings.getInstance().getLong(KapuaDeviceRegistrySettingKeys.DEVICE_CONNECTION_WRITE_BEHIND_RETRY_INTERVAL_MAX, 60000L));
+    }
+
+    /**
+     * Constructs and starts the write-behind store with the provided parameters
+     *
+     * @param entityManagerSession
+     * @param flushInterval
+     * @param pendingMax
+     * @param batchSize
+     * @param retryMax
+     * @param retryIntervalMax
+     */
+    DeviceConnectionWriteBehindStore(EntityManagerSession entityManagerSession, long flushInterval, int pendingMax, int batchSize, int retryMax, long retryIntervalMax) {
+        this.entityManagerSession = entityManagerSession;
+        this.flushInterval = flushInterval;
+        this.pendingMax = pendingMax;
+        this.batchSize = batchSize;
+        this.retryMax = retryMax;
+        this.retryIntervalMax = retryIntervalMax;
+
+        MetricsService metricsService = MetricServiceFactory.getInstance();
+        metricUpdateCoalesced = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "coalesced", "count");
+        metricUpdateSync = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "sync", "count");
+        metricUpdateError = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "error", "count");
+        metricUpdateDropped = metricsService.getCounter(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "dropped", "count");
+        metricFlushSize = metricsService.getHistogram(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "flush", "size", "count");
+        metricFlushDelay = metricsService.getHistogram(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "flush", "delay", "ms");
+        metricFlushTime = metricsService.getTimer(METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "flush", "time", "s");
+        try {
+            metricsService.registerGauge((Gauge<Integer>) this::getPendingCount, METRIC_MODULE_NAME, METRIC_COMPONENT_NAME, "write_behind", "pending", "count");
+        } catch (KapuaException e) {
+            logger.warn("Cannot register the device connection pending updates gauge: {}", e.getMessage());
+        }
+
+        flusher = new Thread(this::flushLoop, "device-connection-write-behind");
+        flusher.setDaemon(true);
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stop the flusher thread.<br>
+     * The updates already queued (the failed ones included, regardless of their backoff) are written before returning. The further updates are written
+     * synchronously.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // the flusher is woken up rather than interrupted, so a write in progress is not aborted
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        try {
+            flusher.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            logger.warn("The device connection write-behind store is not stopped within {} ms", STOP_TIMEOUT);
+        }
+    }
+
+    /**
+     * Get the number of client ids with a pending update
+     *
+     * @return
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Queue the device connection status transition (and the connection properties).<br>
+     * The update is written synchronously if the store is stopped or if too many client ids are already pending.
+     *
+     * @param deviceConnection
+     * @throws KapuaException
+     */
+    public void update(DeviceConnection deviceConnection) throws KapuaException {
+        PendingKey key = new PendingKey(deviceConnection.getScopeId(), deviceConnection.getClientId());
+        PendingUpdate update = new PendingUpdate(deviceConnection);
+        if (running) {
+            if (pending.replace(key, update) != null) {
+                metricUpdateCoalesced.inc();
+                return;
+            }
+            if (pending.size() < pendingMax && pending.putIfAbsent(key, update) == null) {
+                return;
+            }
+        }
+        metricUpdateSync.inc();
+        Map<String, PendingUpdate> updates = new HashMap<>();
+        updates.put(update.clientId, update);
+        write(key.scopeId, updates);
+    }
+
+    /**
+     * Discard the pending update of the client id (if any).<br>
+     * Must be called when the device connection is written (or deleted) by other means, so the pending state doesn't override the newer one.
+     *
+     * @param scopeId
+     * @param clientId
+     */
+    public void discard(KapuaId scopeId, String clientId) {
+        pending.remove(new PendingKey(scopeId, clientId));
+    }
+
+    /**
+     * Overlay the pending state (if any) on the given device connection
+     *
+     * @param deviceConnection
+     * @return the same device connection
+     */
+    public DeviceConnection overlay(DeviceConnection deviceConnection) {
+        if (deviceConnection != null && !pending.isEmpty()) {
+            PendingUpdate update = pending.get(new PendingKey(deviceConnection.getScopeId(), deviceConnection.getClientId()));
+            if (update != null) {
+                update.applyTo(deviceConnection);
+            }
+        }
+        return deviceConnection;
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (flushLock) {
+                if (running) {
+                    try {
+                        flushLock.wait(flushInterval);
+                    } catch (InterruptedException e) {
+                        // not expected, flush what is already queued and exit
+                        running = false;
+                    }
+                }
+            }
+            flush(false);
+        }
+        // last attempt for the failed updates too
+        flush(true);
+        if (!pending.isEmpty()) {
+            metricUpdateDropped.inc(pending.size());
+            logger.error("Device connection write-behind store stopped: {} updates cannot be written", pending.size());
+        } else {
+            logger.info("Device connection write-behind store stopped");
+        }
+    }
+
+    private void flush(boolean ignoreBackoff) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<KapuaId, Map<String, PendingUpdate>> updatesByScope = new HashMap<>();
+        long now = System.nanoTime();
+        int flushSize = 0;
+        for (Map.Entry<PendingKey, PendingUpdate> entry : pending.entrySet()) {
+            if (!ignoreBackoff && entry.getValue().retryOn - now > 0) {
+                continue;
+            }
+            updatesByScope.computeIfAbsent(entry.getKey().scopeId, scopeId -> new HashMap<>()).put(entry.getKey().clientId, entry.getValue());
+            metricFlushDelay.update(TimeUnit.NANOSECONDS.toMillis(now - entry.getValue().queuedOn));
+            flushSize++;
+        }
+        if (flushSize == 0) {
+            return;
+        }
+        metricFlushSize.update(flushSize);
+
+        Context metricFlushTimeContext = metricFlushTime.time();
+        try {
+            for (Map.Entry<KapuaId, Map<String, PendingUpdate>> scopeUpdates : updatesByScope.entrySet()) {
+                Map<String, PendingUpdate> batch = new HashMap<>();
+                for (PendingUpdate update : scopeUpdates.getValue().values()) {
+                    batch.put(update.clientId, update);
+                    if (batch.size() >= batchSize) {
+                        flushBatch(scopeUpdates.getKey(), batch);
+                        batch = new HashMap<>();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    flushBatch(scopeUpdates.getKey(), batch);
+                }
+            }
+        } finally {
+            metricFlushTimeContext.stop();
+        }
+    }
+
+    private void flushBatch(KapuaId scopeId, Map<String, PendingUpdate> batch) {
+        try {
+            write(scopeId, batch);
+            written(scopeId, batch.values());
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failed(scopeId, batch.values().iterator().next(), e);
+                return;
+            }
+            logger.warn("Cannot write {} device connection updates for scope {}, writing them one by one: {}", batch.size(), scopeId, e.getMessage());
+        }
+        // isolate the failing updates, so they don't prevent the others from being written
+        for (PendingUpdate update : batch.values()) {
+            try {
+                write(scopeId, Collections.singletonMap(update.clientId, update));
+                written(scopeId, Collections.singleton(update));
+            } catch (Exception e) {
+                failed(scopeId, update, e);
+            }
+        }
+    }
+
+    private void written(KapuaId scopeId, Collection<PendingUpdate> updates) {
+        // the updates queued in the meantime are kept for the next flush
+        for (PendingUpdate update : updates) {
+            pending.remove(new PendingKey(scopeId, update.clientId), update);
+        }
+    }
+
+    private void failed(KapuaId scopeId, PendingUpdate update, Exception e) {
+        metricUpdateError.inc();
+        update.attempts++;
+        if (update.attempts >= retryMax) {
+            if (pending.remove(new PendingKey(scopeId, update.clientId), update)) {
+                metricUpdateDropped.inc();
+            }
+            logger.error("Cannot write the device connection update of client id {} for scope {}. Update dropped after {} attempts", update.clientId, scopeId, update.attempts, e);
+        } else {
+            long backoff = Math.min(flushInterval << Math.min(update.attempts - 1, 20), retryIntervalMax);
+            update.retryOn = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            logger.warn("Cannot write the device connection update of client id {} for scope {}. Retrying in {} ms: {}", update.clientId, scopeId, backoff, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the updates of the scope in a single transaction
+     *
+     * @param scopeId
+     * @param updates
+     *            the updates by client id
+     * @throws KapuaException
+     */
+    void write(KapuaId scopeId, Map<String, PendingUpdate> updates) throws KapuaException {
+        write(entityManagerSession, scopeId, updates);
+    }
+
+    /**
+     * Write the device connection update synchronously, without a write-behind store (see {@link KapuaDeviceRegistrySettingKeys#DEVICE_CONNECTION_WRITE_BEHIND_ENABLED})
+     *
+     * @param entityManagerSession
+     * @param deviceConnection
+     * @throws KapuaException
+     */
+    static void write(EntityManagerSession entityManagerSession, DeviceConnection deviceConnection) throws KapuaException {
+        PendingUpdate update = new PendingUpdate(deviceConnection);
+        write(entityManagerSession, deviceConnection.getScopeId(), Collections.singletonMap(update.clientId, update));
+    }
+
+    private static void write(EntityManagerSession entityManagerSession, KapuaId scopeId, Map<String, PendingUpdate> updates) throws KapuaException {
+        KapuaSecurityUtils.doPrivileged(() -> entityManagerSession.onTransactedAction(em -> {
+            List<DeviceConnectionImpl> deviceConnections = DeviceConnectionDAO.findByClientIds(em, scopeId, new ArrayList<>(updates.keySet()));
+            for (DeviceConnectionImpl deviceConnection : deviceConnections) {
+                updates.get(deviceConnection.getClientId()).applyTo(deviceConnection);
+            }
+        }));
+    }
+
+    /**
+     * Pending update key (scope id and client id)
+     */
+    private static class PendingKey {
+
+        private final KapuaId scopeId;
+        private final String clientId;
+
+        private PendingKey(KapuaId scopeId, String clientId) {
+            this.scopeId = scopeId;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * scopeId.getId().hashCode() + clientId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PendingKey)) {
+                return false;
+            }
+            PendingKey other = (PendingKey) obj;
+            return scopeId.getId().equals(other.scopeId.getId()) && clientId.equals(other.clientId);
+        }
+    }
+
+    /**
+     * Snapshot of the device connection state to be written
+     */
+    static class PendingUpdate {
+
+        private final String clientId;
+        private final DeviceConnectionStatus status;
+        private final String clientIp;
+        private final String serverIp;
+        private final String protocol;
+        private final KapuaId userId;
+        private final long queuedOn = System.nanoTime();
+
+        // write attempts state (accessed by the flusher thread only)
+        private int attempts;
+        private long retryOn = queuedOn;
+
+        private PendingUpdate(DeviceConnection deviceConnection) {
+            clientId = deviceConnection.getClientId();
+            status = deviceConnection.getStatus();
+            clientIp = deviceConnection.getClientIp();
+            serverIp = deviceConnection.getServerIp();
+            protocol = deviceConnection.getProtocol();
+            userId = deviceConnection.getUserId();
+        }
+
+        String getClientId() {
+            return clientId;
+        }
+
+        DeviceConnectionStatus getStatus() {
+            return status;
+        }
+
+        void applyTo(DeviceConnection deviceConnection) {
+            deviceConnection.setStatus(status);
+            deviceConnection.setClientIp(clientIp);
+            deviceConnection.setServerIp(serverIp);
+            deviceConnection.setProtocol(protocol);
+            deviceConnection.setUserId(userId);
+        }
+    }
+}
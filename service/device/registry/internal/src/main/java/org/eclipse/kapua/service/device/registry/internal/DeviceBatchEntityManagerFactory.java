@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.jpa.AbstractEntityManagerFactory;
+import org.eclipse.kapua.commons.jpa.EntityManager;
+
+/**
+ * Entity manager factory of the device persistence unit for the batch writes (device connection write-behind and bulk device creation).<br>
+ * It is a further session of the device persistence unit, created on first use, with the JDBC batch writing enabled: the writes of the other
+ * operations of the device services are not batched (see {@link DeviceEntityManagerFactory}).
+ *
+ * @since 1.0
+ */
+public class DeviceBatchEntityManagerFactory extends AbstractEntityManagerFactory {
+
+    private static final String PERSISTENCE_UNIT_NAME = "kapua-device";
+    private static final String SESSION_NAME = "kapua-device-batch";
+    private static final String DATASOURCE_NAME = "kapua-dbpool-batch";
+    private static final Map<String, String> UNIQUE_CONSTRAINTS = new HashMap<>();
+
+    private static final int BATCH_WRITING_SIZE = 500;
+
+    /**
+     * Lazy holder: the session is created by the first batch write only
+     */
+    private static class InstanceHolder {
+
+        private static final DeviceBatchEntityManagerFactory INSTANCE = new DeviceBatchEntityManagerFactory();
+    }
+
+    /**
+     * Constructs a new entity manager factory and configure it to use a batch writing session of the device persistence unit.
+     */
+    private DeviceBatchEntityManagerFactory() {
+        super(PERSISTENCE_UNIT_NAME,
+                DATASOURCE_NAME,
+                UNIQUE_CONSTRAINTS,
+                getBatchWritingProperties());
+    }
+
+    private static Map<String, Object> getBatchWritingProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("eclipselink.session-name", SESSION_NAME);
+        properties.put("eclipselink.jdbc.batch-writing", "JDBC");
+        properties.put("eclipselink.jdbc.batch-writing.size", String.valueOf(BATCH_WRITING_SIZE));
+        return properties;
+    }
+
+    /**
+     * Return a new {@link EntityManager} instance
+     *
+     * @return
+     */
+    public static EntityManager getEntityManager()
+            throws KapuaException {
+        return instance().createEntityManager();
+    }
+
+    /**
+     * Return the {@link EntityManager} singleton instance
+     *
+     * @return
+     */
+    public static DeviceBatchEntityManagerFactory instance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+}
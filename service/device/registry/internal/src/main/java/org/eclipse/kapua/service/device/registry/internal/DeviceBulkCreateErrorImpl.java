@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.internal;
+
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+
+/**
+ * {@link DeviceBulkCreateError} implementation.
+ *
+ * @since 1.0.0
+ */
+public class DeviceBulkCreateErrorImpl implements DeviceBulkCreateError {
+
+    private static final long serialVersionUID = -6052392740962183576L;
+
+    private int index;
+    private String clientId;
+    private String message;
+
+    /**
+     * Constructor
+     */
+    public DeviceBulkCreateErrorImpl() {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param index
+     * @param clientId
+     * @param message
+     */
+    public DeviceBulkCreateErrorImpl(int index, String clientId, String message) {
+        this.index = index;
+        this.clientId = clientId;
+        this.message = message;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public String getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
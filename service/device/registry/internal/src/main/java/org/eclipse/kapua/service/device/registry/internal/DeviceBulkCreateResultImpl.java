@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
+
+/**
+ * {@link DeviceBulkCreateResult} implementation.
+ *
+ * @since 1.0.0
+ */
+public class DeviceBulkCreateResultImpl implements DeviceBulkCreateResult {
+
+    private static final long serialVersionUID = 5412970631085219904L;
+
+    private List<KapuaId> deviceIds;
+    private List<DeviceBulkCreateError> errors;
+
+    @Override
+    public List<KapuaId> getDeviceIds() {
+        if (deviceIds == null) {
+            deviceIds = new ArrayList<>();
+        }
+        return deviceIds;
+    }
+
+    @Override
+    public List<DeviceBulkCreateError> getErrors() {
+        if (errors == null) {
+            errors = new ArrayList<>();
+        }
+        return errors;
+    }
+}
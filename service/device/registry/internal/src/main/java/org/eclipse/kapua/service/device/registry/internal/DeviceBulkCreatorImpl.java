@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreator;
+import org.eclipse.kapua.service.device.registry.DeviceCreator;
+
+/**
+ * {@link DeviceBulkCreator} implementation.
+ *
+ * @since 1.0.0
+ */
+public class DeviceBulkCreatorImpl implements DeviceBulkCreator {
+
+    private static final long serialVersionUID = -1386525410813458226L;
+
+    private List<DeviceCreator> deviceCreators;
+
+    @Override
+    public List<DeviceCreator> getDeviceCreators() {
+        if (deviceCreators == null) {
+            deviceCreators = new ArrayList<>();
+        }
+        return deviceCreators;
+    }
+
+    @Override
+    public void setDeviceCreators(List<DeviceCreator> deviceCreators) {
+        this.deviceCreators = deviceCreators;
+    }
+}
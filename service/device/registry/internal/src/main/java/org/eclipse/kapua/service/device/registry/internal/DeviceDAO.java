@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.registry.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.kapua.KapuaEntityNotFoundException;
@@ -39,6 +41,25 @@ public class DeviceDAO extends ServiceDAO {
      * @return
      */
     public static Device create(EntityManager em, DeviceCreator deviceCreator) {
+        return ServiceDAO.create(em, newDevice(deviceCreator));
+    }
+
+    /**
+     * Creates the new devices, batching the inserts (see {@link ServiceDAO#createAll(EntityManager, List)})
+     *
+     * @param em
+     * @param deviceCreators
+     * @return
+     */
+    public static List<Device> createAll(EntityManager em, List<DeviceCreator> deviceCreators) {
+        List<Device> devices = new ArrayList<>(deviceCreators.size());
+        for (DeviceCreator deviceCreator : deviceCreators) {
+            devices.add(newDevice(deviceCreator));
+        }
+        return ServiceDAO.createAll(em, devices);
+    }
+
+    private static Device newDevice(DeviceCreator deviceCreator) {
         Device device = new DeviceImpl(deviceCreator.getScopeId());
 
         device.setGroupId(deviceCreator.getGroupId());
@@ -71,7 +92,7 @@ public class DeviceDAO extends ServiceDAO {
         device.setConnectionId(deviceCreator.getConnectionId());
         device.setLastEventId(deviceCreator.getLastEventId());
 
-        return ServiceDAO.create(em, device);
+        return device;
     }
 
     /**
@@ -98,6 +119,21 @@ public class DeviceDAO extends ServiceDAO {
         return em.find(DeviceImpl.class, deviceId);
     }
 
+    /**
+     * Returns the client identifiers, among the provided ones, of the devices already existing in the scope
+     *
+     * @param em
+     * @param scopeId
+     * @param clientIds
+     * @return
+     */
+    public static List<String> findClientIds(EntityManager em, KapuaId scopeId, Collection<String> clientIds) {
+        return em.createNamedQuery("Device.findClientIds", String.class)
+                .setParameter("scopeId", scopeId.getId())
+                .setParameter("clientIds", clientIds)
+                .getResultList();
+    }
+
     /**
      * Returns the device list matching the provided query
      *
@@ -14,6 +14,9 @@ package org.eclipse.kapua.service.device.registry.internal;
 import org.eclipse.kapua.locator.KapuaProvider;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreator;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceFactory;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
@@ -54,4 +57,19 @@ public class DeviceFactoryImpl implements DeviceFactory {
         return new DeviceCreatorImpl(scopeId);
     }
 
+    @Override
+    public DeviceBulkCreator newBulkCreator() {
+        return new DeviceBulkCreatorImpl();
+    }
+
+    @Override
+    public DeviceBulkCreateResult newBulkCreateResult() {
+        return new DeviceBulkCreateResultImpl();
+    }
+
+    @Override
+    public DeviceBulkCreateError newBulkCreateError() {
+        return new DeviceBulkCreateErrorImpl();
+    }
+
 }
@@ -28,6 +28,8 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
@@ -50,6 +52,9 @@ import org.eclipse.kapua.service.tag.Taggable;
  * @since 1.0.0
  */
 @Entity(name = "Device")
+@NamedQueries({
+        @NamedQuery(name = "Device.findClientIds", query = "SELECT d.clientId FROM Device d WHERE d.scopeId.eid = :scopeId AND d.clientId IN :clientIds")
+})
 @Table(name = "dvc_device")
 public class DeviceImpl extends AbstractKapuaUpdatableEntity implements Device, Taggable {
 
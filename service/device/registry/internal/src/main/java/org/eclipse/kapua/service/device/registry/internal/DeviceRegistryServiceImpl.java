@@ -11,17 +11,29 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.device.registry.internal;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.KapuaIllegalArgumentException;
+import org.eclipse.kapua.commons.cache.IdentityCache;
 import org.eclipse.kapua.commons.configuration.AbstractKapuaConfigurableResourceLimitedService;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
 import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
+import org.eclipse.kapua.commons.util.ArgumentValidator;
 import org.eclipse.kapua.locator.KapuaProvider;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.model.query.KapuaQuery;
 import org.eclipse.kapua.model.query.predicate.KapuaPredicate;
 import org.eclipse.kapua.service.authorization.domain.Domain;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceFactory;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
@@ -29,6 +41,10 @@ import org.eclipse.kapua.service.device.registry.DevicePredicates;
 import org.eclipse.kapua.service.device.registry.DeviceQuery;
 import org.eclipse.kapua.service.device.registry.DeviceRegistryService;
 import org.eclipse.kapua.service.device.registry.common.DeviceValidation;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettingKeys;
+import org.eclipse.kapua.service.device.registry.setting.KapuaDeviceRegistrySettings;
+
+import com.google.common.collect.Lists;
 
 /**
  * {@link DeviceRegistryService} implementation.
@@ -40,6 +56,10 @@ public class DeviceRegistryServiceImpl extends AbstractKapuaConfigurableResource
         implements DeviceRegistryService {
 
     private static final Domain DEVICE_DOMAIN = new DeviceDomain();
+
+    private final int bulkCreateBatchSize;
+    private final int bulkCreateSizeMax;
+
     // Constructors
 
     /**
@@ -48,7 +68,24 @@ public class DeviceRegistryServiceImpl extends AbstractKapuaConfigurableResource
      * @param deviceEntityManagerFactory
      */
     public DeviceRegistryServiceImpl(DeviceEntityManagerFactory deviceEntityManagerFactory) {
+        this(deviceEntityManagerFactory,
+                KapuaDeviceRegistrySettings.getInstance().getInt(KapuaDeviceRegistrySettingKeys.DEVICE_BULK_CREATE_BATCH_SIZE, 500),
+                KapuaDeviceRegistrySettings.getInstance().getInt(KapuaDeviceRegistrySettingKeys.DEVICE_BULK_CREATE_SIZE_MAX, 10000));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param deviceEntityManagerFactory
+     * @param bulkCreateBatchSize
+     *            maximum number of devices created in the same transaction by a bulk creation
+     * @param bulkCreateSizeMax
+     *            maximum number of device creators of a bulk creation
+     */
+    DeviceRegistryServiceImpl(DeviceEntityManagerFactory deviceEntityManagerFactory, int bulkCreateBatchSize, int bulkCreateSizeMax) {
         super(DeviceRegistryService.class.getName(), DEVICE_DOMAIN, deviceEntityManagerFactory, DeviceRegistryService.class, DeviceFactory.class);
+        this.bulkCreateBatchSize = bulkCreateBatchSize;
+        this.bulkCreateSizeMax = bulkCreateSizeMax;
     }
 
     /**
@@ -66,7 +103,140 @@ public class DeviceRegistryServiceImpl extends AbstractKapuaConfigurableResource
             // TODO Check exception type to be catched by the broker
             throw new KapuaIllegalArgumentException("scopeId", "max devices reached");
         }
-        return entityManagerSession.onTransactedInsert(entityManager -> DeviceDAO.create(entityManager, deviceCreator));
+        return doCreate(deviceCreator);
+    }
+
+    private Device doCreate(DeviceCreator deviceCreator) throws KapuaException {
+        Device device = entityManagerSession.onTransactedInsert(entityManager -> {
+            Device newDevice = DeviceDAO.create(entityManager, deviceCreator);
+            incrementUsedEntities(entityManager, newDevice.getScopeId());
+            return newDevice;
+        });
+        // drop the missing device entry, if any
+        IdentityCache.invalidateDevice(device.getScopeId(), device.getClientId());
+        return device;
+    }
+
+    @Override
+    public DeviceBulkCreateResult createAll(List<DeviceCreator> deviceCreators) throws KapuaException {
+        ArgumentValidator.notNull(deviceCreators, "deviceCreators");
+        ArgumentValidator.numRange(deviceCreators.size(), 0, bulkCreateSizeMax, "deviceCreators");
+
+        DeviceBulkCreateResult result = new DeviceBulkCreateResultImpl();
+
+        //
+        // Validate the creators, grouping them by scope. The group and permission checks are done once per scope and group
+        Map<String, List<Integer>> scopeIndexes = new LinkedHashMap<>();
+        Map<String, KapuaException> permissionChecks = new HashMap<>();
+        Set<String> clientIds = new HashSet<>();
+        for (int i = 0; i < deviceCreators.size(); i++) {
+            DeviceCreator deviceCreator = deviceCreators.get(i);
+            try {
+                DeviceValidation.validateCreateArguments(deviceCreator);
+
+                KapuaId scopeId = deviceCreator.getScopeId();
+                KapuaId groupId = deviceCreator.getGroupId();
+                String permissionKey = scopeId.toCompactId() + ':' + (groupId != null ? groupId.toCompactId() : "");
+                if (!permissionChecks.containsKey(permissionKey)) {
+                    KapuaException permissionCheckException = null;
+                    try {
+                        DeviceValidation.validateCreatePermission(scopeId, groupId);
+                    } catch (KapuaException e) {
+                        permissionCheckException = e;
+                    }
+                    permissionChecks.put(permissionKey, permissionCheckException);
+                }
+                if (permissionChecks.get(permissionKey) != null) {
+                    throw permissionChecks.get(permissionKey);
+                }
+            } catch (KapuaException e) {
+                addError(result, i, deviceCreator, e.getMessage());
+                continue;
+            }
+
+            if (!clientIds.add(deviceCreator.getScopeId().toCompactId() + ':' + deviceCreator.getClientId())) {
+                addError(result, i, deviceCreator, "duplicate clientId in the bulk creation");
+                continue;
+            }
+            scopeIndexes.computeIfAbsent(deviceCreator.getScopeId().toCompactId(), scopeId -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> indexes : scopeIndexes.values()) {
+            createAll(deviceCreators.get(indexes.get(0)).getScopeId(), indexes, deviceCreators, result);
+        }
+        return result;
+    }
+
+    private void createAll(KapuaId scopeId, List<Integer> indexes, List<DeviceCreator> deviceCreators, DeviceBulkCreateResult result) throws KapuaException {
+        //
+        // Skip the already existing devices
+        List<Integer> newIndexes = new ArrayList<>(indexes.size());
+        for (List<Integer> batchIndexes : Lists.partition(indexes, bulkCreateBatchSize)) {
+            List<String> batchClientIds = new ArrayList<>(batchIndexes.size());
+            for (int index : batchIndexes) {
+                batchClientIds.add(deviceCreators.get(index).getClientId());
+            }
+            List<String> batchExistingClientIds = entityManagerSession.onResult(entityManager -> DeviceDAO.findClientIds(entityManager, scopeId, batchClientIds));
+            Set<String> existingClientIds = new HashSet<>(batchExistingClientIds);
+            for (int index : batchIndexes) {
+                if (existingClientIds.contains(deviceCreators.get(index).getClientId())) {
+                    addError(result, index, deviceCreators.get(index), "device with the same clientId already exists");
+                } else {
+                    newIndexes.add(index);
+                }
+            }
+        }
+
+        //
+        // Check the limit once for all the devices of the scope
+        int allowedDevices = newIndexes.isEmpty() ? 0 : Math.max(allowedChildEntities(scopeId), 0);
+        if (newIndexes.size() > allowedDevices) {
+            for (int index : newIndexes.subList(allowedDevices, newIndexes.size())) {
+                addError(result, index, deviceCreators.get(index), "max devices reached");
+            }
+            newIndexes = newIndexes.subList(0, allowedDevices);
+        }
+
+        //
+        // Create the devices, a batch per transaction
+        for (List<Integer> batchIndexes : Lists.partition(newIndexes, bulkCreateBatchSize)) {
+            List<DeviceCreator> batchCreators = new ArrayList<>(batchIndexes.size());
+            for (int index : batchIndexes) {
+                batchCreators.add(deviceCreators.get(index));
+            }
+            List<Device> devices;
+            try {
+                // the inserts are sent as JDBC batches by the batch writing session of the device persistence unit
+                devices = getBatchEntityManagerSession().onTransactedResult(entityManager -> {
+                    List<Device> newDevices = DeviceDAO.createAll(entityManager, batchCreators);
+                    incrementUsedEntities(entityManager, scopeId, newDevices.size());
+                    return newDevices;
+                });
+            } catch (KapuaException e) {
+                // the batch is rolled back: create its devices one by one to report the failing ones only
+                for (int index : batchIndexes) {
+                    try {
+                        result.getDeviceIds().add(doCreate(deviceCreators.get(index)).getId());
+                    } catch (KapuaException ex) {
+                        addError(result, index, deviceCreators.get(index), ex.getMessage());
+                    }
+                }
+                continue;
+            }
+            for (Device device : devices) {
+                // drop the missing device entries, if any
+                IdentityCache.invalidateDevice(device.getScopeId(), device.getClientId());
+                result.getDeviceIds().add(device.getId());
+            }
+        }
+    }
+
+    private static EntityManagerSession getBatchEntityManagerSession() {
+        return new EntityManagerSession(DeviceBatchEntityManagerFactory.instance());
+    }
+
+    private static void addError(DeviceBulkCreateResult result, int index, DeviceCreator deviceCreator, String message) {
+        result.getErrors().add(new DeviceBulkCreateErrorImpl(index, deviceCreator != null ? deviceCreator.getClientId() : null, message));
     }
 
     @Override
@@ -133,7 +303,15 @@ public class DeviceRegistryServiceImpl extends AbstractKapuaConfigurableResource
     @Override
     public void delete(KapuaId scopeId, KapuaId deviceId) throws KapuaException {
         DeviceValidation.validateDeletePreconditions(scopeId, deviceId);
-        entityManagerSession.onTransactedAction(entityManager -> DeviceDAO.delete(entityManager, deviceId));
+        Device device = entityManagerSession.onTransactedResult(entityManager -> {
+            Device deletedDevice = DeviceDAO.find(entityManager, deviceId);
+            DeviceDAO.delete(entityManager, deviceId);
+            decrementUsedEntities(entityManager, deletedDevice.getScopeId());
+            return deletedDevice;
+        });
+        if (device != null) {
+            IdentityCache.invalidateDevice(device.getScopeId(), device.getClientId());
+        }
     }
 
     @Override
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.setting;
+
+import org.eclipse.kapua.commons.setting.SettingKey;
+
+/**
+ * Device registry setting keys.
+ */
+public enum KapuaDeviceRegistrySettingKeys implements SettingKey {
+    /**
+     * Enable the device connection write-behind (enabled by the broker, which writes the connection status transitions). If disabled the deferred updates are
+     * written synchronously
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_ENABLED("device.connection.write.behind.enabled"),
+    /**
+     * Device connection write-behind flush interval (milliseconds)
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_FLUSH_INTERVAL("device.connection.write.behind.flush.interval"),
+    /**
+     * Maximum number of device connections with a pending write-behind update. Further updates are written synchronously
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_PENDING_MAX("device.connection.write.behind.pending.max"),
+    /**
+     * Maximum number of device connections written in the same transaction (JDBC batch, see DeviceBatchEntityManagerFactory)
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_BATCH_SIZE("device.connection.write.behind.batch.size"),
+    /**
+     * Maximum number of write attempts of a device connection update. A failed update is retried by the next flushes (with an exponential backoff) and dropped once
+     * the attempts are exhausted
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_RETRY_MAX("device.connection.write.behind.retry.max"),
+    /**
+     * Maximum backoff (milliseconds) between two write attempts of a failed device connection update
+     */
+    DEVICE_CONNECTION_WRITE_BEHIND_RETRY_INTERVAL_MAX("device.connection.write.behind.retry.interval.max"),
+    /**
+     * Maximum number of devices created in the same transaction (JDBC batch, see DeviceBatchEntityManagerFactory) by a bulk creation
+     */
+    DEVICE_BULK_CREATE_BATCH_SIZE("device.bulk.create.batch.size"),
+    /**
+     * Maximum number of device creators of a bulk creation (larger requests are rejected, they must be split by the caller)
+     */
+    DEVICE_BULK_CREATE_SIZE_MAX("device.bulk.create.size.max");
+
+    private String key;
+
+    private KapuaDeviceRegistrySettingKeys(String key) {
+        this.key = key;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.device.registry.connection.internal;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.device.registry.connection.DeviceConnection;
+import org.eclipse.kapua.service.device.registry.connection.DeviceConnectionStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceConnectionWriteBehindStoreTest extends Assert {
+
+    private static final KapuaId SCOPE_ID = new KapuaEid(BigInteger.TEN);
+
+    @Test
+    public void testFlushCoalescesUpdates() throws Exception {
+        RecordingStore store = new RecordingStore(100, 10);
+        try {
+            store.update(newDeviceConnection("client-1", DeviceConnectionStatus.CONNECTED));
+            store.update(newDeviceConnection("client-1", DeviceConnectionStatus.DISCONNECTED));
+            store.update(newDeviceConnection("client-2", DeviceConnectionStatus.CONNECTED));
+            waitForPendingCount(store, 0);
+        } finally {
+            store.stop();
+        }
+
+        // the transitions of the same client id are written once (the last one wins)
+        assertEquals(2, store.written.size());
+        assertEquals(DeviceConnectionStatus.DISCONNECTED, store.getWrittenStatus("client-1"));
+        assertEquals(DeviceConnectionStatus.CONNECTED, store.getWrittenStatus("client-2"));
+    }
+
+    @Test
+    public void testOverlayUntilWritten() throws Exception {
+        // the flush interval is longer than the test, so the update is written by the stop only
+        RecordingStore store = new RecordingStore(3600000, 10);
+        store.update(newDeviceConnection("client-1", DeviceConnectionStatus.DISCONNECTED));
+
+        DeviceConnection deviceConnection = newDeviceConnection("client-1", DeviceConnectionStatus.CONNECTED);
+        assertEquals(DeviceConnectionStatus.DISCONNECTED, store.overlay(deviceConnection).getStatus());
+        assertTrue(store.written.isEmpty());
+
+        store.stop();
+        assertEquals(DeviceConnectionStatus.DISCONNECTED, store.getWrittenStatus("client-1"));
+        deviceConnection = newDeviceConnection("client-1", DeviceConnectionStatus.CONNECTED);
+        assertEquals(DeviceConnectionStatus.CONNECTED, store.overlay(deviceConnection).getStatus());
+
+        // once stopped the updates are written synchronously
+        store.update(newDeviceConnection("client-2", DeviceConnectionStatus.CONNECTED));
+        assertEquals(DeviceConnectionStatus.CONNECTED, store.getWrittenStatus("client-2"));
+        assertEquals(0, store.getPendingCount());
+    }
+
+    @Test
+    public void testFailedUpdatesAreRetried() throws Exception {
+        RecordingStore store = new RecordingStore(50, 10);
+        store.failingClientId = "client-1";
+        store.failures.set(3);
+        try {
+            store.update(newDeviceConnection("client-1", DeviceConnectionStatus.DISCONNECTED));
+            store.update(newDeviceConnection("client-2", DeviceConnectionStatus.DISCONNECTED));
+            waitForPendingCount(store, 0);
+        } finally {
+            store.stop();
+        }
+
+        // the failing update doesn't prevent the other one from being written and it is written once the failures end
+        assertEquals(DeviceConnectionStatus.DISCONNECTED, store.getWrittenStatus("client-1"));
+        assertEquals(DeviceConnectionStatus.DISCONNECTED, store.getWrittenStatus("client-2"));
+        assertEquals(2, store.written.size());
+    }
+
+    @Test
+    public void testFailedUpdatesAreDroppedOnceAttemptsExhausted() throws Exception {
+        RecordingStore store = new RecordingStore(50, 3);
+        store.failingClientId = "client-1";
+        store.failures.set(Integer.MAX_VALUE);
+        try {
+            store.update(newDeviceConnection("client-1", DeviceConnectionStatus.DISCONNECTED));
+            waitForPendingCount(store, 0);
+        } finally {
+            store.stop();
+        }
+
+        assertTrue(store.written.isEmpty());
+        assertEquals(Integer.MAX_VALUE - 3, store.failures.get());
+    }
+
+    private static void waitForPendingCount(DeviceConnectionWriteBehindStore store, int pendingCount) throws InterruptedException {
+        for (int i = 0; i < 100 && store.getPendingCount() != pendingCount; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(pendingCount, store.getPendingCount());
+    }
+
+    private static DeviceConnection newDeviceConnection(String clientId, DeviceConnectionStatus status) {
+        DeviceConnection deviceConnection = new DeviceConnectionImpl(SCOPE_ID);
+        deviceConnection.setClientId(clientId);
+        deviceConnection.setStatus(status);
+        return deviceConnection;
+    }
+
+    /**
+     * Write-behind store recording the written updates (instead of writing them to the database)
+     */
+    private static class RecordingStore extends DeviceConnectionWriteBehindStore {
+
+        private final List<DeviceConnectionWriteBehindStore.PendingUpdate> written = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile String failingClientId;
+
+        private RecordingStore(long flushInterval, int retryMax) {
+            super(null, flushInterval, 1000, 100, retryMax, 100);
+        }
+
+        @Override
+        void write(KapuaId scopeId, Map<String, PendingUpdate> updates) throws KapuaException {
+            assertEquals(SCOPE_ID, scopeId);
+            if (updates.containsKey(failingClientId) && failures.getAndDecrement() > 0) {
+                throw KapuaException.internalError("Write failure");
+            }
+            written.addAll(updates.values());
+        }
+
+        private DeviceConnectionStatus getWrittenStatus(String clientId) {
+            for (PendingUpdate update : written) {
+                if (update.getClientId().equals(clientId)) {
+                    return update.getStatus();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import static org.mockito.Mockito.mock;
 
 import java.math.BigInteger;
 import java.security.acl.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +38,8 @@ import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.authorization.AuthorizationService;
 import org.eclipse.kapua.service.authorization.permission.PermissionFactory;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceFactory;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
@@ -108,6 +112,10 @@ public class DeviceRegistryServiceTestSteps extends AbstractKapuaSteps {
     // A list result for device query operations
     DeviceListResult deviceList;
 
+    // The device creators and the result of a bulk creation
+    List<DeviceCreator> bulkDeviceCreators = new ArrayList<>();
+    DeviceBulkCreateResult bulkCreateResult;
+
     // Item count
     long count;
 
@@ -248,6 +256,35 @@ public class DeviceRegistryServiceTestSteps extends AbstractKapuaSteps {
         deviceId = device.getId();
     }
 
+    @Given("^A device registry service creating in bulk at most (\\d+) devices in batches of (\\d+)$")
+    public void prepareBulkCreateDeviceRegistryService(int sizeMax, int batchSize) {
+        deviceRegistryService = new DeviceRegistryServiceImpl(DeviceEntityManagerFactory.instance(), batchSize, sizeMax);
+        ((MockedLocator) locator).setMockedService(org.eclipse.kapua.service.device.registry.DeviceRegistryService.class, deviceRegistryService);
+    }
+
+    @Given("^The bulk device creators \"(.*)\" in scope (\\d+)$")
+    public void prepareBulkDeviceCreators(String clientIds, int scope) {
+        for (String clientId : clientIds.split(",")) {
+            bulkDeviceCreators.add(prepareRegularDeviceCreator(new KapuaEid(BigInteger.valueOf(scope)), clientId));
+        }
+    }
+
+    @Given("^A bulk device creator with a client ID longer than the database column$")
+    public void prepareTooLongBulkDeviceCreator() {
+        // the client id length is checked by the database only, so the creator passes the validation and fails the insert
+        bulkDeviceCreators.add(prepareRegularDeviceCreator(rootScopeId, String.join("", Collections.nCopies(300, "x"))));
+    }
+
+    @When("^I create the devices in bulk$")
+    public void createDevicesInBulk() {
+        try {
+            exceptionCaught = false;
+            bulkCreateResult = deviceRegistryService.createAll(bulkDeviceCreators);
+        } catch (KapuaException ex) {
+            exceptionCaught = true;
+        }
+    }
+
     @When("^I configure$")
     public void setConfigurationValue(List<TestConfig> testConfigs)
             throws KapuaException {
@@ -545,6 +582,41 @@ public class DeviceRegistryServiceTestSteps extends AbstractKapuaSteps {
         assertNull(device);
     }
 
+    @Then("^(\\d+) devices? (?:are|is) created in bulk in scope (\\d+)$")
+    public void checkBulkCreatedDevices(int number, int scope)
+            throws KapuaException {
+        KapuaId scopeId = new KapuaEid(BigInteger.valueOf(scope));
+        assertEquals(number, bulkCreateResult.getDeviceIds().size());
+        for (KapuaId createdDeviceId : bulkCreateResult.getDeviceIds()) {
+            Device createdDevice = deviceRegistryService.find(scopeId, createdDeviceId);
+            assertNotNull(createdDevice);
+            assertEquals(scopeId, createdDevice.getScopeId());
+        }
+    }
+
+    @Then("^There (?:are|is) (\\d+) bulk creation errors?$")
+    public void checkNumberOfBulkCreateErrors(int number) {
+        assertEquals(number, bulkCreateResult.getErrors().size());
+    }
+
+    @Then("^The bulk device creator (\\d+) failed$")
+    public void checkBulkCreateError(int index) {
+        assertNotNull(findBulkCreateError(index));
+    }
+
+    @Then("^The bulk device creator (\\d+) failed with \"(.*)\"$")
+    public void checkBulkCreateErrorMessage(int index, String message) {
+        DeviceBulkCreateError error = findBulkCreateError(index);
+        assertNotNull(error);
+        assertEquals(bulkDeviceCreators.get(index).getClientId(), error.getClientId());
+        assertEquals(message, error.getMessage());
+    }
+
+    @Then("^No exception is caught$")
+    public void checkThatNoExceptionWasCaught() {
+        assertFalse(exceptionCaught);
+    }
+
     @Then("^An exception is caught$")
     public void checkThatAnExceptionWasCaught() {
         assertTrue(exceptionCaught);
@@ -572,6 +644,16 @@ public class DeviceRegistryServiceTestSteps extends AbstractKapuaSteps {
     // * Private Helpers *
     // *******************
 
+    // Find the bulk creation error of the device creator at the index
+    private DeviceBulkCreateError findBulkCreateError(int index) {
+        for (DeviceBulkCreateError error : bulkCreateResult.getErrors()) {
+            if (error.getIndex() == index) {
+                return error;
+            }
+        }
+        return null;
+    }
+
     // Create a device creator object. The creator is pre-filled with default data.
     private DeviceCreator prepareRegularDeviceCreator(KapuaId accountId, String client) {
         // DeviceCreator tmpDeviceCreator = deviceFactory.newCreator(accountId, client);
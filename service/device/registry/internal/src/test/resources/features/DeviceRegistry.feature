@@ -172,4 +172,72 @@ Scenario: Device factory sanity checks
 	The Account factory must instantiate and return valid items. For this test it is enough
 	that the items returned are not null.
 	
-	Then All device factory functions must return non null values
\ No newline at end of file
+	Then All device factory functions must return non null values
+Scenario: Create devices in bulk
+	The devices of a bulk creation are created in batches. All the batches must be
+	created and only the ids of the devices are returned.
+
+	Given A device registry service creating in bulk at most 100 devices in batches of 2
+	And The bulk device creators "bulk_1,bulk_2,bulk_3,bulk_4,bulk_5" in scope 1
+	When I create the devices in bulk
+	Then No exception is caught
+	And 5 devices are created in bulk in scope 1
+	And There are 0 bulk creation errors
+	When I count the devices in scope 1
+	Then There are 5 devices
+
+Scenario: Bulk creation of duplicate and existing client IDs
+	A client ID repeated in the bulk creation or already registered is reported as an
+	error, without aborting the creation of the other devices.
+
+	Given A device registry service creating in bulk at most 100 devices in batches of 2
+	And A device named "bulk_existing"
+	And The bulk device creators "bulk_1,bulk_existing,bulk_2,bulk_1" in scope 1
+	When I create the devices in bulk
+	Then 2 devices are created in bulk in scope 1
+	And There are 2 bulk creation errors
+	And The bulk device creator 1 failed with "device with the same clientId already exists"
+	And The bulk device creator 3 failed with "duplicate clientId in the bulk creation"
+	When I count the devices in scope 1
+	Then There are 3 devices
+
+Scenario: Bulk creation of a failing device
+	A batch failing in the database is created again one device at a time, so only the
+	failing device is reported.
+
+	Given A device registry service creating in bulk at most 100 devices in batches of 10
+	And The bulk device creators "bulk_1,bulk_2" in scope 1
+	And A bulk device creator with a client ID longer than the database column
+	And The bulk device creators "bulk_3" in scope 1
+	When I create the devices in bulk
+	Then 3 devices are created in bulk in scope 1
+	And There is 1 bulk creation error
+	And The bulk device creator 2 failed
+	When I count the devices in scope 1
+	Then There are 3 devices
+
+Scenario: Bulk creation exceeding the devices limit
+	The devices exceeding the limit of the scope are reported as errors, the other
+	ones are created.
+
+	Given A device registry service creating in bulk at most 100 devices in batches of 2
+	When I configure
+		| type    | name                       | value | scopeId | parentScopeId |
+		| boolean | infiniteChildEntities      | false | 4242    |       1       |
+		| integer | maxNumberChildEntities     | 2     | 4242    |       1       |
+	Then No exception is caught
+	Given The bulk device creators "bulk_1,bulk_2,bulk_3" in scope 4242
+	When I create the devices in bulk
+	Then 2 devices are created in bulk in scope 4242
+	And There is 1 bulk creation error
+	And The bulk device creator 2 failed with "max devices reached"
+
+Scenario: Bulk creation exceeding the request size
+	A bulk creation with more device creators than allowed is rejected.
+
+	Given A device registry service creating in bulk at most 3 devices in batches of 2
+	And The bulk device creators "bulk_1,bulk_2,bulk_3,bulk_4" in scope 1
+	When I create the devices in bulk
+	Then An exception is caught
+	When I count the devices in scope 1
+	Then There are 0 devices
@@ -11,24 +11,54 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.authentication.shiro.realm;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.eclipse.kapua.commons.cache.LocalCache;
 import org.eclipse.kapua.service.authentication.ApiKeyCredentials;
 import org.eclipse.kapua.service.authentication.credential.Credential;
 import org.eclipse.kapua.service.authentication.credential.CredentialType;
+import org.eclipse.kapua.service.authentication.shiro.setting.KapuaAuthenticationSetting;
+import org.eclipse.kapua.service.authentication.shiro.setting.KapuaAuthenticationSettingKeys;
 import org.eclipse.kapua.service.user.User;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 
 /**
- * {@link ApiKeyCredentials} credential matcher implementation
+ * {@link ApiKeyCredentials} credential matcher implementation<br>
+ * <br>
+ * The successfully verified passwords are cached (if enabled by {@link KapuaAuthenticationSettingKeys#AUTHENTICATION_CREDENTIAL_USERPASS_CACHE_ENABLE}) for
+ * {@link KapuaAuthenticationSettingKeys#AUTHENTICATION_CREDENTIAL_USERPASS_CACHE_CACHE_TTL}, so the BCrypt check is skipped for the logins repeated within that window
+ * (i.e. devices reconnecting after a broker restart).<br>
+ * The cache is keyed by the stored BCrypt hash, so a password change invalidates the entry, and it holds only a salted SHA-256 digest of the password (the salt is
+ * random and never leaves the JVM).
  * 
  * @since 1.0
  * 
  */
 public class UserPassCredentialsMatcher implements CredentialsMatcher {
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final boolean CACHE_ENABLED;
+    private static final LocalCache<String, byte[]> VERIFIED_CACHE;
+    private static final byte[] SALT = new byte[32];
+
+    static {
+        KapuaAuthenticationSetting setting = KapuaAuthenticationSetting.getInstance();
+        CACHE_ENABLED = setting.getBoolean(KapuaAuthenticationSettingKeys.AUTHENTICATION_CREDENTIAL_USERPASS_CACHE_ENABLE, false);
+        VERIFIED_CACHE = new LocalCache<>(setting.getInt(KapuaAuthenticationSettingKeys.AUTHENTICATION_CREDENTIAL_USERPASS_CACHE_SIZE_MAXIMUM, 100000),
+                (int) TimeUnit.MILLISECONDS.toSeconds(setting.getLong(KapuaAuthenticationSettingKeys.AUTHENTICATION_CREDENTIAL_USERPASS_CACHE_CACHE_TTL, 300000L)),
+                null);
+        new SecureRandom().nextBytes(SALT);
+    }
+
     @Override
     public boolean doCredentialsMatch(AuthenticationToken authenticationToken, AuthenticationInfo authenticationInfo) {
 
@@ -47,13 +77,40 @@ public class UserPassCredentialsMatcher implements CredentialsMatcher {
         //
         // Match token with info
         boolean credentialMatch = false;
-        if (tokenUsername.equals(infoUser.getName()) && CredentialType.PASSWORD.equals(infoCredential.getCredentialType()) && BCrypt.checkpw(tokenPassword, infoCredential.getCredentialKey())) {
-            credentialMatch = true;
-
-            // FIXME: if true cache token password for authentication performance improvement
+        if (tokenUsername.equals(infoUser.getName()) && CredentialType.PASSWORD.equals(infoCredential.getCredentialType())) {
+            String credentialKey = infoCredential.getCredentialKey();
+            byte[] passwordDigest = CACHE_ENABLED ? digest(tokenPassword) : null;
+            if (passwordDigest != null) {
+                byte[] verifiedDigest = VERIFIED_CACHE.get(credentialKey);
+                if (verifiedDigest != null && MessageDigest.isEqual(verifiedDigest, passwordDigest)) {
+                    return true;
+                }
+            }
+            if (BCrypt.checkpw(tokenPassword, credentialKey)) {
+                credentialMatch = true;
+                if (passwordDigest != null) {
+                    VERIFIED_CACHE.put(credentialKey, passwordDigest);
+                }
+            }
         }
 
         return credentialMatch;
     }
 
+    /**
+     * Return the salted digest of the password or null if the digest algorithm is not available (the cache is bypassed)
+     * 
+     * @param password
+     * @return
+     */
+    private static byte[] digest(String password) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            messageDigest.update(SALT);
+            return messageDigest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
 }
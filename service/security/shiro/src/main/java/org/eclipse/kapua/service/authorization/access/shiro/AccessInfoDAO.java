@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.kapua.service.authorization.access.shiro;
 
+import java.util.List;
+
 import org.eclipse.kapua.KapuaEntityNotFoundException;
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.commons.jpa.EntityManager;
@@ -20,6 +22,11 @@ import org.eclipse.kapua.model.query.KapuaQuery;
 import org.eclipse.kapua.service.authorization.access.AccessInfo;
 import org.eclipse.kapua.service.authorization.access.AccessInfoCreator;
 import org.eclipse.kapua.service.authorization.access.AccessInfoListResult;
+import org.eclipse.kapua.service.authorization.access.AccessPermission;
+import org.eclipse.kapua.service.authorization.role.Role;
+import org.eclipse.kapua.service.authorization.role.RolePermission;
+import org.eclipse.kapua.service.authorization.role.shiro.RoleImpl;
+import org.eclipse.kapua.service.authorization.role.shiro.RolePermissionImpl;
 
 /**
  * {@link AccessInfo} DAO
@@ -99,4 +106,45 @@ public class AccessInfoDAO extends ServiceDAO {
         return ServiceDAO.count(em, AccessInfo.class, AccessInfoImpl.class, accessInfoQuery);
     }
 
+    /**
+     * Return the {@link AccessPermission}s of all the {@link AccessInfo}s of the given user
+     * 
+     * @param em
+     * @param userId
+     * @return
+     * @since 1.0.0
+     */
+    public static List<AccessPermissionImpl> findAccessPermissionsByUserId(EntityManager em, KapuaId userId) {
+        return em.createNamedQuery("AccessInfo.findAccessPermissionsByUserId", AccessPermissionImpl.class)
+                .setParameter("userId", userId.getId())
+                .getResultList();
+    }
+
+    /**
+     * Return the {@link Role}s assigned to all the {@link AccessInfo}s of the given user
+     * 
+     * @param em
+     * @param userId
+     * @return
+     * @since 1.0.0
+     */
+    public static List<RoleImpl> findRolesByUserId(EntityManager em, KapuaId userId) {
+        return em.createNamedQuery("AccessInfo.findRolesByUserId", RoleImpl.class)
+                .setParameter("userId", userId.getId())
+                .getResultList();
+    }
+
+    /**
+     * Return the {@link RolePermission}s of the {@link Role}s assigned to all the {@link AccessInfo}s of the given user
+     * 
+     * @param em
+     * @param userId
+     * @return
+     * @since 1.0.0
+     */
+    public static List<RolePermissionImpl> findRolePermissionsByUserId(EntityManager em, KapuaId userId) {
+        return em.createNamedQuery("AccessInfo.findRolePermissionsByUserId", RolePermissionImpl.class)
+                .setParameter("userId", userId.getId())
+                .getResultList();
+    }
 }
@@ -16,6 +16,8 @@ import javax.persistence.AttributeOverrides;
 import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 import org.eclipse.kapua.KapuaException;
@@ -31,6 +33,11 @@ import org.eclipse.kapua.service.authorization.access.AccessInfo;
  */
 @Entity(name = "AccessInfo")
 @Table(name = "athz_access_info")
+@NamedQueries({
+        @NamedQuery(name = "AccessInfo.findAccessPermissionsByUserId", query = "SELECT ap FROM AccessPermission ap, AccessInfo ai WHERE ai.userId.eid = :userId AND ap.accessInfoId.eid = ai.id.eid"),
+        @NamedQuery(name = "AccessInfo.findRolesByUserId", query = "SELECT r FROM Role r, AccessRole ar, AccessInfo ai WHERE ai.userId.eid = :userId AND ar.accessInfoId.eid = ai.id.eid AND r.id.eid = ar.roleId.eid"),
+        @NamedQuery(name = "AccessInfo.findRolePermissionsByUserId", query = "SELECT rp FROM RolePermission rp, AccessRole ar, AccessInfo ai WHERE ai.userId.eid = :userId AND ar.accessInfoId.eid = ai.id.eid AND rp.roleId.eid = ar.roleId.eid")
+})
 public class AccessInfoImpl extends AbstractKapuaUpdatableEntity implements AccessInfo {
 
     private static final long serialVersionUID = -3760818776351242930L;
@@ -43,6 +43,7 @@ import org.eclipse.kapua.service.authorization.role.RoleService;
 import org.eclipse.kapua.service.authorization.shiro.AuthorizationEntityManagerFactory;
 import org.eclipse.kapua.service.authorization.shiro.KapuaAuthorizationErrorCodes;
 import org.eclipse.kapua.service.authorization.shiro.KapuaAuthorizationException;
+import org.eclipse.kapua.service.authorization.shiro.PermissionCache;
 
 /**
  * {@link AccessInfoService} implementation based on JPA.
@@ -99,7 +100,7 @@ public class AccessInfoServiceImpl extends AbstractKapuaService implements Acces
             }
         }
 
-        return entityManagerSession.onTransactedInsert(em -> {
+        AccessInfo result = entityManagerSession.onTransactedInsert(em -> {
             AccessInfo accessInfo = AccessInfoDAO.create(em, accessInfoCreator);
 
             if (!accessInfoCreator.getPermissions().isEmpty()) {
@@ -128,6 +129,8 @@ public class AccessInfoServiceImpl extends AbstractKapuaService implements Acces
 
             return accessInfo;
         });
+        PermissionCache.invalidate(result.getUserId());
+        return result;
     }
 
     @Override
@@ -208,12 +211,15 @@ public class AccessInfoServiceImpl extends AbstractKapuaService implements Acces
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(ACCESS_INFO_DOMAIN, Actions.write, scopeId));
 
-        entityManagerSession.onTransactedAction(em -> {
-            if (AccessInfoDAO.find(em, accessInfoId) == null) {
+        AccessInfo accessInfo = entityManagerSession.onTransactedResult(em -> {
+            AccessInfo deletedAccessInfo = AccessInfoDAO.find(em, accessInfoId);
+            if (deletedAccessInfo == null) {
                 throw new KapuaEntityNotFoundException(AccessPermission.TYPE, accessInfoId);
             }
 
             AccessInfoDAO.delete(em, accessInfoId);
+            return deletedAccessInfo;
         });
+        PermissionCache.invalidate(accessInfo.getUserId());
     }
 }
@@ -32,6 +32,7 @@ import org.eclipse.kapua.service.authorization.permission.Actions;
 import org.eclipse.kapua.service.authorization.permission.Permission;
 import org.eclipse.kapua.service.authorization.permission.PermissionFactory;
 import org.eclipse.kapua.service.authorization.shiro.AuthorizationEntityManagerFactory;
+import org.eclipse.kapua.service.authorization.shiro.PermissionCache;
 
 /**
  * {@link AccessPermission} service implementation.
@@ -69,7 +70,7 @@ public class AccessPermissionServiceImpl extends AbstractKapuaService implements
             authorizationService.checkPermission(permission);
         }
 
-        return entityManagerSession.onTransactedInsert(em -> {
+        AccessPermission result = entityManagerSession.onTransactedInsert(em -> {
             //
             // Check that accessInfo exists
             AccessInfo accessInfo = AccessInfoDAO.find(em, accessPermissionCreator.getAccessInfoId());
@@ -80,6 +81,8 @@ public class AccessPermissionServiceImpl extends AbstractKapuaService implements
 
             return AccessPermissionDAO.create(em, accessPermissionCreator);
         });
+        invalidatePermissionCache(result.getAccessInfoId());
+        return result;
     }
 
     @Override
@@ -93,13 +96,16 @@ public class AccessPermissionServiceImpl extends AbstractKapuaService implements
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(ACCESS_INFO_DOMAIN, Actions.delete, scopeId));
 
-        entityManagerSession.onTransactedAction(em -> {
-            if (AccessPermissionDAO.find(em, accessPermissionId) == null) {
+        AccessPermission deletedAccessPermission = entityManagerSession.onTransactedResult(em -> {
+            AccessPermission accessPermission = AccessPermissionDAO.find(em, accessPermissionId);
+            if (accessPermission == null) {
                 throw new KapuaEntityNotFoundException(AccessPermission.TYPE, accessPermissionId);
             }
 
             AccessPermissionDAO.delete(em, accessPermissionId);
+            return accessPermission;
         });
+        invalidatePermissionCache(deletedAccessPermission.getAccessInfoId());
     }
 
     @Override
@@ -163,4 +169,19 @@ public class AccessPermissionServiceImpl extends AbstractKapuaService implements
 
         return entityManagerSession.onResult(em -> AccessPermissionDAO.count(em, query));
     }
+
+    /**
+     * Invalidate the cached permissions of the user owning the access info (or of all the users if the access info no longer exists)
+     *
+     * @param accessInfoId
+     * @throws KapuaException
+     */
+    private void invalidatePermissionCache(KapuaId accessInfoId) throws KapuaException {
+        AccessInfo accessInfo = entityManagerSession.onResult(em -> AccessInfoDAO.find(em, accessInfoId));
+        if (accessInfo != null) {
+            PermissionCache.invalidate(accessInfo.getUserId());
+        } else {
+            PermissionCache.invalidate();
+        }
+    }
 }
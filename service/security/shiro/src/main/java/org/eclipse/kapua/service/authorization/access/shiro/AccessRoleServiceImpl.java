@@ -35,6 +35,7 @@ import org.eclipse.kapua.service.authorization.role.shiro.RoleDAO;
 import org.eclipse.kapua.service.authorization.shiro.AuthorizationEntityManagerFactory;
 import org.eclipse.kapua.service.authorization.shiro.KapuaAuthorizationErrorCodes;
 import org.eclipse.kapua.service.authorization.shiro.KapuaAuthorizationException;
+import org.eclipse.kapua.service.authorization.shiro.PermissionCache;
 
 /**
  * {@link AccessRole} service implementation.
@@ -67,7 +68,7 @@ public class AccessRoleServiceImpl extends AbstractKapuaService implements Acces
 
         //
         // If role is not in the scope of the access info or does not exists throw an exception.
-        return entityManagerSession.onTransactedInsert(em -> {
+        AccessRole result = entityManagerSession.onTransactedInsert(em -> {
 
             //
             // Check that accessInfo exists
@@ -91,6 +92,8 @@ public class AccessRoleServiceImpl extends AbstractKapuaService implements Acces
 
             return AccessRoleDAO.create(em, accessRoleCreator);
         });
+        invalidatePermissionCache(result.getAccessInfoId());
+        return result;
     }
 
     @Override
@@ -104,13 +107,16 @@ public class AccessRoleServiceImpl extends AbstractKapuaService implements Acces
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(ACCESS_INFO_DOMAIN, Actions.delete, scopeId));
 
-        entityManagerSession.onTransactedAction(em -> {
-            if (AccessRoleDAO.find(em, accessRoleId) == null) {
+        AccessRole deletedAccessRole = entityManagerSession.onTransactedResult(em -> {
+            AccessRole accessRole = AccessRoleDAO.find(em, accessRoleId);
+            if (accessRole == null) {
                 throw new KapuaEntityNotFoundException(AccessRole.TYPE, accessRoleId);
             }
 
             AccessRoleDAO.delete(em, accessRoleId);
+            return accessRole;
         });
+        invalidatePermissionCache(deletedAccessRole.getAccessInfoId());
     }
 
     @Override
@@ -174,4 +180,19 @@ public class AccessRoleServiceImpl extends AbstractKapuaService implements Acces
 
         return entityManagerSession.onResult(em -> AccessRoleDAO.count(em, query));
     }
+
+    /**
+     * Invalidate the cached permissions of the user owning the access info (or of all the users if the access info no longer exists)
+     *
+     * @param accessInfoId
+     * @throws KapuaException
+     */
+    private void invalidatePermissionCache(KapuaId accessInfoId) throws KapuaException {
+        AccessInfo accessInfo = entityManagerSession.onResult(em -> AccessInfoDAO.find(em, accessInfoId));
+        if (accessInfo != null) {
+            PermissionCache.invalidate(accessInfo.getUserId());
+        } else {
+            PermissionCache.invalidate();
+        }
+    }
 }
@@ -65,7 +65,11 @@ public class GroupServiceImpl extends AbstractKapuaConfigurableResourceLimitedSe
             throw new KapuaIllegalArgumentException("scopeId", "max groups reached");
         }
 
-        return entityManagerSession.onTransactedInsert(em -> GroupDAO.create(em, groupCreator));
+        return entityManagerSession.onTransactedInsert(em -> {
+            Group group = GroupDAO.create(em, groupCreator);
+            incrementUsedEntities(em, group.getScopeId());
+            return group;
+        });
     }
 
     @Override
@@ -104,11 +108,13 @@ public class GroupServiceImpl extends AbstractKapuaConfigurableResourceLimitedSe
         authorizationService.checkPermission(permissionFactory.newPermission(GROUP_DOMAIN, Actions.delete, scopeId));
 
         entityManagerSession.onTransactedAction(em -> {
-            if (GroupDAO.find(em, groupId) == null) {
+            Group group = GroupDAO.find(em, groupId);
+            if (group == null) {
                 throw new KapuaEntityNotFoundException(Group.TYPE, groupId);
             }
 
             GroupDAO.delete(em, groupId);
+            decrementUsedEntities(em, group.getScopeId());
         });
     }
 
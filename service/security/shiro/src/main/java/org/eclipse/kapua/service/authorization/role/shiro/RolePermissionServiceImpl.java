@@ -33,6 +33,7 @@ import org.eclipse.kapua.service.authorization.role.RolePermissionQuery;
 import org.eclipse.kapua.service.authorization.role.RolePermissionService;
 import org.eclipse.kapua.service.authorization.role.RoleService;
 import org.eclipse.kapua.service.authorization.shiro.AuthorizationEntityManagerFactory;
+import org.eclipse.kapua.service.authorization.shiro.PermissionCache;
 
 /**
  * {@link RolePermission} service implementation.
@@ -77,7 +78,9 @@ public class RolePermissionServiceImpl extends AbstractKapuaService implements R
             authorizationService.checkPermission(permission);
         }
 
-        return entityManagerSession.onTransactedInsert(em -> RolePermissionDAO.create(em, rolePermissionCreator));
+        RolePermission result = entityManagerSession.onTransactedInsert(em -> RolePermissionDAO.create(em, rolePermissionCreator));
+        PermissionCache.invalidate();
+        return result;
     }
 
     @Override
@@ -98,6 +101,7 @@ public class RolePermissionServiceImpl extends AbstractKapuaService implements R
 
             RolePermissionDAO.delete(em, rolePermissionId);
         });
+        PermissionCache.invalidate();
     }
 
     @Override
@@ -34,6 +34,7 @@ import org.eclipse.kapua.service.authorization.role.RolePermissionFactory;
 import org.eclipse.kapua.service.authorization.role.RoleQuery;
 import org.eclipse.kapua.service.authorization.role.RoleService;
 import org.eclipse.kapua.service.authorization.shiro.AuthorizationEntityManagerFactory;
+import org.eclipse.kapua.service.authorization.shiro.PermissionCache;
 
 /**
  * Role service implementation.
@@ -79,6 +80,7 @@ public class RoleServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
         }
         return entityManagerSession.onTransactedInsert(em -> {
             Role role = RoleDAO.create(em, roleCreator);
+            incrementUsedEntities(em, role.getScopeId());
 
             if (!roleCreator.getPermissions().isEmpty()) {
                 RolePermissionFactory rolePermissionFactory = locator.getFactory(RolePermissionFactory.class);
@@ -108,7 +110,7 @@ public class RoleServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
         AuthorizationService authorizationService = locator.getService(AuthorizationService.class);
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(ROLE_DOMAIN, Actions.write, role.getScopeId()));
-        return entityManagerSession.onTransactedInsert(em -> {
+        Role result = entityManagerSession.onTransactedInsert(em -> {
 
             Role currentRole = RoleDAO.find(em, role.getId());
             if (currentRole == null) {
@@ -117,6 +119,8 @@ public class RoleServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
 
             return RoleDAO.update(em, role);
         });
+        PermissionCache.invalidate();
+        return result;
     }
 
     @Override
@@ -128,12 +132,15 @@ public class RoleServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
         authorizationService.checkPermission(permissionFactory.newPermission(ROLE_DOMAIN, Actions.delete, scopeId));
 
         entityManagerSession.onTransactedAction(em -> {
-            if (RoleDAO.find(em, roleId) == null) {
+            Role role = RoleDAO.find(em, roleId);
+            if (role == null) {
                 throw new KapuaEntityNotFoundException(Role.TYPE, roleId);
             }
 
             RoleDAO.delete(em, roleId);
+            decrementUsedEntities(em, role.getScopeId());
         });
+        PermissionCache.invalidate();
     }
 
     @Override
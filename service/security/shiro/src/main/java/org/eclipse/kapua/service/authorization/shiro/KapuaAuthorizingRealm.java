@@ -21,29 +21,14 @@ import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.eclipse.kapua.KapuaException;
-import org.eclipse.kapua.commons.model.query.predicate.AttributePredicate;
+import org.eclipse.kapua.commons.jpa.EntityManagerSession;
 import org.eclipse.kapua.commons.security.KapuaSecurityUtils;
 import org.eclipse.kapua.locator.KapuaLocator;
-import org.eclipse.kapua.model.id.KapuaId;
-import org.eclipse.kapua.model.query.KapuaListResult;
-import org.eclipse.kapua.model.query.predicate.KapuaPredicate;
-import org.eclipse.kapua.service.authorization.access.AccessInfo;
-import org.eclipse.kapua.service.authorization.access.AccessInfoFactory;
-import org.eclipse.kapua.service.authorization.access.AccessInfoPredicates;
-import org.eclipse.kapua.service.authorization.access.AccessInfoQuery;
-import org.eclipse.kapua.service.authorization.access.AccessInfoService;
 import org.eclipse.kapua.service.authorization.access.AccessPermission;
-import org.eclipse.kapua.service.authorization.access.AccessPermissionListResult;
-import org.eclipse.kapua.service.authorization.access.AccessPermissionService;
-import org.eclipse.kapua.service.authorization.access.AccessRole;
-import org.eclipse.kapua.service.authorization.access.AccessRoleListResult;
-import org.eclipse.kapua.service.authorization.access.AccessRoleService;
+import org.eclipse.kapua.service.authorization.access.shiro.AccessInfoDAO;
 import org.eclipse.kapua.service.authorization.permission.shiro.PermissionImpl;
 import org.eclipse.kapua.service.authorization.role.Role;
 import org.eclipse.kapua.service.authorization.role.RolePermission;
-import org.eclipse.kapua.service.authorization.role.RolePermissionListResult;
-import org.eclipse.kapua.service.authorization.role.RolePermissionService;
-import org.eclipse.kapua.service.authorization.role.RoleService;
 import org.eclipse.kapua.service.user.User;
 import org.eclipse.kapua.service.user.UserService;
 import org.slf4j.Logger;
@@ -58,18 +43,23 @@ public class KapuaAuthorizingRealm extends AuthorizingRealm {
 
     public static final String REALM_NAME = "kapuaAuthorizingRealm";
 
+    private final EntityManagerSession entityManagerSession = new EntityManagerSession(AuthorizationEntityManagerFactory.getInstance());
+
     public KapuaAuthorizingRealm() throws KapuaException {
         setName(REALM_NAME);
     }
 
     /**
-     * Authorization.
+     * Authorization.<br>
+     * The compiled user permissions are cached in the {@link PermissionCache}, while the user is always looked up.<br>
+     * The cache is invalidated only on the node writing the permissions: the other nodes apply the change once their entries expire.
      */
     protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals)
             throws AuthenticationException {
         //
         // Extract principal
-        String username = ((User) principals.getPrimaryPrincipal()).getName();
+        User principalUser = (User) principals.getPrimaryPrincipal();
+        String username = principalUser.getName();
         logger.debug("Getting authorization info for: {}", username);
 
         //
@@ -77,8 +67,6 @@ public class KapuaAuthorizingRealm extends AuthorizingRealm {
         KapuaLocator locator = KapuaLocator.getInstance();
 
         UserService userService = locator.getService(UserService.class);
-        AccessInfoService accessInfoService = locator.getService(AccessInfoService.class);
-        AccessInfoFactory accessInfoFactory = locator.getFactory(AccessInfoFactory.class);
 
         //
         // Get the associated user by name
@@ -98,91 +86,43 @@ public class KapuaAuthorizingRealm extends AuthorizingRealm {
         }
 
         //
-        // Get user access infos
-        AccessInfoQuery accessInfoQuery = accessInfoFactory.newQuery(user.getScopeId());
-        KapuaPredicate predicate = new AttributePredicate<KapuaId>(AccessInfoPredicates.USER_ID, user.getId());
-        accessInfoQuery.setPredicate(predicate);
-
-        final KapuaListResult<AccessInfo> accessInfos;
-        try {
-            accessInfos = KapuaSecurityUtils.doPrivileged(() -> accessInfoService.query(accessInfoQuery));
-        } catch (AuthenticationException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new ShiroException("Error while find access info!", e);
-        }
-
-        //
-        // Check existence
-        if (accessInfos == null) {
-            throw new UnknownAccountException();
+        // Check the cache (only once the user is found, so a deleted user is never authorized by a cached entry)
+        if (PermissionCache.isEnabled()) {
+            AuthorizationInfo cachedInfo = PermissionCache.get(user.getId());
+            if (cachedInfo != null) {
+                return cachedInfo;
+            }
         }
+        long cacheVersion = PermissionCache.version(user.getId());
 
         //
         // Create SimpleAuthorizationInfo with principals permissions
+        // Access permissions, roles and role permissions of all the user access infos are loaded with a fixed number of queries
         SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
-
-        // Get user roles set and related permissions
-        for (AccessInfo accessInfo : accessInfos.getItems()) {
-
-            // Access Permissions
-            AccessPermissionService accessPermissionService = locator.getService(AccessPermissionService.class);
-            AccessPermissionListResult accessPermissions;
-            try {
-                accessPermissions = KapuaSecurityUtils.doPrivileged(() -> accessPermissionService.findByAccessInfoId(accessInfo.getScopeId(), accessInfo.getId()));
-            } catch (AuthenticationException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new ShiroException("Error while find access permissions!", e);
-            }
-
-            for (AccessPermission accessPermission : accessPermissions.getItems()) {
-                PermissionImpl p = accessPermission.getPermission();
-                logger.trace("User: {} has permission: {}", username, p);
-                info.addObjectPermission(p);
-            }
-
-            // Access Role Id
-            AccessRoleService accessRoleService = locator.getService(AccessRoleService.class);
-            AccessRoleListResult accessRoles;
-            try {
-                accessRoles = KapuaSecurityUtils.doPrivileged(() -> accessRoleService.findByAccessInfoId(accessInfo.getScopeId(), accessInfo.getId()));
-            } catch (AuthenticationException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new ShiroException("Error while find access role ids!", e);
-            }
-
-            RoleService roleService = locator.getService(RoleService.class);
-            RolePermissionService rolePermissionService = locator.getService(RolePermissionService.class);
-            for (AccessRole accessRole : accessRoles.getItems()) {
-
-                KapuaId roleId = accessRole.getRoleId();
-
-                Role role;
-                try {
-                    role = KapuaSecurityUtils.doPrivileged(() -> roleService.find(accessRole.getScopeId(), roleId));
-                } catch (AuthenticationException e) {
-                    throw e;
-                } catch (Exception e) {
-                    throw new ShiroException("Error while find role ids!", e);
+        try {
+            entityManagerSession.onAction(em -> {
+                for (AccessPermission accessPermission : AccessInfoDAO.findAccessPermissionsByUserId(em, user.getId())) {
+                    PermissionImpl p = accessPermission.getPermission();
+                    logger.trace("User: {} has permission: {}", username, p);
+                    info.addObjectPermission(p);
                 }
 
-                info.addRole(role.getName());
-                final RolePermissionListResult rolePermissions;
-                try {
-                    rolePermissions = KapuaSecurityUtils.doPrivileged(() -> rolePermissionService.findByRoleId(role.getScopeId(), role.getId()));
-                } catch (Exception e) {
-                    throw new ShiroException("Error while find role permission!", e);
+                for (Role role : AccessInfoDAO.findRolesByUserId(em, user.getId())) {
+                    info.addRole(role.getName());
                 }
 
-                for (RolePermission rolePermission : rolePermissions.getItems()) {
-
+                for (RolePermission rolePermission : AccessInfoDAO.findRolePermissionsByUserId(em, user.getId())) {
                     PermissionImpl p = rolePermission.getPermission();
-                    logger.trace("Role: {} has permission: {}", role, p);
+                    logger.trace("Role: {} has permission: {}", rolePermission.getRoleId(), p);
                     info.addObjectPermission(p);
                 }
-            }
+            });
+        } catch (Exception e) {
+            throw new ShiroException("Error while find permissions!", e);
+        }
+
+        if (PermissionCache.isEnabled()) {
+            PermissionCache.put(user.getId(), cacheVersion, info);
         }
 
         //
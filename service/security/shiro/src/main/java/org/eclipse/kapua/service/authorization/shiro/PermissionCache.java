@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.authorization.shiro;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.eclipse.kapua.commons.cache.LocalCache;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.authorization.shiro.setting.KapuaAuthorizationSetting;
+import org.eclipse.kapua.service.authorization.shiro.setting.KapuaAuthorizationSettingKeys;
+
+/**
+ * Per user compiled permissions cache used by the {@link KapuaAuthorizingRealm} (disabled by default, see
+ * {@link KapuaAuthorizationSettingKeys#AUTHORIZATION_PERMISSION_CACHE_ENABLE}).<br>
+ * Every entry is stamped with the version of its user current when its build started. A write to the access infos, access permissions or access roles of a user
+ * bumps the version of that user through {@link #invalidate(KapuaId)}, while a write to the roles or role permissions (which can be shared by any user) bumps the
+ * version of all the users through {@link #invalidate()}. So every entry built before the write is discarded on the next lookup.<br>
+ * <br>
+ * <b>The invalidation is local to the node doing the write</b>: the other nodes keep serving their entries until they expire after
+ * {@link KapuaAuthorizationSettingKeys#AUTHORIZATION_PERMISSION_CACHE_TTL}, so on a cluster the TTL is the maximum delay before a permission change (a revocation
+ * included) is enforced everywhere.
+ *
+ * @since 1.0
+ */
+public final class PermissionCache {
+
+    private static final boolean ENABLED;
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static final ConcurrentMap<KapuaId, Long> USER_VERSIONS = new ConcurrentHashMap<>();
+    private static final LocalCache<KapuaId, Entry> CACHE;
+
+    static {
+        KapuaAuthorizationSetting setting = KapuaAuthorizationSetting.getInstance();
+        ENABLED = setting.getBoolean(KapuaAuthorizationSettingKeys.AUTHORIZATION_PERMISSION_CACHE_ENABLE, false);
+        CACHE = new LocalCache<>(setting.getInt(KapuaAuthorizationSettingKeys.AUTHORIZATION_PERMISSION_CACHE_SIZE_MAXIMUM, 10000),
+                (int) TimeUnit.MILLISECONDS.toSeconds(setting.getLong(KapuaAuthorizationSettingKeys.AUTHORIZATION_PERMISSION_CACHE_TTL, 30000L)),
+                null);
+    }
+
+    private PermissionCache() {
+    }
+
+    /**
+     * Return true if the cache is enabled
+     *
+     * @return
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Return the current version of the user entry. It must be read before starting to build the entry.
+     *
+     * @param userId
+     * @return
+     */
+    public static long version(KapuaId userId) {
+        // both the counters only increase, so the sum changes whenever one of them is bumped
+        return VERSION.get() + USER_VERSIONS.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Return the cached authorization info of the user or null if not cached (or stale)
+     *
+     * @param userId
+     * @return
+     */
+    public static AuthorizationInfo get(KapuaId userId) {
+        Entry entry = CACHE.get(userId);
+        if (entry == null || entry.version != version(userId)) {
+            return null;
+        }
+        return entry.authorizationInfo;
+    }
+
+    /**
+     * Cache the user authorization info built from the data read at the given version.<br>
+     * Nothing is cached if the cache was invalidated in the meantime.
+     *
+     * @param userId
+     * @param version
+     * @param authorizationInfo
+     */
+    public static void put(KapuaId userId, long version, AuthorizationInfo authorizationInfo) {
+        if (version == version(userId)) {
+            CACHE.put(userId, new Entry(version, authorizationInfo));
+        }
+    }
+
+    /**
+     * Invalidate the cached entry of the user
+     *
+     * @param userId
+     */
+    public static void invalidate(KapuaId userId) {
+        // the user versions are never removed (a removed version would make older entries valid again), so they are tracked only for the users whose access
+        // infos are written while the node is running
+        USER_VERSIONS.merge(userId, 1L, Long::sum);
+    }
+
+    /**
+     * Invalidate all the cached entries
+     */
+    public static void invalidate() {
+        VERSION.incrementAndGet();
+    }
+
+    private static class Entry {
+
+        private final long version;
+        private final AuthorizationInfo authorizationInfo;
+
+        private Entry(long version, AuthorizationInfo authorizationInfo) {
+            this.version = version;
+            this.authorizationInfo = authorizationInfo;
+        }
+    }
+}
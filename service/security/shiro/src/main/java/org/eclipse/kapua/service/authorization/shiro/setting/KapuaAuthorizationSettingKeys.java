@@ -18,7 +18,11 @@ import org.eclipse.kapua.commons.setting.SettingKey;
  * Authorization setting key
  */
 public enum KapuaAuthorizationSettingKeys implements SettingKey {
-    AUTHORIZATION_KEY("authorization.key");
+    AUTHORIZATION_KEY("authorization.key"), //
+
+    AUTHORIZATION_PERMISSION_CACHE_ENABLE("authorization.permission.cache.enabled"), //
+    AUTHORIZATION_PERMISSION_CACHE_TTL("authorization.permission.cache.ttl"), //
+    AUTHORIZATION_PERMISSION_CACHE_SIZE_MAXIMUM("authorization.permission.cache.size.maximum");
 
     private String key;
 
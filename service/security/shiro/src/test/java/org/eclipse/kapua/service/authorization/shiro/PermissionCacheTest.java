@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.service.authorization.shiro;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.eclipse.kapua.commons.model.id.KapuaEid;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PermissionCacheTest extends Assert {
+
+    private final Random random = new Random();
+
+    @Test
+    public void testUserInvalidation() {
+        KapuaId userId = newUserId();
+        KapuaId otherUserId = newUserId();
+        AuthorizationInfo authorizationInfo = new SimpleAuthorizationInfo();
+        PermissionCache.put(userId, PermissionCache.version(userId), authorizationInfo);
+        PermissionCache.put(otherUserId, PermissionCache.version(otherUserId), authorizationInfo);
+        assertSame(authorizationInfo, PermissionCache.get(userId));
+
+        // only the entry of the invalidated user is discarded
+        PermissionCache.invalidate(userId);
+        assertNull(PermissionCache.get(userId));
+        assertSame(authorizationInfo, PermissionCache.get(otherUserId));
+
+        PermissionCache.put(userId, PermissionCache.version(userId), authorizationInfo);
+        assertSame(authorizationInfo, PermissionCache.get(userId));
+    }
+
+    @Test
+    public void testGlobalInvalidation() {
+        KapuaId userId = newUserId();
+        KapuaId otherUserId = newUserId();
+        AuthorizationInfo authorizationInfo = new SimpleAuthorizationInfo();
+        PermissionCache.invalidate(otherUserId);
+        PermissionCache.put(userId, PermissionCache.version(userId), authorizationInfo);
+        PermissionCache.put(otherUserId, PermissionCache.version(otherUserId), authorizationInfo);
+
+        PermissionCache.invalidate();
+        assertNull(PermissionCache.get(userId));
+        assertNull(PermissionCache.get(otherUserId));
+    }
+
+    @Test
+    public void testBuildRacingWithWriteIsNotCached() {
+        KapuaId userId = newUserId();
+        long version = PermissionCache.version(userId);
+        // the permissions are written while the entry is built from the previous data
+        PermissionCache.invalidate(userId);
+        PermissionCache.put(userId, version, new SimpleAuthorizationInfo());
+        assertNull(PermissionCache.get(userId));
+
+        version = PermissionCache.version(userId);
+        PermissionCache.invalidate();
+        PermissionCache.put(userId, version, new SimpleAuthorizationInfo());
+        assertNull(PermissionCache.get(userId));
+    }
+
+    private KapuaId newUserId() {
+        return new KapuaEid(BigInteger.valueOf(random.nextLong()).abs());
+    }
+}
@@ -63,7 +63,11 @@ public class TagServiceImpl extends AbstractKapuaConfigurableResourceLimitedServ
             throw new KapuaIllegalArgumentException("scopeId", "max tags reached");
         }
 
-        return entityManagerSession.onTransactedInsert(em -> TagDAO.create(em, tagCreator));
+        return entityManagerSession.onTransactedInsert(em -> {
+            Tag tag = TagDAO.create(em, tagCreator);
+            incrementUsedEntities(em, tag.getScopeId());
+            return tag;
+        });
     }
 
     @Override
@@ -102,11 +106,13 @@ public class TagServiceImpl extends AbstractKapuaConfigurableResourceLimitedServ
         authorizationService.checkPermission(permissionFactory.newPermission(TAG_DOMAIN, Actions.delete, scopeId));
 
         entityManagerSession.onTransactedAction(em -> {
-            if (TagDAO.find(em, tagId) == null) {
+            Tag tag = TagDAO.find(em, tagId);
+            if (tag == null) {
                 throw new KapuaEntityNotFoundException(Tag.TYPE, tagId);
             }
 
             TagDAO.delete(em, tagId);
+            decrementUsedEntities(em, tag.getScopeId());
         });
     }
 
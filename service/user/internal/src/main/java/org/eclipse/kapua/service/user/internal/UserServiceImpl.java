@@ -89,7 +89,11 @@ public class UserServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
         PermissionFactory permissionFactory = locator.getFactory(PermissionFactory.class);
         authorizationService.checkPermission(permissionFactory.newPermission(USER_DOMAIN, Actions.write, userCreator.getScopeId()));
 
-        return entityManagerSession.onTransactedInsert(em -> UserDAO.create(em, userCreator));
+        return entityManagerSession.onTransactedInsert(em -> {
+            User user = UserDAO.create(em, userCreator);
+            incrementUsedEntities(em, user.getScopeId());
+            return user;
+        });
     }
 
     @Override
@@ -153,6 +157,7 @@ public class UserServiceImpl extends AbstractKapuaConfigurableResourceLimitedSer
             validateSystemUser(user.getName());
 
             UserDAO.delete(em, userId);
+            decrementUsedEntities(em, user.getScopeId());
         });
     }
 
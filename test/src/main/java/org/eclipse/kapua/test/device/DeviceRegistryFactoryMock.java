@@ -14,6 +14,9 @@ package org.eclipse.kapua.test.device;
 import org.eclipse.kapua.locator.KapuaProvider;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateError;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreator;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceFactory;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
@@ -51,4 +54,22 @@ public class DeviceRegistryFactoryMock implements DeviceFactory {
         return null;
     }
 
+    @Override
+    public DeviceBulkCreator newBulkCreator() {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
+    @Override
+    public DeviceBulkCreateResult newBulkCreateResult() {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
+    @Override
+    public DeviceBulkCreateError newBulkCreateError() {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
 }
@@ -13,6 +13,7 @@ package org.eclipse.kapua.test.device;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kapua.KapuaException;
@@ -21,6 +22,7 @@ import org.eclipse.kapua.model.config.metatype.KapuaTocd;
 import org.eclipse.kapua.model.id.KapuaId;
 import org.eclipse.kapua.model.query.KapuaQuery;
 import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceBulkCreateResult;
 import org.eclipse.kapua.service.device.registry.DeviceCreator;
 import org.eclipse.kapua.service.device.registry.DeviceListResult;
 import org.eclipse.kapua.service.device.registry.DeviceRegistryService;
@@ -41,6 +43,12 @@ public class DeviceRegistryServiceMock implements DeviceRegistryService {
         return device;
     }
 
+    @Override
+    public DeviceBulkCreateResult createAll(List<DeviceCreator> creators) throws KapuaException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public Device find(KapuaId scopeId, KapuaId entityId) throws KapuaException {
         if (!deviceRegistry.containsKey(entityId)) {
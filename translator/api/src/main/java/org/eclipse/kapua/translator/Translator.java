@@ -13,7 +13,6 @@
 package org.eclipse.kapua.translator;
 
 import java.util.Objects;
-import java.util.ServiceLoader;
 
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.KapuaRuntimeErrorCodes;
@@ -45,12 +44,10 @@ public abstract class Translator<FROM_M extends Message, TO_M extends Message> {
 
     private static final Logger logger = LoggerFactory.getLogger(Translator.class);
 
-    private static final ServiceLoader<Translator> TRANSLATOR = ServiceLoader.load(Translator.class);
-
     /**
      * Return a translator for the given messages classes.
      * <br>
-     * This method will lookup instances of Translator through {@link java.util.ServiceLoader}
+     * This method will lookup instances of Translator through the {@link TranslatorRegistry} (populated by {@link java.util.ServiceLoader})
      * 
      * @param fromMessageClass
      *            message from type
@@ -60,25 +57,24 @@ public abstract class Translator<FROM_M extends Message, TO_M extends Message> {
      * @throws KapuaException
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <FROM_M extends Message, TO_M extends Message, T extends Translator<FROM_M, TO_M>> T getTranslatorFor(Class<? extends FROM_M> fromMessageClass,
+    public static <FROM_M extends Message, TO_M extends Message, T extends Translator<FROM_M, TO_M>> T getTranslatorFor(Class<? extends FROM_M> fromMessageClass,
             Class<? extends TO_M> toMessageClass)
             throws KapuaException {
 
         Objects.requireNonNull(fromMessageClass);
         Objects.requireNonNull(toMessageClass);
 
-        for (Translator translator : TRANSLATOR) {
-            if ((fromMessageClass.isAssignableFrom(translator.getClassFrom())) &&
-                    toMessageClass.isAssignableFrom(translator.getClassTo())) {
-                return (T) translator;
-            }
+        TranslatorRegistry registry = TranslatorRegistry.getInstance();
+        Translator translator = registry.getTranslator(fromMessageClass, toMessageClass);
+        if (translator != null) {
+            return (T) translator;
         }
 
         logger.error("Cannot find translator from: {}- to: {}", fromMessageClass.getName(), toMessageClass.getName());
         throw new KapuaRuntimeException(KapuaRuntimeErrorCodes.TRANSLATOR_NOT_FOUND,
                 null,
                 new Object[] {
-                        TRANSLATOR,
+                        registry.getTranslators(),
                         fromMessageClass.getName(),
                         toMessageClass.getName(),
                 });
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.translator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link Translator} registry.<br>
+ * The registry is populated once with the translators found through {@link ServiceLoader} and the lookup results (also the negative ones) are cached by
+ * (from, to) message class pair, so the lookup is lock free and doesn't scan the translators list once the pair is resolved.<br>
+ * Translators can be also registered programmatically through {@link #register(Translator)}: they take precedence over the already registered ones.
+ *
+ * @since 1.0
+ */
+@SuppressWarnings("rawtypes")
+public class TranslatorRegistry {
+
+    private static final TranslatorRegistry INSTANCE = new TranslatorRegistry(ServiceLoader.load(Translator.class));
+
+    private final List<Translator> translators = new CopyOnWriteArrayList<>();
+
+    /**
+     * Lookup cache (from class -> to class -> translator). The whole cache is replaced on translator registration.
+     */
+    private volatile ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Optional<Translator>>> lookupCache = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a registry populated with the provided translators (the iteration order defines the lookup precedence)
+     *
+     * @param translators
+     */
+    TranslatorRegistry(Iterable<Translator> translators) {
+        for (Translator translator : translators) {
+            this.translators.add(translator);
+        }
+    }
+
+    /**
+     * Get the {@link TranslatorRegistry} instance (singleton) populated with the translators found through {@link ServiceLoader}
+     *
+     * @return
+     */
+    public static TranslatorRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register the translator.<br>
+     * The translator takes precedence over the already registered translators supporting the same message types.
+     *
+     * @param translator
+     */
+    public void register(Translator translator) {
+        Objects.requireNonNull(translator);
+        translators.add(0, translator);
+        // the translator must be already visible by the lookups using the new cache
+        lookupCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Return the translator for the given messages classes or null if no translator supports them.
+     *
+     * @param fromMessageClass
+     *            message from type
+     * @param toMessageClass
+     *            message to type
+     * @return
+     */
+    public Translator getTranslator(Class<?> fromMessageClass, Class<?> toMessageClass) {
+        Objects.requireNonNull(fromMessageClass);
+        Objects.requireNonNull(toMessageClass);
+
+        ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Optional<Translator>>> cache = lookupCache;
+        ConcurrentMap<Class<?>, Optional<Translator>> toCache = cache.get(fromMessageClass);
+        if (toCache == null) {
+            toCache = cache.computeIfAbsent(fromMessageClass, fromClass -> new ConcurrentHashMap<>());
+        }
+        Optional<Translator> translator = toCache.get(toMessageClass);
+        if (translator == null) {
+            translator = toCache.computeIfAbsent(toMessageClass, toClass -> lookup(fromMessageClass, toClass));
+        }
+        return translator.orElse(null);
+    }
+
+    /**
+     * Return the registered translators
+     *
+     * @return
+     */
+    public List<Translator> getTranslators() {
+        return Collections.unmodifiableList(translators);
+    }
+
+    private Optional<Translator> lookup(Class<?> fromMessageClass, Class<?> toMessageClass) {
+        for (Translator translator : translators) {
+            if (fromMessageClass.isAssignableFrom(translator.getClassFrom()) &&
+                    toMessageClass.isAssignableFrom(translator.getClassTo())) {
+                return Optional.of(translator);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.translator;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.message.Message;
+
+/**
+ * {@link Translator} stub supporting the message types provided at construction time
+ */
+@SuppressWarnings("rawtypes")
+class TestTranslator extends Translator {
+
+    private final Class<? extends Message> classFrom;
+    private final Class<? extends Message> classTo;
+
+    TestTranslator(Class<? extends Message> classFrom, Class<? extends Message> classTo) {
+        this.classFrom = classFrom;
+        this.classTo = classTo;
+    }
+
+    @Override
+    public Message translate(Message message) throws KapuaException {
+        return message;
+    }
+
+    @Override
+    public Class getClassFrom() {
+        return classFrom;
+    }
+
+    @Override
+    public Class getClassTo() {
+        return classTo;
+    }
+
+    interface TestMessage extends Message {
+    }
+
+    interface FromMessage extends TestMessage {
+    }
+
+    interface ToMessage extends TestMessage {
+    }
+
+    interface OtherMessage extends TestMessage {
+    }
+}
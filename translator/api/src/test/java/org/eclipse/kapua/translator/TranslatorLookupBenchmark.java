@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.translator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kapua.translator.TestTranslator.FromMessage;
+import org.eclipse.kapua.translator.TestTranslator.OtherMessage;
+import org.eclipse.kapua.translator.TestTranslator.ToMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Translator lookup throughput benchmark: {@link TranslatorRegistry} against the previous synchronized linear scan.<br>
+ * Run it through the {@link #main(String[])} method (it runs each benchmark with 1, 8 and 32 threads).
+ */
+@SuppressWarnings("rawtypes")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorLookupBenchmark {
+
+    // roughly the number of translators registered in a broker
+    private static final int FILLER_TRANSLATORS = 24;
+
+    private final List<Translator> translators = new ArrayList<>();
+    private final TranslatorRegistry registry;
+
+    public TranslatorLookupBenchmark() {
+        // the looked up translators are the last ones, as for the data messages translators
+        for (int i = 0; i < FILLER_TRANSLATORS; i++) {
+            translators.add(new TestTranslator(OtherMessage.class, OtherMessage.class));
+        }
+        translators.add(new TestTranslator(FromMessage.class, ToMessage.class));
+        translators.add(new TestTranslator(ToMessage.class, FromMessage.class));
+        registry = new TranslatorRegistry(translators);
+    }
+
+    @Benchmark
+    public Object legacyLookup() {
+        legacyGetTranslatorFor(FromMessage.class, ToMessage.class);
+        return legacyGetTranslatorFor(ToMessage.class, FromMessage.class);
+    }
+
+    @Benchmark
+    public Object registryLookup() {
+        registry.getTranslator(FromMessage.class, ToMessage.class);
+        return registry.getTranslator(ToMessage.class, FromMessage.class);
+    }
+
+    @Benchmark
+    public Object registryNegativeLookup() {
+        return registry.getTranslator(FromMessage.class, OtherMessage.class);
+    }
+
+    /**
+     * Copy of the lookup performed by {@link Translator#getTranslatorFor(Class, Class)} before the {@link TranslatorRegistry} introduction
+     */
+    private synchronized Translator legacyGetTranslatorFor(Class<?> fromMessageClass, Class<?> toMessageClass) {
+        for (Translator translator : translators) {
+            if ((fromMessageClass.isAssignableFrom(translator.getClassFrom())) &&
+                    toMessageClass.isAssignableFrom(translator.getClassTo())) {
+                return translator;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] { 1, 8, 32 }) {
+            Options options = new OptionsBuilder()
+                    .include(TranslatorLookupBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
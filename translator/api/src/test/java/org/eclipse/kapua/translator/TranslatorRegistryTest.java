@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.translator;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.kapua.translator.TestTranslator.FromMessage;
+import org.eclipse.kapua.translator.TestTranslator.OtherMessage;
+import org.eclipse.kapua.translator.TestTranslator.TestMessage;
+import org.eclipse.kapua.translator.TestTranslator.ToMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("rawtypes")
+public class TranslatorRegistryTest {
+
+    @Test
+    public void testLookup() {
+        Translator fromTo = new TestTranslator(FromMessage.class, ToMessage.class);
+        Translator toFrom = new TestTranslator(ToMessage.class, FromMessage.class);
+        TranslatorRegistry registry = new TranslatorRegistry(Arrays.asList(fromTo, toFrom));
+
+        Assert.assertSame(fromTo, registry.getTranslator(FromMessage.class, ToMessage.class));
+        Assert.assertSame(toFrom, registry.getTranslator(ToMessage.class, FromMessage.class));
+        // lookup by super type
+        Assert.assertSame(fromTo, registry.getTranslator(TestMessage.class, TestMessage.class));
+        // cached lookup
+        Assert.assertSame(fromTo, registry.getTranslator(FromMessage.class, ToMessage.class));
+    }
+
+    @Test
+    public void testNotFound() {
+        TranslatorRegistry registry = new TranslatorRegistry(Collections.singletonList(new TestTranslator(FromMessage.class, ToMessage.class)));
+
+        Assert.assertNull(registry.getTranslator(FromMessage.class, OtherMessage.class));
+        // cached negative lookup
+        Assert.assertNull(registry.getTranslator(FromMessage.class, OtherMessage.class));
+    }
+
+    @Test
+    public void testRegister() {
+        Translator fromTo = new TestTranslator(FromMessage.class, ToMessage.class);
+        TranslatorRegistry registry = new TranslatorRegistry(Collections.singletonList(fromTo));
+        Assert.assertNull(registry.getTranslator(FromMessage.class, OtherMessage.class));
+
+        // the registration must invalidate the negative lookup
+        Translator fromOther = new TestTranslator(FromMessage.class, OtherMessage.class);
+        registry.register(fromOther);
+        Assert.assertSame(fromOther, registry.getTranslator(FromMessage.class, OtherMessage.class));
+
+        // the registered translator takes precedence
+        Translator fromToOverride = new TestTranslator(FromMessage.class, ToMessage.class);
+        registry.register(fromToOverride);
+        Assert.assertSame(fromToOverride, registry.getTranslator(FromMessage.class, ToMessage.class));
+        Assert.assertEquals(3, registry.getTranslators().size());
+    }
+}
@@ -12,15 +12,24 @@
  *******************************************************************************/
 package org.eclipse.kapua.translator.kura.kapua;
 
+import org.eclipse.kapua.KapuaEntityNotFoundException;
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.commons.cache.IdentityCache;
 import org.eclipse.kapua.locator.KapuaLocator;
 import org.eclipse.kapua.message.KapuaMessageFactory;
 import org.eclipse.kapua.message.KapuaPosition;
+import org.eclipse.kapua.model.id.KapuaId;
+import org.eclipse.kapua.service.account.Account;
+import org.eclipse.kapua.service.account.AccountService;
 import org.eclipse.kapua.service.device.call.message.DevicePosition;
 import org.eclipse.kapua.service.device.management.response.KapuaResponseCode;
+import org.eclipse.kapua.service.device.registry.Device;
+import org.eclipse.kapua.service.device.registry.DeviceRegistryService;
 
 /**
  * Messages translator utilities.<br>
- * It provides helpful methods for translate position and response code.
+ * It provides helpful methods for translate position and response code and for resolving the account and device identifiers (through the
+ * {@link IdentityCache}).
  *
  * @since 1.0
  *
@@ -30,6 +39,43 @@ public final class TranslatorKuraKapuaUtils {
     private TranslatorKuraKapuaUtils() {
     }
 
+    /**
+     * Return the identifier of the account with the given name
+     *
+     * @param accountName
+     * @return
+     * @throws KapuaEntityNotFoundException
+     *             if the account doesn't exist
+     * @throws KapuaException
+     */
+    public static KapuaId getScopeId(String accountName) throws KapuaException {
+        KapuaId scopeId = IdentityCache.getAccountId(accountName, () -> {
+            AccountService accountService = KapuaLocator.getInstance().getService(AccountService.class);
+            Account account = accountService.findByName(accountName);
+            return account != null ? account.getId() : null;
+        });
+        if (scopeId == null) {
+            throw new KapuaEntityNotFoundException(Account.TYPE, accountName);
+        }
+        return scopeId;
+    }
+
+    /**
+     * Return the identifier of the device with the given client id
+     *
+     * @param scopeId
+     * @param clientId
+     * @return the device identifier or null if the device is not registered
+     * @throws KapuaException
+     */
+    public static KapuaId getDeviceId(KapuaId scopeId, String clientId) throws KapuaException {
+        return IdentityCache.getDeviceId(scopeId, clientId, () -> {
+            DeviceRegistryService deviceRegistryService = KapuaLocator.getInstance().getService(DeviceRegistryService.class);
+            Device device = deviceRegistryService.findByClientId(scopeId, clientId);
+            return device != null ? device.getId() : null;
+        });
+    }
+
     /**
      * Translate {@link DevicePosition} to {@link KapuaPosition}
      *
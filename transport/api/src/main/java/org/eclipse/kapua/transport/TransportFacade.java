@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.kapua.transport;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.eclipse.kapua.KapuaException;
 import org.eclipse.kapua.transport.message.TransportChannel;
 import org.eclipse.kapua.transport.message.TransportMessage;
@@ -47,6 +49,20 @@ public interface TransportFacade<C extends TransportChannel, P extends Transport
     public MS sendSync(MQ message, Long timeout)
             throws KapuaException;
 
+    /**
+     * Send a request message to a device without blocking the caller.
+     * <p>
+     * The returned future is completed with the response to the request message, or exceptionally if the request cannot be sent or the timeout expires.
+     * If the timeout is {@code null} the future is completed with a {@code null} response once the request is sent.
+     * </p>
+     *
+     * @param message The request message to send.
+     * @param timeout The timeout for the operation.
+     * @return The future completed with the response to the request message.
+     * @since 1.0.0
+     */
+    public CompletableFuture<MS> sendRequest(MQ message, Long timeout);
+
     /**
      * Send a request message to a device without waiting for the response
      *
@@ -208,6 +208,21 @@ public class MqttClient {
         }
     }
 
+    /**
+     * Unsubscribes this client from the given {@link MqttTopic} subscribed by {@link #subscribe(MqttTopic)}.
+     * 
+     * @param mqttTopic
+     *            The {@link MqttTopic} to unsubscribe to.
+     * @throws KapuaException
+     *             When unsubscribe fails.
+     * @since 1.0.0
+     */
+    public synchronized void unsubscribeTopic(MqttTopic mqttTopic)
+            throws KapuaException {
+        unsubscribe(mqttTopic);
+        subscribedTopics.removeIf(subscribedTopic -> subscribedTopic.getTopic().equals(mqttTopic.getTopic()));
+    }
+
     /**
      * Unsubscribes this client from the given {@link MqttTopic}.
      * 
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Eurotech and/or its affiliates and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Eurotech - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.kapua.transport.mqtt;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kapua.KapuaException;
+import org.eclipse.kapua.transport.message.mqtt.MqttMessage;
+import org.eclipse.kapua.transport.message.mqtt.MqttPayload;
+import org.eclipse.kapua.transport.message.mqtt.MqttTopic;
+import org.eclipse.kapua.transport.mqtt.pooling.PooledMqttClientFactory;
+import org.eclipse.kapua.transport.mqtt.pooling.setting.MqttClientPoolSetting;
+import org.eclipse.kapua.transport.mqtt.pooling.setting.MqttClientPoolSettingKeys;
+import org.eclipse.kapua.transport.mqtt.setting.MqttClientSetting;
+import org.eclipse.kapua.transport.mqtt.setting.MqttClientSettingKeys;
+import org.eclipse.kapua.transport.utils.ClientIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Request/response correlator for the MQTT transport.
+ * <p>
+ * Requests are multiplexed over a small set of long-lived {@link MqttClient} connections (see {@link MqttClientPoolSettingKeys#CLIENT_POOL_CORRELATOR_CONNECTIONS}).
+ * Each connection subscribes to the wildcard of the response topics it is asked for (the response topic with its last level, the request id, replaced by a single
+ * level wildcard) and the received responses are dispatched to the pending request registered for the response topic.<br>
+ * The wildcard subscriptions are reference counted by the pending requests: once the last request using a wildcard is completed (or timed out) the wildcard is
+ * unsubscribed, so the subscriptions don't grow with the accounts and applications ever requested.
+ * </p>
+ * <p>
+ * Pending requests not answered within their timeout are completed exceptionally with {@link MqttClientErrorCodes#CLIENT_TIMEOUT_EXCEPTION}.
+ * </p>
+ *
+ * @since 1.0.0
+ */
+public class MqttResponseCorrelator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttResponseCorrelator.class);
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+
+    private static final String TOPIC_SEPARATOR = MqttClientSetting.getInstance().getString(MqttClientSettingKeys.TRANSPORT_TOPIC_SEPARATOR);
+
+    /**
+     * Singleton instance of {@link MqttResponseCorrelator}
+     */
+    private static final MqttResponseCorrelator INSTANCE = new MqttResponseCorrelator();
+
+    private final PooledMqttClientFactory clientFactory = new PooledMqttClientFactory();
+    private final Connection[] connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * Pending requests by response topic
+     */
+    private final ConcurrentMap<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor timeoutScheduler;
+
+    private MqttResponseCorrelator() {
+        MqttClientPoolSetting config = MqttClientPoolSetting.getInstance();
+        String clientIdPrefix = config.getString(MqttClientPoolSettingKeys.CLIENT_POOL_CLIENT_ID_PREFIX);
+
+        connections = new Connection[Math.max(1, config.getInt(MqttClientPoolSettingKeys.CLIENT_POOL_CORRELATOR_CONNECTIONS, 4))];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection(ClientIdGenerator.getInstance().next(clientIdPrefix));
+        }
+
+        timeoutScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, MqttResponseCorrelator.class.getSimpleName() + "-TimeoutTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Gets the singleton instance of {@link MqttResponseCorrelator}.
+     *
+     * @return The singleton instance of {@link MqttResponseCorrelator}.
+     * @since 1.0.0
+     */
+    public static MqttResponseCorrelator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the next shared connection (round robin).
+     *
+     * @return The connection to use for the next requests.
+     * @since 1.0.0
+     */
+    public Connection nextConnection() {
+        return connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+    }
+
+    /**
+     * Sends the request through the given connection.
+     * <p>
+     * If the message has no response topic or the timeout is {@code null} the returned future is completed (with a {@code null} response) once the request is published.
+     * </p>
+     *
+     * @param connection
+     *            The connection to use.
+     * @param mqttMessage
+     *            The request to send.
+     * @param timeout
+     *            The timeout of waiting the response from the device.
+     * @return The future completed with the response from the device.
+     * @since 1.0.0
+     */
+    public CompletableFuture<MqttMessage> send(Connection connection, MqttMessage mqttMessage, Long timeout) {
+        if (mqttMessage.getResponseTopic() == null || timeout == null) {
+            CompletableFuture<MqttMessage> future = new CompletableFuture<>();
+            try {
+                connection.publish(mqttMessage);
+                future.complete(null);
+            } catch (KapuaException e) {
+                future.completeExceptionally(sendError(mqttMessage, e));
+            }
+            return future;
+        }
+
+        String responseTopic = mqttMessage.getResponseTopic().getTopic();
+        PendingRequest pendingRequest = new PendingRequest(connection);
+        if (pendingRequests.putIfAbsent(responseTopic, pendingRequest) != null) {
+            pendingRequest.future.completeExceptionally(sendError(mqttMessage, new MqttClientException(MqttClientErrorCodes.CLIENT_SUBSCRIBE_ERROR,
+                    null,
+                    new Object[] { responseTopic })));
+            return pendingRequest.future;
+        }
+
+        Subscription subscription;
+        try {
+            subscription = connection.subscribe(wildcardOf(responseTopic));
+        } catch (KapuaException e) {
+            pendingRequests.remove(responseTopic, pendingRequest);
+            pendingRequest.future.completeExceptionally(sendError(mqttMessage, e));
+            return pendingRequest.future;
+        }
+        // the subscription is released by the scheduler thread since the MQTT client cannot be used by its callback thread (the completing one on response)
+        pendingRequest.future.whenComplete((response, exception) -> timeoutScheduler.execute(() -> connection.unsubscribe(subscription)));
+
+        try {
+            connection.publish(mqttMessage);
+        } catch (KapuaException e) {
+            pendingRequests.remove(responseTopic, pendingRequest);
+            pendingRequest.future.completeExceptionally(sendError(mqttMessage, e));
+            return pendingRequest.future;
+        }
+
+        ScheduledFuture<?> timeoutTask = timeoutScheduler.schedule(() -> {
+            if (pendingRequests.remove(responseTopic, pendingRequest)) {
+                pendingRequest.future.completeExceptionally(new MqttClientException(MqttClientErrorCodes.CLIENT_TIMEOUT_EXCEPTION,
+                        null,
+                        new Object[] { mqttMessage.getRequestTopic() }));
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        pendingRequest.future.whenComplete((response, exception) -> timeoutTask.cancel(false));
+
+        return pendingRequest.future;
+    }
+
+    /**
+     * Gets the count of the response topic wildcards currently subscribed by the shared connections (for monitoring purpose).
+     *
+     * @return The count of the subscribed response topic wildcards.
+     * @since 1.0.0
+     */
+    public int getSubscriptionsCount() {
+        int subscriptionsCount = 0;
+        for (Connection connection : connections) {
+            subscriptionsCount += connection.getSubscriptionsCount();
+        }
+        return subscriptionsCount;
+    }
+
+    private void onResponse(String topic, MqttMessage mqttMessage) {
+        PendingRequest pendingRequest = pendingRequests.remove(topic);
+        if (pendingRequest != null) {
+            pendingRequest.future.complete(mqttMessage);
+        }
+    }
+
+    private void onConnectionLost(Connection connection, Throwable cause) {
+        Iterator<Map.Entry<String, PendingRequest>> pendingIterator = pendingRequests.entrySet().iterator();
+        while (pendingIterator.hasNext()) {
+            Map.Entry<String, PendingRequest> pendingEntry = pendingIterator.next();
+            if (pendingEntry.getValue().connection == connection && pendingRequests.remove(pendingEntry.getKey(), pendingEntry.getValue())) {
+                pendingEntry.getValue().future.completeExceptionally(new MqttClientException(MqttClientErrorCodes.CLIENT_CONNECTION_LOST,
+                        cause,
+                        (Object[]) null));
+            }
+        }
+    }
+
+    private static String wildcardOf(String responseTopic) {
+        int lastSeparator = responseTopic.lastIndexOf(TOPIC_SEPARATOR);
+        if (lastSeparator < 0) {
+            return responseTopic;
+        }
+        return responseTopic.substring(0, lastSeparator + TOPIC_SEPARATOR.length()) + SINGLE_LEVEL_WILDCARD;
+    }
+
+    private static MqttClientException sendError(MqttMessage mqttMessage, KapuaException cause) {
+        return new MqttClientException(MqttClientErrorCodes.SEND_ERROR,
+                cause,
+                mqttMessage.getRequestTopic().getTopic());
+    }
+
+    /**
+     * Request waiting for the response
+     */
+    private static class PendingRequest {
+
+        private final Connection connection;
+        private final CompletableFuture<MqttMessage> future = new CompletableFuture<>();
+
+        private PendingRequest(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * Response topic wildcard subscribed by a connection, with the count of the pending requests using it
+     */
+    private static class Subscription {
+
+        private final String topicFilter;
+        private int references;
+
+        private Subscription(String topicFilter) {
+            this.topicFilter = topicFilter;
+        }
+    }
+
+    /**
+     * Long-lived connection shared by the requests.<br>
+     * The connection is (re)established on demand, always with the same client id, so the response topics built on the client id stay valid.
+     *
+     * @since 1.0.0
+     */
+    public class Connection {
+
+        private final String clientId;
+        // guarded by this
+        private final Map<String, Subscription> subscriptions = new HashMap<>();
+        private volatile MqttClient mqttClient;
+
+        private Connection(String clientId) {
+            this.clientId = clientId;
+        }
+
+        /**
+         * Gets the client id of this connection.
+         *
+         * @return The client id of this connection.
+         * @since 1.0.0
+         */
+        public String getClientId() {
+            return clientId;
+        }
+
+        private void publish(MqttMessage mqttMessage)
+                throws KapuaException {
+            connectedClient().publish(mqttMessage);
+        }
+
+        private synchronized Subscription subscribe(String topicFilter)
+                throws KapuaException {
+            MqttClient client = connectedClient();
+            Subscription subscription = subscriptions.get(topicFilter);
+            if (subscription == null) {
+                client.subscribe(new MqttTopic(topicFilter));
+                subscription = new Subscription(topicFilter);
+                subscriptions.put(topicFilter, subscription);
+            }
+            subscription.references++;
+            return subscription;
+        }
+
+        private synchronized void unsubscribe(Subscription subscription) {
+            // a subscription dropped by a reconnection is no more tracked
+            if (--subscription.references > 0 || subscriptions.get(subscription.topicFilter) != subscription) {
+                return;
+            }
+            subscriptions.remove(subscription.topicFilter);
+            if (mqttClient != null && mqttClient.isConnected()) {
+                try {
+                    mqttClient.unsubscribeTopic(new MqttTopic(subscription.topicFilter));
+                } catch (KapuaException e) {
+                    logger.warn("Cannot unsubscribe the response topic {} of the connection {}", subscription.topicFilter, clientId, e);
+                }
+            }
+        }
+
+        private synchronized int getSubscriptionsCount() {
+            return subscriptions.size();
+        }
+
+        private MqttClient connectedClient()
+                throws KapuaException {
+            MqttClient client = mqttClient;
+            if (client != null && client.isConnected()) {
+                return client;
+            }
+            synchronized (this) {
+                if (mqttClient != null && mqttClient.isConnected()) {
+                    return mqttClient;
+                }
+                if (mqttClient != null) {
+                    try {
+                        mqttClient.terminateClient();
+                    } catch (KapuaException e) {
+                        // the broken client is replaced anyway
+                    }
+                    mqttClient = null;
+                }
+                subscriptions.clear();
+
+                try {
+                    client = clientFactory.create(clientId);
+                } catch (KapuaException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new MqttClientException(MqttClientErrorCodes.CLIENT_CONNECT_ERROR,
+                            e,
+                            new Object[] { null, clientId, null });
+                }
+                client.setCallback(new ConnectionCallback(this));
+                mqttClient = client;
+                return client;
+            }
+        }
+
+        private void onConnectionLost(Throwable cause) {
+            synchronized (this) {
+                subscriptions.clear();
+            }
+            MqttResponseCorrelator.this.onConnectionLost(this, cause);
+        }
+    }
+
+    /**
+     * {@link MqttClientCallback} dispatching the received responses to the pending requests
+     */
+    private class ConnectionCallback extends MqttClientCallback {
+
+        private final Connection connection;
+
+        private ConnectionCallback(Connection connection) {
+            super(null, 0);
+            this.connection = connection;
+        }
+
+        @Override
+        public void messageArrived(String stringTopic, org.eclipse.paho.client.mqttv3.MqttMessage message)
+                throws Exception {
+            MqttTopic mqttTopic = new MqttTopic(stringTopic);
+            MqttPayload mqttPayload = new MqttPayload(message.getPayload());
+            onResponse(stringTopic, new MqttMessage(mqttTopic,
+                    new Date(),
+                    mqttPayload));
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            connection.onConnectionLost(cause);
+        }
+    }
+}
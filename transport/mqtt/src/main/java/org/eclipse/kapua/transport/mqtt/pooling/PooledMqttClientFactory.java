@@ -48,14 +48,31 @@ public class PooledMqttClientFactory extends BasePooledObjectFactory<MqttClient>
     @Override
     public MqttClient create()
             throws Exception {
+        MqttClientPoolSetting mqttClientPoolSettings = MqttClientPoolSetting.getInstance();
+        return create(ClientIdGenerator.getInstance().next(mqttClientPoolSettings.getString(MqttClientPoolSettingKeys.CLIENT_POOL_CLIENT_ID_PREFIX)));
+    }
+
+    /**
+     * Creates a {@link MqttClient} connected with the given client id.
+     * 
+     * <p>
+     * The client is initialized and connected. In case of any failure on connect operation, an exception is thrown and the the created client is destroyed.
+     * </p>
+     * 
+     * @param clientId
+     *            The client id to use for the connection.
+     * @throws Exception
+     *             FIXME [javadoc] document exception.
+     * @since 1.0.0
+     */
+    public MqttClient create(String clientId)
+            throws Exception {
         //
         // User pwd generation
         MqttClientSetting mqttClientSettings = MqttClientSetting.getInstance();
-        MqttClientPoolSetting mqttClientPoolSettings = MqttClientPoolSetting.getInstance();
 
         String username = mqttClientSettings.getString(MqttClientSettingKeys.TRANSPORT_CREDENTIAL_USERNAME);
         char[] password = mqttClientSettings.getString(MqttClientSettingKeys.TRANSPORT_CREDENTIAL_PASSWORD).toCharArray();
-        String clientId = ClientIdGenerator.getInstance().next(mqttClientPoolSettings.getString(MqttClientPoolSettingKeys.CLIENT_POOL_CLIENT_ID_PREFIX));
         URI brokerURI = SystemUtils.getBrokerURI();
 
         //
@@ -90,6 +90,13 @@ public enum MqttClientPoolSettingKeys implements SettingKey {
      * @since 1.0.0
      */
     CLIENT_POOL_ON_RETURN_TEST("client.pool.on.return.test"),
+
+    /**
+     * The number of long-lived connections shared by the request/response correlator.
+     * 
+     * @since 1.0.0
+     */
+    CLIENT_POOL_CORRELATOR_CONNECTIONS("client.pool.correlator.connections"),
     ;
 
     /**